@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+#include <stdio.h>
+#include <stdlib.h>
+#include <memory.h>
+#include <sys/time.h>
+#include <ncutils.h>
+#include <field_tables.h>
+
+/* number of packets in a generation and length of their payload */
+#define PACKETS 64
+#define PAYLOAD 1400
+#define ROUNDS 50
+
+/* Returns the current time in seconds */
+static double now() {
+    struct timeval tv;
+    gettimeofday(&tv, 0);
+    return tv.tv_sec + tv.tv_usec / 1e6;
+}
+
+/* Decodes ROUNDS times a generation with the specified kernel and prints
+ * the decoding rate */
+static void benchmark(int kernel, const char *name) {
+
+    int i, j, k, r;
+    ffe *packets, *coded;
+    double start, elapsed;
+
+    ncutils_set_kernel(kernel);
+
+    srand48(12312);
+
+    packets = (ffe *) malloc(PACKETS * PAYLOAD);
+    coded = (ffe *) malloc(PACKETS * (PACKETS + PAYLOAD));
+
+    for ( i = 0 ; i < PACKETS * PAYLOAD ; i++) {
+        packets[i] = lrand48() & 0xFF;
+    }
+
+    /* create a generation of coded packets */
+    memset(coded, 0, PACKETS * (PACKETS + PAYLOAD));
+
+    for ( i = 0 ; i < PACKETS ; i++) {
+        ffe *packet = coded + i * (PACKETS + PAYLOAD);
+
+        for ( j = 0 ; j < PACKETS ; j++) {
+            ffe c = lrand48() & 0xFF;
+            packet[j] = c;
+            for ( k = 0 ; k < PAYLOAD ; k++) {
+                packet[PACKETS + k] ^= mul_table[(c << 8) + packets[j * PAYLOAD + k]];
+            }
+        }
+    }
+
+    start = now();
+
+    for ( r = 0 ; r < ROUNDS ; r++) {
+
+        p_packet_decoder_t d = create_packet_decoder(PACKETS, PAYLOAD);
+
+        for ( i = 0 ; i < PACKETS ; i++) {
+            pd_add_packet(d, coded + i * (PACKETS + PAYLOAD));
+        }
+
+        if (pd_decoded_packets_get_count(d) != PACKETS) {
+            printf("%s: decoding failed\n", name);
+        }
+
+        destroy_packet_decoder(d);
+    }
+
+    elapsed = now() - start;
+
+    printf("%s: %.2f MB/s\n", name, ROUNDS * PACKETS * PAYLOAD / elapsed / 1e6);
+
+    free(packets);
+    free(coded);
+
+}
+
+int main() {
+
+    benchmark(NCUTILS_KERNEL_TABLE, "table");
+    benchmark(NCUTILS_KERNEL_NIBBLE, "nibble");
+
+    return 0;
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+import java.util.Random;
+
+import ch.epfl.arni.ncutils.CodecFactory;
+import ch.epfl.arni.ncutils.Decoder;
+import ch.epfl.arni.ncutils.Encoder;
+
+/**
+ * Compares the cost of calling the C decoder through JNI and through the 
+ * Foreign Function and Memory API. The packets are small so that the time 
+ * of a call is dominated by the transition to native code and by the copy 
+ * of the packet rather than by the elimination. Each measurement is 
+ * preceded by a warm-up run and the best of several runs is reported. 
+ * 
+ * Run it with the ant target "benchmark", the FFM backend is measured only 
+ * on JDK 22 or newer.
+ */
+public class BackendBenchmark {
+
+	/* number of packets in a generation and lengths of their payload */
+	private static final int PACKETS = 16;
+	private static final int[] PAYLOADS = { 16, 64, 256, 1400 };
+	
+	/* number of calls of a warm-up run and of a measured run */
+	private static final int WARMUP_CALLS = 50000;
+	private static final int CALLS = 200000;
+	
+	/* number of measured runs, the fastest is reported */
+	private static final int RUNS = 5;
+	
+	private static final int[] BACKENDS = { CodecFactory.BACKEND_JNI, CodecFactory.BACKEND_FFM };
+	private static final String[] BACKEND_NAMES = { "jni", "ffm" };
+	
+	public static void main(String[] args) {
+		
+		if (!CodecFactory.isNativeLibraryAvailable()) {
+			System.out.println("The native library is not available");
+			return;
+		}
+		
+		System.out.println("Java " + System.getProperty("java.version") + ", " + PACKETS + " packets per generation");
+		
+		for (int payload : PAYLOADS) {
+			for (int i = 0; i < BACKENDS.length; i++) {
+				
+				if (!CodecFactory.isBackendAvailable(BACKENDS[i])) {
+					System.out.println(BACKEND_NAMES[i] + ": not available");
+					continue;
+				}
+				
+				benchmark(BACKENDS[i], BACKEND_NAMES[i], payload);
+			}
+		}
+	}
+	
+	/**
+	 * Measures the time of addPacket and of getPacket for a backend and 
+	 * prints it in nanoseconds per call
+	 */
+	private static void benchmark(int backend, String name, int payload) {
+		
+		byte [] segment = new byte[PACKETS * payload];
+		new Random(12312).nextBytes(segment);
+		
+		Encoder encoder = CodecFactory.createEncoder(segment, 0, segment.length, PACKETS);
+		
+		CodecFactory.setBackend(backend);
+		Decoder decoder = CodecFactory.createDecoder(segment.length, PACKETS);
+		
+		/* keep a generation of innovative packets, they are added again after each reset */
+		byte [][] packets = new byte[PACKETS][encoder.getPacketLength()];
+		
+		while (!decoder.isDecoded()) {
+			
+			int rank = decoder.getRank();
+			
+			encoder.getPacket(packets[rank], 0);
+			decoder.addPacket(packets[rank], 0);
+		}
+		
+		byte [] recoded = new byte[encoder.getPacketLength()];
+		
+		measureAdd(decoder, packets, WARMUP_CALLS);
+		measureGet(decoder, recoded, WARMUP_CALLS);
+		
+		double add = Double.MAX_VALUE;
+		double get = Double.MAX_VALUE;
+		
+		for (int r = 0; r < RUNS; r++) {
+			add = Math.min(add, measureAdd(decoder, packets, CALLS));
+			get = Math.min(get, measureGet(decoder, recoded, CALLS));
+		}
+		
+		System.out.printf("%s: payload %5d bytes, addPacket %8.1f ns, getPacket %8.1f ns%n", name, payload, add, get);
+		
+		decoder.dispose();
+	}
+	
+	/**
+	 * Decodes generations until calls packets have been added, returns the 
+	 * time of a call in nanoseconds, including a share of the reset of the
+	 * decoder
+	 */
+	private static double measureAdd(Decoder decoder, byte[][] packets, int calls) {
+		
+		long start = System.nanoTime();
+		
+		for (int i = 0; i < calls; i += PACKETS) {
+			
+			decoder.reset();
+			
+			for (byte [] packet : packets) {
+				decoder.addPacket(packet, 0);
+			}
+			
+			if (!decoder.isDecoded()) throw new IllegalStateException("Decoding failed");
+		}
+		
+		return (System.nanoTime() - start) / (double) calls;
+	}
+	
+	/**
+	 * Recodes calls packets, returns the time of a call in nanoseconds 
+	 */
+	private static double measureGet(Decoder decoder, byte[] packet, int calls) {
+		
+		long start = System.nanoTime();
+		
+		for (int i = 0; i < calls; i++) {
+			decoder.getPacket(packet, 0);
+		}
+		
+		return (System.nanoTime() - start) / (double) calls;
+	}
+	
+}
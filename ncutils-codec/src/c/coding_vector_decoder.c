@@ -101,6 +101,18 @@ coding_vector_decoder_t* create_coding_vector_decoder(int max_packets) {
 
 }
 
+void cvd_reset(coding_vector_decoder_t *self) {
+
+    /* only the rows in use may contain non zero entries */
+    memset(self->decodeMatrix, 0, sizeof(ffe) * self->packetCount * self->maxPackets * 2);
+    memset(self->isPivot, 0, sizeof(ffe) * self->maxPackets);
+    memset(self->decoded, 0, sizeof(ffe) * self->maxPackets);
+
+    self->packetCount = 0;
+    self->decodedCount = 0;
+
+}
+
 void destroy_coding_vector_decoder(coding_vector_decoder_t *self) {
 
     free(self->decodeMatrix);
@@ -114,13 +126,102 @@ void destroy_coding_vector_decoder(coding_vector_decoder_t *self) {
     
 }
 
+/* returns the position of the only non-zero coefficient of v if this
+ * coefficient is 1, -1 otherwise */
+static int find_elementary(ffe *v, int size) {
+
+    int i, pos = -1;
+
+    for ( i = 0 ; i < size ; i++) {
+        if (v[i] == 0) continue;
+        if (pos != -1 || v[i] != 1) return -1;
+        pos = i;
+    }
+
+    return pos;
+}
+
+/* marks as decoded the rows of the decode matrix that became elementary */
+static void find_decoded_rows(coding_vector_decoder_t *self) {
+
+    ffe *decodeMatrix = (ffe *) self->decodeMatrix;
+    int size = self->maxPackets;
+    int totalSize = self->maxPackets * 2;
+    int i, j;
+
+    for (  i = 0; i < self->packetCount ; i++) {
+        int pos = -1;
+
+        /* skip if the line is marked decoded */
+        if (self->decoded[i]) continue;
+
+        for (  j = 0 ; j < size ; j++) {
+
+            if (decodeMatrix[i * totalSize + j] != 0 && pos != -1) {
+                pos = -1;
+                break;
+            } else if (decodeMatrix[i * totalSize + j] != 0) pos = j;
+        }
+
+        if ( pos >= 0) {
+            self->decodedToRow[self->decodedCount] = i;
+            self->decodedCount++;
+            self->decoded[i] = 1;
+        }
+    }
+
+}
+
+/* adds the elementary vector with a one at position pivot, the position
+ * must not be a pivot column yet */
+static void add_elementary_vector(coding_vector_decoder_t *self, int pivot) {
+
+    ffe *decodeMatrix = (ffe *) self->decodeMatrix;
+    int size = self->maxPackets;
+    int totalSize = self->maxPackets * 2;
+    int packetCount = self->packetCount;
+    int offset = packetCount * totalSize;
+    int i, changed = 0;
+
+    /* the rows after the last one in use are zero */
+    decodeMatrix[offset + pivot] = 1;
+    decodeMatrix[offset + size + packetCount] = 1;
+
+    self->pivotPos[packetCount] = pivot;
+    self->isPivot[pivot] = 1;
+
+    /* zero the column of the new pivot, the new row has only two non zero
+     * entries */
+    for ( i = 0 ; i < packetCount ; i++) {
+        ffe m = decodeMatrix[i*totalSize+pivot];
+
+        if (m == 0) continue;
+
+        decodeMatrix[i*totalSize+pivot] = 0;
+        decodeMatrix[i*totalSize+size+packetCount] ^= m;
+        changed = 1;
+    }
+
+    self->packetCount++;
+
+    if (changed) {
+        find_decoded_rows(self);
+    } else {
+        /* only the new row has been decoded */
+        self->decodedToRow[self->decodedCount] = packetCount;
+        self->decodedCount++;
+        self->decoded[packetCount] = 1;
+    }
+
+}
+
 int cvd_add_vector(coding_vector_decoder_t *self, ffe *v) {
     
     ffe *mul, *sub, *div, *decodeMatrix;
     int *pivotPos;
     char *isPivot;
     int size, totalSize, packetCount, offset;
-    int i,j;
+    int i;
     
     decodeMatrix = self->decodeMatrix;
     packetCount = self->packetCount;
@@ -131,7 +232,14 @@ int cvd_add_vector(coding_vector_decoder_t *self, ffe *v) {
     totalSize = self->maxPackets * 2;
     offset = packetCount * totalSize;
     
-   
+    /* original packets (e.g. from a systematic encoder) don't need elimination */
+    i = find_elementary(v, size);
+
+    if (i >= 0 && !isPivot[i]) {
+        add_elementary_vector(self, i);
+        return -1;
+    }
+
 
     memcpy(decodeMatrix + offset, v, size);
     decodeMatrix[offset+size+packetCount] = 1;
@@ -145,13 +253,7 @@ int cvd_add_vector(coding_vector_decoder_t *self, ffe *v) {
 
             if (m == 0) continue;
 
-            for ( j = 0 ; j < totalSize ; j++) {
-                    ffe val = decodeMatrix[offset+j];
-                    ffe val2 = decodeMatrix[i*totalSize+j];
-
-                    ffe ret = val ^ mul_table[(val2 << 8) + m];
-                    decodeMatrix[offset+j] = ret;
-            }
+            ffe_multiply_and_add(decodeMatrix + offset, decodeMatrix + i*totalSize, totalSize, m);
 
     }
 
@@ -182,10 +284,8 @@ int cvd_add_vector(coding_vector_decoder_t *self, ffe *v) {
 	    if ( decodeMatrix[offset+pivot] != 1 ) {
 		ffe pval = decodeMatrix[offset+pivot];
 
-		for ( j = 0 ; j < totalSize ; j++) {
-			ffe val = decodeMatrix[offset+j];
-			decodeMatrix[offset+j] = div_table[(val << 8) + pval];
-		}
+		/* multiply by the inverse of the pivot */
+		ffe_multiply(decodeMatrix + offset, totalSize, div_table[(1 << 8) + pval]);
 
 	    }
 
@@ -195,40 +295,13 @@ int cvd_add_vector(coding_vector_decoder_t *self, ffe *v) {
 
 		    if (m == 0) continue;
 
-		    for ( j = 0 ; j < totalSize ; j++) {
-
-			    ffe val2 = decodeMatrix[offset+j];
-			    ffe val = decodeMatrix[i*totalSize+j];                    
-
-			    decodeMatrix[i*totalSize+j] = val ^ mul_table[(val2<<8) + m];
-		    }
+		    ffe_multiply_and_add(decodeMatrix + i*totalSize, decodeMatrix + offset, totalSize, m);
 
 	    }
 
 	    self->packetCount++;
 
-	    /* look for decodable blocks */
-
-	    for (  i = 0; i < self->packetCount ; i++) {
-		int pos = -1;
-
-		/* skip if the line is marked decoded */
-		if (self->decoded[i]) continue;
-
-		for (  j = 0 ; j < size ; j++) {
-
-		    if (decodeMatrix[i * totalSize + j] != 0 && pos != -1) {
-			pos = -1;
-			break;
-		    } else if (decodeMatrix[i * totalSize + j] != 0) pos = j;
-		}
-
-		if ( pos >= 0) {
-		    self->decodedToRow[self->decodedCount] = i;
-		    self->decodedCount++;
-		    self->decoded[i] = 1;
-		}
-	    }
+	    find_decoded_rows(self);
 
 	    return -1;
     }
@@ -32,6 +32,8 @@
 extern "C" {
 #endif
 
+#include <stdint.h>
+
 typedef unsigned char ffe;
 
 /* type declarations */
@@ -54,6 +56,10 @@ p_packet_decoder_t create_packet_decoder(int max_packets, int payload_length_byt
 /* Destroys a packet decoder and releases the associated resources */
 void destroy_packet_decoder(p_packet_decoder_t this) ;
 
+/* Discards all the packets added to a packet decoder, the decoder can then be used
+ * to decode a new segment of the same size without allocating memory */
+void pd_reset(p_packet_decoder_t this) ;
+
 /* Returns the number of packets that were decoded */
 int pd_decoded_packets_get_count(p_packet_decoder_t this);
 
@@ -93,6 +99,9 @@ p_coding_vector_decoder_t create_coding_vector_decoder(int max_packets) ;
  */
 void destroy_coding_vector_decoder(p_coding_vector_decoder_t self) ;
 
+/* Discards all the vectors added to the specified coding vector decoder */
+void cvd_reset(p_coding_vector_decoder_t self) ;
+
 /*
  * Adds a coding vector to a specified coding vector decoder. If the vector
  * specified is lineraly dependent from the vectors already added the function
@@ -110,6 +119,66 @@ int cvd_decoded_coordinates_get_coordinate(p_coding_vector_decoder_t self, int p
 ffe* cvd_decoded_coordinates_get_coefficients(p_coding_vector_decoder_t self, int pos);
 
 
+/*******************************************************************************
+ *
+ * Seed headers: packets can replace the coding vector header with the seed of
+ * a xorshift generator (see SeedHeader.java for the packet format). The seed
+ * is expanded into the coding vector as follows:
+ *
+ *   x = seed, or 0x9E3779B9 if seed is zero
+ *   next(): x ^= x << 13; x ^= x >> 17; x ^= x << 5; return x
+ *
+ *   if non_zero is 0:
+ *       for i in 0 .. n - 1: c[i] = next() >> 24
+ *   otherwise:
+ *       c = 0
+ *       repeat non_zero times:
+ *           do pos = (next() >> 1) % n while c[pos] != 0
+ *           c[pos] = 1 + (next() >> 24) % 255
+ *
+ * ****************************************************************************/
+
+#define NCUTILS_FORMAT_SEED 1
+#define NCUTILS_FORMAT_ORIGINAL 2
+#define NCUTILS_FORMAT_EXPLICIT 3
+#define NCUTILS_SEED_HEADER_LENGTH 7
+
+/* Converts a packet in any of the seed header formats (whose header is 
+ * NCUTILS_SEED_HEADER_LENGTH bytes long, one byte followed by 
+ * packets_per_segment coefficients for NCUTILS_FORMAT_EXPLICIT) into a coding
+ * vector of packets_per_segment coefficients. Returns -1 if the format is 
+ * unknown, the number of non zero coefficients is larger than 
+ * packets_per_segment or the index of the original packet is outside the
+ * segment, 0 otherwise. */
+int ncutils_seed_header_to_vector(const ffe* header, ffe* vector, int packets_per_segment);
+
+/* Expands a seed into a coding vector of length packets_per_segment with 
+ * non_zero non zero coefficients (all random if non_zero is 0). Returns -1 
+ * without writing the vector if non_zero is negative or larger than 
+ * packets_per_segment, 0 otherwise. */
+int ncutils_expand_seed(uint32_t seed, int non_zero, ffe* vector, int packets_per_segment);
+
+
+/*******************************************************************************
+ *
+ * Arithmetic kernels: the packet decoder and the coding vector decoder
+ * multiply and add vectors of field elements either with a lookup in the
+ * 256x256 multiplication table or with two 16 entries tables indexed by the
+ * low and the high nibble of each byte (the latter are processed 16 bytes
+ * at a time with a byte shuffle when the library is compiled with SSSE3).
+ *
+ * ****************************************************************************/
+
+#define NCUTILS_KERNEL_TABLE 0
+#define NCUTILS_KERNEL_NIBBLE 1
+
+/* Selects the kernel used by all the decoders */
+void ncutils_set_kernel(int kernel);
+
+/* Returns the kernel currently in use */
+int ncutils_get_kernel(void);
+
+
 #ifdef	__cplusplus
 }
 #endif
@@ -53,5 +53,17 @@
 	char decodedPacketsCount;
     } packet_decoder_t;
 
+    /* computes dest = dest + coeff * src on vectors of length len */
+    void ffe_multiply_and_add(ffe *dest, const ffe *src, int len, ffe coeff);
+
+    /* computes v = coeff * v on a vector of length len */
+    void ffe_multiply(ffe *v, int len, ffe coeff);
+
+    /* computes dest_r = dest_r + sum_i coefficients[r * columns + i] * src_i
+     * for the rows destination vectors dest_r (dest_stride bytes apart) and
+     * the columns source vectors src_i (stored one after the other), all of
+     * length len */
+    void ffe_multiply_matrix(ffe *dest, int dest_stride, const ffe *coefficients, int rows, int columns, const ffe *src, int len);
+
 #endif	/* _NCUTILS_PRIV_H */
 
@@ -78,6 +78,12 @@ packet_decoder_t *create_packet_decoder(int max_packets, int payload_length) {
 
 }
 
+void pd_reset(packet_decoder_t *this) {
+    cvd_reset(this->codingVectorDecoder);
+    this->decodedPacketsCount = 0;
+    this->encodedPacketsCount = 0;
+}
+
 void destroy_packet_decoder(packet_decoder_t *this) {
     int i;
     destroy_coding_vector_decoder(this->codingVectorDecoder);
@@ -89,27 +95,16 @@ void destroy_packet_decoder(packet_decoder_t *this) {
 
 void pd_get_packet(p_packet_decoder_t this, ffe* packet) {
 
-    int i,j;
-    ffe v1, v2;
-    int coeff;
-    ffe *table_row;
+    int i;
     ffe *coded_packet;
 
     memset(packet, 0, this->packetLength);
 
     for (i = 0; i < this->encodedPacketsCount; i++) {
 
-        coeff = lrand48() & 0xFF;
-
-	table_row = mul_table + (coeff << 8);
-
         coded_packet = this->encodedPackets + i * this->packetLength;
 
-        for ( j = 0; j < this->packetLength; j++) {
-            v2 = packet[j];
-            v1 = coded_packet[j];
-            packet[j] = v1 ^ table_row[v2];
-        }
+        ffe_multiply_and_add(packet, coded_packet, this->packetLength, lrand48() & 0xFF);
         
     }
     
@@ -117,14 +112,30 @@ void pd_get_packet(p_packet_decoder_t this, ffe* packet) {
 
 void pd_decode_payload(packet_decoder_t *this, ffe* encoding) {
 
-    int i,j;
-    ffe v1, v2;
+    int i;
     int coeff;
-    ffe *table_row;
     ffe *output, *encoded_packet;
 
     output = this->decodedPackets + this->decodedPacketsCount * this->payloadLength;
 
+    /* if the packet is a copy of one of the coded packets (e.g. an original
+     * packet sent by a systematic encoder) there is nothing to combine */
+    coeff = -1;
+    for (i = 0; i < this->encodedPacketsCount; i++) {
+        if (encoding[i] == 0) continue;
+        if (coeff != -1 || encoding[i] != 1) {
+            coeff = -1;
+            break;
+        }
+        coeff = i;
+    }
+
+    if (coeff >= 0) {
+        encoded_packet = this->encodedPackets + (coeff+1)*this->packetLength - this->payloadLength;
+        memcpy(output, encoded_packet, this->payloadLength);
+        return;
+    }
+
     memset(output, 0, this->payloadLength);
 
     for (i = 0; i < this->encodedPacketsCount; i++) {
@@ -136,16 +147,10 @@ void pd_decode_payload(packet_decoder_t *this, ffe* encoding) {
             continue;
         }
 
-	table_row = mul_table + (coeff << 8);
-
         encoded_packet = this->encodedPackets + (i+1)*this->packetLength - this->payloadLength;
 
         /* linearly combine the payload of packet "codedPacketId" */
-        for ( j = 0; j < this->payloadLength; j++) {
-            v2 = encoded_packet[j];
-            v1 = output[j];
-            output[j] = v1 ^ table_row[v2];
-        }
+        ffe_multiply_and_add(output, encoded_packet, this->payloadLength, coeff);
         
     }
     
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2010, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+#include <string.h>
+#include "ncutils.h"
+
+/* advances the state of the xorshift generator */
+#define XORSHIFT(x) do { x ^= x << 13; x ^= x >> 17; x ^= x << 5; } while (0)
+
+int ncutils_expand_seed(uint32_t seed, int non_zero, ffe* vector, int packets_per_segment) {
+
+	uint32_t x = seed != 0 ? seed : 0x9E3779B9u;
+	int i, j, pos;
+
+	/* there are not enough free positions for the coefficients */
+	if (non_zero < 0 || non_zero > packets_per_segment) {
+		return -1;
+	}
+
+	if (non_zero == 0) {
+		for (i = 0 ; i < packets_per_segment ; i++) {
+			XORSHIFT(x);
+			vector[i] = (ffe) (x >> 24);
+		}
+		return 0;
+	}
+
+	memset(vector, 0, packets_per_segment);
+
+	for (j = 0 ; j < non_zero ; j++) {
+
+		do {
+			XORSHIFT(x);
+			pos = (x >> 1) % packets_per_segment;
+		} while (vector[pos] != 0);
+
+		XORSHIFT(x);
+		vector[pos] = (ffe) (1 + (x >> 24) % 255);
+	}
+
+	return 0;
+}
+
+int ncutils_seed_header_to_vector(const ffe* header, ffe* vector, int packets_per_segment) {
+
+	uint32_t value;
+	int non_zero;
+
+	if (header[0] == NCUTILS_FORMAT_EXPLICIT) {
+		memcpy(vector, header + 1, packets_per_segment);
+		return 0;
+	}
+
+	value = ((uint32_t) header[1] << 24) | ((uint32_t) header[2] << 16) 
+				| ((uint32_t) header[3] << 8) | header[4];
+	non_zero = (header[5] << 8) | header[6];
+
+	if (header[0] == NCUTILS_FORMAT_SEED) {
+		return ncutils_expand_seed(value, non_zero, vector, packets_per_segment);
+	}
+
+	/* the index of the original packet must be in the segment */
+	if (header[0] != NCUTILS_FORMAT_ORIGINAL || value >= (uint32_t) packets_per_segment) {
+		return -1;
+	}
+
+	memset(vector, 0, packets_per_segment);
+	vector[value] = 1;
+
+	return 0;
+}
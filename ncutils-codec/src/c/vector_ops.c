@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2010, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+#include "ncutils.h"
+#include "ncutils_priv.h"
+#include "field_tables.h"
+
+#ifdef __SSSE3__
+#include <tmmintrin.h>
+#endif
+
+/* number of bytes of the destination vectors that should fit in the cache
+ * during a matrix product, and minimum number of columns of a block */
+#define CACHE_BLOCK_SIZE (1 << 18)
+#define MIN_BLOCK_LENGTH 64
+
+/* the kernel used by the multiply and add operations, the nibble kernel is
+ * used by default only if the shuffle instruction is available */
+#ifdef __SSSE3__
+static int kernel = NCUTILS_KERNEL_NIBBLE;
+#else
+static int kernel = NCUTILS_KERNEL_TABLE;
+#endif
+
+void ncutils_set_kernel(int k) {
+    kernel = k;
+}
+
+int ncutils_get_kernel(void) {
+    return kernel;
+}
+
+/* Fills the two 16 entries tables that contain the products of coeff with
+ * all the values of the low nibble and of the high nibble of a byte. Since
+ * multiplication distributes over the sum, coeff * x is then
+ * low[x & 0xF] ^ high[x >> 4] */
+static void build_nibble_tables(ffe coeff, ffe *low, ffe *high) {
+
+    int i;
+    ffe *table_row = mul_table + (coeff << 8);
+
+    for ( i = 0 ; i < 16 ; i++) {
+        low[i] = table_row[i];
+        high[i] = table_row[i << 4];
+    }
+
+}
+
+static void multiply_and_add_nibble(ffe *dest, const ffe *src, int len, ffe coeff) {
+
+    int j = 0;
+    ffe low[16], high[16];
+
+    build_nibble_tables(coeff, low, high);
+
+#ifdef __SSSE3__
+    {
+        __m128i low_v = _mm_loadu_si128((const __m128i *) low);
+        __m128i high_v = _mm_loadu_si128((const __m128i *) high);
+        __m128i mask = _mm_set1_epi8(0x0F);
+
+        for ( ; j + 16 <= len ; j += 16) {
+            __m128i s = _mm_loadu_si128((const __m128i *) (src + j));
+            __m128i d = _mm_loadu_si128((const __m128i *) (dest + j));
+            __m128i l = _mm_shuffle_epi8(low_v, _mm_and_si128(s, mask));
+            __m128i h = _mm_shuffle_epi8(high_v, _mm_and_si128(_mm_srli_epi64(s, 4), mask));
+            _mm_storeu_si128((__m128i *) (dest + j), _mm_xor_si128(d, _mm_xor_si128(l, h)));
+        }
+    }
+#endif
+
+    for ( ; j < len ; j++) {
+        dest[j] ^= low[src[j] & 0x0F] ^ high[src[j] >> 4];
+    }
+
+}
+
+static void multiply_nibble(ffe *v, int len, ffe coeff) {
+
+    int j = 0;
+    ffe low[16], high[16];
+
+    build_nibble_tables(coeff, low, high);
+
+#ifdef __SSSE3__
+    {
+        __m128i low_v = _mm_loadu_si128((const __m128i *) low);
+        __m128i high_v = _mm_loadu_si128((const __m128i *) high);
+        __m128i mask = _mm_set1_epi8(0x0F);
+
+        for ( ; j + 16 <= len ; j += 16) {
+            __m128i s = _mm_loadu_si128((const __m128i *) (v + j));
+            __m128i l = _mm_shuffle_epi8(low_v, _mm_and_si128(s, mask));
+            __m128i h = _mm_shuffle_epi8(high_v, _mm_and_si128(_mm_srli_epi64(s, 4), mask));
+            _mm_storeu_si128((__m128i *) (v + j), _mm_xor_si128(l, h));
+        }
+    }
+#endif
+
+    for ( ; j < len ; j++) {
+        v[j] = low[v[j] & 0x0F] ^ high[v[j] >> 4];
+    }
+
+}
+
+void ffe_multiply_and_add(ffe *dest, const ffe *src, int len, ffe coeff) {
+
+    int j;
+    ffe *table_row;
+
+    if (coeff == 0) return;
+
+    if (kernel == NCUTILS_KERNEL_NIBBLE) {
+        multiply_and_add_nibble(dest, src, len, coeff);
+        return;
+    }
+
+    table_row = mul_table + (coeff << 8);
+
+    for ( j = 0 ; j < len ; j++) {
+        dest[j] ^= table_row[src[j]];
+    }
+
+}
+
+void ffe_multiply(ffe *v, int len, ffe coeff) {
+
+    int j;
+    ffe *table_row;
+
+    if (coeff == 1) return;
+
+    if (kernel == NCUTILS_KERNEL_NIBBLE) {
+        multiply_nibble(v, len, coeff);
+        return;
+    }
+
+    table_row = mul_table + (coeff << 8);
+
+    for ( j = 0 ; j < len ; j++) {
+        v[j] = table_row[v[j]];
+    }
+
+}
+
+void ffe_multiply_matrix(ffe *dest, int dest_stride, const ffe *coefficients, int rows, int columns, const ffe *src, int len) {
+
+	int block_len = CACHE_BLOCK_SIZE / rows;
+	int start, end, i, r;
+
+	if (block_len < MIN_BLOCK_LENGTH) {
+		block_len = MIN_BLOCK_LENGTH;
+	}
+
+	/* one block of columns at a time, so that the blocks of the destination
+	 * vectors stay in the cache while all the source vectors are combined */
+	for (start = 0 ; start < len ; start += block_len) {
+
+		end = start + block_len < len ? start + block_len : len;
+
+		for (i = 0 ; i < columns ; i++) {
+			for (r = 0 ; r < rows ; r++) {
+
+				ffe coeff = coefficients[r * columns + i];
+
+				if (coeff == 0) continue;
+
+				ffe_multiply_and_add(dest + r * dest_stride + start, src + i * len + start, end - start, coeff);
+			}
+		}
+	}
+
+}
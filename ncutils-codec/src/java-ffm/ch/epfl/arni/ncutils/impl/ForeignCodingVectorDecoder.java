@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ch.epfl.arni.ncutils.impl;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.ref.Cleaner;
+import java.security.InvalidParameterException;
+
+/**
+ * 
+ * Coding vector decoder of the C library called through the Foreign Function
+ * and Memory API. The decoder receives coding vectors and, as soon as it is 
+ * possible, it returns the coefficients that must be used to obtain an 
+ * original packet as a linear combination of the packets corresponding to 
+ * the coding vectors received.
+ * 
+ * Vectors are read directly from the native memory segments passed to the 
+ * decoder, one byte per coefficient, vectors stored on the heap are copied 
+ * in a native buffer first.
+ *
+ */
+
+public final class ForeignCodingVectorDecoder implements AutoCloseable {
+	
+	/** the decoder created in the C code, NULL once disposed */
+	private MemorySegment handle = MemorySegment.NULL;
+	
+	/** registration of the decoder with the cleaner */
+	private final Cleaner.Cleanable cleanable;
+	
+	/** length of the coding vectors */
+	private int packetsPerSegment;
+	
+	/** native copy of the vectors stored on the heap */
+	private final MemorySegment buffer;
+	
+	/**
+	 * Creates a decoder for coding vectors of the specified length.
+	 * 
+	 * @param packetsPerSegment the length of the coding vectors
+	 */
+	public ForeignCodingVectorDecoder(int packetsPerSegment) {
+		
+		this.packetsPerSegment = packetsPerSegment;
+		
+		try {
+			handle = (MemorySegment) PanamaBinding.CREATE_CODING_VECTOR_DECODER.invokeExact(packetsPerSegment);
+		} catch (Throwable t) {
+			throw PanamaBinding.rethrow(t);
+		}
+		
+		if (handle.address() == 0) {
+			throw new IllegalStateException("Cannot allocate memory for decoder");
+		}
+		
+		cleanable = NativeDecoder.CLEANER.register(this, new PanamaBinding.Destroyer(PanamaBinding.DESTROY_CODING_VECTOR_DECODER, handle));
+		
+		buffer = Arena.ofAuto().allocate(packetsPerSegment);
+	}
+	
+	/**
+	 * Adds a coding vector to the decoder. 
+	 * 
+	 * @param vector a memory segment that contains the vector
+	 * @param offset the position of the first coefficient of the vector in the segment
+	 * @return true if the vector is linearly independent from the vectors already added
+	 */
+	public synchronized boolean addVector(MemorySegment vector, long offset) {
+		
+		if (vector.byteSize() - offset < packetsPerSegment || offset < 0) 
+			throw new InvalidParameterException("Vector too short");
+		
+		checkHandle();
+		
+		MemorySegment coefficients = vector.asSlice(offset, packetsPerSegment);
+		
+		if (!coefficients.isNative()) {
+			coefficients = buffer.copyFrom(coefficients);
+		}
+		
+		try {
+			return (int) PanamaBinding.CVD_ADD_VECTOR.invokeExact(handle, coefficients) != 0;
+		} catch (Throwable t) {
+			throw PanamaBinding.rethrow(t);
+		}
+	}
+	
+	/**
+	 * Returns the number of original packets that can be decoded
+	 * 
+	 * @return the number of decoded coordinates
+	 */
+	public synchronized int getDecodedCount() {
+		
+		checkHandle();
+		
+		try {
+			return (int) PanamaBinding.CVD_DECODED_COORDINATES_GET_COUNT.invokeExact(handle);
+		} catch (Throwable t) {
+			throw PanamaBinding.rethrow(t);
+		}
+	}
+	
+	/**
+	 * Returns the index of the original packet decoded at the specified position 
+	 * 
+	 * @param pos a position between 0 and getDecodedCount() - 1
+	 * @return the index of the original packet
+	 */
+	public synchronized int getDecodedCoordinate(int pos) {
+		
+		checkPosition(pos);
+		
+		try {
+			return (int) PanamaBinding.CVD_DECODED_COORDINATES_GET_COORDINATE.invokeExact(handle, pos);
+		} catch (Throwable t) {
+			throw PanamaBinding.rethrow(t);
+		}
+	}
+	
+	/**
+	 * Returns the coefficients that must be used to combine the packets 
+	 * corresponding to the vectors received to obtain the original packet 
+	 * decoded at the specified position. The segment is owned by the decoder 
+	 * and it is valid only until the decoder is modified or disposed.
+	 * 
+	 * @param pos a position between 0 and getDecodedCount() - 1
+	 * @return a segment of packetsPerSegment coefficients 
+	 */
+	public synchronized MemorySegment getDecodedCoefficients(int pos) {
+		
+		checkPosition(pos);
+		
+		try {
+			MemorySegment coefficients = (MemorySegment) PanamaBinding.CVD_DECODED_COORDINATES_GET_COEFFICIENTS.invokeExact(handle, pos);
+			return coefficients.reinterpret(packetsPerSegment);
+		} catch (Throwable t) {
+			throw PanamaBinding.rethrow(t);
+		}
+	}
+	
+	/**
+	 * Discards all the vectors added to the decoder
+	 */
+	public synchronized void reset() {
+		
+		checkHandle();
+		
+		try {
+			PanamaBinding.CVD_RESET.invokeExact(handle);
+		} catch (Throwable t) {
+			throw PanamaBinding.rethrow(t);
+		}
+	}
+	
+	private void checkHandle() {
+		if (handle.address() == 0) throw new IllegalStateException("Decoder disposed");
+	}
+	
+	private void checkPosition(int pos) {
+		if (pos < 0 || pos >= getDecodedCount()) throw new IndexOutOfBoundsException("No decoded coordinate at position " + pos);
+	}
+	
+	/**
+	 * Releases the memory used by the C decoder, calling this method more 
+	 * than once has no effect
+	 */
+	public synchronized void dispose() {
+		// the cleaner destroys the C decoder at most once
+		handle = MemorySegment.NULL;
+		cleanable.clean();
+	}
+	
+	/**
+	 * Disposes the decoder, equivalent to {@link #dispose()}.
+	 */
+	@Override
+	public void close() {
+		dispose();
+	}
+	
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ch.epfl.arni.ncutils.impl;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.security.InvalidParameterException;
+
+import ch.epfl.arni.ncutils.Decoder;
+
+/**
+ * 
+ * Decoder that calls the packet decoder of the C library through the 
+ * Foreign Function and Memory API. 
+ * 
+ * Besides byte arrays, the packets and the segment can be stored in memory 
+ * segments (on or off heap), the native code accesses native segments 
+ * without copying them. The packets stored on the heap are copied in a 
+ * native buffer, so that the heap is never pinned during the elimination. 
+ * The JVM must be started with --enable-native-access=ALL-UNNAMED to 
+ * avoid the warnings about restricted methods. 
+ *
+ */
+
+public final class ForeignDecoder implements Decoder {
+	
+	/** the decoder created in the C code, NULL once disposed */
+	private MemorySegment handle = MemorySegment.NULL;
+	
+	/** registration of the decoder with the cleaner */
+	private final Cleaner.Cleanable cleanable;
+	
+	/** current number of innovative packets recieved */
+	private int rank;
+	
+	/** number of original packets in which the segment has been divided */
+	private int packetsPerSegment;
+	
+	/** length of a packet, excluding the coding coefficient vector */ 
+	private int packetLen;
+	
+	/** length of the segment being reconstructed */
+	private int segmentLen;
+	
+	/** native copy of the packets stored on the heap */
+	private final MemorySegment buffer;
+	
+	/**
+     * Creates a new ForeignDecoder with a given segment size and packet per segment length.
+     * 
+     * @param segmentLength the length of the segment that has to be recovered
+     * @param packetsPerSegment the number of original packets in which the segment has 
+     * 							been divided (also known as generation size)
+	 */
+	public ForeignDecoder(int segmentLength, int packetsPerSegment) {
+		
+		this.packetLen = segmentLength / packetsPerSegment;
+		this.segmentLen = segmentLength;
+		this.packetsPerSegment = packetsPerSegment;
+		
+		try {
+			handle = (MemorySegment) PanamaBinding.CREATE_PACKET_DECODER.invokeExact(packetsPerSegment, packetLen);
+		} catch (Throwable t) {
+			throw PanamaBinding.rethrow(t);
+		}
+		
+		if (handle.address() == 0) {
+			throw new IllegalStateException("Cannot allocate memory for decoder");
+		}
+		
+		cleanable = NativeDecoder.CLEANER.register(this, new PanamaBinding.Destroyer(PanamaBinding.DESTROY_PACKET_DECODER, handle));
+		
+		buffer = Arena.ofAuto().allocate(packetLen + packetsPerSegment);
+	}
+	
+	@Override
+	public void addPacket(byte[] data, int offset) {
+		addPacket(MemorySegment.ofArray(data), offset);
+	}
+	
+	/**
+	 * Adds a new packet stored in a memory segment to the the decoder. 
+	 * 
+	 * @param data the segment containing the packet
+	 * @param offset the position of the first byte of the packet in the segment
+	 */
+	public synchronized void addPacket(MemorySegment data, long offset) {
+		
+		if (data.byteSize() - offset <  packetLen + packetsPerSegment || offset < 0) 
+			throw new InvalidParameterException("Data packet too short");
+		
+		checkHandle();
+		
+		int innovative;
+		
+		MemorySegment packet = data.asSlice(offset, packetLen + packetsPerSegment);
+		
+		if (!packet.isNative()) {
+			packet = buffer.copyFrom(packet);
+		}
+		
+		try {
+			/* the decoder keeps its own copy of the packet */
+			innovative = (int) PanamaBinding.PD_ADD_PACKET.invokeExact(handle, packet);
+		} catch (Throwable t) {
+			throw PanamaBinding.rethrow(t);
+		}
+		
+		if (innovative != 0) rank++;
+	}
+	
+	@Override
+	public boolean isDecoded() {
+		return rank == packetsPerSegment;
+	}
+	
+	@Override
+	public int getRank() {
+		return rank;
+	}
+
+	@Override
+	public void getSegment(byte[] segment, int offset) {
+		getSegment(MemorySegment.ofArray(segment), offset);
+	}
+	
+	@Override
+	public void getSegment(ByteBuffer segment, int offset) {
+		/* the memory segment of a buffer starts at its position */
+		getSegment(MemorySegment.ofBuffer(segment.duplicate().clear()), offset);
+	}
+	
+	/**
+	 * Writes the segment that was reconstructed in a memory segment at the 
+	 * specified position.
+	 * 
+	 * @param segment a memory segment where the segment will be stored 
+	 * @param offset in the memory segment where the segment should be written
+	 */
+	public synchronized void getSegment(MemorySegment segment, long offset) {
+		
+		if ( rank < packetsPerSegment ) throw new IllegalStateException("Segment not fully decoded yet");
+		
+		if (segment.byteSize() - offset <  segmentLen || offset < 0) 
+			throw new InvalidParameterException("Segment too short (expected " + segmentLen + " received " + (segment.byteSize() - offset));
+		
+		checkHandle();
+		
+		try {
+			
+			int count = (int) PanamaBinding.PD_DECODED_PACKETS_GET_COUNT.invokeExact(handle);
+			
+			for (int i = 0; i < count; i++) {
+				
+				int id = (int) PanamaBinding.PD_DECODED_PACKETS_GET_ID.invokeExact(handle, i);
+				MemorySegment data = (MemorySegment) PanamaBinding.PD_DECODED_PACKETS_GET_PACKET.invokeExact(handle, i);
+				
+				MemorySegment.copy(data.reinterpret(packetLen), 0, segment, offset + (long) id * packetLen, packetLen);
+			}
+			
+		} catch (Throwable t) {
+			throw PanamaBinding.rethrow(t);
+		}
+	}
+	
+	@Override
+	public void getPacket(byte[] packet, int offset) {		
+		getPacket(MemorySegment.ofArray(packet), offset);			
+	}
+	
+	/**
+	 * Writes in a memory segment a packet at position offset.
+	 * 
+	 * @param packet a sufficiently large memory segment
+	 * @param offset position of the first byte of the packet in the segment
+	 */
+	public synchronized void getPacket(MemorySegment packet, long offset) {
+		
+		if (packet.byteSize() - offset <  packetLen + packetsPerSegment || offset < 0) 
+			throw new InvalidParameterException("Packet buffer too short");
+		
+		checkHandle();
+		
+		MemorySegment output = packet.asSlice(offset, packetLen + packetsPerSegment);
+		
+		try {
+			PanamaBinding.PD_GET_PACKET.invokeExact(handle, output.isNative() ? output : buffer);
+		} catch (Throwable t) {
+			throw PanamaBinding.rethrow(t);
+		}
+		
+		if (!output.isNative()) {
+			output.copyFrom(buffer);
+		}
+	}
+
+	@Override
+	public int getPacketLength() {
+		return packetLen + packetsPerSegment;
+	}
+	
+	@Override
+	public synchronized void reset() {
+		
+		checkHandle();
+		
+		try {
+			PanamaBinding.PD_RESET.invokeExact(handle);
+		} catch (Throwable t) {
+			throw PanamaBinding.rethrow(t);
+		}
+		
+		rank = 0;
+	}
+	
+	private void checkHandle() {
+		if (handle.address() == 0) throw new IllegalStateException("Decoder disposed");
+	}
+
+    @Override
+	public synchronized void dispose() {
+    	// the cleaner destroys the C decoder at most once
+    	handle = MemorySegment.NULL;
+    	cleanable.clean();
+    }
+    
+    @Override
+    public void close() {
+    	dispose();
+    }
+	
+}
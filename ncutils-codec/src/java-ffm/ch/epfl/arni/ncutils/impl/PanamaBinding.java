@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ch.epfl.arni.ncutils.impl;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+
+import ch.epfl.arni.ncutils.Decoder;
+
+/**
+ * 
+ * Method handles of the functions of the C library. The functions that 
+ * receive packets run the elimination and are not linked as critical 
+ * functions, they must not block the garbage collector. They only accept 
+ * native segments, the decoders copy the packets stored on the heap in a 
+ * native buffer.
+ * 
+ * The handles are created when the class is initialized, this fails if the 
+ * native library is not loaded by the class loader of this class.
+ *
+ */
+
+final class PanamaBinding extends ForeignBinding {
+
+	static final MethodHandle CREATE_PACKET_DECODER;
+	static final MethodHandle DESTROY_PACKET_DECODER;
+	static final MethodHandle PD_RESET;
+	static final MethodHandle PD_ADD_PACKET;
+	static final MethodHandle PD_GET_PACKET;
+	static final MethodHandle PD_DECODED_PACKETS_GET_COUNT;
+	static final MethodHandle PD_DECODED_PACKETS_GET_PACKET;
+	static final MethodHandle PD_DECODED_PACKETS_GET_ID;
+	
+	static final MethodHandle CREATE_CODING_VECTOR_DECODER;
+	static final MethodHandle DESTROY_CODING_VECTOR_DECODER;
+	static final MethodHandle CVD_RESET;
+	static final MethodHandle CVD_ADD_VECTOR;
+	static final MethodHandle CVD_DECODED_COORDINATES_GET_COUNT;
+	static final MethodHandle CVD_DECODED_COORDINATES_GET_COORDINATE;
+	static final MethodHandle CVD_DECODED_COORDINATES_GET_COEFFICIENTS;
+	
+	static {
+		
+		CREATE_PACKET_DECODER = bind("create_packet_decoder", FunctionDescriptor.of(ADDRESS, JAVA_INT, JAVA_INT));
+		DESTROY_PACKET_DECODER = bind("destroy_packet_decoder", FunctionDescriptor.ofVoid(ADDRESS));
+		PD_RESET = bind("pd_reset", FunctionDescriptor.ofVoid(ADDRESS));
+		PD_ADD_PACKET = bind("pd_add_packet", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+		PD_GET_PACKET = bind("pd_get_packet", FunctionDescriptor.ofVoid(ADDRESS, ADDRESS));
+		PD_DECODED_PACKETS_GET_COUNT = bind("pd_decoded_packets_get_count", FunctionDescriptor.of(JAVA_INT, ADDRESS), Linker.Option.critical(false));
+		PD_DECODED_PACKETS_GET_PACKET = bind("pd_decoded_packets_get_packet", FunctionDescriptor.of(ADDRESS, ADDRESS, JAVA_INT), Linker.Option.critical(false));
+		PD_DECODED_PACKETS_GET_ID = bind("pd_decoded_packets_get_id", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT), Linker.Option.critical(false));
+		
+		CREATE_CODING_VECTOR_DECODER = bind("create_coding_vector_decoder", FunctionDescriptor.of(ADDRESS, JAVA_INT));
+		DESTROY_CODING_VECTOR_DECODER = bind("destroy_coding_vector_decoder", FunctionDescriptor.ofVoid(ADDRESS));
+		CVD_RESET = bind("cvd_reset", FunctionDescriptor.ofVoid(ADDRESS));
+		CVD_ADD_VECTOR = bind("cvd_add_vector", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+		CVD_DECODED_COORDINATES_GET_COUNT = bind("cvd_decoded_coordinates_get_count", FunctionDescriptor.of(JAVA_INT, ADDRESS), Linker.Option.critical(false));
+		CVD_DECODED_COORDINATES_GET_COORDINATE = bind("cvd_decoded_coordinates_get_coordinate", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT), Linker.Option.critical(false));
+		CVD_DECODED_COORDINATES_GET_COEFFICIENTS = bind("cvd_decoded_coordinates_get_coefficients", FunctionDescriptor.of(ADDRESS, ADDRESS, JAVA_INT), Linker.Option.critical(false));
+		
+	}
+	
+	private static MethodHandle bind(String name, FunctionDescriptor descriptor, Linker.Option... options) {
+		
+		return Linker.nativeLinker().downcallHandle(
+				SymbolLookup.loaderLookup().find(name).orElseThrow(() -> new UnsatisfiedLinkError("Symbol " + name + " not found")), 
+				descriptor, options);
+		
+	}
+	
+	/**
+	 * Destroys an object created by the C library, it is registered with a 
+	 * cleaner and must not refer to the Java object that uses the C object.
+	 */
+	static final class Destroyer implements Runnable {
+		
+		private final MethodHandle destroy;
+		
+		private final MemorySegment handle;
+		
+		Destroyer(MethodHandle destroy, MemorySegment handle) {
+			this.destroy = destroy;
+			this.handle = handle;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				destroy.invokeExact(handle);
+			} catch (Throwable t) {
+				throw rethrow(t);
+			}
+		}
+	}
+	
+	/**
+	 * Rethrows an exception raised by a method handle invocation.
+	 */
+	static RuntimeException rethrow(Throwable t) {
+		
+		if (t instanceof RuntimeException) return (RuntimeException) t;
+		if (t instanceof Error) throw (Error) t;
+		
+		return new IllegalStateException(t);
+	}
+	
+	@Override
+	Decoder newDecoder(int segmentLength, int packetsPerSegment) {
+		return new ForeignDecoder(segmentLength, packetsPerSegment);
+	}
+	
+}
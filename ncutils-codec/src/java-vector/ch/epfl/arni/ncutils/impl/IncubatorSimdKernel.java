@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ch.epfl.arni.ncutils.impl;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 
+ * SIMD kernel based on the Vector API. Products are computed 16 bytes 
+ * at a time by using the low and the high nibble of each byte to shuffle
+ * the two 16 entries tables of the coefficient.
+ *
+ */
+
+class IncubatorSimdKernel extends SimdKernel {
+
+	private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_128;
+	
+	@Override
+	void multiplyAndAdd(byte[] dest, int destStart, int length, byte[] src, int srcStart, int coeff) {
+		
+		int row = coeff << 4;
+		
+		ByteVector low = ByteVector.fromArray(SPECIES, VectorHelper.nibbleLow, row);
+		ByteVector high = ByteVector.fromArray(SPECIES, VectorHelper.nibbleHigh, row);
+		
+		int i = 0;
+		int bound = SPECIES.loopBound(length);
+		
+		for (; i < bound; i += SPECIES.length()) {
+			ByteVector s = ByteVector.fromArray(SPECIES, src, srcStart + i);
+			ByteVector d = ByteVector.fromArray(SPECIES, dest, destStart + i);
+			
+			ByteVector l = s.and((byte) 0x0F).selectFrom(low);
+			ByteVector h = s.lanewise(VectorOperators.LSHR, 4).and((byte) 0x0F).selectFrom(high);
+			
+			d.lanewise(VectorOperators.XOR, l).lanewise(VectorOperators.XOR, h).intoArray(dest, destStart + i);
+		}
+		
+		for (; i < length; i++) {
+			int v1 = src[srcStart + i];
+			dest[destStart + i] ^= VectorHelper.nibbleLow[row + (v1 & 0x0F)] ^ VectorHelper.nibbleHigh[row + ((v1 >> 4) & 0x0F)];
+		}
+		
+	}
+	
+	@Override
+	void multiply(byte[] buffer, int bufferStart, int length, int coeff) {
+		
+		int row = coeff << 4;
+		
+		ByteVector low = ByteVector.fromArray(SPECIES, VectorHelper.nibbleLow, row);
+		ByteVector high = ByteVector.fromArray(SPECIES, VectorHelper.nibbleHigh, row);
+		
+		int i = 0;
+		int bound = SPECIES.loopBound(length);
+		
+		for (; i < bound; i += SPECIES.length()) {
+			ByteVector s = ByteVector.fromArray(SPECIES, buffer, bufferStart + i);
+			
+			ByteVector l = s.and((byte) 0x0F).selectFrom(low);
+			ByteVector h = s.lanewise(VectorOperators.LSHR, 4).and((byte) 0x0F).selectFrom(high);
+			
+			l.lanewise(VectorOperators.XOR, h).intoArray(buffer, bufferStart + i);
+		}
+		
+		for (; i < length; i++) {
+			int v = buffer[bufferStart + i];
+			buffer[bufferStart + i] = (byte) (VectorHelper.nibbleLow[row + (v & 0x0F)] ^ VectorHelper.nibbleHigh[row + ((v >> 4) & 0x0F)]);
+		}
+		
+	}
+	
+}
@@ -32,22 +32,41 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+import ch.epfl.arni.ncutils.impl.ForeignBinding;
 import ch.epfl.arni.ncutils.impl.JavaDecoder;
 import ch.epfl.arni.ncutils.impl.JavaEncoder;
+import ch.epfl.arni.ncutils.impl.JavaRelay;
 import ch.epfl.arni.ncutils.impl.NativeDecoder;
 import ch.epfl.arni.ncutils.impl.NativeEncoder;
+import ch.epfl.arni.ncutils.impl.SeedHeaderDecoder;
+import ch.epfl.arni.ncutils.impl.VectorHelper;
 
 /**
  * 
- * Factory class for encoders and decoders
+ * Factory class for encoders and decoders.
+ * 
+ * Native decoders call the C library either through JNI or, on JDKs that 
+ * provide the Foreign Function and Memory API, through the binding of 
+ * {@link ForeignBinding}. JNI is used by default, the backend can be selected
+ * with the system property ch.epfl.arni.ncutils.backend (jni or ffm) or with 
+ * {@link #setBackend(int)}. Native encoders always use JNI.
  *
  */
 
 public class CodecFactory {
 
+	/** backend that calls the native library through JNI */
+	public static final int BACKEND_JNI = 0;
+	
+	/** backend that calls the native library through the Foreign Function and Memory API */
+	public static final int BACKEND_FFM = 1;
+	
 	private static boolean nativeLibraryLoaded; 
 	private static boolean triedLoadingNativeLibrary;
 	
+	private static int backend = BACKEND_JNI;
+	private static boolean backendSelected;
+	
 	/**
 	 * 
 	 * Creates a decoder. This function uses native implementation if available
@@ -60,6 +79,9 @@ public class CodecFactory {
 	public static Decoder createDecoder(int segmentLength, int packetsPerSegment) {
 		
 		if ( isNativeLibraryAvailable() ) {
+			if (getBackend() == BACKEND_FFM) {
+				return ForeignBinding.createDecoder(segmentLength, packetsPerSegment);
+			}
 			return new NativeDecoder(segmentLength, packetsPerSegment);
 		} else {
 			return new JavaDecoder(segmentLength, packetsPerSegment);
@@ -89,6 +111,199 @@ public class CodecFactory {
 		
 	}
 
+	/**
+	 * 
+	 * Creates a systematic encoder for a segment. The first packetsPerSegment 
+	 * packets created by the encoder are the original packets of the segment
+	 * (with an elementary coding vector), the following packets are random
+	 * linear combinations of the original packets. Decoders recover original
+	 * packets at almost no cost, on a link without losses no decoding is 
+	 * necessary. The function uses the native implementation if available.
+	 * 
+	 * @param segment a buffer holding the segment that must be encoded
+	 * @param offset the offset in the buffer where the segment starts
+	 * @param length the length of the segment
+	 * @param packetsPerSegment the number of packets in which the segment is split
+	 * 
+	 * @return an Encoder that can be used to encode packets for the specified segment
+	 */
+	public static Encoder createSystematicEncoder(byte[] segment, int offset, int length, int packetsPerSegment) {
+		
+		if ( isNativeLibraryAvailable() ) {
+			return new NativeEncoder(segment, offset, length, packetsPerSegment, true);
+		} else {
+			return new JavaEncoder(segment, offset, length, packetsPerSegment, true);
+		}		
+		
+	}
+
+	/**
+	 * 
+	 * Creates a sparse encoder for a segment. Each packet created by the encoder
+	 * is a random linear combination of nonZeroCoefficients randomly chosen
+	 * original packets, so that the cost of encoding a packet doesn't depend 
+	 * on packetsPerSegment. Sparser packets are cheaper to encode and decode but
+	 * are more likely to be linearly dependent. The function uses the native 
+	 * implementation if available.
+	 * 
+	 * @param segment a buffer holding the segment that must be encoded
+	 * @param offset the offset in the buffer where the segment starts
+	 * @param length the length of the segment
+	 * @param packetsPerSegment the number of packets in which the segment is split
+	 * @param nonZeroCoefficients the number of original packets combined in each
+	 * 			packet, between 1 and packetsPerSegment
+	 * 
+	 * @return an Encoder that can be used to encode packets for the specified segment
+	 */
+	public static Encoder createSparseEncoder(byte[] segment, int offset, int length, int packetsPerSegment, int nonZeroCoefficients) {
+		
+		if ( isNativeLibraryAvailable() ) {
+			return new NativeEncoder(segment, offset, length, packetsPerSegment, false, nonZeroCoefficients);
+		} else {
+			return new JavaEncoder(segment, offset, length, packetsPerSegment, false, nonZeroCoefficients);
+		}		
+		
+	}
+	
+	/**
+	 * 
+	 * Creates a sparse encoder for a segment where each packet combines 
+	 * the specified fraction of the original packets (at least one).
+	 * 
+	 * @param segment a buffer holding the segment that must be encoded
+	 * @param offset the offset in the buffer where the segment starts
+	 * @param length the length of the segment
+	 * @param packetsPerSegment the number of packets in which the segment is split
+	 * @param density the fraction of non zero coefficients in the coding vectors,
+	 * 			a number in (0, 1]
+	 * 
+	 * @return an Encoder that can be used to encode packets for the specified segment
+	 */
+	public static Encoder createSparseEncoder(byte[] segment, int offset, int length, int packetsPerSegment, double density) {
+		
+		if (density <= 0 || density > 1) {
+			throw new IllegalArgumentException("The density must be in (0, 1]");
+		}
+		
+		int nonZeroCoefficients = Math.max(1, (int) Math.ceil(density * packetsPerSegment));
+		
+		return createSparseEncoder(segment, offset, length, packetsPerSegment, nonZeroCoefficients);
+	}
+
+	/**
+	 * 
+	 * Creates an encoder whose packets carry the seed of a pseudo random generator
+	 * instead of the coding vector (see {@link ch.epfl.arni.ncutils.impl.SeedHeader}).
+	 * The header of the packets is 7 bytes long whatever the number of packets
+	 * per segment. The packets must be decoded with a decoder created by 
+	 * createSeedHeaderDecoder. The function uses the native implementation if 
+	 * available.
+	 * 
+	 * @param segment a buffer holding the segment that must be encoded
+	 * @param offset the offset in the buffer where the segment starts
+	 * @param length the length of the segment
+	 * @param packetsPerSegment the number of packets in which the segment is split
+	 * @param nonZeroCoefficients the number of original packets combined in each
+	 * 			packet, between 1 and packetsPerSegment
+	 * 
+	 * @return an Encoder that can be used to encode packets for the specified segment
+	 */
+	public static Encoder createSeedHeaderEncoder(byte[] segment, int offset, int length, int packetsPerSegment, int nonZeroCoefficients) {
+		
+		if ( isNativeLibraryAvailable() ) {
+			return new NativeEncoder(segment, offset, length, packetsPerSegment, false, nonZeroCoefficients, true);
+		} else {
+			return new JavaEncoder(segment, offset, length, packetsPerSegment, false, nonZeroCoefficients, true);
+		}		
+		
+	}
+	
+	/**
+	 * 
+	 * Creates a decoder of packets created by an encoder returned by 
+	 * createSeedHeaderEncoder. When the decoder is used to recode packets the
+	 * packets created carry an explicit coding vector and are 
+	 * packetsPerSegment - 6 bytes longer than the packets of the encoder. 
+	 * 
+	 * @param segmentLength the length of the segment
+	 * @param packetsPerSegment number of packets that form a segment
+	 * 
+	 * @return a Decoder that can be used to decoded packets
+	 */
+	public static Decoder createSeedHeaderDecoder(int segmentLength, int packetsPerSegment) {
+		return new SeedHeaderDecoder(createDecoder(segmentLength, packetsPerSegment), segmentLength, packetsPerSegment);
+	}
+
+	/**
+	 * 
+	 * Creates a relay that recodes the packets of a segment without decoding
+	 * them. The relay accepts the packets created by the encoders and the 
+	 * decoders returned by createEncoder and createDecoder, and its packets can 
+	 * be added to these decoders.
+	 * 
+	 * @param segmentLength the length of the segment
+	 * @param packetsPerSegment number of packets that form a segment
+	 * 
+	 * @return a Relay that can be used to recode packets
+	 */
+	public static Relay createRelay(int segmentLength, int packetsPerSegment) {
+		return new JavaRelay(segmentLength, packetsPerSegment);
+	}
+
+	/**
+	 * 
+	 * Returns true if the native library can be called with the specified backend.
+	 * 
+	 * @param backend one of BACKEND_JNI or BACKEND_FFM
+	 * @return true if the backend is available
+	 */
+	public static boolean isBackendAvailable(int backend) {
+		
+		if (!isNativeLibraryAvailable()) return false;
+		
+		return backend == BACKEND_JNI 
+				|| (backend == BACKEND_FFM && ForeignBinding.isAvailable());
+	}
+	
+	/**
+	 * 
+	 * Selects the backend used by the native decoders created afterwards.
+	 * 
+	 * @param backend one of BACKEND_JNI or BACKEND_FFM
+	 * @throws IllegalArgumentException if the backend is not available
+	 */
+	public static synchronized void setBackend(int backend) {
+		
+		if (!isBackendAvailable(backend)) {
+			throw new IllegalArgumentException("Backend " + backend + " is not available");
+		}
+		
+		CodecFactory.backend = backend;
+		backendSelected = true;
+	}
+	
+	/**
+	 * 
+	 * Returns the backend used by the native decoders.
+	 * 
+	 * @return one of BACKEND_JNI or BACKEND_FFM
+	 */
+	public static synchronized int getBackend() {
+		
+		if (!backendSelected) {
+			
+			backendSelected = true;
+			
+			String name = System.getProperty("ch.epfl.arni.ncutils.backend", "jni");
+			
+			if (name.equals("ffm") && isBackendAvailable(BACKEND_FFM)) {
+				backend = BACKEND_FFM;
+			}
+		}
+		
+		return backend;
+	}
+	
 	/**
 	 * 
 	 * Returns true if the native library for the current platform is available.
@@ -115,10 +330,11 @@ public class CodecFactory {
 					File tempFile = File.createTempFile("libncutils", "so");					
 					FileOutputStream fo = new FileOutputStream(tempFile);
 					
-					int ch;
+					byte[] buffer = new byte[8192];
+					int read;
 					
-					while ( (ch = in.read()) != -1) {
-						fo.write(ch);
+					while ( (read = in.read(buffer)) != -1) {
+						fo.write(buffer, 0, read);
 					}
 					
 					fo.close();
@@ -157,6 +373,8 @@ public class CodecFactory {
 		System.out.println("The operating system name is: " + arch);
 		
 		System.out.println("Native library is available: " + isNativeLibraryAvailable());
+		System.out.println("Java Vector API kernel is available: " + VectorHelper.isKernelAvailable(VectorHelper.KERNEL_VECTOR));
+		System.out.println("Foreign function backend is available: " + isBackendAvailable(BACKEND_FFM));
 	}
 	
 }
@@ -27,15 +27,20 @@
 
 package ch.epfl.arni.ncutils;
 
+import java.nio.ByteBuffer;
+
 /**
  * 
  * Reconstructs a segment from a set of packets. While the segment it is
  * being reconstructed the decoder can be used as an encoder to create new
  * packets.
+ * 
+ * Decoders can be used in try-with-resources statements, closing a decoder
+ * disposes it.
  *
  */
 
-public interface Decoder extends Encoder {
+public interface Decoder extends Encoder, AutoCloseable {
 
 	/**
 	 * Adds a new packet to the the decoder. The packet starts
@@ -63,20 +68,75 @@ public interface Decoder extends Encoder {
 	
 	/**
 	 * Writes the segment that was reconstructed in the buffer at the specified
-	 * position 
+	 * position. When the length of the segment is not a multiple of the 
+	 * number of packets per segment the last bytes of the segment are not 
+	 * carried by the packets, these bytes of the buffer are left untouched.
 	 * 
 	 * @param buffer a buffer where the segment will be stored 
 	 * @param offset in the buffer where the segment should be written
 	 */
 	public abstract void getSegment(byte[] buffer, int offset);
 
+	/**
+	 * Writes the segment that was reconstructed in a byte buffer (for instance
+	 * a region of a memory mapped file) at the specified position, the 
+	 * position of the buffer is not modified. As with 
+	 * {@link #getSegment(byte[], int)} the bytes that are not carried by the
+	 * packets are left untouched. 
+	 * 
+	 * By default the segment is written in the array of the buffer, if the 
+	 * buffer has none the bytes between offset and the limit of the buffer
+	 * are copied through a temporary array. The decoders of the library 
+	 * write directly in the buffer.
+	 * 
+	 * @param buffer a buffer where the segment will be stored 
+	 * @param offset in the buffer where the segment should be written
+	 */
+	public default void getSegment(ByteBuffer buffer, int offset) {
+		
+		if (buffer.hasArray()) {
+			getSegment(buffer.array(), buffer.arrayOffset() + offset);
+			return;
+		}
+		
+		ByteBuffer region = buffer.duplicate();
+		region.position(offset);
+		
+		byte [] segment = new byte[region.remaining()];
+		region.get(segment);
+		
+		getSegment(segment, 0);
+		
+		region.position(offset);
+		region.put(segment);
+	}
+
+	/**
+	 * Discards all the packets added to this decoder, so that it can be 
+	 * used to decode a new segment of the same size without allocating
+	 * memory. The decoders of the library support it, by default this 
+	 * method throws an UnsupportedOperationException.
+	 * 
+	 * @throws UnsupportedOperationException if the decoder cannot be reset
+	 */
+	public default void reset() {
+		throw new UnsupportedOperationException("The decoder cannot be reset");
+	}
+
 	/**
 	 * Releases the resources associated with this decoder.
-	 * Call this method when you don't need the decoder anymore.
-	 * If the user doesn't call this method it will be automatically
-	 * called when the decoder is garbage-collected.
+	 * Call this method when you don't need the decoder anymore, the 
+	 * decoder cannot be used afterwards. Calling this method more than once
+	 * has no effect. If the user doesn't call this method the resources are
+	 * released some time after the decoder becomes unreachable.
 	 *  
 	 */
 	public abstract void dispose();
 
+	/**
+	 * Disposes the decoder, equivalent to {@link #dispose()}.
+	 */
+	@Override
+	public abstract void close();
+
 }
\ No newline at end of file
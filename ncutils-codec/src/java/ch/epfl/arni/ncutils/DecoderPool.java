@@ -0,0 +1,550 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ch.epfl.arni.ncutils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 
+ * Pool of decoders for the segments (generations) that a receiver is 
+ * decoding at the same time. Packets are added to the pool together with 
+ * the id of their generation, the pool creates a decoder the first time it
+ * receives a packet of a generation.
+ * 
+ * The memory used by the decoders of the pool is bounded: when there is no 
+ * room for a new generation the least recently used generation is evicted.
+ * Generations that did not receive packets for more than the timeout are 
+ * evicted as well. The decoders of the evicted generations and of the 
+ * generations whose segment has been retrieved are reset and reused for 
+ * new generations, the decoders that cannot be reset are disposed.
+ * 
+ * All methods can be called concurrently, packets of different generations 
+ * are decoded in parallel. The lock of the pool is only held to update the 
+ * generations and the free decoders: waiting for the packets being decoded,
+ * resetting and creating decoders happens outside of it. Closing the pool 
+ * disposes all its decoders.
+ *
+ */
+
+public class DecoderPool implements AutoCloseable {
+
+	/** a generation being decoded */
+	private static class Generation {
+		
+		final long id;
+		
+		/** the decoder of the generation, protected by the monitor of the generation */
+		Decoder decoder;
+		
+		/** time of the last packet received, in nanoseconds */
+		long lastAccess;
+		
+		/** set by the only thread that returns the decoder to the pool */
+		final AtomicBoolean released = new AtomicBoolean();
+		
+		Generation(long id) {
+			this.id = id;
+		}
+	}
+	
+	/** the length of the segments */
+	private final int segmentLength;
+	
+	/** the number of packets in which the segments are divided */
+	private final int packetsPerSegment;
+	
+	/** the maximum number of decoders, in use or free */
+	private final int maxDecoders;
+	
+	/** time after which an idle generation is evicted in nanoseconds, 0 to disable the timeout */
+	private final long timeout;
+	
+	/** the generations being decoded from the least to the most recently used */
+	private final LinkedHashMap<Long, Generation> generations = new LinkedHashMap<Long, Generation>(16, 0.75f, true);
+	
+	/** decoders that have been reset and can be used for new generations */
+	private final ArrayDeque<Decoder> freeDecoders = new ArrayDeque<Decoder>();
+	
+	/** number of generations evicted before their segment was retrieved */
+	private long evictedCount;
+	
+	/**
+	 * Creates a pool of decoders.
+	 * 
+	 * @param segmentLength the length of the segments
+	 * @param packetsPerSegment the number of packets in which the segments are divided
+	 * @param maxMemory the maximum number of bytes used by the decoders, the 
+	 * 			pool keeps at least one decoder
+	 * @param timeoutMillis time after which a generation that did not receive
+	 * 			packets is evicted, 0 to evict generations only when the 
+	 * 			memory is exhausted
+	 */
+	public DecoderPool(int segmentLength, int packetsPerSegment, long maxMemory, long timeoutMillis) {
+		
+		if (maxMemory < 0 || timeoutMillis < 0) {
+			throw new IllegalArgumentException("The memory bound and the timeout must be positive");
+		}
+		
+		this.segmentLength = segmentLength;
+		this.packetsPerSegment = packetsPerSegment;
+		this.maxDecoders = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxMemory / getDecoderMemory(segmentLength, packetsPerSegment)));
+		this.timeout = timeoutMillis * 1000000L;
+	}
+	
+	/**
+	 * Returns an estimate of the number of bytes used by a decoder: the coded
+	 * packets it stores, the decoded segment and the decode matrix. 
+	 * 
+	 * @param segmentLength the length of the segment
+	 * @param packetsPerSegment the number of packets in which the segment is divided
+	 * @return a number of bytes
+	 */
+	public static long getDecoderMemory(int segmentLength, int packetsPerSegment) {
+		
+		long packetLength = segmentLength / packetsPerSegment + packetsPerSegment;
+		
+		return packetsPerSegment * packetLength + segmentLength + 2L * packetsPerSegment * packetsPerSegment;
+	}
+	
+	/**
+	 * Creates the decoders of the pool. The decoders are created by 
+	 * {@link CodecFactory#createDecoder(int, int)}, subclasses can override
+	 * this method to use other decoders. Decoders that do not support 
+	 * {@link Decoder#reset()} are disposed instead of being reused.
+	 * 
+	 * @param segmentLength the length of the segment
+	 * @param packetsPerSegment the number of packets in which the segment is divided
+	 * @return a new decoder
+	 */
+	protected Decoder createDecoder(int segmentLength, int packetsPerSegment) {
+		return CodecFactory.createDecoder(segmentLength, packetsPerSegment);
+	}
+	
+	/**
+	 * Adds a packet to the decoder of a generation, the decoder is created if 
+	 * this is the first packet of the generation. 
+	 * 
+	 * @param generationId the id of the generation of the packet
+	 * @param packet a buffer containing the packet
+	 * @param offset the offset of the first byte of the packet in the buffer
+	 * 
+	 * @return true if the segment of the generation is decoded
+	 */
+	public boolean addPacket(long generationId, byte[] packet, int offset) {
+		
+		Generation generation = getGeneration(generationId, true);
+		
+		synchronized (generation) {
+			
+			/* the generation has been evicted in the meanwhile */
+			if (generation.released.get()) return false;
+			
+			generation.decoder.addPacket(packet, offset);
+			
+			return generation.decoder.isDecoded();
+		}
+	}
+	
+	/**
+	 * Returns the number of innovative packets received for a generation.
+	 * 
+	 * @param generationId the id of a generation
+	 * @return the rank of the decoder of the generation, 0 if the generation 
+	 * 			is not in the pool
+	 */
+	public int getRank(long generationId) {
+		
+		Generation generation = getGeneration(generationId, false);
+		
+		if (generation == null) return 0;
+		
+		synchronized (generation) {
+			return generation.released.get() ? 0 : generation.decoder.getRank();
+		}
+	}
+	
+	/**
+	 * Writes the segment of a generation in a buffer if it has been decoded.
+	 * The generation is then removed from the pool and its decoder is reused,
+	 * packets of the generation received afterwards start a new generation.
+	 * 
+	 * @param generationId the id of the generation
+	 * @param segment a buffer where the segment will be stored
+	 * @param offset the offset in the buffer where the segment should be written
+	 * 
+	 * @return true if the segment was written, false if the generation is not
+	 * 			in the pool or it is not decoded yet
+	 */
+	public boolean getSegment(long generationId, byte[] segment, int offset) {
+		return getSegment(generationId, segment, null, offset);
+	}
+	
+	/**
+	 * Writes the segment of a generation in a byte buffer (for instance a 
+	 * region of a memory mapped file) if it has been decoded, the position 
+	 * of the buffer is not modified. The generation is then removed from the
+	 * pool and its decoder is reused.
+	 * 
+	 * @param generationId the id of the generation
+	 * @param segment a buffer where the segment will be stored
+	 * @param offset the offset in the buffer where the segment should be written
+	 * 
+	 * @return true if the segment was written, false if the generation is not
+	 * 			in the pool or it is not decoded yet
+	 */
+	public boolean getSegment(long generationId, ByteBuffer segment, int offset) {
+		return getSegment(generationId, null, segment, offset);
+	}
+	
+	/**
+	 * Writes the segment of a generation either in an array or in a byte buffer
+	 */
+	private boolean getSegment(long generationId, byte[] array, ByteBuffer buffer, int offset) {
+		
+		Generation generation = getGeneration(generationId, false);
+		
+		if (generation == null) return false;
+		
+		synchronized (generation) {
+			
+			if (generation.released.get() || !generation.decoder.isDecoded()) return false;
+			
+			if (array != null) {
+				generation.decoder.getSegment(array, offset);
+			} else {
+				generation.decoder.getSegment(buffer, offset);
+			}
+			
+			/* the segment is written only once, if the generation has been 
+			 * evicted in the meanwhile the decoder is recycled by the evicting 
+			 * thread */
+			if (!generation.released.compareAndSet(false, true)) return true;
+		}
+		
+		synchronized (generations) {
+			generations.remove(generationId, generation);
+		}
+		
+		recycle(generation);
+		
+		return true;
+	}
+	
+	/**
+	 * Removes a generation from the pool, its decoder is reused.
+	 * 
+	 * @param generationId the id of a generation
+	 */
+	public void release(long generationId) {
+		
+		Generation generation;
+		
+		synchronized (generations) {
+			
+			generation = generations.remove(generationId);
+			
+			if (generation == null || !generation.released.compareAndSet(false, true)) return;
+		}
+		
+		recycle(generation);
+	}
+	
+	/**
+	 * Evicts the generations that did not receive packets for more than 
+	 * the timeout.
+	 */
+	public void evictExpired() {
+		
+		if (timeout == 0) return;
+		
+		List<Generation> expired = new ArrayList<Generation>();
+		
+		synchronized (generations) {
+			unlinkExpired(expired);
+		}
+		
+		for (Generation generation : expired) {
+			recycle(generation);
+		}
+	}
+	
+	/**
+	 * Returns the number of generations in the pool
+	 * 
+	 * @return the number of generations being decoded
+	 */
+	public int getGenerationCount() {
+		synchronized (generations) {
+			return generations.size();
+		}
+	}
+	
+	/**
+	 * Returns the number of generations that have been evicted before their
+	 * segment was retrieved.
+	 * 
+	 * @return the number of evicted generations
+	 */
+	public long getEvictedCount() {
+		synchronized (generations) {
+			return evictedCount;
+		}
+	}
+	
+	/**
+	 * Returns the maximum number of decoders that the pool keeps
+	 * 
+	 * @return the maximum number of generations decoded at the same time
+	 */
+	public int getMaxDecoders() {
+		return maxDecoders;
+	}
+	
+	/**
+	 * Releases all the decoders of the pool, the generations being decoded
+	 * are discarded. 
+	 */
+	public void dispose() {
+		
+		List<Generation> discarded = new ArrayList<Generation>();
+		List<Decoder> decoders;
+		
+		synchronized (generations) {
+			
+			for (Generation generation : generations.values()) {
+				if (generation.released.compareAndSet(false, true)) discarded.add(generation);
+			}
+			
+			generations.clear();
+			
+			decoders = new ArrayList<Decoder>(freeDecoders);
+			
+			freeDecoders.clear();
+		}
+		
+		for (Generation generation : discarded) {
+			
+			/* waits for the packets being decoded */
+			synchronized (generation) {
+				if (generation.decoder != null) generation.decoder.dispose();
+			}
+		}
+		
+		for (Decoder decoder : decoders) {
+			decoder.dispose();
+		}
+	}
+	
+	/**
+	 * Disposes the pool, equivalent to {@link #dispose()}.
+	 */
+	@Override
+	public void close() {
+		dispose();
+	}
+	
+	/**
+	 * Returns the generation with the specified id, if create is true the 
+	 * generation is created if it is not in the pool.
+	 */
+	private Generation getGeneration(long generationId, boolean create) {
+		
+		synchronized (generations) {
+			
+			Generation generation = generations.get(generationId);
+			
+			if (generation != null) {
+				generation.lastAccess = System.nanoTime();
+				return generation;
+			}
+			
+			if (!create) return null;
+		}
+		
+		return createGeneration(generationId);
+	}
+	
+	/**
+	 * Adds a generation to the pool. The generation is locked until it has 
+	 * a decoder, the decoder is taken from the free decoders, from the least
+	 * recently used generation if there is no room for a new decoder, or 
+	 * created.
+	 */
+	private Generation createGeneration(long generationId) {
+		
+		/* the decoders of the expired generations can be used by the new one */
+		evictExpired();
+		
+		Generation generation = new Generation(generationId);
+		
+		synchronized (generation) {
+			
+			Decoder decoder;
+			Generation eldest = null;
+			
+			synchronized (generations) {
+				
+				Generation existing = generations.get(generationId);
+				
+				/* another thread created the generation in the meanwhile */
+				if (existing != null) {
+					existing.lastAccess = System.nanoTime();
+					return existing;
+				}
+				
+				decoder = freeDecoders.poll();
+				
+				if (decoder == null && generations.size() >= maxDecoders) eldest = unlinkEldest();
+				
+				generation.lastAccess = System.nanoTime();
+				generations.put(generationId, generation);
+			}
+			
+			try {
+				
+				if (eldest != null) decoder = reset(eldest);
+				
+				if (decoder == null) {
+					decoder = createDecoder(segmentLength, packetsPerSegment);
+				}
+				
+			} catch (RuntimeException e) {
+				
+				generation.released.set(true);
+				
+				synchronized (generations) {
+					generations.remove(generationId, generation);
+				}
+				
+				throw e;
+			}
+			
+			generation.decoder = decoder;
+		}
+		
+		return generation;
+	}
+	
+	/**
+	 * Removes from the pool the generations that did not receive packets for
+	 * more than the timeout, the generations that were not released yet are
+	 * marked as released and added to expired. Must be called with the lock 
+	 * of the generations.
+	 */
+	private void unlinkExpired(List<Generation> expired) {
+		
+		if (timeout == 0) return;
+		
+		long now = System.nanoTime();
+		
+		Iterator<Generation> it = generations.values().iterator();
+		
+		while (it.hasNext()) {
+			
+			Generation generation = it.next();
+			
+			/* the following generations were used more recently */
+			if (now - generation.lastAccess < timeout) break;
+			
+			it.remove();
+			evictedCount++;
+			
+			if (generation.released.compareAndSet(false, true)) expired.add(generation);
+		}
+	}
+	
+	/**
+	 * Removes from the pool the least recently used generation that was not
+	 * released yet and marks it as released, returns null if all the 
+	 * generations were released. Must be called with the lock of the 
+	 * generations.
+	 */
+	private Generation unlinkEldest() {
+		
+		Iterator<Generation> it = generations.values().iterator();
+		
+		while (it.hasNext()) {
+			
+			Generation eldest = it.next();
+			it.remove();
+			evictedCount++;
+			
+			if (eldest.released.compareAndSet(false, true)) return eldest;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Waits until no thread uses the decoder of a released generation and 
+	 * returns it after resetting it, returns null if the generation could 
+	 * not get a decoder or if its decoder cannot be reset. Must be called 
+	 * without the lock of the generations.
+	 */
+	private Decoder reset(Generation generation) {
+		
+		synchronized (generation) {
+			
+			Decoder decoder = generation.decoder;
+			
+			if (decoder == null) return null;
+			
+			try {
+				decoder.reset();
+			} catch (UnsupportedOperationException e) {
+				decoder.dispose();
+				return null;
+			}
+			
+			return decoder;
+		}
+	}
+	
+	/**
+	 * Resets the decoder of a released generation and adds it to the free 
+	 * decoders.
+	 */
+	private void recycle(Generation generation) {
+		
+		Decoder decoder = reset(generation);
+		
+		if (decoder == null) return;
+		
+		synchronized (generations) {
+			freeDecoders.push(decoder);
+		}
+	}
+	
+}
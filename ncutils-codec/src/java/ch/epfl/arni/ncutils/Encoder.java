@@ -42,6 +42,23 @@ public interface Encoder {
 	 * @param offset position of the first byte of the packet in the buffer
 	 */
 	public abstract void getPacket(byte[] buffer, int offset);
+	
+	/**
+	 * Writes in the buffer count packets one after the other starting at 
+	 * position offset. The packets are the same that would be obtained by
+	 * calling getPacket count times, which is what this method does by 
+	 * default. The encoders and the relays override it to compute the 
+	 * packets at once with a single pass on the segment.
+	 * 
+	 * @param buffer a buffer large enough to hold count packets 
+	 * @param offset position of the first byte of the first packet in the buffer
+	 * @param count the number of packets to write
+	 */
+	public default void getPackets(byte[] buffer, int offset, int count) {
+		for (int i = 0; i < count; i++) {
+			getPacket(buffer, offset + i * getPacketLength());
+		}
+	}
 
 	/**
 	 * Returns the length of a packet in bytes
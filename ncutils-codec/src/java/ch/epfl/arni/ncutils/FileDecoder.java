@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ch.epfl.arni.ncutils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * 
+ * Decodes a file from the packets created by a {@link FileEncoder}. The 
+ * packets of the generations being decoded are added to a {@link DecoderPool}
+ * that bounds the memory used by the decoders. When a generation is decoded 
+ * its segment is written by the decoder directly in the region of the file 
+ * mapped in memory, the file is never held on the heap.
+ * 
+ * Packets of generations that have already been written are discarded. 
+ * The methods can be called concurrently.
+ *
+ */
+
+public class FileDecoder implements Closeable {
+
+	/** the channel of the file being written */
+	private final FileChannel channel;
+	
+	/** true if the channel was opened by the decoder */
+	private final boolean ownsChannel;
+	
+	/** the length of the file */
+	private final long fileLength;
+	
+	/** the length of a generation */
+	private final int generationLength;
+	
+	/** the number of packets in which each generation is split */
+	private final int packetsPerGeneration;
+	
+	/** the decoders of the generations being decoded */
+	private final DecoderPool pool;
+	
+	/** the generations that have been written in the file */
+	private final BitSet written = new BitSet();
+	
+	/** the generations being written in the file, protected by the lock of written */
+	private final BitSet writing = new BitSet();
+	
+	/**
+	 * Creates a decoder that writes a file, the file is created if it doesn't exist.
+	 * 
+	 * @param path the path of the file
+	 * @param fileLength the length of the file
+	 * @param generationLength the length of each generation, a multiple of packetsPerGeneration
+	 * @param packetsPerGeneration the number of packets in which each generation is split
+	 * @param maxMemory the maximum number of bytes used by the decoders of the 
+	 * 			generations being decoded
+	 * 
+	 * @throws IOException if the file cannot be opened
+	 */
+	public FileDecoder(Path path, long fileLength, int generationLength, int packetsPerGeneration, long maxMemory) throws IOException {
+		this(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE), 
+				true, fileLength, generationLength, packetsPerGeneration, maxMemory);
+	}
+	
+	/**
+	 * Creates a decoder that writes the file of a channel. The channel is not 
+	 * closed when the decoder is closed. 
+	 * 
+	 * @param channel a channel open for reading and writing
+	 * @param fileLength the length of the file
+	 * @param generationLength the length of each generation, a multiple of packetsPerGeneration
+	 * @param packetsPerGeneration the number of packets in which each generation is split
+	 * @param maxMemory the maximum number of bytes used by the decoders of the 
+	 * 			generations being decoded
+	 */
+	public FileDecoder(FileChannel channel, long fileLength, int generationLength, int packetsPerGeneration, long maxMemory) {
+		this(channel, false, fileLength, generationLength, packetsPerGeneration, maxMemory);
+	}
+	
+	private FileDecoder(FileChannel channel, boolean ownsChannel, long fileLength, int generationLength, int packetsPerGeneration, long maxMemory) {
+		
+		if (generationLength <= 0 || packetsPerGeneration <= 0 || generationLength % packetsPerGeneration != 0) {
+			if (ownsChannel) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					/* the arguments are reported instead */
+				}
+			}
+			throw new IllegalArgumentException("The generation length must be a positive multiple of the packets per generation");
+		}
+		
+		this.channel = channel;
+		this.ownsChannel = ownsChannel;
+		this.fileLength = fileLength;
+		this.generationLength = generationLength;
+		this.packetsPerGeneration = packetsPerGeneration;
+		
+		this.pool = new DecoderPool(generationLength, packetsPerGeneration, maxMemory, 0) {
+			@Override
+			protected Decoder createDecoder(int segmentLength, int packetsPerSegment) {
+				return FileDecoder.this.createDecoder(segmentLength, packetsPerSegment);
+			}
+		};
+	}
+	
+	/**
+	 * Creates the decoders of the generations. The decoders are created by 
+	 * {@link CodecFactory#createDecoder(int, int)}, subclasses can override
+	 * this method to use other decoders. 
+	 * 
+	 * @param generationLength the length of the generation
+	 * @param packetsPerGeneration the number of packets in which the generation is split
+	 * @return a new decoder
+	 */
+	protected Decoder createDecoder(int generationLength, int packetsPerGeneration) {
+		return CodecFactory.createDecoder(generationLength, packetsPerGeneration);
+	}
+	
+	/**
+	 * Adds a packet created by a FileEncoder, if the generation of the packet
+	 * becomes decoded it is written in the file.
+	 * 
+	 * @param packet a buffer containing the packet
+	 * @param offset the offset of the first byte of the packet in the buffer
+	 * 
+	 * @return true if the generation of the packet has been written in the 
+	 * 			file thanks to this packet
+	 * @throws IOException if the generation cannot be written
+	 */
+	public boolean addPacket(byte[] packet, int offset) throws IOException {
+		
+		int generation = FileEncoder.getGenerationId(packet, offset);
+		
+		if (generation < 0 || generation >= getGenerationCount()) {
+			throw new IllegalArgumentException("Generation " + generation + " does not exist");
+		}
+		
+		if (isGenerationCompleted(generation)) return false;
+		
+		boolean decoded = pool.addPacket(generation, packet, offset + FileEncoder.GENERATION_ID_LENGTH);
+		
+		/* the generation has been completed while the packet was being added,
+		 * the packet may have added it to the pool again */
+		if (isGenerationCompleted(generation)) {
+			pool.release(generation);
+			return false;
+		}
+		
+		return decoded && writeGeneration(generation);
+	}
+	
+	/**
+	 * Writes a decoded generation in its region of the file. The generation 
+	 * is marked as being written before its decoder is released by the pool,
+	 * so that the packets received afterwards don't add it to the pool again.
+	 */
+	private boolean writeGeneration(int generation) throws IOException {
+		
+		synchronized (written) {
+			
+			/* another thread is writing the generation */
+			if (written.get(generation) || writing.get(generation)) return false;
+			
+			writing.set(generation);
+		}
+		
+		boolean done = false;
+		
+		try {
+			
+			long start = (long) generation * generationLength;
+			int length = (int) Math.min(generationLength, fileLength - start);
+			
+			MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, start, length);
+			
+			if (length == generationLength) {
+				
+				done = pool.getSegment(generation, region, 0);
+				
+			} else {
+				
+				/* the padding of the last generation is not written */
+				ByteBuffer segment = ByteBuffer.allocateDirect(generationLength);
+				
+				done = pool.getSegment(generation, segment, 0);
+				
+				if (done) {
+					segment.limit(length);
+					region.put(segment);
+				}
+			}
+			
+		} finally {
+			
+			synchronized (written) {
+				writing.clear(generation);
+				if (done) written.set(generation);
+			}
+		}
+		
+		return done;
+	}
+	
+	/**
+	 * Returns true if the specified generation has been written in the file 
+	 * or is being written.
+	 */
+	private boolean isGenerationCompleted(int generation) {
+		synchronized (written) {
+			return written.get(generation) || writing.get(generation);
+		}
+	}
+	
+	/**
+	 * Returns true if the specified generation has been written in the file
+	 * 
+	 * @param generation the id of a generation
+	 * @return true if the generation is decoded
+	 */
+	public boolean isGenerationWritten(int generation) {
+		synchronized (written) {
+			return written.get(generation);
+		}
+	}
+	
+	/**
+	 * Returns the number of generations written in the file
+	 * 
+	 * @return a number between 0 and getGenerationCount()
+	 */
+	public int getWrittenGenerationCount() {
+		synchronized (written) {
+			return written.cardinality();
+		}
+	}
+	
+	/**
+	 * Returns true if all the generations have been written in the file
+	 * 
+	 * @return true if the file is decoded
+	 */
+	public boolean isDecoded() {
+		return getWrittenGenerationCount() == getGenerationCount();
+	}
+	
+	/**
+	 * Returns the number of generations of the file
+	 * 
+	 * @return the number of generations in which the file is split
+	 */
+	public int getGenerationCount() {
+		return FileEncoder.getGenerationCount(fileLength, generationLength);
+	}
+	
+	/**
+	 * Returns the length of a packet in bytes, including the generation id
+	 * 
+	 * @return the size of a packet in bytes
+	 */
+	public int getPacketLength() {
+		return FileEncoder.GENERATION_ID_LENGTH + generationLength / packetsPerGeneration + packetsPerGeneration;
+	}
+	
+	/**
+	 * Releases the decoders and closes the file if it was opened by the decoder.
+	 * The content of the file is written to the storage device by the 
+	 * operating system.
+	 */
+	@Override
+	public void close() throws IOException {
+		
+		pool.dispose();
+		
+		if (ownsChannel) channel.close();
+	}
+	
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ch.epfl.arni.ncutils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import ch.epfl.arni.ncutils.impl.JavaEncoder;
+import ch.epfl.arni.ncutils.impl.NativeEncoder;
+
+/**
+ * 
+ * Encodes a file split in generations of a fixed length. Each packet starts
+ * with the id of its generation (GENERATION_ID_LENGTH bytes, big endian)
+ * followed by a packet created by an encoder of the generation. The last 
+ * generation is padded with zeros.
+ * 
+ * The generations are memory mapped, when the native library is available
+ * the encoders read them directly from the page cache of the operating 
+ * system and the file is never copied on the heap. The Java encoders need 
+ * the generation in a byte array, without the native library the generation
+ * being encoded is copied on the heap.
+ * 
+ * The encoder maps one generation at a time, packets of the same generation
+ * should be requested together (see {@link #getPackets(int, byte[], int, int)}).
+ *
+ */
+
+public class FileEncoder implements Closeable {
+
+	/** length of the generation id at the beginning of each packet */
+	public static final int GENERATION_ID_LENGTH = 4;
+	
+	/** the channel of the file being encoded */
+	private final FileChannel channel;
+	
+	/** true if the channel was opened by the encoder */
+	private final boolean ownsChannel;
+	
+	/** the length of the file */
+	private final long fileLength;
+	
+	/** the length of a generation */
+	private final int generationLength;
+	
+	/** the number of packets in which each generation is split */
+	private final int packetsPerGeneration;
+	
+	/** the generation currently mapped, -1 if none */
+	private int currentGeneration = -1;
+	
+	/** the encoder of the current generation */
+	private Encoder encoder;
+	
+	/** copy of the current generation used by the Java encoders */
+	private byte[] heapGeneration;
+	
+	/**
+	 * Creates an encoder for a file.
+	 * 
+	 * @param path the path of the file
+	 * @param generationLength the length of each generation, a multiple of packetsPerGeneration
+	 * @param packetsPerGeneration the number of packets in which each generation is split
+	 * 
+	 * @throws IOException if the file cannot be opened
+	 */
+	public FileEncoder(Path path, int generationLength, int packetsPerGeneration) throws IOException {
+		this(FileChannel.open(path, StandardOpenOption.READ), true, generationLength, packetsPerGeneration);
+	}
+	
+	/**
+	 * Creates an encoder for the file of a channel. The channel is not closed 
+	 * when the encoder is closed. 
+	 * 
+	 * @param channel a channel open for reading
+	 * @param generationLength the length of each generation, a multiple of packetsPerGeneration
+	 * @param packetsPerGeneration the number of packets in which each generation is split
+	 * 
+	 * @throws IOException if the size of the file cannot be read
+	 */
+	public FileEncoder(FileChannel channel, int generationLength, int packetsPerGeneration) throws IOException {
+		this(channel, false, generationLength, packetsPerGeneration);
+	}
+	
+	private FileEncoder(FileChannel channel, boolean ownsChannel, int generationLength, int packetsPerGeneration) throws IOException {
+		
+		if (generationLength <= 0 || packetsPerGeneration <= 0 || generationLength % packetsPerGeneration != 0) {
+			if (ownsChannel) channel.close();
+			throw new IllegalArgumentException("The generation length must be a positive multiple of the packets per generation");
+		}
+		
+		this.channel = channel;
+		this.ownsChannel = ownsChannel;
+		this.fileLength = channel.size();
+		this.generationLength = generationLength;
+		this.packetsPerGeneration = packetsPerGeneration;
+	}
+	
+	/**
+	 * Returns the number of generations of the file
+	 * 
+	 * @param fileLength the length of the file
+	 * @param generationLength the length of each generation
+	 * @return the number of generations in which the file is split
+	 */
+	public static int getGenerationCount(long fileLength, int generationLength) {
+		return (int) ((fileLength + generationLength - 1) / generationLength);
+	}
+	
+	/**
+	 * Reads the generation id of a packet
+	 * 
+	 * @param buffer the buffer containing the packet
+	 * @param offset the offset of the first byte of the packet in the buffer
+	 * @return the id of the generation
+	 */
+	public static int getGenerationId(byte[] buffer, int offset) {
+		return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16) 
+				| ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+	}
+	
+	/**
+	 * Returns the number of generations of the file
+	 * 
+	 * @return the number of generations in which the file is split
+	 */
+	public int getGenerationCount() {
+		return getGenerationCount(fileLength, generationLength);
+	}
+	
+	/**
+	 * Returns the length of the file being encoded
+	 * 
+	 * @return the length of the file in bytes
+	 */
+	public long getFileLength() {
+		return fileLength;
+	}
+	
+	/**
+	 * Returns the length of a packet in bytes, including the generation id
+	 * 
+	 * @return the size of a packet in bytes
+	 */
+	public int getPacketLength() {
+		return GENERATION_ID_LENGTH + generationLength / packetsPerGeneration + packetsPerGeneration;
+	}
+	
+	/**
+	 * Writes in the buffer a packet of the specified generation at position offset
+	 * 
+	 * @param generation the id of a generation
+	 * @param buffer a sufficiently large buffer 
+	 * @param offset position of the first byte of the packet in the buffer
+	 * 
+	 * @throws IOException if the generation cannot be read
+	 */
+	public void getPacket(int generation, byte[] buffer, int offset) throws IOException {
+		getPackets(generation, buffer, offset, 1);
+	}
+	
+	/**
+	 * Writes in the buffer count packets of the specified generation one after 
+	 * the other starting at position offset.
+	 * 
+	 * @param generation the id of a generation
+	 * @param buffer a buffer large enough to hold count packets 
+	 * @param offset position of the first byte of the first packet in the buffer
+	 * @param count the number of packets to write
+	 * 
+	 * @throws IOException if the generation cannot be read
+	 */
+	public synchronized void getPackets(int generation, byte[] buffer, int offset, int count) throws IOException {
+		
+		if (generation < 0 || generation >= getGenerationCount()) {
+			throw new IllegalArgumentException("Generation " + generation + " does not exist");
+		}
+		
+		if (generation != currentGeneration) {
+			encoder = createEncoder(mapGeneration(generation), generationLength, packetsPerGeneration);
+			currentGeneration = generation;
+		}
+		
+		int packetLength = getPacketLength();
+		
+		for (int i = 0; i < count; i++) {
+			int packet = offset + i * packetLength;
+			buffer[packet] = (byte) (generation >> 24);
+			buffer[packet + 1] = (byte) (generation >> 16);
+			buffer[packet + 2] = (byte) (generation >> 8);
+			buffer[packet + 3] = (byte) generation;
+			encoder.getPacket(buffer, packet + GENERATION_ID_LENGTH);
+		}
+	}
+	
+	/**
+	 * Returns a direct buffer holding a generation, the last generation is 
+	 * copied in a buffer padded with zeros.
+	 */
+	private ByteBuffer mapGeneration(int generation) throws IOException {
+		
+		long start = (long) generation * generationLength;
+		int length = (int) Math.min(generationLength, fileLength - start);
+		
+		MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+		
+		if (length == generationLength) return mapped;
+		
+		ByteBuffer padded = ByteBuffer.allocateDirect(generationLength);
+		padded.put(mapped);
+		padded.rewind();
+		
+		return padded;
+	}
+	
+	/**
+	 * Creates the encoder of a generation. The encoder is native if the native
+	 * library is available, subclasses can override this method to use other 
+	 * encoders. 
+	 * 
+	 * @param generation a direct buffer holding the generation
+	 * @param generationLength the length of the generation
+	 * @param packetsPerGeneration the number of packets in which the generation is split
+	 * @return an encoder for the generation
+	 */
+	protected Encoder createEncoder(ByteBuffer generation, int generationLength, int packetsPerGeneration) {
+		
+		if (CodecFactory.isNativeLibraryAvailable()) {
+			return new NativeEncoder(generation, 0, generationLength, packetsPerGeneration);
+		}
+		
+		/* the encoder of the previous generation is not used anymore */
+		if (heapGeneration == null) heapGeneration = new byte[generationLength];
+		
+		generation.duplicate().get(heapGeneration);
+		
+		return new JavaEncoder(heapGeneration, 0, generationLength, packetsPerGeneration);
+	}
+	
+	/**
+	 * Closes the file if it was opened by the encoder.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		
+		encoder = null;
+		heapGeneration = null;
+		currentGeneration = -1;
+		
+		if (ownsChannel) channel.close();
+	}
+	
+}
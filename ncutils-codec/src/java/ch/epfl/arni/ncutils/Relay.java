@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ch.epfl.arni.ncutils;
+
+/**
+ * 
+ * Recodes packets without decoding them. A relay creates new packets that 
+ * are random linear combinations of the packets it received, it is meant 
+ * for nodes that forward many more packets than they decode. The packets 
+ * have the same format as the packets of the decoders.
+ *
+ */
+
+public interface Relay extends Encoder {
+
+	/**
+	 * Adds a new packet to the the relay. The packet starts
+	 * at position offset in the buffer
+	 * 
+	 * @param buffer the buffer containing the packet
+	 * @param offset the position of the first byte of the packet in the buffer
+	 * 
+	 * @return true if the packet is linearly independent from the packets 
+	 * 			received before
+	 */
+	public abstract boolean addPacket(byte[] buffer, int offset);
+
+	/**
+	 * Returns the number of innovative packets received up to now.
+	 * 
+	 * @return a number between 0 and the number of packets per segment
+	 */
+	public abstract int getRank();
+	
+	/**
+	 * Discards all the packets added to this relay, so that it can be used
+	 * for a new segment of the same size.
+	 */
+	public abstract void reset();
+
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ch.epfl.arni.ncutils;
+
+import ch.epfl.arni.ncutils.impl.VectorHelper;
+
+/**
+ * 
+ * Decoder for the packets created by a {@link SlidingWindowEncoder}. 
+ * 
+ * The decoder keeps the equations of the last capacity source packets in 
+ * reduced row echelon form: each row has a one in the column of its source 
+ * packet (its pivot) and zeros in the pivot columns of the other rows. A 
+ * source packet is decoded when the only non zero coefficient of its row 
+ * is the pivot, the source packets are released in order as soon as they 
+ * are decoded. The column of source packet i is i % capacity, so the 
+ * columns are reused as the window slides forward.
+ * 
+ * The source packets that are released stay in the decoder, so that coded
+ * packets that still combine them can be used, until room is needed for 
+ * newer source packets. When a packet combines source packets that are 
+ * more than capacity after the first source packet that has not been 
+ * released, the older source packets are given up and counted as lost.  
+ * 
+ * The headers carry the low 32 bits of the sequence numbers, the decoder 
+ * uses the sequence number with these low bits that is the closest to the
+ * first source packet it keeps. Packets created more than 2^31 source 
+ * packets before or after it are therefore misplaced.
+ *
+ */
+
+public class SlidingWindowDecoder {
+
+	/** the length of the payload of the source packets */
+	private final int payloadLength;
+	
+	/** the maximum number of source packets combined in a coded packet */
+	private final int windowSize;
+	
+	/** the number of source packets kept by the decoder */
+	private final int capacity;
+	
+	/** the length of a row: the coefficients followed by the payload */
+	private final int rowLength;
+	
+	/** 
+	 * the rows one after the other, the row of source packet i is at 
+	 * position i % capacity, the last row is used to reduce new packets 
+	 */
+	private final byte[] rows;
+	
+	/** true if the row at a position contains an equation */
+	private final boolean[] hasRow;
+	
+	/** the number of equations */
+	private int rank;
+	
+	/** the sequence number of the first source packet kept by the decoder */
+	private long base;
+	
+	/** the sequence number of the next source packet to release */
+	private long next;
+	
+	/** the number of source packets that have been given up */
+	private long lostCount;
+	
+	/**
+	 * Creates a decoder for a stream of source packets
+	 * 
+	 * @param payloadLength the length of the source packets
+	 * @param windowSize the window size of the encoder
+	 * @param capacity the number of source packets kept by the decoder, at 
+	 * 			least the window size 
+	 */
+	public SlidingWindowDecoder(int payloadLength, int windowSize, int capacity) {
+		this(payloadLength, windowSize, capacity, 0);
+	}
+	
+	/**
+	 * Creates a decoder for a stream whose first source packet has the 
+	 * specified sequence number
+	 * 
+	 * @param payloadLength the length of the source packets
+	 * @param windowSize the window size of the encoder
+	 * @param capacity the number of source packets kept by the decoder, at 
+	 * 			least the window size 
+	 * @param firstSequence the sequence number of the first source packet
+	 */
+	public SlidingWindowDecoder(int payloadLength, int windowSize, int capacity, long firstSequence) {
+		
+		if (payloadLength <= 0 || windowSize <= 0 || windowSize > 0xFFFF || capacity < windowSize || firstSequence < 0) {
+			throw new IllegalArgumentException("Invalid payload length, window size, capacity or first sequence number");
+		}
+		
+		this.payloadLength = payloadLength;
+		this.windowSize = windowSize;
+		this.capacity = capacity;
+		this.rowLength = capacity + payloadLength;
+		this.rows = new byte[(capacity + 1) * rowLength];
+		this.hasRow = new boolean[capacity];
+		this.base = firstSequence;
+		this.next = firstSequence;
+	}
+	
+	/**
+	 * Adds a packet created by a SlidingWindowEncoder
+	 * 
+	 * @param buffer a buffer containing the packet
+	 * @param offset the offset of the first byte of the packet in the buffer
+	 * 
+	 * @return true if the packet was innovative
+	 */
+	public boolean addPacket(byte[] buffer, int offset) {
+		
+		int low = ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16) 
+						| ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+		int count = ((buffer[offset + 4] & 0xFF) << 8) | (buffer[offset + 5] & 0xFF);
+		
+		/* the difference of the low 32 bits is the distance from the base */
+		long start = base + (low - (int) base);
+		
+		if (start < 0 || count == 0 || count > windowSize) {
+			throw new IllegalArgumentException("Invalid packet window");
+		}
+		
+		int coefficients = offset + SlidingWindowEncoder.HEADER_LENGTH;
+		int payload = coefficients + windowSize;
+		
+		/* the source packets that have been retired are not known anymore */
+		for (int i = 0; i < count && start + i < base; i++) {
+			if (buffer[coefficients + i] != 0) return false;
+		}
+		
+		if (start + count > base + capacity) {
+			slide(start + count - capacity);
+		}
+		
+		int row = capacity * rowLength;
+		
+		VectorHelper.setToZero(rows, row, capacity);
+		
+		int known = (int) Math.max(0, base - start);
+		
+		for (int i = known; i < count; i++) {
+			rows[row + position(start + i)] = buffer[coefficients + i];
+		}
+		
+		/* the pivot columns of the rows are zero in the other rows, the 
+		 * multipliers are the coefficients of the packet in these columns */
+		for (int i = known; i < count; i++) {
+			
+			int m = buffer[coefficients + i] & 0xFF;
+			int position = position(start + i);
+			
+			if (m == 0 || !hasRow[position]) continue;
+			
+			VectorHelper.multiplyAndAdd(rows, row, capacity, rows, position * rowLength, m);
+		}
+		
+		long pivot = base;
+		while (pivot < base + capacity && rows[row + position(pivot)] == 0) pivot++;
+		
+		/* the packet is linearly dependent */
+		if (pivot == base + capacity) return false;
+		
+		/* reduce the payload with the same multipliers */
+		System.arraycopy(buffer, payload, rows, row + capacity, payloadLength);
+		
+		for (int i = known; i < count; i++) {
+			
+			int m = buffer[coefficients + i] & 0xFF;
+			int position = position(start + i);
+			
+			if (m == 0 || !hasRow[position]) continue;
+			
+			VectorHelper.multiplyAndAdd(rows, row + capacity, payloadLength, rows, position * rowLength + capacity, m);
+		}
+		
+		int pivotPosition = position(pivot);
+		int pval = rows[row + pivotPosition] & 0xFF;
+		
+		if (pval != 1) {
+			VectorHelper.divide(rows, row, rowLength, pval);
+		}
+		
+		/* zero the pivot column on the other rows */
+		for (int i = 0; i < capacity; i++) {
+			
+			if (!hasRow[i]) continue;
+			
+			int m = rows[i * rowLength + pivotPosition] & 0xFF;
+			
+			if (m == 0) continue;
+			
+			VectorHelper.multiplyAndAdd(rows, i * rowLength, rowLength, rows, row, m);
+		}
+		
+		System.arraycopy(rows, row, rows, pivotPosition * rowLength, rowLength);
+		hasRow[pivotPosition] = true;
+		rank++;
+		
+		return true;
+	}
+	
+	/**
+	 * Retires the source packets that precede a new base. The source packets 
+	 * that have not been released are lost and the equations that combine 
+	 * them are dropped.
+	 */
+	private void slide(long newBase) {
+		
+		long last = Math.min(newBase, base + capacity);
+		
+		for (long s = base; s < last; s++) {
+			
+			int position = position(s);
+			
+			if (s < next) {
+				
+				/* the row of a released source packet is zero outside its pivot */
+				hasRow[position] = false;
+				rank--;
+				
+			} else {
+				
+				for (int i = 0; i < capacity; i++) {
+					if (hasRow[i] && rows[i * rowLength + position] != 0) {
+						hasRow[i] = false;
+						rank--;
+					}
+				}
+				
+				lostCount++;
+			}
+		}
+		
+		lostCount += newBase - last;
+		
+		base = newBase;
+		next = Math.max(next, newBase);
+	}
+	
+	/**
+	 * Returns true if the next source packet is decoded and can be released
+	 * 
+	 * @return true if getSource will return a source packet
+	 */
+	public boolean isSourceAvailable() {
+		
+		if (next == base + capacity) return false;
+		
+		int position = position(next);
+		
+		if (!hasRow[position]) return false;
+		
+		int row = position * rowLength;
+		
+		for (int i = 0; i < capacity; i++) {
+			if (i != position && rows[row + i] != 0) return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Releases the next source packet if it is decoded. The sequence numbers 
+	 * of the released source packets are increasing, a gap means that 
+	 * source packets have been lost.
+	 * 
+	 * @param buffer a buffer where the payload of the source packet is written 
+	 * @param offset the position of the first byte of the payload in the buffer
+	 * 
+	 * @return the sequence number of the source packet or -1 if the next 
+	 * 			source packet is not decoded
+	 */
+	public long getSource(byte[] buffer, int offset) {
+		
+		if (!isSourceAvailable()) return -1;
+		
+		System.arraycopy(rows, position(next) * rowLength + capacity, buffer, offset, payloadLength);
+		
+		return next++;
+	}
+	
+	/**
+	 * Returns the sequence number of the next source packet to release
+	 * 
+	 * @return a sequence number
+	 */
+	public long getNextSequence() {
+		return next;
+	}
+	
+	/**
+	 * Returns the position of the row and of the column of a source packet
+	 */
+	private int position(long sequence) {
+		return (int) Math.floorMod(sequence, (long) capacity);
+	}
+	
+	/**
+	 * Returns the number of source packets that have been given up because 
+	 * they were not decoded before newer source packets needed room
+	 * 
+	 * @return the number of lost source packets
+	 */
+	public long getLostCount() {
+		return lostCount;
+	}
+	
+	/**
+	 * Returns the number of equations kept by the decoder
+	 * 
+	 * @return a number between 0 and the capacity
+	 */
+	public int getRank() {
+		return rank;
+	}
+	
+	/**
+	 * Returns the length of a packet in bytes
+	 * 
+	 * @return the size of a packet in bytes
+	 */
+	public int getPacketLength() {
+		return SlidingWindowEncoder.HEADER_LENGTH + windowSize + payloadLength;
+	}
+	
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ch.epfl.arni.ncutils;
+
+import java.util.Random;
+
+import ch.epfl.arni.ncutils.impl.VectorHelper;
+
+/**
+ * 
+ * Sliding window (convolutional) encoder for a stream of source packets. 
+ * 
+ * Source packets are numbered in the order in which they are added. A coded 
+ * packet is a random combination of the source packets in the window, the
+ * last windowSize source packets that have not been retired. The window 
+ * slides forward as new source packets are added, so there are no 
+ * generations and a {@link SlidingWindowDecoder} can release the source 
+ * packets as soon as they are decodable.
+ * 
+ * A coded packet starts with a header made of the sequence number of the 
+ * first source packet of the window (4 bytes, big endian), the number of 
+ * source packets in the window (2 bytes, big endian) and windowSize 
+ * coefficients, the unused coefficients are zero. The header is followed 
+ * by the combination of the payloads.
+ * 
+ * Sequence numbers are longs, the header carries their low 32 bits and 
+ * wraps around after 2^32 source packets. The decoder reconstructs the 
+ * full sequence number from the source packets it is decoding, so a 
+ * packet must reach it less than 2^31 source packets after it was created.
+ *
+ */
+
+public class SlidingWindowEncoder implements Encoder {
+
+	/** the length of the part of the header that precedes the coefficients */
+	public static final int HEADER_LENGTH = 6;
+	
+	/** the length of the payload of the source packets */
+	private final int payloadLength;
+	
+	/** the maximum number of source packets combined in a coded packet */
+	private final int windowSize;
+	
+	/** the payloads of the source packets of the window, source i is at slot i % windowSize */
+	private final byte[] sources;
+	
+	/** the sequence number of the first source packet of the window */
+	private long first;
+	
+	/** the sequence number of the next source packet */
+	private long end;
+	
+	/** an instance of random used to create new packets */
+	private Random random = new Random();
+	
+	/**
+	 * Creates an encoder for a stream of source packets
+	 * 
+	 * @param payloadLength the length of the source packets
+	 * @param windowSize the maximum number of source packets combined in a 
+	 * 			coded packet, at most 65535 
+	 */
+	public SlidingWindowEncoder(int payloadLength, int windowSize) {
+		this(payloadLength, windowSize, 0);
+	}
+	
+	/**
+	 * Creates an encoder for a stream whose first source packet has the 
+	 * specified sequence number, for instance a stream that is resumed
+	 * 
+	 * @param payloadLength the length of the source packets
+	 * @param windowSize the maximum number of source packets combined in a 
+	 * 			coded packet, at most 65535 
+	 * @param firstSequence the sequence number of the first source packet
+	 */
+	public SlidingWindowEncoder(int payloadLength, int windowSize, long firstSequence) {
+		
+		if (payloadLength <= 0 || windowSize <= 0 || windowSize > 0xFFFF || firstSequence < 0) {
+			throw new IllegalArgumentException("Invalid payload length, window size or first sequence number");
+		}
+		
+		this.payloadLength = payloadLength;
+		this.windowSize = windowSize;
+		this.sources = new byte[windowSize * payloadLength];
+		this.first = firstSequence;
+		this.end = firstSequence;
+	}
+	
+	/**
+	 * Adds a source packet at the end of the window, if the window is full 
+	 * its first source packet is retired.
+	 * 
+	 * @param buffer a buffer containing the payload of the source packet
+	 * @param offset the offset of the first byte of the payload in the buffer
+	 * 
+	 * @return the sequence number of the source packet
+	 */
+	public long addSource(byte[] buffer, int offset) {
+		
+		if (end - first == windowSize) first++;
+		
+		System.arraycopy(buffer, offset, sources, slot(end) * payloadLength, payloadLength);
+		
+		return end++;
+	}
+	
+	/**
+	 * Retires the source packets that precede a sequence number, for 
+	 * instance because the receivers acknowledged them. Coded packets will 
+	 * not combine them anymore. 
+	 * 
+	 * @param sequence the sequence number of the first source packet that 
+	 * 			is kept in the window
+	 */
+	public void retire(long sequence) {
+		first = Math.max(first, Math.min(sequence, end));
+	}
+	
+	/**
+	 * Returns the sequence number of the first source packet of the window 
+	 * 
+	 * @return a sequence number
+	 */
+	public long getWindowStart() {
+		return first;
+	}
+	
+	/**
+	 * Returns the number of source packets in the window
+	 * 
+	 * @return a number between 0 and the window size
+	 */
+	public int getWindowLength() {
+		return (int) (end - first);
+	}
+	
+	/**
+	 * Writes in the buffer an uncoded packet that contains a single source 
+	 * packet of the window. Sending each source packet uncoded as soon as 
+	 * it is added gives the lowest delay, coded packets then repair the 
+	 * losses.
+	 * 
+	 * @param sequence the sequence number of a source packet of the window
+	 * @param buffer a sufficiently large buffer 
+	 * @param offset position of the first byte of the packet in the buffer
+	 */
+	public void getSourcePacket(long sequence, byte[] buffer, int offset) {
+		
+		if (sequence < first || sequence >= end) {
+			throw new IllegalArgumentException("Source packet " + sequence + " is not in the window");
+		}
+		
+		writeHeader(buffer, offset, sequence, 1);
+		
+		VectorHelper.setToZero(buffer, offset + HEADER_LENGTH, windowSize);
+		buffer[offset + HEADER_LENGTH] = 1;
+		
+		System.arraycopy(sources, slot(sequence) * payloadLength, buffer, offset + HEADER_LENGTH + windowSize, payloadLength);
+	}
+	
+	@Override
+	public void getPacket(byte[] buffer, int offset) {
+		
+		if (first == end) {
+			throw new IllegalStateException("The window is empty");
+		}
+		
+		int count = getWindowLength();
+		
+		writeHeader(buffer, offset, first, count);
+		
+		int coefficients = offset + HEADER_LENGTH;
+		int payload = coefficients + windowSize;
+		
+		VectorHelper.setToZero(buffer, coefficients, windowSize + payloadLength);
+		
+		for (int i = 0; i < count; i++) {
+			
+			int c = random.nextInt() & 0xFF;
+			
+			buffer[coefficients + i] = (byte) c;
+			
+			VectorHelper.multiplyAndAdd(buffer, payload, payloadLength, sources, slot(first + i) * payloadLength, c);
+		}
+	}
+	
+	@Override
+	public int getPacketLength() {
+		return HEADER_LENGTH + windowSize + payloadLength;
+	}
+	
+	/**
+	 * Returns the slot of a source packet of the window
+	 */
+	private int slot(long sequence) {
+		return (int) Math.floorMod(sequence, (long) windowSize);
+	}
+	
+	/**
+	 * Writes the header of a packet, only the low 32 bits of the sequence 
+	 * number of the first source packet are written
+	 */
+	private static void writeHeader(byte[] buffer, int offset, long start, int count) {
+		buffer[offset] = (byte) (start >> 24);
+		buffer[offset + 1] = (byte) (start >> 16);
+		buffer[offset + 2] = (byte) (start >> 8);
+		buffer[offset + 3] = (byte) start;
+		buffer[offset + 4] = (byte) (count >> 8);
+		buffer[offset + 5] = (byte) count;
+	}
+	
+}
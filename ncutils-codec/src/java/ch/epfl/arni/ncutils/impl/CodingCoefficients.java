@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ch.epfl.arni.ncutils.impl;
+
+import java.util.Random;
+
+/**
+ * 
+ * Draws the random coding vectors of the packets created by an encoder and
+ * writes the corresponding packet headers.
+ *
+ */
+
+class CodingCoefficients {
+
+	/** number of original packets in which the segment is divided */
+	private int packetsPerSegment;
+	
+	/** number of original packets combined in each coded packet */
+	private int nonZeroCoefficients;
+	
+	/** true if the packets have a compressed header (see {@link SeedHeader}) */
+	private boolean seedHeader;
+	
+	/** random number generator used to draw the coefficients or the seeds */
+	private Random random;
+	
+	/** 
+	 * permutation of the indices of the original packets, the first 
+	 * nonZeroCoefficients entries are the packets combined in a sparse packet
+	 */
+	private int[] positions;
+	
+	/**
+	 * Creates a new generator of coding vectors
+	 * 
+	 * @param packetsPerSegment the length of the coding vectors
+	 * @param nonZeroCoefficients the number of non zero coefficients of each
+	 * 			coding vector, packetsPerSegment if all the coefficients are random
+	 * @param seedHeader true if the packets have a compressed header
+	 * @param random the random number generator used to draw the coefficients
+	 */
+	CodingCoefficients(int packetsPerSegment, int nonZeroCoefficients, boolean seedHeader, Random random) {
+		
+		if (nonZeroCoefficients < 1 || nonZeroCoefficients > packetsPerSegment) {
+			throw new IllegalArgumentException("The number of non zero coefficients must be between 1 and " + packetsPerSegment);
+		}
+		
+		if (seedHeader && nonZeroCoefficients < packetsPerSegment && nonZeroCoefficients > 0xFFFF) {
+			throw new IllegalArgumentException("A seed header supports at most 65535 non zero coefficients");
+		}
+		
+		this.packetsPerSegment = packetsPerSegment;
+		this.nonZeroCoefficients = nonZeroCoefficients;
+		this.seedHeader = seedHeader;
+		this.random = random;
+		
+		if (!seedHeader && nonZeroCoefficients < packetsPerSegment) {
+			positions = new int[packetsPerSegment];
+			for (int i = 0; i < packetsPerSegment; i++) {
+				positions[i] = i;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the length of the header of a packet
+	 * 
+	 * @return the number of bytes that precede the payload of a packet
+	 */
+	int getHeaderLength() {
+		return seedHeader ? SeedHeader.HEADER_LENGTH : packetsPerSegment;
+	}
+	
+	/**
+	 * Draws a new coding vector and writes the header of the corresponding packet 
+	 * 
+	 * @param packet the buffer holding the packet
+	 * @param packetOffset the offset of the first byte of the packet
+	 * @param coefficients the buffer where the coding vector is written
+	 * @param coefficientsOffset the offset of the first coefficient
+	 */
+	void next(byte[] packet, int packetOffset, byte[] coefficients, int coefficientsOffset) {
+		
+		if (seedHeader) {
+			
+			int seed = random.nextInt();
+			int nonZero = nonZeroCoefficients < packetsPerSegment ? nonZeroCoefficients : 0;
+			
+			SeedHeader.writeHeader(packet, packetOffset, SeedHeader.FORMAT_SEED, seed, nonZero);
+			SeedHeader.expand(seed, nonZero, coefficients, coefficientsOffset, packetsPerSegment);
+			
+			return;
+		}
+		
+		if (positions == null) {
+			
+			for (int i = 0; i < packetsPerSegment; i++) {
+				coefficients[coefficientsOffset + i] = (byte) random.nextInt();
+			}
+			
+		} else {
+			
+			VectorHelper.setToZero(coefficients, coefficientsOffset, packetsPerSegment);
+			
+			for (int j = 0; j < nonZeroCoefficients; j++) {
+				
+				/* draw the next original packet without replacement */
+				int k = j + random.nextInt(packetsPerSegment - j);
+				int i = positions[k];
+				positions[k] = positions[j];
+				positions[j] = i;
+				
+				coefficients[coefficientsOffset + i] = (byte) (1 + random.nextInt(255));
+			}
+		}
+		
+		System.arraycopy(coefficients, coefficientsOffset, packet, packetOffset, packetsPerSegment);
+	}
+	
+}
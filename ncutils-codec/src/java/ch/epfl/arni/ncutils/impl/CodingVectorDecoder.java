@@ -26,6 +26,9 @@
  */
 package ch.epfl.arni.ncutils.impl;
 
+import java.util.Arrays;
+import java.util.Random;
+
 /**
  * 
  * This class is used to find how to linearly combine packets represented 
@@ -36,6 +39,23 @@ package ch.epfl.arni.ncutils.impl;
  * rows operations trying to obtain an elementary vector. The operations
  * performed are kept track in an auxiliary vector (one per added vector).
  * 
+ * The decoder keeps track for each row of the span of columns that may
+ * contain non zero coefficients, row operations only process this span and
+ * the columns of the inverse matrix that are in use, so that the zero runs
+ * of sparse coding vectors are skipped. A new coding vector is first reduced
+ * only on the columns of the matrix being inverted, the columns of the
+ * inverse matrix are updated only if the vector turns out to be linearly
+ * independent, so redundant vectors are rejected at half the cost.
+ * 
+ * Optionally, a redundant coding vector can be rejected before any row
+ * operation with a probabilistic test: the vector is multiplied by a random 
+ * vector of the null space of the decode matrix, a linearly dependent 
+ * vector always gives zero while an independent vector gives zero with 
+ * probability 1/256. The random vector is recomputed only when a new row is
+ * added, so once the rank is nearly full most packets cost a single dot 
+ * product. An independent vector that is rejected is lost, as if the packet
+ * had not been received.
+ * 
  * Internally the class uses O(N²) memory where N is the maximum number of
  * packets that can get combined.
  * 
@@ -57,6 +77,18 @@ public class CodingVectorDecoder {
 	/** stores for each column if it is a pivot column for one of the rows of the decode matrix*/
 	private boolean[] isPivot;
 
+	/** 
+	 * stores for each row of the decode matrix the first column of the matrix
+	 * being inverted that may be non zero, coefficients before it are zero 
+	 */
+	private int[] spanStart;
+	
+	/** 
+	 * stores for each row of the decode matrix the column following the last
+	 * column of the matrix being inverted that may be non zero 
+	 */
+	private int[] spanEnd;
+
 	/** stores for each column of the decode matrix if it has already been decoded or not */
 	private boolean[] decoded;
 
@@ -72,6 +104,21 @@ public class CodingVectorDecoder {
 	/** contains the i-th decoded row of the decode matrix*/
 	private int[] decodedAddress;
 
+	/** the multiplier of each row used to reduce the coding vector being added */
+	private int[] multipliers;
+	
+	/** true if linearly dependent vectors are rejected with the probabilistic test */
+	private boolean probabilisticCheck;
+	
+	/** a random vector of the null space of the decode matrix */
+	private byte[] checkVector;
+	
+	/** true if the check vector corresponds to the current decode matrix */
+	private boolean checkVectorValid;
+	
+	/** an instance of random used to draw the check vector */
+	private Random random = new Random();
+
 	/**
 	 * Construct a new decoder
 	 * 
@@ -83,6 +130,43 @@ public class CodingVectorDecoder {
 		decoded = new boolean[generationLength];
 		isPivot = new boolean[generationLength];
 		decodedAddress = new int[generationLength];
+		spanStart = new int[generationLength];
+		spanEnd = new int[generationLength];
+		multipliers = new int[generationLength];
+		checkVector = new byte[generationLength];
+	}
+	
+	/**
+	 * Enables or disables the probabilistic test that rejects linearly 
+	 * dependent coding vectors without row operations. The test rejects an
+	 * independent coding vector with probability 1/256.
+	 * 
+	 * @param enabled true to enable the test
+	 */
+	public void setProbabilisticCheck(boolean enabled) {
+		probabilisticCheck = enabled;
+		checkVectorValid = false;
+	}
+	
+	/**
+	 * Returns true if the probabilistic test is enabled
+	 * 
+	 * @return true if the probabilistic test is enabled
+	 */
+	public boolean isProbabilisticCheck() {
+		return probabilisticCheck;
+	}
+
+	/**
+	 * Discards all the coding vectors added to the decoder. The rows of the
+	 * decode matrix are overwritten when they are used, they are not cleared.
+	 */
+	public void reset() {
+		Arrays.fill(isPivot, false);
+		Arrays.fill(decoded, false);
+		rowCount = 0;
+		decodedCount = 0;
+		checkVectorValid = false;
 	}
 
 	/**
@@ -107,40 +191,76 @@ public class CodingVectorDecoder {
 	public boolean addCodingVector(byte[] buffer, int offset) {
 
 		final int size = decodeMatrix.length;
-		final int totalSize = decodeMatrix[0].length;
 		
 		/* if the matrix is already full rank, this coding vector is for sure linearly dependant*/
 		if (rowCount == size) {
 			return false;
 		}
+		
+		/* find the non zero coefficients of the coding vector */
+		int start = 0;
+		while (start < size && buffer[offset + start] == 0) start++;
+		
+		/* the zero vector is linearly dependant */
+		if (start == size) {
+			return false;
+		}
+		
+		int end = size;
+		while (buffer[offset + end - 1] == 0) end--;
+		
+		/* original packets (e.g. from a systematic encoder) don't need elimination */
+		if (end - start == 1 && buffer[offset + start] == 1 && !isPivot[start]) {
+			addElementaryVector(start);
+			return true;
+		}
 
+		if (probabilisticCheck && rowCount > 0) {
+			
+			if (!checkVectorValid) updateCheckVector();
+			
+			/* a linearly dependent vector is orthogonal to the null space */
+			if (VectorHelper.dotProduct(buffer, offset + start, checkVector, start, end - start) == 0) {
+				return false;
+			}
+		}
+		
 		/* add the vector at the bottom of the matrix */
-		System.arraycopy(buffer, offset, decodeMatrix[rowCount], 0, size);		
+		final byte[] row = decodeMatrix[rowCount];
 		
-		/* put zeros on the inverse matrix but on position packet count */
-		VectorHelper.setToZero(decodeMatrix[rowCount], size, size);
-		decodeMatrix[rowCount][size + rowCount] = 1;
+		System.arraycopy(buffer, offset, row, 0, size);
+		spanStart[rowCount] = start;
+		spanEnd[rowCount] = end;
 
 		/* simplify the new coding vector */
 
-		/* make sure that all columns for which we already have a pivot are 0 */
+		/* make sure that all columns for which we already have a pivot are 0, 
+		 * the inverse matrix is updated only if the vector is independent */
 		for (int i = 0; i < rowCount; i++) {
 
-			int m = decodeMatrix[rowCount][pivotPos[i]] & 0XFF;
+			multipliers[i] = 0;
+			
+			int pos = pivotPos[i];
+			
+			if (pos < spanStart[rowCount] || pos >= spanEnd[rowCount]) continue;
+			
+			int m = row[pos] & 0XFF;
 			
 			if (m == 0) continue;
 
-			VectorHelper.multiplyAndAdd(decodeMatrix[rowCount], 0, totalSize, decodeMatrix[i], 0, m);
+			multipliers[i] = m;
+			
+			addRowCoefficients(rowCount, i, m);
 			
 		}
 
 		/* find pivot on the new row */
 		int pivot = -1;
-		for (int i = 0; i < size; i++) {
+		for (int i = spanStart[rowCount]; i < spanEnd[rowCount]; i++) {
 			
 			if (isPivot[i]) continue;
 			
-			if (decodeMatrix[rowCount][i] != 0) {
+			if (row[i] != 0) {
 				pivotPos[rowCount] = i;
 				isPivot[i] = true;
 				pivot = i;
@@ -152,53 +272,168 @@ public class CodingVectorDecoder {
 		if (pivot == -1) {
 			return false;
 		}
+		
+		/* put zeros on the inverse matrix but on position packet count and 
+		 * apply the operations performed on the coefficients */
+		VectorHelper.setToZero(row, size, size);
+		row[size + rowCount] = 1;
+		
+		for (int i = 0; i < rowCount; i++) {
+			
+			if (multipliers[i] == 0) continue;
+			
+			VectorHelper.multiplyAndAdd(row, size, rowCount, decodeMatrix[i], size, multipliers[i]);
+		}
 
 		/* make sure the pivot value is equal to 1*/
-		if (decodeMatrix[rowCount][pivot] != 1) {
-			int pval = decodeMatrix[rowCount][pivot] & 0xFF;
-			VectorHelper.divide(decodeMatrix[rowCount], 0, totalSize, pval);			
+		if (row[pivot] != 1) {
+			int pval = row[pivot] & 0xFF;
+			VectorHelper.divide(row, spanStart[rowCount], spanEnd[rowCount] - spanStart[rowCount], pval);
+			VectorHelper.divide(row, size, rowCount + 1, pval);
 		}
 
 		/* make sure that the column of the new pivot is 0 on all the other rows */
 		for (int i = 0; i < rowCount; i++) {
 
+			if (pivot < spanStart[i] || pivot >= spanEnd[i]) continue;
+			
 			int m = decodeMatrix[i][pivot] & 0XFF;
 
 			if (m == 0)	continue;
 
-			VectorHelper.multiplyAndAdd(decodeMatrix[i], 0, totalSize, decodeMatrix[rowCount], 0, m);
+			addRow(i, rowCount, m);
 			
 		}
 		
 		/* increase the number of rows of the decode matrix that are used */
 		rowCount++;
+		checkVectorValid = false;
+
+		findDecodedRows();
+		
+		return true;
 
-		/* if there are rows that we finished decoding ( they are elementary vectors) */
+	}
+	
+	/**
+	 * Draws a random vector of the null space of the decode matrix. Each 
+	 * non pivot column gets a random non zero value, so that elementary 
+	 * vectors of the missing packets are never rejected, and each pivot 
+	 * column the value that makes the product with its row zero.
+	 */
+	private void updateCheckVector() {
+		
+		final int size = decodeMatrix.length;
+		
+		for (int i = 0; i < size; i++) {
+			checkVector[i] = isPivot[i] ? 0 : (byte) (1 + random.nextInt(255));
+		}
+		
+		/* the other pivot columns of a row are zero, so is the pivot in the check vector */
+		for (int i = 0; i < rowCount; i++) {
+			checkVector[pivotPos[i]] = (byte) VectorHelper.dotProduct(decodeMatrix[i], spanStart[i], 
+											checkVector, spanStart[i], spanEnd[i] - spanStart[i]);
+		}
+		
+		checkVectorValid = true;
+	}
+	
+	/**
+	 * Adds to the row dest of the decode matrix the row src multiplied by m. 
+	 * Only the non zero span of src and the columns of the inverse matrix
+	 * that are in use are processed.
+	 */
+	private void addRow(int dest, int src, int m) {
+		
+		final int size = decodeMatrix.length;
+		
+		addRowCoefficients(dest, src, m);
+		VectorHelper.multiplyAndAdd(decodeMatrix[dest], size, rowCount + 1, decodeMatrix[src], size, m);
+	}
+	
+	/**
+	 * Adds to the row dest of the decode matrix the non zero span of the row 
+	 * src multiplied by m, the columns of the inverse matrix are not changed.
+	 */
+	private void addRowCoefficients(int dest, int src, int m) {
+		
+		final byte[] destRow = decodeMatrix[dest];
+		final byte[] srcRow = decodeMatrix[src];
+		
+		VectorHelper.multiplyAndAdd(destRow, spanStart[src], spanEnd[src] - spanStart[src], srcRow, spanStart[src], m);
+		
+		spanStart[dest] = Math.min(spanStart[dest], spanStart[src]);
+		spanEnd[dest] = Math.max(spanEnd[dest], spanEnd[src]);
+		
+		trimSpan(dest);
+	}
+	
+	/**
+	 * Shrinks the span of a row so that it starts and ends with a non zero 
+	 * coefficient
+	 */
+	private void trimSpan(int i) {
+		
+		final byte[] row = decodeMatrix[i];
+		
+		while (spanStart[i] < spanEnd[i] && row[spanStart[i]] == 0) spanStart[i]++;
+		while (spanEnd[i] > spanStart[i] && row[spanEnd[i] - 1] == 0) spanEnd[i]--;
+	}
+	
+	/**
+	 * Adds to the decode matrix the elementary vector with a one at position 
+	 * pivot, the position must not be a pivot column yet.
+	 */
+	private void addElementaryVector(int pivot) {
+		
+		final int size = decodeMatrix.length;
+		final byte[] row = decodeMatrix[rowCount];
+		
+		VectorHelper.setToZero(row, 0, row.length);
+		row[pivot] = 1;
+		row[size + rowCount] = 1;
+		spanStart[rowCount] = pivot;
+		spanEnd[rowCount] = pivot + 1;
+		
+		pivotPos[rowCount] = pivot;
+		isPivot[pivot] = true;
+		
+		/* zero the column of the new pivot on all the other rows, the new row
+		 * has only two non zero entries */
+		for (int i = 0; i < rowCount; i++) {
+			
+			if (pivot < spanStart[i] || pivot >= spanEnd[i]) continue;
+			
+			int m = decodeMatrix[i][pivot];
+			
+			if (m == 0) continue;
+			
+			decodeMatrix[i][pivot] = 0;
+			decodeMatrix[i][size + rowCount] ^= m;
+			trimSpan(i);
+		}
+		
+		rowCount++;
+		checkVectorValid = false;
+		
+		findDecodedRows();
+	}
+	
+	/**
+	 * Marks as decoded the rows of the decode matrix that became elementary
+	 * vectors, i.e. whose span contains a single coefficient
+	 */
+	private void findDecodedRows() {
+		
 		for (int i = 0; i < rowCount; i++) {
-			int pos = -1;
 
 			/* skip if the line is marked decoded */
-			if (decoded[i])	continue;
-
-			/* check if there is exactly one 1 in the first half of the row */
-			for (int j = 0; j < size; j++) {
-				if (decodeMatrix[i][j] != 0 && pos != -1) {
-					pos = -1;
-					break;
-				} else if (decodeMatrix[i][j] != 0) {
-					pos = j;
-				}
-			}
+			if (decoded[i] || spanEnd[i] - spanStart[i] != 1) continue;
 
-			/* the row has been decoded */
-			if (pos >= 0) {
-				decoded[i] = true;
-				decodedAddress[decodedCount] = i;
-				decodedCount++;
-			}
+			decoded[i] = true;
+			decodedAddress[decodedCount] = i;
+			decodedCount++;
 		}
-		
-		return true;
 
 	}
 
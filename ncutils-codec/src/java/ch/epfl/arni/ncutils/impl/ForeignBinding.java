@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ch.epfl.arni.ncutils.impl;
+
+import ch.epfl.arni.ncutils.Decoder;
+
+/**
+ * 
+ * Binding of the C library through the Foreign Function and Memory API, an 
+ * alternative to the JNI code of {@link NativeDecoder}. The binding calls 
+ * directly the functions declared in ncutils.h and accesses packets stored 
+ * in memory segments without copying them. The implementation is compiled 
+ * separately since it requires a JDK that provides the final version of the 
+ * API (22 or newer) and it is loaded only if the API is available at runtime. 
+ * The native library must have been loaded by 
+ * {@link ch.epfl.arni.ncutils.CodecFactory} before the binding is used.
+ *
+ */
+
+public abstract class ForeignBinding {
+
+	/** implementation of the binding, null if it is not available */
+	private static ForeignBinding binding;
+	
+	/** true if the implementation was already looked up */
+	private static boolean triedLoadingBinding;
+	
+	/**
+	 * Returns true if the binding can be used in this JVM. 
+	 * 
+	 * @return true if the binding is available
+	 */
+	public static synchronized boolean isAvailable() {
+		
+		if (!triedLoadingBinding) {
+			
+			triedLoadingBinding = true;
+			
+			try {
+				binding = (ForeignBinding) Class.forName("ch.epfl.arni.ncutils.impl.PanamaBinding").getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException e) {
+			} catch (RuntimeException e) {
+			} catch (LinkageError e) {}
+		}
+		
+		return binding != null;
+	}
+	
+	/**
+	 * Creates a decoder that calls the C library through the binding.
+	 * 
+	 * @param segmentLength the length of the segment that has to be recovered
+	 * @param packetsPerSegment the number of original packets in which the segment has 
+	 * 							been divided
+	 * 
+	 * @return a Decoder that can be used to decoded packets
+	 * @throws IllegalStateException if the binding is not available
+	 */
+	public static Decoder createDecoder(int segmentLength, int packetsPerSegment) {
+		
+		if (!isAvailable()) {
+			throw new IllegalStateException("The foreign function binding is not available");
+		}
+		
+		return binding.newDecoder(segmentLength, packetsPerSegment);
+	}
+	
+	/**
+	 * Creates a decoder bound to the C library. 
+	 */
+	abstract Decoder newDecoder(int segmentLength, int packetsPerSegment);
+	
+}
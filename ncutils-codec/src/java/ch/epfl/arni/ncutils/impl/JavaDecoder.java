@@ -27,7 +27,10 @@
 
 package ch.epfl.arni.ncutils.impl;
 
+import java.nio.ByteBuffer;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import ch.epfl.arni.ncutils.Decoder;
 
@@ -36,10 +39,23 @@ import ch.epfl.arni.ncutils.Decoder;
  * 
  * Java implementation of a Decoder.
  * 
+ * When a ForkJoinPool is set, the original packets that become decodable at
+ * once (typically all of them when the last innovative packet arrives) are
+ * recombined in parallel, split by original packet and then by stripes of 
+ * the payload.
  *
  */
 public class JavaDecoder implements Decoder {
 
+	/** 
+	 * minimum number of bytes combined by a parallel task, smaller tasks 
+	 * cost more to schedule than to compute 
+	 */
+	private static final int MIN_PARALLEL_WORK = 1 << 16;
+	
+	/** minimum length of the stripes of the payload combined by a parallel task */
+	private static final int MIN_STRIPE_LENGTH = 128;
+
 	/** contains the length of a packet, including the coefficient header */
 	private int packetLength;
 	
@@ -65,6 +81,9 @@ public class JavaDecoder implements Decoder {
 	/** decoder used to find how to combine encoded packets to recover orginal packets */
     private CodingVectorDecoder codingVectorDecoder;
     
+    /** the pool used to recombine the payloads in parallel, null to recombine them on the caller thread */
+    private ForkJoinPool pool;
+    
     /**
      * 
      * Creates a new DecoderImpl with a given segment size and packet per segment length.
@@ -82,6 +101,37 @@ public class JavaDecoder implements Decoder {
 		random = new Random();
 		encodedPackets = new byte[packetsPerSegment][packetLength];
 	}
+	
+	/**
+	 * Enables or disables the probabilistic test that rejects redundant 
+	 * packets with a single dot product, see 
+	 * {@link CodingVectorDecoder#setProbabilisticCheck(boolean)}.
+	 * 
+	 * @param enabled true to enable the test
+	 */
+	public void setProbabilisticCheck(boolean enabled) {
+		codingVectorDecoder.setProbabilisticCheck(enabled);
+	}
+
+	/**
+	 * Sets the pool used to recombine the payloads of the original packets 
+	 * in parallel, the payloads are recombined on the thread that adds the
+	 * packets if the pool is null (the default).
+	 * 
+	 * @param pool a ForkJoinPool, for instance ForkJoinPool.commonPool(), or null
+	 */
+	public void setForkJoinPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+	
+	/**
+	 * Returns the pool used to recombine the payloads in parallel
+	 * 
+	 * @return the pool or null if the payloads are recombined on the caller thread
+	 */
+	public ForkJoinPool getForkJoinPool() {
+		return pool;
+	}
 
 	@Override
 	public void addPacket(byte[] data, int offset) {
@@ -91,15 +141,21 @@ public class JavaDecoder implements Decoder {
 		boolean innovative = codingVectorDecoder.addCodingVector(data, offset);
 		
 		if ( innovative ) {
-			encodedPackets[encodedPacketCount] = data;
 			System.arraycopy(data, offset, 
 								encodedPackets[encodedPacketCount], 0, packetLength);
 			encodedPacketCount++;
 		}
 		
+		int decodedCount = codingVectorDecoder.getDecodingVectorsCount();
+		
+		if (pool != null && (long) (decodedCount - prevDecoded) * packetPayloadLength * encodedPacketCount >= 2 * MIN_PARALLEL_WORK) {
+			pool.invoke(new DecodeTask(prevDecoded, decodedCount, 0, packetPayloadLength));
+			return;
+		}
+		
 		/* decode all original packets that we discovered how to decode */
-        for ( int i = prevDecoded ; i < codingVectorDecoder.getDecodingVectorsCount(); i++ ) {
-        	decodePayload(i);            	
+        for ( int i = prevDecoded ; i < decodedCount; i++ ) {
+        	decodePayload(i, 0, packetPayloadLength);            	
         }
 	}
 
@@ -115,7 +171,14 @@ public class JavaDecoder implements Decoder {
 
 	@Override
 	public void getSegment(byte[] segment, int offset) {
-		System.arraycopy(decodedSegment, 0, segment, offset, decodedSegment.length);
+		System.arraycopy(decodedSegment, 0, segment, offset, packetsPerSegment * packetPayloadLength);
+	}
+
+	@Override
+	public void getSegment(ByteBuffer segment, int offset) {
+		ByteBuffer output = segment.duplicate();
+		output.position(offset);
+		output.put(decodedSegment, 0, packetsPerSegment * packetPayloadLength);
 	}
 
 	@Override
@@ -131,14 +194,27 @@ public class JavaDecoder implements Decoder {
 	}
 	
 	/**
-	 * Decodes an original packet using the information from the coding vector decoder. 
+	 * Decodes a stripe of an original packet using the information from the 
+	 * coding vector decoder. 
 	 * @param index
+	 * @param start the offset of the stripe in the payload
+	 * @param length the length of the stripe
 	 */
-    private void decodePayload(int index) {
+    private void decodePayload(int index, int start, int length) {
         
         byte[] decodingVector = codingVectorDecoder.getDecodingVectorBuffer(index);
         int decodingVectorOffset = codingVectorDecoder.getDecodingVectorOffset();
-        int decodedPacketOffset = codingVectorDecoder.getDecodingVectoPacketId(index) * packetPayloadLength;
+        int decodedPacketOffset = codingVectorDecoder.getDecodingVectoPacketId(index) * packetPayloadLength + start;
+        
+        int elementary = findElementary(decodingVector, decodingVectorOffset);
+        
+        /* the packet is a copy of one of the coded packets (e.g. an original packet
+         * sent by a systematic encoder) */
+        if (elementary >= 0) {
+        	System.arraycopy(encodedPackets[elementary], packetsPerSegment + start, 
+        						decodedSegment, decodedPacketOffset, length);
+        	return;
+        }
         
 		for (int codedPacketId = 0 ; codedPacketId < packetsPerSegment; codedPacketId++) {
           
@@ -150,17 +226,89 @@ public class JavaDecoder implements Decoder {
             byte[] codedPacket = encodedPackets[codedPacketId];
             
             /* linearly combine the payload of packet "codedPacketId" */    
-            VectorHelper.multiplyAndAdd(decodedSegment, decodedPacketOffset, packetPayloadLength, 
-            								codedPacket, packetsPerSegment, 
+            VectorHelper.multiplyAndAdd(decodedSegment, decodedPacketOffset, length, 
+            								codedPacket, packetsPerSegment + start, 
             								coeff);
         }        
     }
+    
+    /**
+     * Decodes a range of original packets over a stripe of the payload. The
+     * task is split by original packet first and then by stripe until the 
+     * work of each task is below MIN_PARALLEL_WORK, the tasks write disjoint
+     * parts of the decoded segment.
+     */
+    private class DecodeTask extends RecursiveAction {
+    	
+		private static final long serialVersionUID = 1L;
+		
+		private final int first, last, start, end;
+    	
+    	DecodeTask(int first, int last, int start, int end) {
+    		this.first = first;
+    		this.last = last;
+    		this.start = start;
+    		this.end = end;
+    	}
+    	
+    	@Override
+    	protected void compute() {
+    		
+    		long work = (long) (last - first) * (end - start) * encodedPacketCount;
+    		
+    		if (work < 2 * MIN_PARALLEL_WORK || (last - first == 1 && end - start < 2 * MIN_STRIPE_LENGTH)) {
+    			
+    			for (int i = first; i < last; i++) {
+    				decodePayload(i, start, end - start);
+    			}
+    			
+    		} else if (last - first > 1) {
+    			
+    			int middle = (first + last) >>> 1;
+    			invokeAll(new DecodeTask(first, middle, start, end), new DecodeTask(middle, last, start, end));
+    			
+    		} else {
+    			
+    			int middle = start + (end - start) / 2;
+    			invokeAll(new DecodeTask(first, last, start, middle), new DecodeTask(first, last, middle, end));
+    		}
+    	}
+    }
+
+    /**
+     * Returns the position of the only non-zero coefficient of a decoding vector
+     * if this coefficient is 1, -1 otherwise
+     */
+    private int findElementary(byte[] decodingVector, int offset) {
+    	
+    	int pos = -1;
+    	
+    	for (int i = 0 ; i < encodedPacketCount ; i++) {
+    		if (decodingVector[offset + i] == 0) continue;
+    		if (pos != -1 || decodingVector[offset + i] != 1) return -1;
+    		pos = i;
+    	}
+    	
+    	return pos;
+    }
+
+	@Override
+	public void reset() {
+		codingVectorDecoder.reset();
+		encodedPacketCount = 0;
+		VectorHelper.setToZero(decodedSegment, 0, decodedSegment.length);
+	}
 
 	@Override
 	public void dispose() {
 		return;
 	}
 
+	@Override
+	public void close() {
+		dispose();
+	}
+
 	@Override
 	public int getPacketLength() {
 		return packetLength;
@@ -54,8 +54,20 @@ public class JavaEncoder implements Encoder {
 	/** length of each packet excluding the coding vector header */
 	private int packetPayloadLength;
 	
-	/** random number generator used to create random coefficients for encoding */
-	private Random random;
+	/** true if the original packets are sent before the coded packets */
+	private boolean systematic;
+	
+	/** number of original packets sent up to now in systematic mode */
+	private int sentOriginalPackets;
+	
+	/** true if the packets have a compressed header (see {@link SeedHeader}) */
+	private boolean seedHeader;
+	
+	/** generator of the coding vectors of the coded packets */
+	private CodingCoefficients codingCoefficients;
+	
+	/** buffer holding the coding vectors of the packets being created, one after the other */
+	private byte[] coefficients;
 	
 	/**
 	 * Encodes the specified vector contained in buffer, starting at offset and of the
@@ -67,33 +79,128 @@ public class JavaEncoder implements Encoder {
 	 * @param packetsPerSegment the number of original packets in which the segment must be divided.
 	 */
 	public JavaEncoder(byte[] buffer, int offset, int length, int packetsPerSegment) {
+		this(buffer, offset, length, packetsPerSegment, false);
+	}
+	
+	/**
+	 * Encodes the specified vector contained in buffer, starting at offset and of the
+	 * specifed length.  The semgent is splitted in packetPerSegment original packets.
+	 * In systematic mode the first packetsPerSegment packets returned are the 
+	 * original packets (with an elementary coding vector), the following are coded
+	 * packets.
+	 * 
+	 * @param buffer the buffer holding the segment being encoded
+	 * @param offset the offset of the first byte of the segment in buffer
+	 * @param length the length of the segment
+	 * @param packetsPerSegment the number of original packets in which the segment must be divided.
+	 * @param systematic true if the original packets must be sent before the coded packets
+	 */
+	public JavaEncoder(byte[] buffer, int offset, int length, int packetsPerSegment, boolean systematic) {
+		this(buffer, offset, length, packetsPerSegment, systematic, packetsPerSegment);
+	}
+	
+	/**
+	 * Encodes the specified vector contained in buffer, starting at offset and of the
+	 * specifed length.  The semgent is splitted in packetPerSegment original packets.
+	 * Each coded packet is a random linear combination of nonZeroCoefficients
+	 * randomly chosen original packets, the cost of creating a packet doesn't 
+	 * depend on packetsPerSegment if nonZeroCoefficients is fixed.
+	 * 
+	 * @param buffer the buffer holding the segment being encoded
+	 * @param offset the offset of the first byte of the segment in buffer
+	 * @param length the length of the segment
+	 * @param packetsPerSegment the number of original packets in which the segment must be divided.
+	 * @param systematic true if the original packets must be sent before the coded packets
+	 * @param nonZeroCoefficients the number of original packets combined in each coded packet,
+	 * 			between 1 and packetsPerSegment
+	 */
+	public JavaEncoder(byte[] buffer, int offset, int length, int packetsPerSegment, boolean systematic, int nonZeroCoefficients) {
+		this(buffer, offset, length, packetsPerSegment, systematic, nonZeroCoefficients, false);
+	}
+	
+	/**
+	 * Encodes the specified vector contained in buffer, starting at offset and of the
+	 * specifed length.  The semgent is splitted in packetPerSegment original packets.
+	 * If seedHeader is true the packets created have a compressed coding vector
+	 * header described in {@link SeedHeader} and must be decoded with a 
+	 * {@link SeedHeaderDecoder}.
+	 * 
+	 * @param buffer the buffer holding the segment being encoded
+	 * @param offset the offset of the first byte of the segment in buffer
+	 * @param length the length of the segment
+	 * @param packetsPerSegment the number of original packets in which the segment must be divided.
+	 * @param systematic true if the original packets must be sent before the coded packets
+	 * @param nonZeroCoefficients the number of original packets combined in each coded packet,
+	 * 			between 1 and packetsPerSegment
+	 * @param seedHeader true if the coding vector header must be replaced by a seed 
+	 */
+	public JavaEncoder(byte[] buffer, int offset, int length, int packetsPerSegment, boolean systematic, 
+						int nonZeroCoefficients, boolean seedHeader) {
+		
+		this.codingCoefficients = new CodingCoefficients(packetsPerSegment, nonZeroCoefficients, seedHeader, new Random());
+		this.systematic = systematic;
+		this.seedHeader = seedHeader;
 		this.buffer = buffer;
-		this.packetLength = length / packetsPerSegment + packetsPerSegment;
 		this.packetPayloadLength = length / packetsPerSegment;
+		this.packetLength = packetPayloadLength + codingCoefficients.getHeaderLength();
 		this.packetsPerSegment = packetsPerSegment;
 		this.offset = offset;
-		this.random = new Random();
+		this.coefficients = new byte[packetsPerSegment];
 	}
 
 	
 	@Override
 	public void getPacket(byte[] packet, int offset) {			
+		getPackets(packet, offset, 1);
+	}
+	
+	@Override
+	public void getPackets(byte[] packets, int offset, int count) {
 		
-		VectorHelper.setToZero(packet, offset, packetLength);
-				
-		for  ( int i = 0 ; i < packetsPerSegment ; i++) {
-			
-			int coeff = random.nextInt() & 0xFF;
-			
-			packet[offset + i] = (byte) coeff;
-			
-			int offsetPayload = offset + packetsPerSegment;
-			int offsetSegmentPacket = i * packetPayloadLength + this.offset;
+		/* send the next original packets with an elementary coding vector */
+		while (count > 0 && systematic && sentOriginalPackets < packetsPerSegment) {
+			getOriginalPacket(packets, offset);
+			offset += packetLength;
+			count--;
+		}
 		
-			VectorHelper.multiplyAndAdd(packet, offsetPayload, packetPayloadLength, buffer, offsetSegmentPacket, coeff);
-
-		}		
+		if (count == 0) return;
+		
+		if (coefficients.length < count * packetsPerSegment) {
+			coefficients = new byte[count * packetsPerSegment];
+		}
+		
+		int headerLength = packetLength - packetPayloadLength;
+		
+		for (int p = 0; p < count; p++) {
+			int packetOffset = offset + p * packetLength;
+			codingCoefficients.next(packets, packetOffset, coefficients, p * packetsPerSegment);
+			VectorHelper.setToZero(packets, packetOffset + headerLength, packetPayloadLength);
+		}
+		
+		/* compute all the payloads at once with a single pass on the segment */
+		VectorHelper.multiplyMatrix(coefficients, 0, count, packetsPerSegment, 
+									buffer, this.offset, packetPayloadLength, 
+									packets, offset + headerLength, packetLength);
+	
+	}
 	
+	/**
+	 * Writes the next original packet of the segment with an elementary coding vector
+	 */
+	private void getOriginalPacket(byte[] packet, int offset) {
+		
+		int i = sentOriginalPackets++;
+		
+		if (seedHeader) {
+			SeedHeader.writeHeader(packet, offset, SeedHeader.FORMAT_ORIGINAL, i, 0);
+		} else {
+			VectorHelper.setToZero(packet, offset, packetsPerSegment);
+			packet[offset + i] = 1;
+		}
+		
+		System.arraycopy(buffer, i * packetPayloadLength + this.offset, 
+							packet, offset + packetLength - packetPayloadLength, packetPayloadLength);
 	}
 
 	@Override
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ch.epfl.arni.ncutils.impl;
+
+import java.util.Random;
+
+import ch.epfl.arni.ncutils.Relay;
+
+/**
+ * 
+ * Java implementation of a Relay.
+ * 
+ * The relay keeps only a basis of the received packets in reduced row 
+ * echelon form: each row has a one in its pivot column and zeros in the 
+ * pivot columns of the other rows. The multipliers needed to reduce a 
+ * new packet are then its coefficients in the pivot columns, so packets 
+ * that are not innovative are detected by reducing only their coding 
+ * vector and their payload is never processed. The relay doesn't store 
+ * the decode matrix nor the segment of a decoder.
+ * 
+ * Packets are recoded as random combinations of the rows of the basis, 
+ * the rows are stored one after the other so that a batch of packets is 
+ * computed as a single matrix product.
+ *
+ */
+
+public class JavaRelay implements Relay {
+
+	/** the length of a packet, including the coding vector */
+	private int packetLength;
+	
+	/** the number of original packets in which the segment is divided */
+	private int packetsPerSegment;
+	
+	/** 
+	 * the rows of the basis one after the other, the row after the last 
+	 * row of the basis is used to reduce new packets 
+	 */
+	private byte[] basis;
+	
+	/** the pivot column of each row of the basis */
+	private int[] pivotPos;
+	
+	/** the number of rows of the basis */
+	private int rank;
+	
+	/** the coefficients of the packets being recoded */
+	private byte[] coefficients;
+	
+	/** an instance of random used to create new packets */
+	private Random random = new Random();
+	
+	/**
+	 * Creates a relay for the packets of a segment
+	 * 
+	 * @param segmentLength the length of the segment
+	 * @param packetsPerSegment the number of original packets in which the segment has 
+	 * 							been divided (also known as generation size)
+	 */
+	public JavaRelay(int segmentLength, int packetsPerSegment) {
+		this.packetsPerSegment = packetsPerSegment;
+		this.packetLength = segmentLength / packetsPerSegment + packetsPerSegment;
+		this.basis = new byte[packetsPerSegment * packetLength];
+		this.pivotPos = new int[packetsPerSegment];
+		this.coefficients = new byte[packetsPerSegment];
+	}
+	
+	@Override
+	public boolean addPacket(byte[] buffer, int offset) {
+		
+		if (rank == packetsPerSegment) return false;
+		
+		int row = rank * packetLength;
+		
+		System.arraycopy(buffer, offset, basis, row, packetsPerSegment);
+		
+		/* the pivot columns of the rows are zero in the other rows, the 
+		 * multipliers are the coefficients of the packet in these columns */
+		for (int i = 0; i < rank; i++) {
+			
+			int m = buffer[offset + pivotPos[i]] & 0xFF;
+			
+			if (m == 0) continue;
+			
+			VectorHelper.multiplyAndAdd(basis, row, packetsPerSegment, basis, i * packetLength, m);
+		}
+		
+		int pivot = 0;
+		while (pivot < packetsPerSegment && basis[row + pivot] == 0) pivot++;
+		
+		/* the packet is linearly dependent */
+		if (pivot == packetsPerSegment) return false;
+		
+		/* reduce the payload with the same multipliers */
+		System.arraycopy(buffer, offset + packetsPerSegment, basis, row + packetsPerSegment, packetLength - packetsPerSegment);
+		
+		for (int i = 0; i < rank; i++) {
+			
+			int m = buffer[offset + pivotPos[i]] & 0xFF;
+			
+			if (m == 0) continue;
+			
+			VectorHelper.multiplyAndAdd(basis, row + packetsPerSegment, packetLength - packetsPerSegment, 
+											basis, i * packetLength + packetsPerSegment, m);
+		}
+		
+		int pval = basis[row + pivot] & 0xFF;
+		
+		if (pval != 1) {
+			VectorHelper.divide(basis, row, packetLength, pval);
+		}
+		
+		/* zero the pivot column on the other rows */
+		for (int i = 0; i < rank; i++) {
+			
+			int m = basis[i * packetLength + pivot] & 0xFF;
+			
+			if (m == 0) continue;
+			
+			VectorHelper.multiplyAndAdd(basis, i * packetLength, packetLength, basis, row, m);
+		}
+		
+		pivotPos[rank] = pivot;
+		rank++;
+		
+		return true;
+	}
+	
+	@Override
+	public int getRank() {
+		return rank;
+	}
+	
+	@Override
+	public void getPacket(byte[] buffer, int offset) {
+		getPackets(buffer, offset, 1);
+	}
+	
+	@Override
+	public void getPackets(byte[] buffer, int offset, int count) {
+		
+		if (count == 0) return;
+		
+		if (coefficients.length < count * rank) {
+			coefficients = new byte[count * rank];
+		}
+		
+		for (int i = 0; i < count * rank; i++) {
+			coefficients[i] = (byte) random.nextInt();
+		}
+		
+		VectorHelper.setToZero(buffer, offset, count * packetLength);
+		
+		VectorHelper.multiplyMatrix(coefficients, 0, count, rank, basis, 0, packetLength, buffer, offset, packetLength);
+	}
+	
+	@Override
+	public int getPacketLength() {
+		return packetLength;
+	}
+	
+	@Override
+	public void reset() {
+		rank = 0;
+	}
+	
+}
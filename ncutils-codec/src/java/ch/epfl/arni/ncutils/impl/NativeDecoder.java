@@ -27,6 +27,8 @@
 
 package ch.epfl.arni.ncutils.impl;
 
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
 import java.security.InvalidParameterException;
 
 import ch.epfl.arni.ncutils.Decoder;
@@ -34,14 +36,43 @@ import ch.epfl.arni.ncutils.Decoder;
 /**
  * 
  * Native implementation of an encoder.
+ * 
+ * Besides byte arrays, the packets and the segment can be stored in direct 
+ * byte buffers, the native code accesses them without copying them. The 
+ * bytes used from an array are copied to and from native memory, arrays 
+ * are never pinned while a packet is decoded.
+ * 
+ * The native memory is released by {@link #dispose()} or, if the decoder 
+ * is not disposed, by a cleaner once the decoder is unreachable.
  *
  */
 
 public final class NativeDecoder implements Decoder {
 	
-	/** handle of the decoded created in the C code */
+	/** cleaner that releases the native memory of the decoders of the library */
+	static final Cleaner CLEANER = Cleaner.create();
+	
+	/** releases the decoder created in the C code, it must not refer to the NativeDecoder */
+	private static class Disposer implements Runnable {
+		
+		private final long handle;
+		
+		Disposer(long handle) {
+			this.handle = handle;
+		}
+		
+		@Override
+		public void run() {
+			disposeNative(handle);
+		}
+	}
+	
+	/** handle of the decoded created in the C code, 0 once disposed */
 	private long handle;	
 	
+	/** registration of the decoder with the cleaner */
+	private final Cleaner.Cleanable cleanable;
+	
 	/** current number of innovative packets recieved */
 	private int rank;
 	
@@ -64,17 +95,36 @@ public final class NativeDecoder implements Decoder {
 	public NativeDecoder(int segmentLength, int packetsPerSegment) {
 		
 		handle = createDecoderNative(segmentLength, packetsPerSegment);
+		cleanable = CLEANER.register(this, new Disposer(handle));
 		this.packetLen = segmentLength / packetsPerSegment;
 		this.segmentLen = segmentLength;
 		this.packetsPerSegment = packetsPerSegment;
 	}
 	
 	@Override
-	public synchronized void addPacket(byte[] data, int offset) {
+	public void addPacket(byte[] data, int offset) {
+		addPacket((Object) data, offset);
+	}
+	
+	/**
+	 * Adds a new packet stored in a direct byte buffer to the the decoder. 
+	 * The packet starts at position offset in the buffer, the position of 
+	 * the buffer is not modified.
+	 * 
+	 * @param data the direct buffer containing the packet
+	 * @param offset the position of the first byte of the packet in the buffer
+	 */
+	public void addPacket(ByteBuffer data, int offset) {
+		addPacket((Object) NativeEncoder.checkDirect(data), offset);
+	}
+	
+	private synchronized void addPacket(Object data, int offset) {
 		
-		if (data.length - offset <  packetLen + packetsPerSegment) 
+		if (NativeEncoder.capacity(data) - offset <  packetLen + packetsPerSegment || offset < 0) 
 			throw new InvalidParameterException("Data packet too short");
 		
+		checkHandle();
+		
 		boolean innovative = addPacketNative(handle, data, offset);
 		
 		if (innovative) rank++;
@@ -91,41 +141,106 @@ public final class NativeDecoder implements Decoder {
 	}
 
 	@Override
-	public synchronized void getSegment(byte[] segment, int offset) {
+	public void getSegment(byte[] segment, int offset) {
+		getSegment((Object) segment, offset);
+	}
+	
+	/**
+	 * Writes the segment that was reconstructed in a byte buffer at the 
+	 * specified position, the position of the buffer is not modified. The 
+	 * native code writes directly in direct buffers and copies the segment in 
+	 * the array of heap buffers.
+	 * 
+	 * @param segment a buffer where the segment will be stored 
+	 * @param offset in the buffer where the segment should be written
+	 */
+	@Override
+	public void getSegment(ByteBuffer segment, int offset) {
+		
+		if (!segment.isDirect() && segment.hasArray()) {
+			
+			if (segment.capacity() - offset < segmentLen || offset < 0) 
+				throw new InvalidParameterException("Segment too short (expected " + segmentLen + " received " + (segment.capacity() - offset));
+			
+			getSegment((Object) segment.array(), segment.arrayOffset() + offset);
+		} else {
+			getSegment((Object) NativeEncoder.checkDirect(segment), offset);
+		}
+	}
+	
+	private synchronized void getSegment(Object segment, int offset) {
 		
 		if ( rank < packetsPerSegment ) throw new IllegalStateException("Segment not fully decoded yet");
 		
-		if (segment.length - offset <  segmentLen) 
-			throw new InvalidParameterException("Segment too short (expected " + segmentLen + " received " + (segment.length - offset));
+		if (NativeEncoder.capacity(segment) - offset <  segmentLen || offset < 0) 
+			throw new InvalidParameterException("Segment too short (expected " + segmentLen + " received " + (NativeEncoder.capacity(segment) - offset));
+		
+		checkHandle();
 		
 		getSegmentNative(handle, segment, offset);
 	}
 	
 	@Override
-	public synchronized void getPacket(byte[] packet, int offset) {		
-		getPacketNative(handle, packet, offset);			
+	public void getPacket(byte[] packet, int offset) {		
+		getPacket((Object) packet, offset);			
+	}
+	
+	/**
+	 * Writes in a direct byte buffer a packet at position offset, the position
+	 * of the buffer is not modified.
+	 * 
+	 * @param packet a sufficiently large direct buffer
+	 * @param offset position of the first byte of the packet in the buffer
+	 */
+	public void getPacket(ByteBuffer packet, int offset) {		
+		getPacket((Object) NativeEncoder.checkDirect(packet), offset);			
+	}
+	
+	private synchronized void getPacket(Object packet, int offset) {
+		
+		if (NativeEncoder.capacity(packet) - offset <  packetLen + packetsPerSegment || offset < 0) 
+			throw new InvalidParameterException("Packet buffer too short");
+		
+		checkHandle();
+		
+		getPacketNative(handle, packet, offset);
 	}
 
 	@Override
 	public int getPacketLength() {
-		return packetLen;
+		return packetLen + packetsPerSegment;
+	}
+
+	@Override
+	public synchronized void reset() {
+		checkHandle();
+		resetNative(handle);
+		rank = 0;
+	}
+
+	private void checkHandle() {
+		if (handle == 0) throw new IllegalStateException("Decoder disposed");
 	}
 
     @Override
-	public void dispose() { 
-    	disposeNative(handle); 
+	public synchronized void dispose() { 
+    	// the cleaner runs the disposer at most once
     	handle = 0;
+    	cleanable.clean();
     }
     
-    protected void finalize() {    	
-    	// make sure the decoder has been disposed
-    	dispose(); 
+    @Override
+    public void close() {
+    	dispose();
     }
 	
     private native long createDecoderNative(int segmentLength, int packetLength);
-	private native void getSegmentNative(long handle, byte[] segment, int offset);
-	private native boolean addPacketNative(long handle, byte[] data, int offset);
-	private native void getPacketNative(long handle, byte[] packet, int offset);
-	private native void disposeNative(long handle);
+	
+	/* the segments and the packets are byte arrays or direct byte buffers */
+	private native void getSegmentNative(long handle, Object segment, int offset);
+	private native boolean addPacketNative(long handle, Object data, int offset);
+	private native void getPacketNative(long handle, Object packet, int offset);
+	private native void resetNative(long handle);
+	private static native void disposeNative(long handle);
 	
 }
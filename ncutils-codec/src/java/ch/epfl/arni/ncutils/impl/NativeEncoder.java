@@ -27,17 +27,26 @@
 
 package ch.epfl.arni.ncutils.impl;
 
+import java.nio.ByteBuffer;
+import java.util.Random;
+
 import ch.epfl.arni.ncutils.Encoder;
 
 /**
  * Native implementation of an encoder
+ * 
+ * The segment and the packets can be stored in byte arrays or in direct 
+ * byte buffers (for instance off-heap network buffers or native memory 
+ * segments viewed with asByteBuffer()), the native code accesses them 
+ * without copying them. The bytes used from an array are copied to and 
+ * from native memory, arrays are never pinned while a packet is encoded.
  *
  */
 
 public class NativeEncoder implements Encoder {
 	
-	/** buffer holding the segment being encoded */
-	private byte[] buffer;
+	/** buffer holding the segment being encoded, a byte array or a direct byte buffer */
+	private Object buffer;
 	
 	/** offset of the first byte of the segment in the buffer */
 	private int offset;
@@ -50,6 +59,24 @@ public class NativeEncoder implements Encoder {
 	
 	/** length of a packet created by the encoder, including the coding coefficient vector */
 	private int packetLength;
+	
+	/** true if the original packets are sent before the coded packets */
+	private boolean systematic;
+	
+	/** number of original packets sent up to now in systematic mode */
+	private int sentOriginalPackets;
+	
+	/** number of original packets combined in each coded packet */
+	private int nonZeroCoefficients;
+	
+	/** true if the packets have a compressed header (see {@link SeedHeader}) */
+	private boolean seedHeader;
+	
+	/** random number generator used to create the seeds of the packets */
+	private Random random;
+	
+	/** generator of the coding vectors of the packets created in batches */
+	private CodingCoefficients codingCoefficients;
 		
 
 	/**
@@ -62,16 +89,177 @@ public class NativeEncoder implements Encoder {
 	 * @param packetsPerSegment the number of original packets in which the segment must be divided.
 	 */
 	public NativeEncoder(byte[] buffer, int offset, int length, int packetsPerSegment) {
+		this(buffer, offset, length, packetsPerSegment, false);
+	}
+	
+	/**
+	 * Encodes the specified vector contained in buffer, starting at offset and of the
+	 * specified length.  The segment is splitted in packetPerSegment original packets.  
+	 * In systematic mode the first packetsPerSegment packets returned are the 
+	 * original packets (with an elementary coding vector), the following are coded
+	 * packets.
+	 * 
+	 * @param buffer the buffer holding the segment being encoded
+	 * @param offset the offset of the first byte of the segment in buffer
+	 * @param length the length of the segment
+	 * @param packetsPerSegment the number of original packets in which the segment must be divided.
+	 * @param systematic true if the original packets must be sent before the coded packets
+	 */
+	public NativeEncoder(byte[] buffer, int offset, int length, int packetsPerSegment, boolean systematic) {
+		this(buffer, offset, length, packetsPerSegment, systematic, packetsPerSegment);
+	}
+	
+	/**
+	 * Encodes the specified vector contained in buffer, starting at offset and of the
+	 * specified length.  The segment is splitted in packetPerSegment original packets.  
+	 * Each coded packet is a random linear combination of nonZeroCoefficients
+	 * randomly chosen original packets, only these packets are read from the 
+	 * segment when a packet is created.
+	 * 
+	 * @param buffer the buffer holding the segment being encoded
+	 * @param offset the offset of the first byte of the segment in buffer
+	 * @param length the length of the segment
+	 * @param packetsPerSegment the number of original packets in which the segment must be divided.
+	 * @param systematic true if the original packets must be sent before the coded packets
+	 * @param nonZeroCoefficients the number of original packets combined in each coded packet,
+	 * 			between 1 and packetsPerSegment
+	 */
+	public NativeEncoder(byte[] buffer, int offset, int length, int packetsPerSegment, boolean systematic, int nonZeroCoefficients) {
+		this(buffer, offset, length, packetsPerSegment, systematic, nonZeroCoefficients, false);
+	}
+	
+	/**
+	 * Encodes the specified vector contained in buffer, starting at offset and of the
+	 * specified length.  The segment is splitted in packetPerSegment original packets.  
+	 * If seedHeader is true the packets created have a compressed coding vector
+	 * header described in {@link SeedHeader} and must be decoded with a 
+	 * {@link SeedHeaderDecoder}. The seeds are expanded by the native library.
+	 * 
+	 * @param buffer the buffer holding the segment being encoded
+	 * @param offset the offset of the first byte of the segment in buffer
+	 * @param length the length of the segment
+	 * @param packetsPerSegment the number of original packets in which the segment must be divided.
+	 * @param systematic true if the original packets must be sent before the coded packets
+	 * @param nonZeroCoefficients the number of original packets combined in each coded packet,
+	 * 			between 1 and packetsPerSegment
+	 * @param seedHeader true if the coding vector header must be replaced by a seed 
+	 */
+	public NativeEncoder(byte[] buffer, int offset, int length, int packetsPerSegment, boolean systematic, 
+							int nonZeroCoefficients, boolean seedHeader) {
+		this((Object) buffer, offset, length, packetsPerSegment, systematic, nonZeroCoefficients, seedHeader);
+	}
+	
+	/**
+	 * Encodes the segment contained in a direct byte buffer, starting at offset
+	 * and of the specified length. The segment is splitted in packetPerSegment 
+	 * original packets.
+	 * 
+	 * @param buffer the direct buffer holding the segment being encoded
+	 * @param offset the offset of the first byte of the segment in buffer
+	 * @param length the length of the segment
+	 * @param packetsPerSegment the number of original packets in which the segment must be divided.
+	 */
+	public NativeEncoder(ByteBuffer buffer, int offset, int length, int packetsPerSegment) {
+		this(buffer, offset, length, packetsPerSegment, false, packetsPerSegment, false);
+	}
+	
+	/**
+	 * Encodes the segment contained in a direct byte buffer, starting at offset
+	 * and of the specified length. The segment is splitted in packetPerSegment 
+	 * original packets.
+	 * 
+	 * @param buffer the direct buffer holding the segment being encoded
+	 * @param offset the offset of the first byte of the segment in buffer
+	 * @param length the length of the segment
+	 * @param packetsPerSegment the number of original packets in which the segment must be divided.
+	 * @param systematic true if the original packets must be sent before the coded packets
+	 * @param nonZeroCoefficients the number of original packets combined in each coded packet,
+	 * 			between 1 and packetsPerSegment
+	 * @param seedHeader true if the coding vector header must be replaced by a seed 
+	 */
+	public NativeEncoder(ByteBuffer buffer, int offset, int length, int packetsPerSegment, boolean systematic, 
+							int nonZeroCoefficients, boolean seedHeader) {
+		this((Object) checkDirect(buffer), offset, length, packetsPerSegment, systematic, nonZeroCoefficients, seedHeader);
+	}
+	
+	private NativeEncoder(Object buffer, int offset, int length, int packetsPerSegment, boolean systematic, 
+							int nonZeroCoefficients, boolean seedHeader) {
+		
+		checkBounds(buffer, offset, length);
+		
+		this.random = new Random();
+		this.codingCoefficients = new CodingCoefficients(packetsPerSegment, nonZeroCoefficients, seedHeader, random);
+		this.systematic = systematic;
+		this.nonZeroCoefficients = nonZeroCoefficients;
+		this.seedHeader = seedHeader;
 		this.buffer = buffer;
 		this.packetsPerSegment = packetsPerSegment;
-		this.packetLength = length / packetsPerSegment + packetsPerSegment;
+		this.packetLength = length / packetsPerSegment + codingCoefficients.getHeaderLength();
 		this.offset = offset;
 		this.length = length;
 	}	
 	
 	@Override
 	public void getPacket(byte [] packet, int offset) {
-		createPacket(buffer, offset, length, packet, offset, packetsPerSegment);
+		createPacket(packet, offset);
+	}
+	
+	/**
+	 * Writes a packet in a direct byte buffer at position offset, the position
+	 * of the buffer is not modified.
+	 * 
+	 * @param packet a sufficiently large direct buffer
+	 * @param offset position of the first byte of the packet in the buffer
+	 */
+	public void getPacket(ByteBuffer packet, int offset) {
+		createPacket(checkDirect(packet), offset);
+	}
+	
+	/**
+	 * Writes a packet in a byte array or in a direct byte buffer 
+	 */
+	private void createPacket(Object packet, int offset) {
+		
+		checkBounds(packet, offset, packetLength);
+		
+		if (systematic && sentOriginalPackets < packetsPerSegment) {
+			
+			/* original packets do not need any computation */
+			createOriginalPacket(buffer, this.offset, length, packet, offset, packetsPerSegment, sentOriginalPackets++, seedHeader);
+			
+			return;
+		}
+		
+		if (seedHeader) {
+			int nonZero = nonZeroCoefficients < packetsPerSegment ? nonZeroCoefficients : 0;
+			createSeedHeaderPacket(buffer, this.offset, length, packet, offset, packetsPerSegment, random.nextInt(), nonZero);
+			return;
+		}
+		
+		createPacket(buffer, this.offset, length, packet, offset, packetsPerSegment, nonZeroCoefficients);
+	}
+	
+	@Override
+	public void getPackets(byte[] packets, int offset, int count) {
+		
+		while (count > 0 && systematic && sentOriginalPackets < packetsPerSegment) {
+			getPacket(packets, offset);
+			offset += packetLength;
+			count--;
+		}
+		
+		if (count == 0) return;
+		
+		checkBounds(packets, offset, count * packetLength);
+		
+		byte[] coefficients = new byte[count * packetsPerSegment];
+		
+		for (int p = 0; p < count; p++) {
+			codingCoefficients.next(packets, offset + p * packetLength, coefficients, p * packetsPerSegment);
+		}
+		
+		createPackets(buffer, this.offset, length, coefficients, count, packets, offset, packetsPerSegment, 
+						codingCoefficients.getHeaderLength());
 	}
 	
 	@Override
@@ -79,7 +267,45 @@ public class NativeEncoder implements Encoder {
 		return packetLength;
 	}
 
-	private static native void createPacket(byte[] segment, int offset, int len, byte[] packet, int packetOffset, int packetsPerSegment);
+	/**
+	 * Throws an IllegalArgumentException if the buffer is not a direct buffer
+	 */
+	static ByteBuffer checkDirect(ByteBuffer buffer) {
+		
+		if (!buffer.isDirect()) {
+			throw new IllegalArgumentException("The buffer must be a direct buffer");
+		}
+		
+		return buffer;
+	}
+	
+	/**
+	 * Throws an IllegalArgumentException if length bytes starting at offset
+	 * don't fit in a byte array or a direct byte buffer, the native code
+	 * doesn't check the bounds 
+	 */
+	static void checkBounds(Object buffer, int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > capacity(buffer)) {
+			throw new IllegalArgumentException("The buffer is too short");
+		}
+	}
+	
+	/**
+	 * Returns the length of a byte array or of a direct byte buffer
+	 */
+	static int capacity(Object buffer) {
+		return buffer instanceof byte[] ? ((byte[]) buffer).length : ((ByteBuffer) buffer).capacity();
+	}
+
+	/* the segment and the packets are byte arrays or direct byte buffers */
+	
+	private static native void createPacket(Object segment, int offset, int len, Object packet, int packetOffset, int packetsPerSegment, int nonZeroCoefficients);
+	
+	private static native void createOriginalPacket(Object segment, int offset, int len, Object packet, int packetOffset, int packetsPerSegment, int index, boolean seedHeader);
+	
+	private static native void createPackets(Object segment, int offset, int len, byte[] coefficients, int count, Object packets, int packetsOffset, int packetsPerSegment, int headerLength);
+	
+	private static native void createSeedHeaderPacket(Object segment, int offset, int len, Object packet, int packetOffset, int packetsPerSegment, int seed, int nonZero);
 	
 	
 }
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ch.epfl.arni.ncutils.impl;
+
+/**
+ * 
+ * Helper class to read and write packets with a compressed coding vector
+ * header. Instead of one coefficient per original packet the header holds
+ * the seed of a pseudo random generator that is expanded by the receiver
+ * into the coding vector, the header has a fixed length of 
+ * {@link #HEADER_LENGTH} bytes whatever the number of packets per segment.
+ * 
+ * The first byte of a packet is its format:
+ * 
+ * FORMAT_SEED: bytes 1-4 are the seed (big endian), bytes 5-6 the number of 
+ * non zero coefficients (big endian, 0 means that all the coefficients are 
+ * random), the payload follows.
+ * 
+ * FORMAT_ORIGINAL: bytes 1-4 are the index of the original packet (big endian), 
+ * bytes 5-6 are zero, the payload follows. The coding vector is elementary.
+ * 
+ * FORMAT_EXPLICIT: the following packetsPerSegment bytes are the coding
+ * vector, the payload follows. This format is used by nodes that recode
+ * packets, since a linear combination of coded packets cannot be described
+ * by a seed.
+ * 
+ * Packets whose number of non zero coefficients is larger than 
+ * packetsPerSegment or whose original packet index is outside the segment
+ * are rejected with an IllegalArgumentException.
+ * 
+ * The seed is expanded with a xorshift generator, the same generator is
+ * implemented by the native library (see ncutils.h):
+ * 
+ * <pre>
+ * x = seed, or 0x9E3779B9 if seed is zero
+ * next(): x ^= x << 13; x ^= x >>> 17; x ^= x << 5; return x
+ * 
+ * if all the coefficients are random:
+ *     for i in 0 .. n - 1: c[i] = next() >>> 24
+ * otherwise:
+ *     c = 0
+ *     repeat nonZero times:
+ *         do pos = (next() >>> 1) % n while c[pos] != 0
+ *         c[pos] = 1 + (next() >>> 24) % 255
+ * </pre>
+ *
+ */
+
+public class SeedHeader {
+
+	/** format of a packet whose coding vector is described by a seed */
+	public static final int FORMAT_SEED = 1;
+	
+	/** format of a packet that is an original packet */
+	public static final int FORMAT_ORIGINAL = 2;
+	
+	/** format of a packet whose coding vector is sent explicitly */
+	public static final int FORMAT_EXPLICIT = 3;
+	
+	/** length of the header of packets in FORMAT_SEED and FORMAT_ORIGINAL */
+	public static final int HEADER_LENGTH = 7;
+	
+	/**
+	 * Expands a seed into a coding vector.
+	 * 
+	 * @param seed the seed of the generator
+	 * @param nonZero the number of non zero coefficients, 0 if all the 
+	 * 			coefficients are random
+	 * @param vector the buffer where the coding vector is written
+	 * @param offset the offset of the first coefficient in vector
+	 * @param packetsPerSegment the length of the coding vector
+	 * 
+	 * @throws IllegalArgumentException if nonZero is negative or larger than
+	 * 			packetsPerSegment
+	 */
+	public static void expand(int seed, int nonZero, byte[] vector, int offset, int packetsPerSegment) {
+		
+		/* there are not enough free positions for the coefficients */
+		if (nonZero < 0 || nonZero > packetsPerSegment) {
+			throw new IllegalArgumentException("Invalid number of non zero coefficients " + nonZero);
+		}
+		
+		int x = seed != 0 ? seed : 0x9E3779B9;
+		
+		if (nonZero == 0) {
+			for (int i = 0; i < packetsPerSegment; i++) {
+				x ^= x << 13; x ^= x >>> 17; x ^= x << 5;
+				vector[offset + i] = (byte) (x >>> 24);
+			}
+			return;
+		}
+		
+		VectorHelper.setToZero(vector, offset, packetsPerSegment);
+		
+		for (int j = 0; j < nonZero; j++) {
+			
+			int pos;
+			
+			do {
+				x ^= x << 13; x ^= x >>> 17; x ^= x << 5;
+				pos = (x >>> 1) % packetsPerSegment;
+			} while (vector[offset + pos] != 0);
+			
+			x ^= x << 13; x ^= x >>> 17; x ^= x << 5;
+			vector[offset + pos] = (byte) (1 + (x >>> 24) % 255);
+		}
+		
+	}
+	
+	/**
+	 * Writes the header of a packet in FORMAT_SEED or FORMAT_ORIGINAL
+	 * 
+	 * @param packet the buffer holding the packet
+	 * @param offset the offset of the first byte of the packet
+	 * @param format FORMAT_SEED or FORMAT_ORIGINAL
+	 * @param value the seed or the index of the original packet
+	 * @param nonZero the number of non zero coefficients (0 if all are random)
+	 */
+	public static void writeHeader(byte[] packet, int offset, int format, int value, int nonZero) {
+		packet[offset] = (byte) format;
+		packet[offset + 1] = (byte) (value >>> 24);
+		packet[offset + 2] = (byte) (value >>> 16);
+		packet[offset + 3] = (byte) (value >>> 8);
+		packet[offset + 4] = (byte) value;
+		packet[offset + 5] = (byte) (nonZero >>> 8);
+		packet[offset + 6] = (byte) nonZero;
+	}
+	
+	/**
+	 * Converts a packet in any of the formats to a packet with the usual 
+	 * header of packetsPerSegment coefficients.
+	 * 
+	 * @param packet the buffer holding the packet with the compressed header
+	 * @param offset the offset of the first byte of the packet
+	 * @param out the buffer where the converted packet is written
+	 * @param outOffset the offset of the first byte of the converted packet
+	 * @param packetsPerSegment the number of original packets of the segment
+	 * @param payloadLength the length of the payload of the packet
+	 * 
+	 * @throws IllegalArgumentException if the header of the packet is not valid
+	 */
+	public static void toCodedPacket(byte[] packet, int offset, byte[] out, int outOffset, 
+										int packetsPerSegment, int payloadLength) {
+		
+		int format = packet[offset];
+		
+		if (format == FORMAT_EXPLICIT) {
+			System.arraycopy(packet, offset + 1, out, outOffset, packetsPerSegment + payloadLength);
+			return;
+		}
+		
+		if (format != FORMAT_SEED && format != FORMAT_ORIGINAL) {
+			throw new IllegalArgumentException("Unknown packet format " + format);
+		}
+		
+		int value = ((packet[offset + 1] & 0xFF) << 24) | ((packet[offset + 2] & 0xFF) << 16) 
+						| ((packet[offset + 3] & 0xFF) << 8) | (packet[offset + 4] & 0xFF);
+		int nonZero = ((packet[offset + 5] & 0xFF) << 8) | (packet[offset + 6] & 0xFF);
+		
+		if (format == FORMAT_SEED) {
+			expand(value, nonZero, out, outOffset, packetsPerSegment);
+		} else {
+			if (value < 0 || value >= packetsPerSegment) {
+				throw new IllegalArgumentException("Invalid original packet index " + value);
+			}
+
+			VectorHelper.setToZero(out, outOffset, packetsPerSegment);
+			out[outOffset + value] = 1;
+		}
+		
+		System.arraycopy(packet, offset + HEADER_LENGTH, out, outOffset + packetsPerSegment, payloadLength);
+	}
+	
+	/**
+	 * Converts a packet with the usual header of packetsPerSegment coefficients
+	 * to a packet in FORMAT_EXPLICIT, that is one byte longer.
+	 * 
+	 * @param packet the buffer holding the packet
+	 * @param offset the offset of the first byte of the packet
+	 * @param out the buffer where the converted packet is written
+	 * @param outOffset the offset of the first byte of the converted packet
+	 * @param packetsPerSegment the number of original packets of the segment
+	 * @param payloadLength the length of the payload of the packet
+	 */
+	public static void toExplicitPacket(byte[] packet, int offset, byte[] out, int outOffset, 
+										int packetsPerSegment, int payloadLength) {
+		out[outOffset] = FORMAT_EXPLICIT;
+		System.arraycopy(packet, offset, out, outOffset + 1, packetsPerSegment + payloadLength);
+	}
+	
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ch.epfl.arni.ncutils.impl;
+
+import java.nio.ByteBuffer;
+
+import ch.epfl.arni.ncutils.Decoder;
+
+/**
+ * 
+ * Decoder of packets with a compressed coding vector header (see 
+ * {@link SeedHeader}). The packets are converted to the usual format and 
+ * added to another decoder. The packets created by this decoder when it is
+ * used to recode are in SeedHeader.FORMAT_EXPLICIT.
+ *
+ */
+
+public class SeedHeaderDecoder implements Decoder {
+
+	/** decoder of the packets with the usual header */
+	private Decoder decoder;
+	
+	/** number of original packets in which the segment is divided */
+	private int packetsPerSegment;
+	
+	/** length of the payload of each packet */
+	private int packetPayloadLength;
+	
+	/** buffer holding a packet with the usual header */
+	private byte[] packet;
+	
+	/**
+	 * Creates a new decoder of packets with a compressed header.
+	 * 
+	 * @param decoder the decoder to which the packets are added after the 
+	 * 			conversion, it must not be used directly
+	 * @param segmentLength the length of the segment that has to be recovered
+	 * @param packetsPerSegment the number of original packets in which the segment has 
+	 * 							been divided
+	 */
+	public SeedHeaderDecoder(Decoder decoder, int segmentLength, int packetsPerSegment) {
+		this.decoder = decoder;
+		this.packetsPerSegment = packetsPerSegment;
+		this.packetPayloadLength = segmentLength / packetsPerSegment;
+		this.packet = new byte[packetsPerSegment + packetPayloadLength];
+	}
+	
+	@Override
+	public void addPacket(byte[] buffer, int offset) {
+		SeedHeader.toCodedPacket(buffer, offset, packet, 0, packetsPerSegment, packetPayloadLength);
+		decoder.addPacket(packet, 0);
+	}
+
+	@Override
+	public void getPacket(byte[] buffer, int offset) {
+		decoder.getPacket(packet, 0);
+		SeedHeader.toExplicitPacket(packet, 0, buffer, offset, packetsPerSegment, packetPayloadLength);
+	}
+
+	@Override
+	public int getPacketLength() {
+		return 1 + packetsPerSegment + packetPayloadLength;
+	}
+
+	@Override
+	public boolean isDecoded() {
+		return decoder.isDecoded();
+	}
+
+	@Override
+	public int getRank() {
+		return decoder.getRank();
+	}
+
+	@Override
+	public void getSegment(byte[] buffer, int offset) {
+		decoder.getSegment(buffer, offset);
+	}
+
+	@Override
+	public void getSegment(ByteBuffer buffer, int offset) {
+		decoder.getSegment(buffer, offset);
+	}
+
+	@Override
+	public void reset() {
+		decoder.reset();
+	}
+
+	@Override
+	public void dispose() {
+		decoder.dispose();
+	}
+
+	@Override
+	public void close() {
+		dispose();
+	}
+
+}
@@ -30,14 +30,117 @@ package ch.epfl.arni.ncutils.impl;
 /**
  * 
  * Helper class to perform finite field vector operations.
+ * 
+ * The multiply and add operation can be performed by three kernels: a lookup
+ * in the full multiplication table, a lookup in two 16 entries tables indexed
+ * by the low and the high nibble of each byte, and the same nibble tables
+ * applied 16 bytes at a time with byte shuffles of the Java Vector API (only
+ * available if the JVM is started with --add-modules jdk.incubator.vector).
+ * The vector kernel is used by default when it is available, otherwise the
+ * table kernel is used. The kernel can be selected with the system property
+ * ch.epfl.arni.ncutils.kernel (table, nibble or vector) or with 
+ * {@link #setKernel(int)}.
  *
  */
 
 public class VectorHelper {
 
+	/** kernel that looks up products in the multiplication table */
+	public static final int KERNEL_TABLE = 0;
+	
+	/** kernel that looks up products in the split nibble tables */
+	public static final int KERNEL_NIBBLE = 1;
+	
+	/** kernel that shuffles the split nibble tables with the Vector API */
+	public static final int KERNEL_VECTOR = 2;
+	
+	/** number of bytes of the destination vectors that should fit in the cache during a matrix product */
+	private static final int CACHE_BLOCK_SIZE = 1 << 18;
+	
+	/** minimum number of columns processed at a time during a matrix product */
+	private static final int MIN_BLOCK_LENGTH = 64;
+	
 	/** finite field used to perform the operations */
 	private static FiniteField ff = FiniteField.getF256(); 
 	
+	/** 
+	 * products of each coefficient c with the values of the low nibble, 
+	 * c * x is stored at position (c << 4) + x 
+	 */
+	static final byte[] nibbleLow = new byte[256 * 16];
+	
+	/** 
+	 * products of each coefficient c with the values of the high nibble, 
+	 * c * (x << 4) is stored at position (c << 4) + x 
+	 */
+	static final byte[] nibbleHigh = new byte[256 * 16];
+
+	/** implementation of the vector kernel, null if it is not available */
+	private static SimdKernel simdKernel;
+	
+	/** kernel currently used */
+	private static int kernel = KERNEL_TABLE;
+	
+	static {
+		
+		for (int c = 0; c < 256; c++) {
+			for (int x = 0; x < 16; x++) {
+				nibbleLow[(c << 4) + x] = (byte) ff.mul[c][x];
+				nibbleHigh[(c << 4) + x] = (byte) ff.mul[c][x << 4];
+			}
+		}
+		
+		try {
+			simdKernel = (SimdKernel) Class.forName("ch.epfl.arni.ncutils.impl.IncubatorSimdKernel").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+		} catch (RuntimeException e) {
+		} catch (LinkageError e) {}
+		
+		String name = System.getProperty("ch.epfl.arni.ncutils.kernel", "vector");
+		
+		if (name.equals("nibble")) {
+			kernel = KERNEL_NIBBLE;
+		} else if (name.equals("vector") && simdKernel != null) {
+			kernel = KERNEL_VECTOR;
+		}
+		
+	}
+	
+	/**
+	 * Returns true if the specified kernel can be used in this JVM
+	 * 
+	 * @param kernel one of KERNEL_TABLE, KERNEL_NIBBLE or KERNEL_VECTOR
+	 * @return true if the kernel is available
+	 */
+	public static boolean isKernelAvailable(int kernel) {
+		return kernel == KERNEL_TABLE || kernel == KERNEL_NIBBLE 
+				|| (kernel == KERNEL_VECTOR && simdKernel != null);
+	}
+	
+	/**
+	 * Selects the kernel used by the multiply and add operations 
+	 * 
+	 * @param kernel one of KERNEL_TABLE, KERNEL_NIBBLE or KERNEL_VECTOR
+	 * @throws IllegalArgumentException if the kernel is not available
+	 */
+	public static void setKernel(int kernel) {
+		
+		if (!isKernelAvailable(kernel)) {
+			throw new IllegalArgumentException("Kernel " + kernel + " is not available");
+		}
+		
+		VectorHelper.kernel = kernel;
+	}
+	
+	/**
+	 * Returns the kernel used by the multiply and add operations
+	 * 
+	 * @return one of KERNEL_TABLE, KERNEL_NIBBLE or KERNEL_VECTOR
+	 */
+	public static int getKernel() {
+		return kernel;
+	}
+	
 	/**
 	 * 
 	 * Multiplies vector stored in src by coeff and adds to
@@ -52,18 +155,99 @@ public class VectorHelper {
 	 */
 	public static void multiplyAndAdd(byte[] dest, int destStart, int length, byte[] src, int srcStart, int coeff) {
 		
+		if (coeff == 0) {
+			return;
+		}
+		
+		switch (kernel) {
+		case KERNEL_NIBBLE:
+			multiplyAndAddNibble(dest, destStart, length, src, srcStart, coeff);
+			break;
+		case KERNEL_VECTOR:
+			simdKernel.multiplyAndAdd(dest, destStart, length, src, srcStart, coeff);
+			break;
+		default:
+			multiplyAndAddTable(dest, destStart, length, src, srcStart, coeff);
+		}
+
+	}
+	
+	private static void multiplyAndAddTable(byte[] dest, int destStart, int length, byte[] src, int srcStart, int coeff) {
+		
 		int srcEnd = length+destStart;
 		
 		int deltaSrc = -destStart + srcStart;
 		
+		int[] row = ff.mul[coeff];
+		
 		for (int i = destStart; i < srcEnd; i++) {               
 			int v2 = dest[i] & 0xFF;                
 			int v1 = src[i+deltaSrc] & 0xFF;
-            int val = v2 ^ ff.mul[coeff][v1];
+            int val = v2 ^ row[v1];
             dest[i] = (byte) val;
         }
 
 	}
+	
+	private static void multiplyAndAddNibble(byte[] dest, int destStart, int length, byte[] src, int srcStart, int coeff) {
+		
+		int srcEnd = length+destStart;
+		
+		int deltaSrc = -destStart + srcStart;
+		
+		int row = coeff << 4;
+		
+		for (int i = destStart; i < srcEnd; i++) {
+			int v1 = src[i+deltaSrc];
+			dest[i] ^= nibbleLow[row + (v1 & 0x0F)] ^ nibbleHigh[row + ((v1 >> 4) & 0x0F)];
+		}
+		
+	}
+
+	/**
+	 * 
+	 * Adds to each of rows destination vectors a linear combination of columns
+	 * source vectors, i.e. computes dest += coefficients x src. The product
+	 * is computed one block of columns at a time, so that the blocks of the 
+	 * destination vectors stay in the cache while all the source vectors are
+	 * combined and each source vector is read only once.
+	 * 
+	 * @param coefficients the rows x columns matrix of coefficients, row by row
+	 * @param coefficientsStart the offset of the first coefficient
+	 * @param rows the number of destination vectors
+	 * @param columns the number of source vectors
+	 * @param src the buffer containing the source vectors, one after the other
+	 * @param srcStart the offset of the first source vector in src
+	 * @param length the length in bytes of each vector
+	 * @param dest the buffer containing the destination vectors
+	 * @param destStart the offset of the first destination vector in dest
+	 * @param destStride the distance in bytes between the first bytes of two 
+	 * 			consecutive destination vectors
+	 */
+	public static void multiplyMatrix(byte[] coefficients, int coefficientsStart, int rows, int columns,
+										byte[] src, int srcStart, int length, 
+										byte[] dest, int destStart, int destStride) {
+		
+		int blockLength = Math.max(MIN_BLOCK_LENGTH, CACHE_BLOCK_SIZE / rows);
+		
+		for (int start = 0; start < length; start += blockLength) {
+			
+			int blockEnd = Math.min(start + blockLength, length);
+			
+			for (int i = 0; i < columns; i++) {
+				
+				int srcBlock = srcStart + i * length + start;
+				
+				for (int r = 0; r < rows; r++) {
+					
+					int coeff = coefficients[coefficientsStart + r * columns + i] & 0xFF;
+					
+					multiplyAndAdd(dest, destStart + r * destStride + start, blockEnd - start, src, srcBlock, coeff);
+				}
+			}
+		}
+		
+	}
 
 	/**
 	 * Sets a vector to zero.
@@ -91,6 +275,12 @@ public class VectorHelper {
 	 * @param coeff the coefficient used to divide the vector
 	 */
 	public static void divide(byte[] buffer, int bufferStart, int length, int coeff) {
+		
+		if (kernel == KERNEL_VECTOR) {
+			simdKernel.multiply(buffer, bufferStart, length, ff.inverse[coeff]);
+			return;
+		}
+		
 		int bufferEnd = bufferStart + length;
 		
 		for (int i = bufferStart ; i < bufferEnd; i++) {
@@ -99,4 +289,25 @@ public class VectorHelper {
 		}
 	}
 	
+	/**
+	 * Returns the dot product of two vectors
+	 * 
+	 * @param a a buffer containing the first vector
+	 * @param aStart offset of the first byte of the first vector in a
+	 * @param b a buffer containing the second vector
+	 * @param bStart offset of the first byte of the second vector in b
+	 * @param length length in bytes of the vectors
+	 * @return the sum of the products of the coordinates of the vectors
+	 */
+	public static int dotProduct(byte[] a, int aStart, byte[] b, int bStart, int length) {
+		
+		int result = 0;
+		
+		for (int i = 0; i < length; i++) {
+			result ^= ff.mul[a[aStart + i] & 0xFF][b[bStart + i] & 0xFF];
+		}
+		
+		return result;
+	}
+	
 }
@@ -4,6 +4,7 @@
 #include <ncutils.h>
 #include <ncutils_priv.h>
 #include <stdint.h>
+#include "jni_buffers.h"
 
 typedef struct decoder_data { 
 	p_packet_decoder_t decoder;
@@ -47,76 +48,92 @@ JNIEXPORT jlong JNICALL Java_ch_epfl_arni_ncutils_impl_NativeDecoder_createDecod
 
 }
 
-JNIEXPORT void JNICALL Java_ch_epfl_arni_ncutils_impl_NativeDecoder_getSegmentNative (JNIEnv *env, jobject this, jlong handle, jbyteArray segment, jint offset) {
+/* The segments and the packets are either byte arrays or direct byte buffers,
+ * the bounds are checked by the Java code. */
+
+JNIEXPORT void JNICALL Java_ch_epfl_arni_ncutils_impl_NativeDecoder_getSegmentNative (JNIEnv *env, jobject this, jlong handle, jobject segment, jint offset) {
 
 	int i;
-	char* data;
+	ffe* data;
+	ffe* segment_d;
 	int offset2;
 	decoder_data_t *decoder_data = (decoder_data_t*) (intptr_t) handle;
 
 	if (!handle) return;
 
+	segment_d = direct_address(env, segment);
+
+	/* only the decoded packets are written, the rest of the segment, 
+	 * including the bytes after the last packet, is left untouched */
 	for ( i = 0 ; i < pd_decoded_packets_get_count(decoder_data->decoder) ; i++) {
-		offset2 = pd_decoded_packets_get_id(decoder_data->decoder, i) * decoder_data->packet_len;
+		offset2 = offset + pd_decoded_packets_get_id(decoder_data->decoder, i) * decoder_data->packet_len;
 		data = pd_decoded_packets_get_packet(decoder_data->decoder, i);
-		(*env)->SetByteArrayRegion(env, segment, offset + offset2, decoder_data->packet_len, data);
+		
+		if (segment_d) {
+			memcpy(segment_d + offset2, data, decoder_data->packet_len);
+		} else {
+			(*env)->SetByteArrayRegion(env, (jbyteArray) segment, offset2, decoder_data->packet_len, (jbyte *) data);
+		}
 	}
 
 }
 
-JNIEXPORT jboolean JNICALL Java_ch_epfl_arni_ncutils_impl_NativeDecoder_addPacketNative (JNIEnv *env, jobject this, jlong handle, jbyteArray packet, jint offset) {
+JNIEXPORT jboolean JNICALL Java_ch_epfl_arni_ncutils_impl_NativeDecoder_addPacketNative (JNIEnv *env, jobject this, jlong handle, jobject packet, jint offset) {
 	jboolean innovative;
+	int length;
 
-	ffe* coded_packet;
+	ffe* packet_a, *packet_d;
 	decoder_data_t *decoder_data = (decoder_data_t *) (intptr_t) handle;
 
-	if (!handle) return;
+	if (!handle) return 0;
 
-	coded_packet = (ffe *) malloc( sizeof(ffe) * (decoder_data->packet_len + decoder_data->packets_per_segment));
+	length = decoder_data->packets_per_segment + decoder_data->packet_len;
 
-	if (!coded_packet) {
-		jclass excCls = (*env)->FindClass(env,
-				"java/lang/IllegalStateException");
-		if (excCls != 0)
-			(*env)->ThrowNew(env, excCls, "Cannot allocate memory for coded packet");
-		return 0;
-	}
+	packet_d = direct_address(env, packet);
+	packet_a = acquire_region(env, packet, packet_d, offset, length, 1);
 
-	(*env)->GetByteArrayRegion(env, packet, offset, decoder_data->packets_per_segment + decoder_data->packet_len, coded_packet );
+	if (!packet_a) return 0;
 
-	innovative = pd_add_packet(decoder_data->decoder, coded_packet);
-	
-	free(coded_packet);
+	/* the decoder keeps its own copy of the packet */
+	innovative = pd_add_packet(decoder_data->decoder, packet_a);
+
+	release_region(env, packet, packet_d, offset, length, packet_a, 0);
 
 	return innovative;
 }
 
 JNIEXPORT void JNICALL Java_ch_epfl_arni_ncutils_impl_NativeDecoder_getPacketNative
-  (JNIEnv *env, jobject this, jlong handle, jbyteArray packet, jint offset) {
+  (JNIEnv *env, jobject this, jlong handle, jobject packet, jint offset) {
 	
-	ffe* coded_packet;
+	int length;
+	ffe* packet_a, *packet_d;
 	decoder_data_t *decoder_data = (decoder_data_t*) (intptr_t)  handle;
         
-        if (!handle) return;
+	if (!handle) return;
 
-	coded_packet = (ffe *) malloc( sizeof(ffe) * (decoder_data->packet_len + decoder_data->packets_per_segment));
+	length = decoder_data->packets_per_segment + decoder_data->packet_len;
 
-	if (!coded_packet) {
-		jclass excCls = (*env)->FindClass(env,
-				"java/lang/IllegalStateException");
-		if (excCls != 0)
-			(*env)->ThrowNew(env, excCls, "Cannot allocate memory for coded packet");
-		return;
-	}
+	packet_d = direct_address(env, packet);
+	packet_a = acquire_region(env, packet, packet_d, offset, length, 0);
+
+	if (!packet_a) return;
 
-	pd_get_packet(decoder_data->decoder, coded_packet);
+	pd_get_packet(decoder_data->decoder, packet_a);
 
-	(*env)->SetByteArrayRegion(env, packet, offset, decoder_data->packets_per_segment + decoder_data->packet_len, coded_packet);
+	release_region(env, packet, packet_d, offset, length, packet_a, 1);
 	
 }
 
+JNIEXPORT void JNICALL Java_ch_epfl_arni_ncutils_impl_NativeDecoder_resetNative (JNIEnv *env, jobject this, jlong handle) {
+
+	decoder_data_t *decoder_data = (decoder_data_t*) (intptr_t)  handle;
+
+	if (!handle) return;
+
+	pd_reset(decoder_data->decoder);
+}
 
-JNIEXPORT void JNICALL Java_ch_epfl_arni_ncutils_impl_NativeDecoder_disposeNative (JNIEnv *env, jobject this, jlong handle) {
+JNIEXPORT void JNICALL Java_ch_epfl_arni_ncutils_impl_NativeDecoder_disposeNative (JNIEnv *env, jclass class, jlong handle) {
 
 	decoder_data_t *decoder_data = (decoder_data_t*) (intptr_t)  handle;
 
@@ -1,84 +1,247 @@
 #include <malloc.h>
+#include <stdlib.h>
+#include <string.h>
 #include <jni.h>
 #include <ncutils.h>
+#include <ncutils_priv.h>
 #include <field_tables.h>
+#include "jni_buffers.h"
 
-JNIEXPORT void JNICALL Java_ch_epfl_arni_ncutils_impl_NativeEncoder_createPacket (JNIEnv *env, jclass class, jbyteArray segment, jint offset, jint len, jbyteArray output, jint output_offset, jint coords) {
+/* The segment and the packets are either byte arrays or direct byte buffers,
+ * the bounds are checked by the Java code. The rows of the segment are read
+ * one at a time so that encoding a packet doesn't copy the whole segment. */
 
+/* Throws an IllegalStateException if a native buffer cannot be allocated */
+static void throw_out_of_memory(JNIEnv *env, const char *message) {
 
-	int packet_len,i,j;
+	jclass excCls = (*env)->FindClass(env,
+	    "java/lang/IllegalStateException");
+	if (excCls != 0)
+	    (*env)->ThrowNew(env, excCls, message);
 
-	jbyte *packet_a, *segment_a;
+}
+
+/* creates a random linear combination of non_zero distinct original packets,
+ * the original packets of an array are read one at a time in row */
+static void create_sparse_packet(JNIEnv *env, jobject segment, ffe *segment_d, jint offset, int packet_len, ffe *packet, int coords, int non_zero, ffe *row) {
+
+	int i,j;
+
+	for ( j = 0 ; j < non_zero ; j++) {
+
+		// draw an original packet that was not chosen yet
+		do {
+			i = lrand48() % coords;
+		} while (packet[i]);
+
+		packet[i] = 1 + lrand48() % 255;
+
+		ffe_multiply_and_add(packet + coords, read_region(env, segment, segment_d, offset + i*packet_len, packet_len, row), packet_len, packet[i]);
+
+	}
+
+}
+
+JNIEXPORT void JNICALL Java_ch_epfl_arni_ncutils_impl_NativeEncoder_createPacket (JNIEnv *env, jclass class, jobject segment, jint offset, jint len, jobject output, jint output_offset, jint coords, jint non_zero) {
+
+	int packet_len,i;
+
+	ffe *packet_a, *packet_d, *segment_d, *row;
 
 	// this is the lenght of the encoded packet
-	packet_len = len / coords;	
+	packet_len = len / coords;
 
-	// check that we have enough space in the destination vector
-	if ( (*env)->GetArrayLength(env, output) - output_offset < packet_len + coords) {
-		jclass excCls = (*env)->FindClass(env, 
-		    "java/lang/IllegalArgumentException");
-		if (excCls != 0)
-		    (*env)->ThrowNew(env, excCls, "The output buffer is too short");
+	row = (ffe *) malloc(packet_len);
 
+	if (!row) {
+		throw_out_of_memory(env, "Cannot allocate memory for packet");
 		return;
+	}
+
+	segment_d = direct_address(env, segment);
+	packet_d = direct_address(env, output);
+
+	packet_a = acquire_region(env, output, packet_d, output_offset, coords + packet_len, 0);
+
+	if (!packet_a) {
+		free(row);
+		return;
+	}
+
+	// clear the output vector
+	memset(packet_a, 0, coords + packet_len);
+
+	if ( non_zero < coords ) {
+
+		// sparse packets only read the original packets they combine
+		create_sparse_packet(env, segment, segment_d, offset, packet_len, packet_a, coords, non_zero, row);
+
+	} else {
+
+		// create a random linear combination
+		ffe coefficient;
+		for ( i = 0 ; i < coords; i++) {
+
+			coefficient = (lrand48() & 0xFF );
+
+			packet_a[i] = coefficient;
+
+			ffe_multiply_and_add(packet_a + coords, read_region(env, segment, segment_d, offset + i*packet_len, packet_len, row), packet_len, coefficient);
+
+		}
+
+	}
+
+	release_region(env, output, packet_d, output_offset, coords + packet_len, packet_a, 1);
+
+	free(row);
+
+}
+
+JNIEXPORT void JNICALL Java_ch_epfl_arni_ncutils_impl_NativeEncoder_createOriginalPacket (JNIEnv *env, jclass class, jobject segment, jint offset, jint len, jobject output, jint output_offset, jint coords, jint index, jboolean seed_header) {
+
+	int packet_len, header_len;
+
+	ffe *packet_a, *packet_d, *segment_d;
+
+	packet_len = len / coords;
+	header_len = seed_header ? NCUTILS_SEED_HEADER_LENGTH : coords;
+
+	segment_d = direct_address(env, segment);
+	packet_d = direct_address(env, output);
 
+	packet_a = acquire_region(env, output, packet_d, output_offset, header_len + packet_len, 0);
+
+	if (!packet_a) return;
+
+	memset(packet_a, 0, header_len);
+
+	// the header is either an elementary coding vector or the index of the packet
+	if (seed_header) {
+		packet_a[0] = NCUTILS_FORMAT_ORIGINAL;
+		packet_a[1] = (index >> 24) & 0xFF;
+		packet_a[2] = (index >> 16) & 0xFF;
+		packet_a[3] = (index >> 8) & 0xFF;
+		packet_a[4] = index & 0xFF;
+	} else {
+		packet_a[index] = 1;
 	}
-	
-	// allocate some memory to store the segment
-	segment_a = (jbyte *) malloc( len * sizeof(jbyte));
 
-	if (!segment_a) {
-		jclass excCls = (*env)->FindClass(env, 
-		    "java/lang/IllegalStateException");
+	// the payload is copied directly after the header
+	if (segment_d) {
+		memcpy(packet_a + header_len, segment_d + offset + index * packet_len, packet_len);
+	} else {
+		(*env)->GetByteArrayRegion(env, (jbyteArray) segment, offset + index * packet_len, packet_len, (jbyte *) packet_a + header_len);
+	}
+
+	release_region(env, output, packet_d, output_offset, header_len + packet_len, packet_a, 1);
+
+}
+
+JNIEXPORT void JNICALL Java_ch_epfl_arni_ncutils_impl_NativeEncoder_createSeedHeaderPacket (JNIEnv *env, jclass class, jobject segment, jint offset, jint len, jobject output, jint output_offset, jint coords, jint seed, jint non_zero) {
+
+	int packet_len,i;
+
+	ffe *packet_a, *packet_d, *segment_d, *coefficients, *row;
+
+	packet_len = len / coords;
+
+	coefficients = (ffe *) malloc( coords * sizeof(ffe) + packet_len);
+
+	if (!coefficients) {
+		throw_out_of_memory(env, "Cannot allocate memory for packet");
+		return;
+	}
+
+	row = coefficients + coords;
+
+	if (ncutils_expand_seed((uint32_t) seed, non_zero, coefficients, coords) != 0) {
+		jclass excCls = (*env)->FindClass(env,
+		    "java/lang/IllegalArgumentException");
 		if (excCls != 0)
-		    (*env)->ThrowNew(env, excCls, "Cannot allocate memory for segment");
+		    (*env)->ThrowNew(env, excCls, "Invalid number of non zero coefficients");
+		free(coefficients);
 		return;
 	}
 
-	// get a copy of the segment
-	(*env)->GetByteArrayRegion(env, segment, offset, len, segment_a);
+	segment_d = direct_address(env, segment);
+	packet_d = direct_address(env, output);
 
-	// create an arry that will contain the packet
-	packet_a = (jbyte *) malloc( (coords + packet_len) * sizeof(jbyte));
+	packet_a = acquire_region(env, output, packet_d, output_offset, NCUTILS_SEED_HEADER_LENGTH + packet_len, 0);
 
 	if (!packet_a) {
-		jclass excCls = (*env)->FindClass(env, 
-		    "java/lang/IllegalStateException");
-		free(segment_a);
-		if (excCls != 0)
-		    (*env)->ThrowNew(env, excCls, "Cannot allocate memory for packet");
+		free(coefficients);
 		return;
 	}
 
-	// clear the output vector
-	for ( j = 0 ; j < coords + packet_len ; j++) {
-		packet_a[j] = 0;
-	}
+	// the header contains the seed and the number of non zero coefficients
+	packet_a[0] = NCUTILS_FORMAT_SEED;
+	packet_a[1] = (seed >> 24) & 0xFF;
+	packet_a[2] = (seed >> 16) & 0xFF;
+	packet_a[3] = (seed >> 8) & 0xFF;
+	packet_a[4] = seed & 0xFF;
+	packet_a[5] = (non_zero >> 8) & 0xFF;
+	packet_a[6] = non_zero & 0xFF;
 
-	// create a random linear combination
-	int coefficient, d;
+	memset(packet_a + NCUTILS_SEED_HEADER_LENGTH, 0, packet_len);
+
+	// combine the original packets with a non zero coefficient
 	for ( i = 0 ; i < coords; i++) {
-		
-		coefficient = (lrand48() & 0xFF );
 
-		packet_a[i] = coefficient;
+		if (coefficients[i] == 0) continue;
 
-		// pre-multiply by 256 the coefficient to do the table lookup
-		coefficient = coefficient << 8;
+		ffe_multiply_and_add(packet_a + NCUTILS_SEED_HEADER_LENGTH, read_region(env, segment, segment_d, offset + i*packet_len, packet_len, row), packet_len, coefficients[i]);
 
-		for ( j = 0 ; j < packet_len ; j++) {
-			d = ((int) segment_a[i*packet_len + j]) & 0xFF;
-			packet_a[coords + j] = packet_a[coords + j] ^ mul_table[coefficient  + d];
-		}
-
-	} 
+	}
 
-	// copy the encoded packet to the appropriate buffer
-	(*env)->SetByteArrayRegion(env, output, output_offset, packet_len+coords, packet_a);	
+	release_region(env, output, packet_d, output_offset, NCUTILS_SEED_HEADER_LENGTH + packet_len, packet_a, 1);
 
-	// free allocated memory
-	free(packet_a);
-	free(segment_a);
+	free(coefficients);
 
 }
 
+JNIEXPORT void JNICALL Java_ch_epfl_arni_ncutils_impl_NativeEncoder_createPackets (JNIEnv *env, jclass class, jobject segment, jint offset, jint len, jbyteArray coefficients, jint count, jobject output, jint output_offset, jint coords, jint header_len) {
+
+	int packet_len,p,output_len;
+
+	ffe *packets_a, *segment_a, *packets_d, *segment_d, *coefficients_a;
+
+	packet_len = len / coords;
+	output_len = count * (packet_len + header_len);
+
+	coefficients_a = (ffe *) malloc( count * coords * sizeof(ffe));
+
+	if (!coefficients_a) {
+		throw_out_of_memory(env, "Cannot allocate memory for packets");
+		return;
+	}
+
+	(*env)->GetByteArrayRegion(env, coefficients, 0, count * coords, (jbyte *) coefficients_a);
+
+	segment_d = direct_address(env, segment);
+	packets_d = direct_address(env, output);
+
+	// the headers written by the caller are copied in with the payloads
+	segment_a = acquire_region(env, segment, segment_d, offset, len, 1);
+	packets_a = acquire_region(env, output, packets_d, output_offset, output_len, 1);
+
+	if (!segment_a || !packets_a) {
+		release_region(env, output, packets_d, output_offset, output_len, packets_a, 0);
+		release_region(env, segment, segment_d, offset, len, segment_a, 0);
+		free(coefficients_a);
+		return;
+	}
+
+	// the payloads follow the headers written by the caller
+	for ( p = 0 ; p < count ; p++) {
+		memset(packets_a + p * (packet_len + header_len) + header_len, 0, packet_len);
+	}
+
+	ffe_multiply_matrix(packets_a + header_len, packet_len + header_len, coefficients_a, count, coords, segment_a, packet_len);
+
+	release_region(env, output, packets_d, output_offset, output_len, packets_a, 1);
+	release_region(env, segment, segment_d, offset, len, segment_a, 0);
+
+	free(coefficients_a);
+
+}
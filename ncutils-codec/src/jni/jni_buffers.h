@@ -0,0 +1,73 @@
+#ifndef _JNI_BUFFERS_H
+#define	_JNI_BUFFERS_H
+
+#include <stdlib.h>
+#include <jni.h>
+#include <ncutils.h>
+
+/*
+ * The segments and the packets passed to the native code are either direct
+ * java.nio.ByteBuffers or byte arrays. The address of a direct buffer is
+ * used as is. The region of an array used by a call is copied in a native
+ * buffer with GetByteArrayRegion and copied back with SetByteArrayRegion,
+ * arrays are never pinned so the encoding and the elimination never run
+ * inside a JNI critical region where they would block the garbage collector.
+ */
+
+/* Returns the address of a direct buffer, NULL if the buffer is an array */
+static inline ffe* direct_address(JNIEnv *env, jobject buffer) {
+	return (ffe *) (*env)->GetDirectBufferAddress(env, buffer);
+}
+
+/* Returns the address of the len bytes starting at offset in a buffer,
+ * direct is the value returned by direct_address for the buffer. The region
+ * of an array is copied in a native buffer if copy_in is set. Returns NULL
+ * with a pending exception if the native buffer cannot be allocated. */
+static inline ffe* acquire_region(JNIEnv *env, jobject buffer, ffe* direct, jint offset, jint len, int copy_in) {
+
+	ffe *region;
+
+	if (direct) return direct + offset;
+
+	region = (ffe *) malloc(len > 0 ? len : 1);
+
+	if (!region) {
+		jclass excCls = (*env)->FindClass(env,
+				"java/lang/IllegalStateException");
+		if (excCls != 0)
+			(*env)->ThrowNew(env, excCls, "Cannot allocate memory for buffer");
+		return NULL;
+	}
+
+	if (copy_in) {
+		(*env)->GetByteArrayRegion(env, (jbyteArray) buffer, offset, len, (jbyte *) region);
+	}
+
+	return region;
+}
+
+/* Releases a region obtained with acquire_region, the native buffer is
+ * copied back to the array if copy_out is set */
+static inline void release_region(JNIEnv *env, jobject buffer, ffe* direct, jint offset, jint len, ffe* region, int copy_out) {
+
+	if (direct || !region) return;
+
+	if (copy_out) {
+		(*env)->SetByteArrayRegion(env, (jbyteArray) buffer, offset, len, (jbyte *) region);
+	}
+
+	free(region);
+}
+
+/* Returns the address of the len bytes starting at offset in a buffer that
+ * is only read, the region of an array is copied in scratch */
+static inline ffe* read_region(JNIEnv *env, jobject buffer, ffe* direct, jint offset, jint len, ffe* scratch) {
+
+	if (direct) return direct + offset;
+
+	(*env)->GetByteArrayRegion(env, (jbyteArray) buffer, offset, len, (jbyte *) scratch);
+
+	return scratch;
+}
+
+#endif	/* _JNI_BUFFERS_H */
@@ -29,17 +29,430 @@ package ch.epfl.arni.ncutils;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Random;
 
 import org.junit.Test;
 
+import ch.epfl.arni.ncutils.impl.SeedHeader;
+import ch.epfl.arni.ncutils.impl.SeedHeaderDecoder;
+
 public abstract class AbstractDecoderTest {
 	
 	public abstract Decoder createDecoder(int segmentLength, int packetsPerSegment);
 	
 	public abstract Encoder createEncoder(byte[] segment, int offset, int length, int packetsPerSegment);
 	
+	public abstract Encoder createSystematicEncoder(byte[] segment, int offset, int length, int packetsPerSegment);
+	
+	public abstract Encoder createSparseEncoder(byte[] segment, int offset, int length, int packetsPerSegment, int nonZeroCoefficients);
+	
+	public abstract Encoder createSeedHeaderEncoder(byte[] segment, int offset, int length, int packetsPerSegment, int nonZeroCoefficients);
+	
+	@Test
+	public void testSeedHeader() {
+		
+		byte [] segment = new byte[20000];
+		
+		new Random().nextBytes(segment);
+		
+		for (int k : new int[] {3, 20}) {
+			
+			Decoder decoder = new SeedHeaderDecoder(createDecoder(segment.length, 20), segment.length, 20);
+			
+			/* a relay that decodes and recodes the packets */
+			Decoder relay = new SeedHeaderDecoder(createDecoder(segment.length, 20), segment.length, 20);
+			Decoder receiver = new SeedHeaderDecoder(createDecoder(segment.length, 20), segment.length, 20);
+			
+			Encoder encoder = createSeedHeaderEncoder(segment, 0, segment.length, 20, k);
+			
+			assertEquals(SeedHeader.HEADER_LENGTH + segment.length / 20, encoder.getPacketLength());
+			
+			byte [] packet = new byte[encoder.getPacketLength()];
+			byte [] recoded = new byte[relay.getPacketLength()];
+			
+			while (!decoder.isDecoded() || !receiver.isDecoded()) {
+				
+				encoder.getPacket(packet, 0);
+				
+				assertEquals(SeedHeader.FORMAT_SEED, packet[0]);
+				
+				decoder.addPacket(packet, 0);
+				relay.addPacket(packet, 0);
+				
+				relay.getPacket(recoded, 0);
+				
+				assertEquals(SeedHeader.FORMAT_EXPLICIT, recoded[0]);
+				
+				receiver.addPacket(recoded, 0);
+			}
+			
+			byte [] decodedSegment = new byte[segment.length];
+			
+			decoder.getSegment(decodedSegment, 0);
+			
+			assertArrayEquals(segment, decodedSegment);
+			
+			receiver.getSegment(decodedSegment, 0);
+			
+			assertArrayEquals(segment, decodedSegment);
+		}
+		
+	}
+	
+	@Test
+	public void testHostileSeedHeader() {
+		
+		Decoder decoder = new SeedHeaderDecoder(createDecoder(2000, 20), 2000, 20);
+		
+		byte [] packet = new byte[decoder.getPacketLength()];
+		
+		/* more non zero coefficients than packets, an out of range original 
+		 * packet and an unknown format */
+		int [][] headers = { 
+				{ SeedHeader.FORMAT_SEED, 1234, 21 }, 
+				{ SeedHeader.FORMAT_SEED, 1234, 0xFFFF }, 
+				{ SeedHeader.FORMAT_ORIGINAL, -1, 0 }, 
+				{ SeedHeader.FORMAT_ORIGINAL, 20, 0 }, 
+				{ SeedHeader.FORMAT_ORIGINAL, Integer.MAX_VALUE, 0 }, 
+				{ 0, 0, 0 } };
+		
+		for (int [] header : headers) {
+			
+			SeedHeader.writeHeader(packet, 0, header[0], header[1], header[2]);
+			
+			try {
+				decoder.addPacket(packet, 0);
+				fail("The packet should be rejected");
+			} catch (IllegalArgumentException e) {
+			}
+			
+			assertEquals(0, decoder.getRank());
+		}
+		
+		/* the limits are accepted */
+		SeedHeader.writeHeader(packet, 0, SeedHeader.FORMAT_SEED, 1234, 20);
+		decoder.addPacket(packet, 0);
+		
+		SeedHeader.writeHeader(packet, 0, SeedHeader.FORMAT_ORIGINAL, 19, 0);
+		decoder.addPacket(packet, 0);
+		
+		assertEquals(2, decoder.getRank());
+		
+		decoder.dispose();
+	}
+	
+	@Test
+	public void testReset() {
+		
+		byte [] segment = new byte[20000];
+		
+		Random r = new Random();
+		
+		Decoder decoder = createDecoder(segment.length, 20);
+		
+		byte [] decodedSegment = new byte[segment.length];
+		
+		/* the first segment is only partially decoded */
+		for (int round = 0; round < 3; round++) {
+			
+			r.nextBytes(segment);
+			
+			Encoder encoder = createEncoder(segment, 0, segment.length, 20);
+			
+			byte [] packet = new byte[encoder.getPacketLength()];
+			
+			int packets = round == 0 ? 10 : Integer.MAX_VALUE;
+			
+			for (int i = 0; i < packets && !decoder.isDecoded(); i++) {
+				encoder.getPacket(packet, 0);
+				decoder.addPacket(packet, 0);
+			}
+			
+			if (round > 0) {
+				decoder.getSegment(decodedSegment, 0);
+				assertArrayEquals(segment, decodedSegment);
+			}
+			
+			decoder.reset();
+			
+			assertEquals(0, decoder.getRank());
+		}
+		
+		decoder.dispose();
+	}
+	
+	@Test
+	public void testByteBufferSegment() {
+		
+		byte [] segment = new byte[2000];
+		new Random().nextBytes(segment);
+		
+		Decoder decoder = createDecoder(segment.length, 20);
+		Encoder encoder = createEncoder(segment, 0, segment.length, 20);
+		
+		byte [] packet = new byte[encoder.getPacketLength()];
+		
+		while (!decoder.isDecoded()) {
+			encoder.getPacket(packet, 0);
+			decoder.addPacket(packet, 0);
+		}
+		
+		/* the segment is written at an offset, the position is not changed */
+		for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(segment.length + 10), ByteBuffer.allocateDirect(segment.length + 10) }) {
+			
+			decoder.getSegment(buffer, 10);
+			
+			assertEquals(0, buffer.position());
+			
+			byte [] decodedSegment = new byte[segment.length];
+			buffer.position(10);
+			buffer.get(decodedSegment);
+			
+			assertArrayEquals(segment, decodedSegment);
+		}
+		
+		decoder.dispose();
+	}
+	
+	@Test
+	public void testSegmentTail() {
+		
+		Random r = new Random(3);
+		
+		/* the segment lengths are not multiples of the packets per segment */
+		for (int segmentLength = 1000; segmentLength < 1020; segmentLength++) {
+			
+			byte [] segment = new byte[segmentLength];
+			r.nextBytes(segment);
+			
+			Decoder decoder = createDecoder(segment.length, 7);
+			Encoder encoder = createEncoder(segment, 0, segment.length, 7);
+			
+			byte [] packet = new byte[encoder.getPacketLength()];
+			
+			while (!decoder.isDecoded()) {
+				encoder.getPacket(packet, 0);
+				decoder.addPacket(packet, 0);
+			}
+			
+			int carried = (segmentLength / 7) * 7;
+			
+			/* the bytes after the last packet keep their previous value */
+			byte [] decodedSegment = new byte[segmentLength + 3];
+			Arrays.fill(decodedSegment, (byte) 0x5A);
+			decoder.getSegment(decodedSegment, 3);
+			
+			assertArrayEquals(Arrays.copyOfRange(segment, 0, carried), Arrays.copyOfRange(decodedSegment, 3, 3 + carried));
+			
+			for (int i = 3 + carried; i < decodedSegment.length; i++) {
+				assertEquals(0x5A, decodedSegment[i]);
+			}
+			
+			ByteBuffer buffer = ByteBuffer.allocateDirect(segmentLength);
+			while (buffer.hasRemaining()) buffer.put((byte) 0x5A);
+			decoder.getSegment(buffer, 0);
+			
+			for (int i = carried; i < segmentLength; i++) {
+				assertEquals(0x5A, buffer.get(i));
+			}
+			
+			decoder.dispose();
+		}
+	}
+	
+	@Test
+	public void testDispose() {
+		
+		byte [] segment = new byte[2000];
+		
+		new Random().nextBytes(segment);
+		
+		Encoder encoder = createEncoder(segment, 0, segment.length, 10);
+		
+		byte [] packet = new byte[encoder.getPacketLength()];
+		byte [] decodedSegment = new byte[segment.length];
+		
+		try (Decoder decoder = createDecoder(segment.length, 10)) {
+			
+			while (!decoder.isDecoded()) {
+				encoder.getPacket(packet, 0);
+				decoder.addPacket(packet, 0);
+			}
+			
+			decoder.getSegment(decodedSegment, 0);
+			
+			/* disposing more than once has no effect */
+			decoder.dispose();
+			decoder.dispose();
+		}
+		
+		assertArrayEquals(segment, decodedSegment);
+	}
+	
+	@Test
+	public void testOffsets() {
+		
+		byte [] buffer = new byte[20100];
+		
+		new Random().nextBytes(buffer);
+		
+		/* the segment and the packets don't start at the beginning of the buffers */
+		Decoder decoder = createDecoder(20000, 20);
+		
+		Encoder encoder = createEncoder(buffer, 100, 20000, 20);
+		
+		byte [] packet = new byte[5 + encoder.getPacketLength()];
+		
+		while (!decoder.isDecoded()) {
+			encoder.getPacket(packet, 5);
+			decoder.addPacket(packet, 5);
+		}
+		
+		byte [] decodedSegment = new byte[20007];
+		
+		decoder.getSegment(decodedSegment, 7);
+		
+		assertArrayEquals(Arrays.copyOfRange(buffer, 100, 20100), Arrays.copyOfRange(decodedSegment, 7, 20007));
+		
+	}
+	
+	@Test
+	public void testBatch() {
+		
+		byte [] segment = new byte[20000];
+		
+		new Random().nextBytes(segment);
+		
+		Encoder[] encoders = new Encoder[] {
+				createEncoder(segment, 0, segment.length, 20),
+				createSystematicEncoder(segment, 0, segment.length, 20),
+				createSparseEncoder(segment, 0, segment.length, 20, 3),
+				createSeedHeaderEncoder(segment, 0, segment.length, 20, 20)
+		};
+		
+		for (int e = 0 ; e < encoders.length ; e++) {
+			
+			Encoder encoder = encoders[e];
+			
+			Decoder decoder = createDecoder(segment.length, 20);
+			
+			if (e == 3) {
+				decoder = new SeedHeaderDecoder(decoder, segment.length, 20);
+			}
+			
+			int packetLength = encoder.getPacketLength();
+			
+			/* the packets are written after an offset, in batches of different sizes */
+			for (int count = 7 ; !decoder.isDecoded() ; count = count % 9 + 1) {
+				
+				byte [] packets = new byte[3 + count * packetLength];
+				
+				encoder.getPackets(packets, 3, count);
+				
+				for (int i = 0 ; i < count ; i++) {
+					decoder.addPacket(packets, 3 + i * packetLength);
+				}
+			}
+			
+			byte [] decodedSegment = new byte[segment.length];
+			
+			decoder.getSegment(decodedSegment, 0);
+			
+			assertArrayEquals(segment, decodedSegment);
+		}
+		
+	}
+	
+	@Test
+	public void testSparse() {
+		
+		byte [] segment = new byte[20000];
+		
+		new Random().nextBytes(segment);
+		
+		for (int k : new int[] {1, 3, 10}) {
+			
+			Decoder decoder = createDecoder(segment.length, 20);
+			
+			Encoder encoder = createSparseEncoder(segment, 0, segment.length, 20, k);
+			
+			byte [] packet = new byte[20 + segment.length / 20];
+			
+			while (!decoder.isDecoded()) {
+				
+				encoder.getPacket(packet, 0);
+				
+				int nonZero = 0;
+				for (int i = 0 ; i < 20 ; i++) {
+					if (packet[i] != 0) nonZero++;
+				}
+				assertEquals(k, nonZero);
+				
+				decoder.addPacket(packet, 0);
+			}
+			
+			byte [] decodedSegment = new byte[segment.length];
+			
+			decoder.getSegment(decodedSegment, 0);
+			
+			assertArrayEquals(segment, decodedSegment);
+		}
+		
+	}
+	
+	@Test
+	public void testSystematic() {
+		
+		byte [] segment = new byte[20000];
+		
+		new Random().nextBytes(segment);
+		
+		/* without losses the original packets are enough */
+		Decoder decoder = createDecoder(segment.length, 20);
+		
+		Encoder encoder = createSystematicEncoder(segment, 0, segment.length, 20);
+		
+		/* the same buffer is used for all the packets */
+		byte [] packet = new byte[20 + segment.length / 20];
+		
+		for (int i = 0 ; i < 20 ; i++) {
+			encoder.getPacket(packet, 0);
+			assertEquals(1, packet[i]);
+			decoder.addPacket(packet, 0);
+		}
+		
+		assertEquals(true, decoder.isDecoded());
+		
+		byte [] decodedSegment = new byte[segment.length];
+		
+		decoder.getSegment(decodedSegment, 0);
+		
+		assertArrayEquals(segment, decodedSegment);
+		
+		/* with losses the coded packets replace the lost original packets */
+		decoder = createDecoder(segment.length, 20);
+		
+		encoder = createSystematicEncoder(segment, 0, segment.length, 20);
+		
+		for (int i = 0 ; !decoder.isDecoded() ; i++) {
+			
+			encoder.getPacket(packet, 0);
+			
+			if (i % 7 == 3) continue;
+			
+			decoder.addPacket(packet, 0);
+		}
+		
+		decoder.getSegment(decodedSegment, 0);
+		
+		assertArrayEquals(segment, decodedSegment);
+		
+	}
+	
 	@Test
 	public void test() {
 		
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ch.epfl.arni.ncutils;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import ch.epfl.arni.ncutils.impl.JavaDecoder;
+import ch.epfl.arni.ncutils.impl.JavaEncoder;
+
+public class DecoderPoolTest {
+	
+	private static final int SEGMENT_LENGTH = 2000;
+	
+	private static final int PACKETS = 10;
+	
+	/** a pool of java decoders that counts the decoders created */
+	private static class CountingPool extends DecoderPool {
+		
+		final AtomicInteger created = new AtomicInteger();
+		
+		CountingPool(long maxMemory, long timeoutMillis) {
+			super(SEGMENT_LENGTH, PACKETS, maxMemory, timeoutMillis);
+		}
+		
+		@Override
+		protected Decoder createDecoder(int segmentLength, int packetsPerSegment) {
+			created.incrementAndGet();
+			return new JavaDecoder(segmentLength, packetsPerSegment);
+		}
+	}
+	
+	/** a decoder implemented outside the library, it cannot be reset and 
+	 * writes in byte buffers through the default method */
+	private static class PlainDecoder implements Decoder {
+		
+		final Decoder decoder;
+		
+		boolean disposed;
+		
+		PlainDecoder(int segmentLength, int packetsPerSegment) {
+			decoder = new JavaDecoder(segmentLength, packetsPerSegment);
+		}
+		
+		public void getPacket(byte[] buffer, int offset) { decoder.getPacket(buffer, offset); }
+		public int getPacketLength() { return decoder.getPacketLength(); }
+		public void addPacket(byte[] buffer, int offset) { decoder.addPacket(buffer, offset); }
+		public boolean isDecoded() { return decoder.isDecoded(); }
+		public int getRank() { return decoder.getRank(); }
+		public void getSegment(byte[] buffer, int offset) { decoder.getSegment(buffer, offset); }
+		public void dispose() { disposed = true; decoder.dispose(); }
+		public void close() { dispose(); }
+	}
+	
+	@Test
+	public void testRecycling() {
+		
+		CountingPool pool = new CountingPool(4 * DecoderPool.getDecoderMemory(SEGMENT_LENGTH, PACKETS), 0);
+		
+		assertEquals(4, pool.getMaxDecoders());
+		
+		Random r = new Random();
+		
+		byte [] segment = new byte[SEGMENT_LENGTH];
+		byte [] decoded = new byte[SEGMENT_LENGTH];
+		
+		for (long id = 0; id < 20; id++) {
+			
+			r.nextBytes(segment);
+			
+			Encoder encoder = new JavaEncoder(segment, 0, SEGMENT_LENGTH, PACKETS);
+			byte [] packet = new byte[encoder.getPacketLength()];
+			
+			assertFalse(pool.getSegment(id, decoded, 0));
+			
+			do {
+				encoder.getPacket(packet, 0);
+			} while (!pool.addPacket(id, packet, 0));
+			
+			assertEquals(PACKETS, pool.getRank(id));
+			assertTrue(pool.getSegment(id, decoded, 0));
+			assertArrayEquals(segment, decoded);
+			
+			assertEquals(0, pool.getGenerationCount());
+		}
+		
+		/* the same decoder has been used for all the generations */
+		assertEquals(1, pool.created.get());
+		assertEquals(0, pool.getEvictedCount());
+		
+		pool.dispose();
+	}
+	
+	@Test
+	public void testDecodersWithoutReset() {
+		
+		final List<PlainDecoder> created = new ArrayList<PlainDecoder>();
+		
+		DecoderPool pool = new DecoderPool(SEGMENT_LENGTH, PACKETS, DecoderPool.getDecoderMemory(SEGMENT_LENGTH, PACKETS), 0) {
+			@Override
+			protected Decoder createDecoder(int segmentLength, int packetsPerSegment) {
+				PlainDecoder decoder = new PlainDecoder(segmentLength, packetsPerSegment);
+				created.add(decoder);
+				return decoder;
+			}
+		};
+		
+		byte [] segment = new byte[SEGMENT_LENGTH];
+		byte [] decoded = new byte[SEGMENT_LENGTH];
+		
+		new Random().nextBytes(segment);
+		
+		Encoder encoder = new JavaEncoder(segment, 0, SEGMENT_LENGTH, PACKETS);
+		byte [] packet = new byte[encoder.getPacketLength()];
+		
+		for (long id = 0; id < 3; id++) {
+			
+			do {
+				encoder.getPacket(packet, 0);
+			} while (!pool.addPacket(id, packet, 0));
+			
+			assertTrue(pool.getSegment(id, decoded, 0));
+			assertArrayEquals(segment, decoded);
+		}
+		
+		/* the segment is written in a direct buffer through an array */
+		do {
+			encoder.getPacket(packet, 0);
+		} while (!pool.addPacket(3, packet, 0));
+		
+		ByteBuffer buffer = ByteBuffer.allocateDirect(SEGMENT_LENGTH + 5);
+		
+		assertTrue(pool.getSegment(3, buffer, 5));
+		assertEquals(0, buffer.position());
+		
+		buffer.position(5);
+		buffer.get(decoded);
+		assertArrayEquals(segment, decoded);
+		
+		/* the decoders are disposed instead of being reused */
+		assertEquals(4, created.size());
+		assertTrue(created.get(0).disposed);
+		assertTrue(created.get(1).disposed);
+		
+		pool.dispose();
+		
+		assertTrue(created.get(3).disposed);
+	}
+	
+	@Test
+	public void testEviction() throws InterruptedException {
+		
+		CountingPool pool = new CountingPool(2 * DecoderPool.getDecoderMemory(SEGMENT_LENGTH, PACKETS), 0);
+		
+		byte [] segment = new byte[SEGMENT_LENGTH];
+		
+		Encoder encoder = new JavaEncoder(segment, 0, SEGMENT_LENGTH, PACKETS);
+		byte [] packet = new byte[encoder.getPacketLength()];
+		
+		encoder.getPacket(packet, 0);
+		pool.addPacket(1, packet, 0);
+		pool.addPacket(2, packet, 0);
+		
+		/* generation 1 is used more recently than generation 2 */
+		pool.addPacket(1, packet, 0);
+		pool.addPacket(3, packet, 0);
+		
+		assertEquals(2, pool.getGenerationCount());
+		assertEquals(1, pool.getEvictedCount());
+		assertEquals(1, pool.getRank(1));
+		assertEquals(0, pool.getRank(2));
+		assertEquals(1, pool.getRank(3));
+		assertEquals(2, pool.created.get());
+		
+		/* idle generations are evicted after the timeout */
+		pool = new CountingPool(2 * DecoderPool.getDecoderMemory(SEGMENT_LENGTH, PACKETS), 20);
+		
+		pool.addPacket(1, packet, 0);
+		
+		Thread.sleep(50);
+		
+		pool.addPacket(2, packet, 0);
+		
+		assertEquals(1, pool.getGenerationCount());
+		assertEquals(0, pool.getRank(1));
+		assertEquals(1, pool.created.get());
+	}
+	
+	@Test
+	public void testConcurrentPackets() throws InterruptedException {
+		
+		final int generations = 8;
+		
+		final DecoderPool pool = new CountingPool(generations * DecoderPool.getDecoderMemory(SEGMENT_LENGTH, PACKETS), 0);
+		
+		final byte [][] segments = new byte[generations][SEGMENT_LENGTH];
+		final Encoder [] encoders = new Encoder[generations];
+		
+		Random r = new Random();
+		
+		for (int i = 0; i < generations; i++) {
+			r.nextBytes(segments[i]);
+			encoders[i] = new JavaEncoder(segments[i], 0, SEGMENT_LENGTH, PACKETS);
+		}
+		
+		/* each thread sends packets of all the generations */
+		Thread [] threads = new Thread[4];
+		
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				public void run() {
+					byte [] packet = new byte[encoders[0].getPacketLength()];
+					for (int i = 0; i < PACKETS * generations; i++) {
+						int id = i % generations;
+						synchronized (encoders[id]) {
+							encoders[id].getPacket(packet, 0);
+						}
+						pool.addPacket(id, packet, 0);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		byte [] decoded = new byte[SEGMENT_LENGTH];
+		
+		for (int i = 0; i < generations; i++) {
+			assertTrue(pool.getSegment(i, decoded, 0));
+			assertArrayEquals(segments[i], decoded);
+		}
+		
+		pool.dispose();
+	}
+
+}
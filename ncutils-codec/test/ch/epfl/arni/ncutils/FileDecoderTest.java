@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ch.epfl.arni.ncutils;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FileDecoderTest {
+	
+	@Test
+	public void testInterleavedGenerations() throws IOException {
+		
+		int generationLength = 2000;
+		int packets = 10;
+		
+		/* the last generation is shorter than the others */
+		byte [] content = new byte[3 * generationLength + 700];
+		new Random().nextBytes(content);
+		
+		File input = File.createTempFile("ncutils", "bin");
+		input.deleteOnExit();
+		File output = File.createTempFile("ncutils", "bin");
+		output.deleteOnExit();
+		
+		Files.write(input.toPath(), content);
+		
+		FileEncoder encoder = new FileEncoder(input.toPath(), generationLength, packets);
+		
+		/* the memory is enough only for two decoders at a time */
+		long memory = 2 * DecoderPool.getDecoderMemory(generationLength, packets);
+		
+		FileDecoder decoder = new FileDecoder(output.toPath(), content.length, generationLength, packets, memory);
+		
+		assertEquals(encoder.getGenerationCount(), decoder.getGenerationCount());
+		assertEquals(encoder.getPacketLength(), decoder.getPacketLength());
+		
+		/* the packets of two generations at a time are shuffled */ 
+		for (int first = 0; first < encoder.getGenerationCount(); first += 2) {
+			
+			List<byte[]> coded = new ArrayList<byte[]>();
+			
+			for (int generation = first; generation < Math.min(first + 2, encoder.getGenerationCount()); generation++) {
+				for (int i = 0; i < packets + 5; i++) {
+					byte [] packet = new byte[encoder.getPacketLength()];
+					encoder.getPacket(generation, packet, 0);
+					coded.add(packet);
+				}
+			}
+			
+			Collections.shuffle(coded);
+			
+			for (byte [] packet : coded) {
+				decoder.addPacket(packet, 0);
+			}
+		}
+		
+		assertTrue(decoder.isDecoded());
+		assertEquals(encoder.getGenerationCount(), decoder.getWrittenGenerationCount());
+		
+		/* packets of decoded generations are discarded */
+		byte [] packet = new byte[encoder.getPacketLength()];
+		encoder.getPacket(0, packet, 0);
+		assertFalse(decoder.addPacket(packet, 0));
+		
+		decoder.close();
+		encoder.close();
+		
+		assertArrayEquals(content, Files.readAllBytes(output.toPath()));
+	}
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ch.epfl.arni.ncutils;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.epfl.arni.ncutils.impl.JavaDecoder;
+
+public class FileEncoderTest {
+	
+	@Test
+	public void testGenerations() throws IOException {
+		
+		int generationLength = 2000;
+		int packets = 10;
+		
+		/* the last generation is shorter than the others */
+		byte [] content = new byte[3 * generationLength + 700];
+		new Random().nextBytes(content);
+		
+		File file = File.createTempFile("ncutils", "bin");
+		file.deleteOnExit();
+		
+		Files.write(file.toPath(), content);
+		
+		FileEncoder encoder = new FileEncoder(file.toPath(), generationLength, packets);
+		
+		assertEquals(4, encoder.getGenerationCount());
+		assertEquals(content.length, encoder.getFileLength());
+		
+		byte [] batch = new byte[5 * encoder.getPacketLength()];
+		byte [] segment = new byte[generationLength];
+		
+		/* the generations are encoded in reverse order */
+		for (int generation = encoder.getGenerationCount() - 1; generation >= 0; generation--) {
+			
+			Decoder decoder = new JavaDecoder(generationLength, packets);
+			
+			while (!decoder.isDecoded()) {
+				
+				encoder.getPackets(generation, batch, 0, 5);
+				
+				for (int i = 0; i < 5; i++) {
+					int offset = i * encoder.getPacketLength();
+					assertEquals(generation, FileEncoder.getGenerationId(batch, offset));
+					decoder.addPacket(batch, offset + FileEncoder.GENERATION_ID_LENGTH);
+				}
+			}
+			
+			decoder.getSegment(segment, 0);
+			
+			int start = generation * generationLength;
+			int length = Math.min(generationLength, content.length - start);
+			
+			assertArrayEquals(Arrays.copyOfRange(content, start, start + length), Arrays.copyOf(segment, length));
+			
+			for (int i = length; i < generationLength; i++) {
+				assertEquals(0, segment[i]);
+			}
+		}
+		
+		encoder.close();
+	}
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ch.epfl.arni.ncutils;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SlidingWindowTest {
+	
+	@Test
+	public void testLossyStream() {
+		
+		int payloadLength = 100;
+		int windowSize = 16;
+		int sources = 2000;
+		
+		/* the losses are fixed so that they can always be repaired */
+		Random r = new Random(1);
+		
+		byte [][] stream = new byte[sources][payloadLength];
+		
+		SlidingWindowEncoder encoder = new SlidingWindowEncoder(payloadLength, windowSize);
+		SlidingWindowDecoder decoder = new SlidingWindowDecoder(payloadLength, windowSize, 2 * windowSize);
+		
+		assertEquals(encoder.getPacketLength(), decoder.getPacketLength());
+		
+		byte [] packet = new byte[encoder.getPacketLength()];
+		byte [] source = new byte[payloadLength];
+		
+		int released = 0;
+		
+		/* each source packet is sent uncoded followed by a coded packet 
+		 * every two source packets, 10% of the packets are lost */
+		for (int i = 0; i < sources; i++) {
+			
+			r.nextBytes(stream[i]);
+			
+			assertEquals(i, encoder.addSource(stream[i], 0));
+			
+			encoder.getSourcePacket(i, packet, 0);
+			if (r.nextInt(10) != 0) decoder.addPacket(packet, 0);
+			
+			if (i % 2 == 1) {
+				encoder.getPacket(packet, 0);
+				if (r.nextInt(10) != 0) decoder.addPacket(packet, 0);
+			}
+			
+			long sequence;
+			while ((sequence = decoder.getSource(source, 0)) != -1) {
+				assertEquals(released, sequence);
+				assertArrayEquals(stream[(int) sequence], source);
+				released++;
+			}
+		}
+		
+		/* repair the tail of the stream */
+		while (released < sources) {
+			
+			encoder.getPacket(packet, 0);
+			decoder.addPacket(packet, 0);
+			
+			long sequence;
+			while ((sequence = decoder.getSource(source, 0)) != -1) {
+				assertEquals(released, sequence);
+				assertArrayEquals(stream[(int) sequence], source);
+				released++;
+			}
+		}
+		
+		assertEquals(0, decoder.getLostCount());
+		assertTrue(decoder.getRank() <= 2 * windowSize);
+	}
+	
+	@Test
+	public void testGiveUp() {
+		
+		int payloadLength = 50;
+		int windowSize = 8;
+		
+		Random r = new Random();
+		
+		byte [][] stream = new byte[40][payloadLength];
+		
+		SlidingWindowEncoder encoder = new SlidingWindowEncoder(payloadLength, windowSize);
+		SlidingWindowDecoder decoder = new SlidingWindowDecoder(payloadLength, windowSize, windowSize);
+		
+		byte [] packet = new byte[encoder.getPacketLength()];
+		byte [] source = new byte[payloadLength];
+		
+		/* only the source packets after the 20th are received */
+		for (int i = 0; i < stream.length; i++) {
+			
+			r.nextBytes(stream[i]);
+			encoder.addSource(stream[i], 0);
+			
+			if (i >= 20) {
+				encoder.getSourcePacket(i, packet, 0);
+				decoder.addPacket(packet, 0);
+			}
+		}
+		
+		/* the packets before the window of the decoder are given up */
+		assertEquals(stream.length - windowSize, decoder.getLostCount());
+		
+		for (int i = stream.length - windowSize; i < stream.length; i++) {
+			assertEquals(i, decoder.getSource(source, 0));
+			assertTrue(Arrays.equals(stream[i], source));
+		}
+		
+		assertEquals(-1, decoder.getSource(source, 0));
+		
+		/* a packet that combines retired source packets is not used */
+		SlidingWindowEncoder late = new SlidingWindowEncoder(payloadLength, windowSize);
+		late.addSource(stream[0], 0);
+		late.getSourcePacket(0, packet, 0);
+		
+		assertFalse(decoder.addPacket(packet, 0));
+	}
+	
+	@Test
+	public void testSequenceWrapAround() {
+		
+		int payloadLength = 20;
+		int windowSize = 8;
+		
+		/* the low 32 bits of the sequence numbers wrap around in the stream */
+		long first = 0xFFFFFFF0L;
+		
+		Random r = new Random(2);
+		
+		byte [][] stream = new byte[64][payloadLength];
+		
+		SlidingWindowEncoder encoder = new SlidingWindowEncoder(payloadLength, windowSize, first);
+		SlidingWindowDecoder decoder = new SlidingWindowDecoder(payloadLength, windowSize, windowSize, first);
+		
+		byte [] packet = new byte[encoder.getPacketLength()];
+		byte [] source = new byte[payloadLength];
+		
+		int released = 0;
+		
+		/* every fourth source packet is replaced by a coded packet */
+		for (int i = 0; i < stream.length; i++) {
+			
+			r.nextBytes(stream[i]);
+			
+			assertEquals(first + i, encoder.addSource(stream[i], 0));
+			
+			if (i % 4 != 0) {
+				encoder.getSourcePacket(first + i, packet, 0);
+				assertTrue(decoder.addPacket(packet, 0));
+			} else {
+				/* a coded packet can miss the new source packet, with probability 1/256 */
+				while (!decoder.isSourceAvailable()) {
+					encoder.getPacket(packet, 0);
+					decoder.addPacket(packet, 0);
+				}
+			}
+			
+			while (decoder.isSourceAvailable()) {
+				assertEquals(first + released, decoder.getSource(source, 0));
+				assertArrayEquals(stream[released], source);
+				released++;
+			}
+		}
+		
+		assertEquals(stream.length, released);
+		assertEquals(first + stream.length, decoder.getNextSequence());
+		assertEquals(0, decoder.getLostCount());
+	}
+	
+}
@@ -31,10 +31,16 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import ch.epfl.arni.ncutils.DecoderPoolTest;
+import ch.epfl.arni.ncutils.FileDecoderTest;
+import ch.epfl.arni.ncutils.FileEncoderTest;
+import ch.epfl.arni.ncutils.SlidingWindowTest;
+
 @RunWith(Suite.class)
 @SuiteClasses({ JavaCodingVectorDecoderTest.class, JavaDecoderTest.class,
 		JavaEncoderTest.class, FiniteFieldTest.class, NativeDecoderTest.class,
-		NativeEncoderTest.class })
+		NativeEncoderTest.class, VectorHelperTest.class, JavaRelayTest.class,
+		DecoderPoolTest.class, FileEncoderTest.class, FileDecoderTest.class, SlidingWindowTest.class })
 public class AllTests {
 
 }
@@ -240,4 +240,48 @@ public class JavaCodingVectorDecoderTest {
         checkInverse(vectors, inverse, size, inverseOffset);
     }
 
+    @Test
+    public void testProbabilisticCheck() {
+        
+        Random r = new Random(2131231);
+        
+        CodingVectorDecoder d = new CodingVectorDecoder(size);
+        d.setProbabilisticCheck(true);
+        
+        byte[][] vectors = new byte[size][size];
+        int rank = 0;
+        
+        while (rank < size) {
+            
+            byte[] vector = new byte[size];
+            
+            /* combinations of the vectors already added are always rejected */
+            for (int i = 0; i < rank; i++) {
+                VectorHelper.multiplyAndAdd(vector, 0, size, vectors[i], 0, r.nextInt(ff.getCardinality()));
+            }
+            
+            assertFalse(d.addCodingVector(vector, 0));
+            assertEquals(rank, d.getSubspaceSize());
+            
+            /* a random vector is independent with high probability */
+            for (int j = 0; j < size; j++) {
+                vector[j] = (byte) r.nextInt(ff.getCardinality());
+            }
+            
+            if (d.addCodingVector(vector, 0)) {
+                vectors[rank++] = vector;
+            }
+            
+            assertEquals(rank, d.getSubspaceSize());
+        }
+        
+        byte[][] inverse = new byte[size][];
+        int inverseOffset = d.getDecodingVectorOffset();
+        for ( int i = 0 ; i < size; i++) {
+        	inverse[d.getDecodingVectoPacketId(i)] = d.getDecodingVectorBuffer(i);
+        }
+        
+        checkInverse(vectors, inverse, size, inverseOffset);
+    }
+
 }
\ No newline at end of file
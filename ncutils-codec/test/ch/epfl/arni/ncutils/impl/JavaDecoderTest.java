@@ -28,6 +28,13 @@
 
 package ch.epfl.arni.ncutils.impl;
 
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
 import ch.epfl.arni.ncutils.AbstractDecoderTest;
 import ch.epfl.arni.ncutils.Decoder;
 import ch.epfl.arni.ncutils.Encoder;
@@ -47,4 +54,63 @@ public class JavaDecoderTest extends AbstractDecoderTest {
 		return new JavaEncoder(segment, offset, length, packetsPerSegment);
 	}
 
+	@Override
+	public Encoder createSystematicEncoder(byte[] segment, int offset, int length,
+			int packetsPerSegment) {
+		return new JavaEncoder(segment, offset, length, packetsPerSegment, true);
+	}
+
+	@Override
+	public Encoder createSparseEncoder(byte[] segment, int offset, int length,
+			int packetsPerSegment, int nonZeroCoefficients) {
+		return new JavaEncoder(segment, offset, length, packetsPerSegment, false, nonZeroCoefficients);
+	}
+
+	@Override
+	public Encoder createSeedHeaderEncoder(byte[] segment, int offset, int length,
+			int packetsPerSegment, int nonZeroCoefficients) {
+		return new JavaEncoder(segment, offset, length, packetsPerSegment, false, nonZeroCoefficients, true);
+	}
+
+	@Test
+	public void testParallelDecoding() {
+		
+		int packets = 32;
+		byte [] segment = new byte[packets * 32768];
+		new Random().nextBytes(segment);
+		
+		JavaEncoder encoder = new JavaEncoder(segment, 0, segment.length, packets);
+		JavaEncoder systematic = new JavaEncoder(segment, 0, segment.length, packets, true);
+		
+		/* a few extra packets in case the coded packets are not independent */
+		int count = packets + 4;
+		byte [] batch = new byte[count * encoder.getPacketLength()];
+		byte [] decodedSegment = new byte[segment.length];
+		
+		/* a few original packets followed by coded packets, all the other 
+		 * original packets are decoded by the last packet */
+		systematic.getPackets(batch, 0, packets / 4);
+		encoder.getPackets(batch, packets / 4 * encoder.getPacketLength(), count - packets / 4);
+		
+		for (ForkJoinPool pool : new ForkJoinPool[] { null, ForkJoinPool.commonPool() }) {
+			
+			JavaDecoder decoder = new JavaDecoder(segment.length, packets);
+			decoder.setForkJoinPool(pool);
+			
+			long start = System.nanoTime();
+			
+			for (int i = 0; i < count && !decoder.isDecoded(); i++) {
+				decoder.addPacket(batch, i * encoder.getPacketLength());
+			}
+			
+			long time = System.nanoTime() - start;
+			
+			decoder.getSegment(decodedSegment, 0);
+			
+			assertArrayEquals(segment, decodedSegment);
+			
+			System.out.println("Rate " + (pool == null ? "sequential" : "parallel") + ":" + (segment.length * 8.0 / 1000) / (time / 1e9) + " kbps");
+		}
+	}
+
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2011, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ch.epfl.arni.ncutils.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.epfl.arni.ncutils.Decoder;
+import ch.epfl.arni.ncutils.Encoder;
+import ch.epfl.arni.ncutils.Relay;
+
+public class JavaRelayTest {
+	
+	@Test
+	public void testRecoding() {
+		
+		byte [] segment = new byte[20000];
+		
+		new Random().nextBytes(segment);
+		
+		Encoder encoder = new JavaEncoder(segment, 0, segment.length, 20);
+		Relay relay = new JavaRelay(segment.length, 20);
+		Decoder decoder = new JavaDecoder(segment.length, 20);
+		
+		byte [] packet = new byte[encoder.getPacketLength()];
+		byte [] recoded = new byte[relay.getPacketLength()];
+		
+		assertEquals(encoder.getPacketLength(), relay.getPacketLength());
+		
+		/* the relay receives half of the packets, a full batch is recoded */
+		for (int i = 0; i < 10; i++) {
+			encoder.getPacket(packet, 0);
+			assertTrue(relay.addPacket(packet, 0));
+		}
+		
+		byte [] batch = new byte[30 * relay.getPacketLength()];
+		
+		relay.getPackets(batch, 0, 30);
+		
+		for (int i = 0; i < 30; i++) {
+			decoder.addPacket(batch, i * relay.getPacketLength());
+		}
+		
+		assertEquals(10, decoder.getRank());
+		
+		/* recoded packets don't increase the rank of the relay */
+		relay.getPacket(recoded, 0);
+		assertFalse(relay.addPacket(recoded, 0));
+		assertEquals(10, relay.getRank());
+		
+		while (!decoder.isDecoded()) {
+			encoder.getPacket(packet, 0);
+			relay.addPacket(packet, 0);
+			relay.getPacket(recoded, 0);
+			decoder.addPacket(recoded, 0);
+		}
+		
+		byte [] decodedSegment = new byte[segment.length];
+		
+		decoder.getSegment(decodedSegment, 0);
+		
+		assertArrayEquals(segment, decodedSegment);
+		
+		relay.reset();
+		
+		assertEquals(0, relay.getRank());
+	}
+	
+	@Test
+	public void testRecodingRate() {
+		
+		byte [] segment = new byte[64 * 1400];
+		
+		new Random(2131231).nextBytes(segment);
+		
+		Encoder encoder = new JavaEncoder(segment, 0, segment.length, 64);
+		
+		Relay relay = new JavaRelay(segment.length, 64);
+		Decoder decoder = new JavaDecoder(segment.length, 64);
+		
+		byte [] packet = new byte[encoder.getPacketLength()];
+		
+		while (relay.getRank() < 64) {
+			encoder.getPacket(packet, 0);
+			relay.addPacket(packet, 0);
+			decoder.addPacket(packet, 0);
+		}
+		
+		int rounds = 200;
+		
+		byte [] batch = new byte[rounds * relay.getPacketLength()];
+		
+		long startTime = System.currentTimeMillis();
+		
+		for (int i = 0; i < rounds; i++) {
+			decoder.getPacket(batch, i * decoder.getPacketLength());
+		}
+		
+		System.out.println("Rate decoder recoding:" + ( 8 * 1000.0 * rounds * packet.length)  / (double) (System.currentTimeMillis() - startTime + 1) + " kbps");
+		
+		startTime = System.currentTimeMillis();
+		
+		relay.getPackets(batch, 0, rounds);
+		
+		System.out.println("Rate relay recoding:" + ( 8 * 1000.0 * rounds * packet.length)  / (double) (System.currentTimeMillis() - startTime + 1) + " kbps");
+	}
+
+}
@@ -36,6 +36,11 @@ import ch.epfl.arni.ncutils.impl.NativeDecoder;
 import ch.epfl.arni.ncutils.impl.NativeEncoder;
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
 public class NativeDecoderTest extends AbstractDecoderTest {
 
 	@Override
@@ -53,4 +58,78 @@ public class NativeDecoderTest extends AbstractDecoderTest {
 		return new NativeDecoder(segmentLength, packetsPerSegment);
 	}
 
+	@Override
+	public Encoder createSystematicEncoder(byte[] segment, int offset, int length,
+			int packetsPerSegment) {
+		
+		assertTrue(CodecFactory.isNativeLibraryAvailable());
+		return new NativeEncoder(segment, offset, length, packetsPerSegment, true);
+	}
+
+	@Override
+	public Encoder createSparseEncoder(byte[] segment, int offset, int length,
+			int packetsPerSegment, int nonZeroCoefficients) {
+		
+		assertTrue(CodecFactory.isNativeLibraryAvailable());
+		return new NativeEncoder(segment, offset, length, packetsPerSegment, false, nonZeroCoefficients);
+	}
+
+	@Override
+	public Encoder createSeedHeaderEncoder(byte[] segment, int offset, int length,
+			int packetsPerSegment, int nonZeroCoefficients) {
+		
+		assertTrue(CodecFactory.isNativeLibraryAvailable());
+		return new NativeEncoder(segment, offset, length, packetsPerSegment, false, nonZeroCoefficients, true);
+	}
+
+	@Test
+	public void testDirectBuffers() {
+		
+		assertTrue(CodecFactory.isNativeLibraryAvailable());
+		
+		byte [] segment = new byte[20000];
+		
+		new Random().nextBytes(segment);
+		
+		/* the segment is a slice of a larger off-heap buffer */
+		ByteBuffer buffer = ByteBuffer.allocateDirect(30000);
+		buffer.position(1000);
+		buffer.put(segment);
+		
+		NativeEncoder encoder = new NativeEncoder(buffer, 1000, segment.length, 20);
+		NativeDecoder decoder = new NativeDecoder(segment.length, 20);
+		
+		ByteBuffer packet = ByteBuffer.allocateDirect(3 + encoder.getPacketLength());
+		
+		while (!decoder.isDecoded()) {
+			encoder.getPacket(packet, 3);
+			decoder.addPacket(packet, 3);
+		}
+		
+		ByteBuffer decoded = ByteBuffer.allocateDirect(segment.length + 10);
+		
+		decoder.getSegment(decoded, 10);
+		
+		byte [] decodedSegment = new byte[segment.length];
+		
+		decoded.position(10);
+		decoded.get(decodedSegment);
+		
+		assertArrayEquals(segment, decodedSegment);
+		
+		/* heap buffers are rejected */
+		try {
+			decoder.addPacket(ByteBuffer.allocate(encoder.getPacketLength()), 0);
+			fail();
+		} catch (IllegalArgumentException e) {}
+		
+		decoder.dispose();
+		
+		/* a disposed decoder cannot be used */
+		try {
+			decoder.addPacket(packet, 3);
+			fail();
+		} catch (IllegalStateException e) {}
+	}
+
 }
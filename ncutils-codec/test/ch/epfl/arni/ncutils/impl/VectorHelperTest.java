@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2010, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the EPFL nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package ch.epfl.arni.ncutils.impl;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author lokeller
+ */
+public class VectorHelperTest {
+
+    private static final int[] KERNELS = { VectorHelper.KERNEL_TABLE, 
+        VectorHelper.KERNEL_NIBBLE, VectorHelper.KERNEL_VECTOR };
+
+    private final int defaultKernel = VectorHelper.getKernel();
+
+    @After
+    public void tearDown() {
+        VectorHelper.setKernel(defaultKernel);
+    }
+
+    @Test
+    public void testMultiplyAndAdd() {
+
+        FiniteField ff = FiniteField.getF256();
+        Random r = new Random(2131231);
+
+        /* lengths that are not multiple of the vector size and offsets */
+        byte[] src = new byte[1037];
+        byte[] dest = new byte[1037];
+        r.nextBytes(src);
+        r.nextBytes(dest);
+
+        for (int kernel : KERNELS) {
+
+            if (!VectorHelper.isKernelAvailable(kernel)) continue;
+
+            VectorHelper.setKernel(kernel);
+
+            for (int coeff = 0; coeff < 256; coeff++) {
+
+                byte[] output = Arrays.copyOf(dest, dest.length);
+
+                VectorHelper.multiplyAndAdd(output, 5, 1020, src, 11, coeff);
+
+                for (int i = 0; i < dest.length; i++) {
+                    int expected = dest[i] & 0xFF;
+                    if (i >= 5 && i < 1025) {
+                        expected = ff.sum[expected][ff.mul[coeff][src[i + 6] & 0xFF]];
+                    }
+                    assertEquals(expected, output[i] & 0xFF);
+                }
+            }
+        }
+
+    }
+
+    @Test
+    public void testDivide() {
+
+        FiniteField ff = FiniteField.getF256();
+        Random r = new Random(2131231);
+
+        byte[] buffer = new byte[1037];
+        r.nextBytes(buffer);
+
+        for (int kernel : KERNELS) {
+
+            if (!VectorHelper.isKernelAvailable(kernel)) continue;
+
+            VectorHelper.setKernel(kernel);
+
+            for (int coeff = 1; coeff < 256; coeff++) {
+
+                byte[] output = Arrays.copyOf(buffer, buffer.length);
+
+                VectorHelper.divide(output, 3, 1030, coeff);
+
+                for (int i = 0; i < buffer.length; i++) {
+                    int expected = buffer[i] & 0xFF;
+                    if (i >= 3 && i < 1033) {
+                        expected = ff.div[expected][coeff];
+                    }
+                    assertEquals(expected, output[i] & 0xFF);
+                }
+            }
+        }
+
+    }
+
+    @Test
+    public void testKernelRate() {
+
+        byte[] src = new byte[1400];
+        byte[] dest = new byte[1400];
+        new Random(2131231).nextBytes(src);
+
+        int rounds = 200000;
+
+        for (int kernel : KERNELS) {
+
+            if (!VectorHelper.isKernelAvailable(kernel)) continue;
+
+            VectorHelper.setKernel(kernel);
+
+            long startTime = System.currentTimeMillis();
+
+            for (int i = 0; i < rounds; i++) {
+                VectorHelper.multiplyAndAdd(dest, 0, dest.length, src, 0, (i % 255) + 1);
+            }
+
+            System.out.println("Rate kernel " + kernel + ":" + ( 8 * 1000.0 * rounds * src.length)  / (double) (System.currentTimeMillis() - startTime) + " kbps");
+        }
+
+    }
+
+}
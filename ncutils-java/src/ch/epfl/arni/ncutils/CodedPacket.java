@@ -61,7 +61,7 @@ public class CodedPacket {
 
         this( new Vector(maxPackets, ff), ff.byteToVector(packet.getPayload()));
 
-        codingVector.coordinates[packet.getId()] = 1;
+        codingVector.setCoordinate(packet.getId(), 1);
     }
 
     /**
@@ -105,7 +105,7 @@ public class CodedPacket {
         
     }
     
-    private CodedPacket(Vector codingVector, Vector payloadVector) {
+    CodedPacket(Vector codingVector, Vector payloadVector) {
         this.codingVector = codingVector;
         this.payloadVector = payloadVector;
     }
@@ -40,6 +40,13 @@ import java.util.Map;
  * rows operations trying to obtain an elementary vector. The operations
  * performed are kept track in an auxiliary vector (one per added vector).
  * 
+ * Row operations only process the span of columns of each line that may
+ * contain non zero coefficients and the columns of the inverse matrix that
+ * are in use, so that the zero runs of sparse coding vectors are skipped.
+ * When the vectors are added with reduceVector the row operations don't 
+ * touch the inverse matrix at all: only their multipliers are recorded and 
+ * the inverse matrix is built once by solve().
+ * 
  * Internally the class uses O(N²) memory where N is the maximum number of
  * packets that can get combined.
  * 
@@ -51,16 +58,31 @@ public class CodingVectorDecoder {
 	/*
 	 * the matrix used for gaussian jordan elimination, the first half of the
 	 * columns store the matrix being inverted the second half the inverted
-	 * matrix.
+	 * matrix. Each line is a vector of length 2 * maxPackets.
 	 */
-	int[][] decodeMatrix;
+	Vector[] decodeMatrix;
 
 	/** stores the position of the pivot of each line */
 	private int[] pivotPos;
 
+	/** stores for each pivot column the line that has its pivot there */
+	private int[] pivotLine;
+
 	/** stores for each column if it is a pivot column for a line or not */
 	private boolean[] isPivot;
 
+	/**
+	 * stores for each line the first column of the matrix being inverted that
+	 * may be non zero, the coordinates before it are zero
+	 */
+	private int[] spanStart;
+
+	/**
+	 * stores for each line the column following the last column of the
+	 * matrix being inverted that may be non zero
+	 */
+	private int[] spanEnd;
+
 	/** stores for each column if it has already been decoded or not */
 	private boolean[] decoded;
 
@@ -82,10 +104,16 @@ public class CodingVectorDecoder {
 	 *            the finite field used in the decoder
 	 */
 	public CodingVectorDecoder(int maxPackets, FiniteField ff) {
-		decodeMatrix = new int[maxPackets][maxPackets * 2];
+		decodeMatrix = new Vector[maxPackets];
+		for (int i = 0; i < maxPackets; i++) {
+			decodeMatrix[i] = new Vector(maxPackets * 2, ff);
+		}
 		pivotPos = new int[maxPackets];
+		pivotLine = new int[maxPackets];
 		decoded = new boolean[maxPackets];
 		isPivot = new boolean[maxPackets];
+		spanStart = new int[maxPackets];
+		spanEnd = new int[maxPackets];
 		this.ff = ff;
 
 	}
@@ -117,139 +145,366 @@ public class CodingVectorDecoder {
 	 */
 	public Map<Integer, Vector> addVector(Vector v) {
 
-		/* if the matrix is already full rank don't add this vector */
-		if (packetCount == decodeMatrix.length) {
+		final int size = decodeMatrix.length;
+
+		/* if the packet is not li stop here */
+
+		if (!addToMatrix(v)) {
 			return null;
 		}
 
-		final int[][] mul = ff.mul;
-		final int[][] sub = ff.sub;
-		final int[][] div = ff.div;
+		/* look for decodable blocks */
 
-		final int size = decodeMatrix.length;
-		final int totalSize = decodeMatrix[0].length;
+		HashMap<Integer, Vector> willDecode = new HashMap<Integer, Vector>();
+
+		for (int i = 0; i < packetCount; i++) {
+			int pos = -1;
+
+			/* skip if the line is marked decoded */
+			if (decoded[i])
+				continue;
+
+			/* the spans are trimmed, a line is elementary if its span has length one */
+			if (spanEnd[i] - spanStart[i] == 1)
+				pos = spanStart[i];
+
+			if (pos >= 0) {
+				decoded[i] = true;
+
+				/* build the vector that explains how to obtain the block */
+				Vector vector = new Vector(
+						decodeMatrix.length, ff);
+				for (int j = size; j < size + size; j++) {
+					vector.setCoordinate(j - size, decodeMatrix[i].getCoordinate(j));
+				}
+
+				willDecode.put(pos, vector);
+
+			}
+		}
+
+		return willDecode;
+
+	}
+
+	/**
+	 * 
+	 * Adds the coding vector to the internal decoding buffer without
+	 * allocating objects. The ids of the uncoded packets that can be decoded
+	 * thanks to the vector are written in decodedIds, the coefficients needed
+	 * to recover their payloads are returned by {@link #getDecodingLine(int)}.
+	 * 
+	 * @param v
+	 *            a coding vector of length compatible with the decoder
+	 * @param decodedIds
+	 *            an array of at least getMaxPackets() elements where the ids
+	 *            of the uncoded packets that can be decoded are written
+	 * @return the number of ids written in decodedIds, -1 if the vector being
+	 *         added is linearly dependant from the others already added
+	 */
+	public int addVector(Vector v, int[] decodedIds) {
+
+		if (!addToMatrix(v)) {
+			return -1;
+		}
+
+		int count = 0;
+
+		for (int i = 0; i < packetCount; i++) {
+
+			/* the spans are trimmed, a line is elementary if its span has length one */
+			if (decoded[i] || spanEnd[i] - spanStart[i] != 1)
+				continue;
+
+			decoded[i] = true;
+			decodedIds[count++] = spanStart[i];
+		}
+
+		return count;
+	}
+
+	/**
+	 * Returns the line of the decode matrix of an uncoded packet that has 
+	 * been decoded. The coefficient of the j-th coded packet added to the
+	 * decoder is the coordinate getMaxPackets() + j of the line.
+	 * 
+	 * @param id the id of an uncoded packet that has been decoded
+	 * @return the line of the decode matrix that has its pivot at id
+	 */
+	Vector getDecodingLine(int id) {
+		return decodeMatrix[pivotLine[id]];
+	}
+
+	/**
+	 * Inserts the coding vector in the decode matrix and zeros the column of
+	 * its pivot on the other lines.
+	 * 
+	 * @return false if the vector is linearly dependant from the others
+	 *         already added
+	 */
+	private boolean addToMatrix(Vector v) {
 
-		/* add the received packet at the bottom of the matrix */
-		for (int i = 0; i < v.getLength(); i++) {
-			decodeMatrix[packetCount][i] = v.coordinates[i];
-			decodeMatrix[packetCount][i + size] = 0;
+		/* if the matrix is already full rank don't add this vector */
+		if (packetCount == decodeMatrix.length) {
+			return false;
 		}
 
-		/* put zeros on the inverse matrix but on position packet count */
-		for (int i = size; i < totalSize; i++) {
-			decodeMatrix[packetCount][i] = 0;
+		int pivot = insertLine(v, true);
+
+		if (pivot == -1) {
+			return false;
 		}
 
-		decodeMatrix[packetCount][size + packetCount] = 1;
+		/* zero the column above the pivot */
+		for (int i = 0; i < packetCount; i++) {
+
+			if (pivot < spanStart[i] || pivot >= spanEnd[i])
+				continue;
+
+			int m = decodeMatrix[i].getCoordinate(pivot);
+
+			if (m == 0)
+				continue;
+
+			addLine(i, packetCount, ff.subtract(0, m), packetCount + 1);
+
+		}
+
+		packetCount++;
+
+		return true;
+	}
+
+	/**
+	 * Adds the coding vector at the bottom of the decoding matrix, removes
+	 * from it the pivots of the lines above and divides it by its own pivot.
+	 * If trackInverse is false the row operations only process the matrix
+	 * being inverted, the multiplier of line i is stored in column 
+	 * getMaxPackets() + i of the new line and the inverse of its pivot in
+	 * column getMaxPackets() + packetCount.
+	 * 
+	 * @return the position of the pivot of the new line, -1 if the vector is
+	 *         linearly dependant from the others already added
+	 */
+	private int insertLine(Vector v, boolean trackInverse) {
+
+		final int size = decodeMatrix.length;
+		final Vector line = decodeMatrix[packetCount];
+
+		/* add the received packet at the bottom of the matrix and put zeros
+		 * on the inverse matrix but on position packet count */
+		line.setToZero();
+		line.copyFrom(v, v.getLength());
+
+		if (trackInverse)
+			line.setCoordinate(size + packetCount, 1);
+
+		spanStart[packetCount] = 0;
+		spanEnd[packetCount] = size;
+		trimSpan(packetCount);
 
 		/* simplify the new packet */
 
 		/* zeros before */
 		for (int i = 0; i < packetCount; i++) {
 
-			int m = decodeMatrix[packetCount][pivotPos[i]];
+			int pos = pivotPos[i];
+
+			if (pos < spanStart[packetCount] || pos >= spanEnd[packetCount])
+				continue;
+
+			int m = line.getCoordinate(pos);
 
 			if (m == 0)
 				continue;
 
-			for (int j = 0; j < totalSize; j++) {
-				int val = decodeMatrix[packetCount][j];
-				int val2 = decodeMatrix[i][j];
-				decodeMatrix[packetCount][j] = sub[val][mul[val2][m]];
+			int c = ff.subtract(0, m);
+
+			if (trackInverse) {
+				addLine(packetCount, i, c, packetCount + 1);
+			} else {
+				addLine(packetCount, i, c, 0);
+				line.setCoordinate(size + i, c);
 			}
 
 		}
 
 		/* find pivot on the line */
 		int pivot = -1;
-		for (int i = 0; i < size; i++) {
+		for (int i = spanStart[packetCount]; i < spanEnd[packetCount]; i++) {
 			if (isPivot[i])
 				continue;
-			if (decodeMatrix[packetCount][i] != 0) {
+			if (line.getCoordinate(i) != 0) {
 				pivotPos[packetCount] = i;
+				pivotLine[i] = packetCount;
 				isPivot[i] = true;
 				pivot = i;
 				break;
 			}
 		}
 
-		/* if the packet is not li stop here */
-
 		if (pivot == -1) {
-			return null;
+			return -1;
 		}
 
 		/* divide the line */
 
-		if (decodeMatrix[packetCount][pivot] != 1) {
-			int pval = decodeMatrix[packetCount][pivot];
+		int scale = ff.inverse[line.getCoordinate(pivot)];
 
-			for (int j = 0; j < totalSize; j++) {
-				int val = decodeMatrix[packetCount][j];
-				decodeMatrix[packetCount][j] = div[val][pval];
-			}
+		if (scale != 1) {
+
+			line.scalarMultiplyInPlace(scale, spanStart[packetCount], 
+					spanEnd[packetCount] - spanStart[packetCount]);
+
+			if (trackInverse)
+				line.scalarMultiplyInPlace(scale, size, packetCount + 1);
 
 		}
 
-		/* zero the column above the pivot */
-		for (int i = 0; i < packetCount; i++) {
+		if (!trackInverse)
+			line.setCoordinate(size + packetCount, scale);
 
-			int m = decodeMatrix[i][pivot];
+		return pivot;
 
-			if (m == 0)
-				continue;
+	}
 
-			for (int j = 0; j < totalSize; j++) {
+	/**
+	 * Adds to the line dest the line src multiplied by c, only the span of src
+	 * and the first inverseLength columns of the inverse matrix are processed
+	 */
+	private void addLine(int dest, int src, int c, int inverseLength) {
+
+		final int size = decodeMatrix.length;
 
-				int val2 = decodeMatrix[packetCount][j];
-				int val = decodeMatrix[i][j];
+		decodeMatrix[dest].multiplyAndAddInPlace(c, decodeMatrix[src],
+				spanStart[src], spanEnd[src] - spanStart[src]);
+		decodeMatrix[dest].multiplyAndAddInPlace(c, decodeMatrix[src], size,
+				inverseLength);
 
-				decodeMatrix[i][j] = sub[val][mul[val2][m]];
+		spanStart[dest] = Math.min(spanStart[dest], spanStart[src]);
+		spanEnd[dest] = Math.max(spanEnd[dest], spanEnd[src]);
 
-			}
+		trimSpan(dest);
+	}
+
+	/**
+	 * Shrinks the span of a line so that it starts and ends with a non zero
+	 * coordinate
+	 */
+	private void trimSpan(int i) {
+
+		final Vector line = decodeMatrix[i];
+
+		while (spanStart[i] < spanEnd[i] && line.getCoordinate(spanStart[i]) == 0)
+			spanStart[i]++;
+		while (spanEnd[i] > spanStart[i] && line.getCoordinate(spanEnd[i] - 1) == 0)
+			spanEnd[i]--;
+	}
 
+	/**
+	 * Adds the coding vector to the internal decoding buffer without trying
+	 * to decode any vector. Only the elimination below the pivots is
+	 * performed, the decoding is completed by {@link #solve()} once the
+	 * buffer is full rank. This method cannot be mixed with addVector.
+	 * 
+	 * @param v
+	 *            a coding vector of length compatible with the decoder
+	 * @return true if the vector was linearly independent from the others
+	 *         already added
+	 */
+	boolean reduceVector(Vector v) {
+
+		if (packetCount == decodeMatrix.length) {
+			return false;
+		}
+
+		if (insertLine(v, false) == -1) {
+			return false;
 		}
 
 		packetCount++;
 
-		/* look for decodable blocks */
+		return true;
+	}
 
-		HashMap<Integer, Vector> willDecode = new HashMap<Integer, Vector>();
+	/**
+	 * Completes the elimination of the vectors added with reduceVector. The
+	 * decoder must be full rank.
+	 * 
+	 * @return a matrix whose row i contains the coefficients that must be used
+	 *         to combine the added vectors (in the order they were added) to
+	 *         obtain the i-th elementary vector
+	 */
+	Matrix solve() {
 
-		for (int i = 0; i < packetCount; i++) {
-			int pos = -1;
+		final int size = decodeMatrix.length;
 
-			/* skip if the line is marked decoded */
-			if (decoded[i])
-				continue;
+		if (packetCount != size) {
+			throw new IllegalStateException("The decoder is not full rank");
+		}
 
-			for (int j = 0; j < size; j++) {
+		buildInverse();
 
-				if (decodeMatrix[i][j] != 0 && pos != -1) {
-					pos = -1;
-					break;
-				} else if (decodeMatrix[i][j] != 0)
-					pos = j;
-			}
+		/* zero the column above each pivot, starting from the last line */
+		for (int j = size - 1; j > 0; j--) {
 
-			if (pos >= 0) {
-				decoded[i] = true;
+			int pivot = pivotPos[j];
 
-				/* build the vector that explains how to obtain the block */
-				Vector vector = new Vector(
-						decodeMatrix.length, ff);
-				int[] coordinates = vector.coordinates;
-				for (int j = size; j < size + size; j++) {
-					coordinates[j - size] = decodeMatrix[i][j];
-				}
+			for (int i = 0; i < j; i++) {
 
-				willDecode.put(pos, vector);
+				if (pivot < spanStart[i] || pivot >= spanEnd[i])
+					continue;
+
+				int m = decodeMatrix[i].getCoordinate(pivot);
+
+				if (m == 0)
+					continue;
 
+				addLine(i, j, ff.subtract(0, m), size);
 			}
 		}
 
-		return willDecode;
+		Matrix inverse = new Matrix(size, size, ff);
+
+		for (int i = 0; i < size; i++) {
+			decoded[i] = true;
+			for (int j = 0; j < size; j++) {
+				inverse.setEntry(pivotPos[i], j, decodeMatrix[i].getCoordinate(j + size));
+			}
+		}
+
+		return inverse;
+	}
+
+	/**
+	 * Replaces the multipliers recorded by reduceVector with the inverse 
+	 * matrix of the lines: line k is the k-th vector added plus the lines 
+	 * above it multiplied by their multipliers, divided by its pivot. The
+	 * inverse part of each line depends only on the lines above it.
+	 */
+	private void buildInverse() {
 
+		final int size = decodeMatrix.length;
+
+		int[] multipliers = new int[size];
+
+		for (int k = 0; k < size; k++) {
+
+			final Vector line = decodeMatrix[k];
+
+			for (int i = 0; i <= k; i++) {
+				multipliers[i] = line.getCoordinate(size + i);
+				line.setCoordinate(size + i, 0);
+			}
+
+			line.setCoordinate(size + k, 1);
+
+			for (int i = 0; i < k; i++) {
+				line.multiplyAndAddInPlace(multipliers[i], decodeMatrix[i], size, i + 1);
+			}
+
+			line.scalarMultiplyInPlace(multipliers[k], size, k + 1);
+		}
 	}
 
 	/**
@@ -274,15 +529,18 @@ public class CodingVectorDecoder {
 				pivotPos.length, ff);
 
 		System.arraycopy(pivotPos, 0, newDecoder.pivotPos, 0, pivotPos.length);
+		System.arraycopy(pivotLine, 0, newDecoder.pivotLine, 0, pivotLine.length);
 		System.arraycopy(isPivot, 0, newDecoder.isPivot, 0, isPivot.length);
 		System.arraycopy(decoded, 0, newDecoder.decoded, 0, decoded.length);
+		System.arraycopy(spanStart, 0, newDecoder.spanStart, 0, spanStart.length);
+		System.arraycopy(spanEnd, 0, newDecoder.spanEnd, 0, spanEnd.length);
 
 		newDecoder.packetCount = packetCount;
 		newDecoder.ff = ff;
 
 		for (int i = 0; i < newDecoder.decodeMatrix.length; i++) {
-			System.arraycopy(decodeMatrix[i], 0, newDecoder.decodeMatrix[i], 0,
-					decodeMatrix[i].length);
+			newDecoder.decodeMatrix[i].copyFrom(decodeMatrix[i],
+					decodeMatrix[i].getLength());
 		}
 
 		return newDecoder;
@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2012, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *      * Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *      * Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *      * Neither the name of the EPFL nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *  
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************/
+package ch.epfl.arni.ncutils;
+
+/**
+ * The strategies that a packet decoder can use to recover the uncoded packets.
+ *
+ * @author lokeller
+ */
+public enum DecodingMode {
+
+    /**
+     * The uncoded packets are returned as soon as they can be decoded, every
+     * packet added to the decoder updates the whole decoding matrix.
+     */
+    INCREMENTAL,
+
+    /**
+     * The uncoded packets are returned all together when the decoder reaches
+     * full rank. Until then every packet added only updates the coefficient
+     * matrix, the payloads are recovered in a single pass that multiplies
+     * the inverse of the coefficient matrix with the received payloads.
+     */
+    FULL_RANK,
+
+    /**
+     * The uncoded packets are returned as soon as they can be decoded. The
+     * row operations are applied directly to the received payloads, so the
+     * decoder does not need to track the inverse of the coding vectors and 
+     * the decoded payloads do not need to be recombined. The received 
+     * packets are not retained.
+     */
+    ON_THE_FLY
+
+}
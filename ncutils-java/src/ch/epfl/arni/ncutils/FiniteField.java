@@ -26,6 +26,8 @@
  *******************************************************************************/
 package ch.epfl.arni.ncutils;
 
+import java.util.Arrays;
+
 /**
  * This class represent a finite field.
  * 
@@ -34,6 +36,15 @@ package ch.epfl.arni.ncutils;
 public class FiniteField {
 
 
+    /** associates each byte with the byte obtained reversing the order of its bits */
+    private static final int[] REVERSE_BYTE = new int[256];
+
+    static {
+        for (int b = 0 ; b < 256 ; b++) {
+            REVERSE_BYTE[b] = Integer.reverse(b) >>> 24;
+        }
+    }
+
     private static FiniteField finiteField = new FiniteField(2,4);
 
     /**
@@ -51,31 +62,70 @@ public class FiniteField {
     public int[] inverse;
 
     /**
-     * Associate two field elements to their sum
+     * Associate two field elements to their sum. This table is null for
+     * extension fields with more than 256 elements, use add() instead.
      */
     public int[][] sum;
 
     /**
-     * Associate two field elements to their division
+     * Associate two field elements to their division. This table is null for
+     * extension fields with more than 256 elements, use divide() instead.
      */
     public int[][] div;
 
     /**
-     * Associate two field elements to their substraction
+     * Associate two field elements to their substraction. This table is null
+     * for extension fields with more than 256 elements, use subtract() instead.
      */
     public int[][] sub;
 
 
     /**
-     * Associate two field elements to their multiplication
+     * Associate two field elements to their multiplication. This table is null
+     * for extension fields with more than 256 elements, use multiply() instead.
      */
     public int[][] mul;
 
+    /**
+     * Associate two field elements to their multiplication. The table is
+     * stored row-major in a flat array, the product of a and b is found at
+     * position a * getCardinality() + b. This table is available only for
+     * fields with at most 256 elements, it is null otherwise.
+     */
+    public byte[] mulTable;
+
+    /**
+     * Associate two field elements to their sum. The table is stored
+     * row-major in a flat array, the sum of a and b is found at position
+     * a * getCardinality() + b. This table is available only for fields
+     * with at most 256 elements, it is null otherwise.
+     */
+    public byte[] sumTable;
+
 
     private int Q;
 
+    /** true if the sum of two elements is their bitwise xor */
+    private boolean xorSum;
+
+    /**
+     * Associates each non-zero field element to its discrete logarithm with
+     * respect to the primitive element x. Only used by extension fields with
+     * more than 256 elements, that do not have multiplication tables.
+     */
+    private int[] log;
+
     /**
-     * Constructs a new extension field
+     * Associates each exponent to the corresponding power of the primitive
+     * element x. The table is repeated twice so that the sum of two logarithms
+     * can be used as index without reducing it.
+     */
+    private int[] exp;
+
+    /**
+     * Constructs a new extension field. Fields with up to 2^8 elements
+     * use full operation tables, larger fields (up to 2^16 elements) use
+     * logarithm and exponential tables that require O(2^m) memory.
      *
      * @param q the prime used to create the polynomial
      * @param m the power of the polynomial
@@ -88,18 +138,25 @@ public class FiniteField {
 
         this.Q = (int) Math.pow(q,m);
 
-        inverse = new int[Q];
-        sum = new int[Q][Q];
-        mul = new int[Q][Q];
-        div = new int[Q][Q];
-        sub = new int[Q][Q];
-
         int [] primitive_polynomial = { 3, 7, 11, 19, 37, 67, 137,
                                         285, 529,1033,2053,4179,
                                         8219,17475, 32771, 69643 };      
 
         int c = primitive_polynomial[m - 1] - ( 1 << m );
 
+        xorSum = true;
+
+        if (m > 8) {
+            buildLogTables(c);
+            return;
+        }
+
+        inverse = new int[Q];
+        sum = new int[Q][Q];
+        mul = new int[Q][Q];
+        div = new int[Q][Q];
+        sub = new int[Q][Q];
+
         for (int i = 0 ; i < Q ; i++) {
             for (int j = 0 ; j < Q ; j++) {
 
@@ -142,6 +199,44 @@ public class FiniteField {
             inverse[i] = div[1][i];
         }
 
+        buildFlatTables();
+
+    }
+
+    /**
+     * Fills the logarithm, exponential and inverse tables of an extension
+     * field of characteristic 2.
+     *
+     * @param c the primitive polynomial without its leading term
+     */
+    private void buildLogTables(int c) {
+
+        inverse = new int[Q];
+        log = new int[Q];
+        exp = new int[2 * Q];
+
+        int a = 1;
+
+        for (int i = 0 ; i < Q - 1 ; i++) {
+
+            /* x must go through all the non-zero elements */
+            if (i > 0 && a == 1) throw new UnsupportedOperationException("Finite field not supported");
+
+            exp[i] = a;
+            exp[i + Q - 1] = a;
+            log[a] = i;
+
+            /* multiply by x */
+            a = a << 1;
+            if (a >= Q) {
+                a = (a - Q) ^ c;
+            }
+        }
+
+        for (int i = 1 ; i < Q ; i++) {
+            inverse[i] = exp[Q - 1 - log[i]];
+        }
+
     }
 
     /**
@@ -181,6 +276,282 @@ public class FiniteField {
                 }
         }
 
+        buildFlatTables();
+
+    }
+
+    /**
+     * Fills the flat versions of the multiplication and sum tables if the
+     * elements of the field fit in a byte.
+     */
+    private void buildFlatTables() {
+
+        if (Q > 256) return;
+
+        mulTable = new byte[Q * Q];
+        sumTable = new byte[Q * Q];
+
+        for (int i = 0 ; i < Q ; i++) {
+            for (int j = 0 ; j < Q ; j++) {
+                mulTable[i * Q + j] = (byte) mul[i][j];
+                sumTable[i * Q + j] = (byte) sum[i][j];
+            }
+        }
+    }
+
+    /**
+     * Adds to length elements of dest, starting at destStart, the corresponding
+     * elements of src, starting at srcStart, multiplied by c.
+     */
+    void multiplyAndAdd(int[] dest, int destStart, int[] src, int srcStart, int length, int c) {
+
+        if (c == 0) return;
+
+        int destEnd = destStart + length;
+        int deltaSrc = srcStart - destStart;
+
+        if (mulTable != null) {
+
+            final byte[] mulTable = this.mulTable;
+            final int row = c * Q;
+
+            if (xorSum) {
+                for (int i = destStart; i < destEnd; i++) {
+                    dest[i] ^= mulTable[row + src[i + deltaSrc]] & 0xFF;
+                }
+            } else {
+                final byte[] sumTable = this.sumTable;
+                for (int i = destStart; i < destEnd; i++) {
+                    int p = mulTable[row + src[i + deltaSrc]] & 0xFF;
+                    dest[i] = sumTable[dest[i] * Q + p] & 0xFF;
+                }
+            }
+
+        } else if (mul != null) {
+
+            final int[] mulRow = mul[c];
+
+            for (int i = destStart; i < destEnd; i++) {
+                dest[i] = sum[dest[i]][mulRow[src[i + deltaSrc]]];
+            }
+
+        } else {
+
+            final int[] log = this.log;
+            final int[] exp = this.exp;
+            final int logC = log[c];
+
+            for (int i = destStart; i < destEnd; i++) {
+                int v = src[i + deltaSrc];
+                if (v != 0) {
+                    dest[i] ^= exp[log[v] + logC];
+                }
+            }
+
+        }
+
+    }
+
+    /**
+     * Multiplies length elements of v, starting at start, by c.
+     */
+    void scalarMultiply(int[] v, int start, int length, int c) {
+
+        int end = start + length;
+
+        if (mulTable != null) {
+
+            final byte[] mulTable = this.mulTable;
+            final int row = c * Q;
+
+            for (int i = start; i < end; i++) {
+                v[i] = mulTable[row + v[i]] & 0xFF;
+            }
+
+        } else if (mul != null) {
+
+            final int[] mulRow = mul[c];
+
+            for (int i = start; i < end; i++) {
+                v[i] = mulRow[v[i]];
+            }
+
+        } else if (c == 0) {
+
+            Arrays.fill(v, start, end, 0);
+
+        } else {
+
+            final int[] log = this.log;
+            final int[] exp = this.exp;
+            final int logC = log[c];
+
+            for (int i = start; i < end; i++) {
+                if (v[i] != 0) {
+                    v[i] = exp[log[v[i]] + logC];
+                }
+            }
+
+        }
+
+    }
+
+    /**
+     * Adds to length elements of dest, starting at destStart, the corresponding
+     * elements of src, starting at srcStart.
+     */
+    void add(int[] dest, int destStart, int[] src, int srcStart, int length) {
+
+        int destEnd = destStart + length;
+        int deltaSrc = srcStart - destStart;
+
+        if (xorSum) {
+
+            for (int i = destStart; i < destEnd; i++) {
+                dest[i] ^= src[i + deltaSrc];
+            }
+
+        } else if (sumTable != null) {
+
+            final byte[] sumTable = this.sumTable;
+
+            for (int i = destStart; i < destEnd; i++) {
+                dest[i] = sumTable[dest[i] * Q + src[i + deltaSrc]] & 0xFF;
+            }
+
+        } else {
+
+            for (int i = destStart; i < destEnd; i++) {
+                dest[i] = sum[dest[i]][src[i + deltaSrc]];
+            }
+
+        }
+
+    }
+
+    /*
+     * The following methods operate on vectors stored one element per byte,
+     * they can be used only if the field has flat tables (mulTable != null).
+     */
+
+    /**
+     * Adds to length elements of dest, starting at destStart, the corresponding
+     * elements of src, starting at srcStart, multiplied by c.
+     */
+    void multiplyAndAdd(byte[] dest, int destStart, byte[] src, int srcStart, int length, int c) {
+
+        if (c == 0) return;
+
+        final byte[] mulTable = this.mulTable;
+        final int row = c * Q;
+        int destEnd = destStart + length;
+        int deltaSrc = srcStart - destStart;
+
+        if (xorSum) {
+            for (int i = destStart; i < destEnd; i++) {
+                dest[i] ^= mulTable[row + (src[i + deltaSrc] & 0xFF)];
+            }
+        } else {
+            final byte[] sumTable = this.sumTable;
+            for (int i = destStart; i < destEnd; i++) {
+                int p = mulTable[row + (src[i + deltaSrc] & 0xFF)] & 0xFF;
+                dest[i] = sumTable[(dest[i] & 0xFF) * Q + p];
+            }
+        }
+
+    }
+
+    /**
+     * Multiplies length elements of v, starting at start, by c.
+     */
+    void scalarMultiply(byte[] v, int start, int length, int c) {
+
+        final byte[] mulTable = this.mulTable;
+        final int row = c * Q;
+        int end = start + length;
+
+        for (int i = start; i < end; i++) {
+            v[i] = mulTable[row + (v[i] & 0xFF)];
+        }
+
+    }
+
+    /**
+     * Adds to length elements of dest, starting at destStart, the corresponding
+     * elements of src, starting at srcStart.
+     */
+    void add(byte[] dest, int destStart, byte[] src, int srcStart, int length) {
+
+        int destEnd = destStart + length;
+        int deltaSrc = srcStart - destStart;
+
+        if (xorSum) {
+
+            for (int i = destStart; i < destEnd; i++) {
+                dest[i] ^= src[i + deltaSrc];
+            }
+
+        } else {
+
+            final byte[] sumTable = this.sumTable;
+
+            for (int i = destStart; i < destEnd; i++) {
+                dest[i] = sumTable[(dest[i] & 0xFF) * Q + (src[i + deltaSrc] & 0xFF)];
+            }
+
+        }
+
+    }
+
+    /**
+     * Returns the sum of two field elements
+     *
+     * @param a an element of the field
+     * @param b an element of the field
+     * @return a + b
+     */
+    public int add(int a, int b) {
+        if (xorSum) return a ^ b;
+        return sum[a][b];
+    }
+
+    /**
+     * Returns the difference of two field elements
+     *
+     * @param a an element of the field
+     * @param b an element of the field
+     * @return a - b
+     */
+    public int subtract(int a, int b) {
+        if (xorSum) return a ^ b;
+        return sub[a][b];
+    }
+
+    /**
+     * Returns the product of two field elements
+     *
+     * @param a an element of the field
+     * @param b an element of the field
+     * @return a * b
+     */
+    public int multiply(int a, int b) {
+        if (mul != null) return mul[a][b];
+        if (a == 0 || b == 0) return 0;
+        return exp[log[a] + log[b]];
+    }
+
+    /**
+     * Returns the quotient of two field elements
+     *
+     * @param a an element of the field
+     * @param b a non-zero element of the field
+     * @return a / b
+     */
+    public int divide(int a, int b) {
+        if (b == 0) throw new ArithmeticException("Division by zero");
+        if (div != null) return div[a][b];
+        if (a == 0) return 0;
+        return exp[log[a] + Q - 1 - log[b]];
     }
 
     /**
@@ -221,14 +592,25 @@ public class FiniteField {
      */
     public Vector byteToVector(byte [] bytes, int offset, int length, int coordinates) {
     	
+    	if (Q == 256 && mulTable != null) {
+
+            /* one coordinate per byte, only the bit order must be changed */
+            byte[] data = new byte[coordinates];
+            for (int i = 0 ; i < coordinates ; i++) {
+                data[i] = (byte) REVERSE_BYTE[bytes[offset + i] & 0xFF];
+            }
+            return new Vector(data, this);
+
+        }
+
     	int [] data = new int[coordinates];
     	
-    	int bitsPerField = bitsPerCoordinate();        
-    	
-    	for ( int i = 0 ; i < coordinates; i++) {
-    		data[i] = readBits(bytes, offset, i, bitsPerField);
-    	}
+    	unpack(bytes, offset, data, coordinates);
     	
+        if (mulTable != null) {
+            return new Vector(Vector.narrow(data), this);
+        }
+
         return new Vector(data, this);        
 
     }
@@ -246,53 +628,184 @@ public class FiniteField {
     }
     	
     
-    private void writeBits(byte[] data, int offset, int field, int value, int fieldSize) {
-        int start_bit, end_bit, i;        
+    /*
+     * The coordinates are stored in a little endian bit stream, coordinate i
+     * occupies bits [i * w, (i + 1) * w) where w is bitsPerCoordinate(). The
+     * bits of a coordinate are stored starting from the most significant one,
+     * hence a coordinate is read as a w bit little endian field whose bits are
+     * then reversed. The following methods convert whole arrays of
+     * coordinates: widths that divide 8 are converted one byte at a time, 16
+     * bit coordinates two bytes at a time and the other widths through a 64 
+     * bit accumulator.
+     */
+
+    private void unpack(byte[] data, int offset, int[] out, int count) {
+
+        int w = bitsPerCoordinate();
 
-        value = value % Q;
+        if ( 8 % w == 0) {
 
-        start_bit = field * fieldSize;
-        end_bit = ( field + 1) * fieldSize;        
+            int perByte = 8 / w;
+            int mask = (1 << w) - 1;
+            int shift = 8 - w;
+            int pos = offset;
 
-        for ( i = start_bit; i < end_bit; i++) {
-                byte mask, bit;
+            for (int i = 0 ; i < count ; ) {
+                int b = data[pos++] & 0xFF;
+                for (int k = 0 ; k < perByte && i < count ; k++, b >>>= w) {
+                    out[i++] = REVERSE_BYTE[b & mask] >>> shift;
+                }
+            }
 
-                mask = (byte) ( ~( 1 << (i % 8)));
-                bit = (byte) (( ( value >> (fieldSize - 1) ) & 0x1) << ( i % 8));
+        } else if ( w == 16) {
+
+            for (int i = 0, pos = offset ; i < count ; i++, pos += 2) {
+                out[i] = (REVERSE_BYTE[data[pos] & 0xFF] << 8) | REVERSE_BYTE[data[pos + 1] & 0xFF];
+            }
+
+        } else {
+
+            long acc = 0;
+            int bits = 0;
+            int pos = offset;
+            int mask = (1 << w) - 1;
+            int shift = 32 - w;
+
+            for (int i = 0 ; i < count ; i++) {
+                while (bits < w) {
+                    acc |= ((long) (data[pos++] & 0xFF)) << bits;
+                    bits += 8;
+                }
+                out[i] = Integer.reverse((int) acc & mask) >>> shift;
+                acc >>>= w;
+                bits -= w;
+            }
 
-                data[i / 8+offset] = (byte) (( data[i / 8 +offset] & mask) | bit);
-                value = value << 1;
+        }
+
+        /* fields that do not use all the values of the bits must be reduced */
+        if ( Q != 1 << w) {
+            for (int i = 0 ; i < count ; i++) {
+                out[i] = out[i] % Q;
+            }
         }
 
     }
-    
-    private int readBits(byte[] data, int offset, int field, int fieldSize) {
-    	
-        int start_bit, end_bit, i;
-        int ret;
 
-        start_bit = field * fieldSize;
-        end_bit = ( field + 1) * fieldSize;
+    private void pack(int[] in, int count, byte[] data, int offset) {
 
-        ret = 0;
+        int w = bitsPerCoordinate();
+
+        if ( 8 % w == 0) {
+
+            int perByte = 8 / w;
+            int shift = 8 - w;
+            int pos = offset;
+
+            for (int i = 0 ; i < count ; pos++) {
+
+                int b = 0;
+                int k = 0;
+
+                for ( ; k < perByte && i < count ; k++) {
+                    b |= (REVERSE_BYTE[in[i++] % Q] >>> shift) << (k * w);
+                }
+
+                if ( k == perByte) {
+                    data[pos] = (byte) b;
+                } else {
+                    /* keep the bits that follow the last coordinate */
+                    int mask = (1 << (k * w)) - 1;
+                    data[pos] = (byte) ((data[pos] & ~mask) | b);
+                }
+            }
+
+        } else if ( w == 16) {
+
+            for (int i = 0, pos = offset ; i < count ; i++, pos += 2) {
+                int value = in[i] % Q;
+                data[pos] = (byte) REVERSE_BYTE[value >>> 8];
+                data[pos + 1] = (byte) REVERSE_BYTE[value & 0xFF];
+            }
+
+        } else {
+
+            long acc = 0;
+            int bits = 0;
+            int pos = offset;
+            int shift = 32 - w;
+
+            for (int i = 0 ; i < count ; i++) {
+                acc |= ((long) (Integer.reverse(in[i] % Q) >>> shift)) << bits;
+                bits += w;
+                while (bits >= 8) {
+                    data[pos++] = (byte) acc;
+                    acc >>>= 8;
+                    bits -= 8;
+                }
+            }
+
+            /* keep the bits that follow the last coordinate */
+            if ( bits > 0) {
+                int mask = (1 << bits) - 1;
+                data[pos] = (byte) ((data[pos] & ~mask) | ((int) acc & mask));
+            }
+
+        }
 
-        for (i = start_bit; i < end_bit; i++) {
-                ret = (ret << 1 ) | ( (data[i / 8+offset] >> ( i%8)) & 0x1);
-        }        
-        
-        return ret % Q;
-    	
     }
-    
+
+    /**
+     * Packs coordinates stored one per byte for widths that divide 8, same
+     * as the first case of pack without widening the coordinates to ints
+     */
+    private void packBytes(byte[] in, int count, byte[] data, int offset) {
+
+        int w = bitsPerCoordinate();
+        int perByte = 8 / w;
+        int shift = 8 - w;
+        int pos = offset;
+
+        for (int i = 0 ; i < count ; pos++) {
+
+            int b = 0;
+            int k = 0;
+
+            for ( ; k < perByte && i < count ; k++) {
+                b |= (REVERSE_BYTE[(in[i++] & 0xFF) % Q] >>> shift) << (k * w);
+            }
+
+            if ( k == perByte) {
+                data[pos] = (byte) b;
+            } else {
+                /* keep the bits that follow the last coordinate */
+                int mask = (1 << (k * w)) - 1;
+                data[pos] = (byte) ((data[pos] & ~mask) | b);
+            }
+        }
+
+    }
+
     void vectorToBytes (Vector vector, byte [] output, int start) {    	       
 
-        int[] coordinates = vector.coordinates;
-        
-        int bitsPerField = bitsPerCoordinate();
-        
-        for ( int i = 0 ; i < coordinates.length; i++) {
-        	writeBits(output, start, i, coordinates[i], bitsPerField);
+        if (vector.bytes != null && Q == 256) {
+
+            byte[] data = vector.bytes;
+            for (int i = 0 ; i < data.length ; i++) {
+                output[start + i] = (byte) REVERSE_BYTE[data[i] & 0xFF];
+            }
+            return;
+
         }
+
+        if (vector.bytes != null && 8 % bitsPerCoordinate() == 0) {
+            packBytes(vector.bytes, vector.bytes.length, output, start);
+            return;
+        }
+
+        int[] coordinates = vector.toIntArray();
+        
+        pack(coordinates, coordinates.length, output, start);
         
     }
 
@@ -319,7 +832,7 @@ public class FiniteField {
      */
     
 	public int bitsPerCoordinate() {
-		int bitsPerCoordinate = (int) Math.ceil(Math.log(Q) / Math.log(2));
+		int bitsPerCoordinate = 32 - Integer.numberOfLeadingZeros(Q - 1);
 		return bitsPerCoordinate;
 	}
 
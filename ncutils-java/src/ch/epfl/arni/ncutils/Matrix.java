@@ -28,7 +28,6 @@ package ch.epfl.arni.ncutils;
 
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Map;
 import java.util.Random;
 
@@ -46,8 +45,8 @@ public class Matrix {
 	/** the finite field to which matrix entries belongs */
 	FiniteField ff;
 	
-	/** the entries of the matrix, indexed as [row][column] */
-	int[][] entries;
+	/** the rows of the matrix, the entry at (row, column) is entries[row].getCoordinate(column) */
+	Vector[] entries;
 	
 	/** number of columns of the matrix, notice that for 0 rows matrices the number of columns can be different than 0 */
 	int columns;
@@ -70,19 +69,32 @@ public class Matrix {
 		this.ff = ff;
 		this.columns = columns;
 		this.rows = rows;
-		this.entries = new int[rows][columns];
+		this.entries = new Vector[rows];
+		for (int i = 0 ; i < rows ; i++) {
+			entries[i] = new Vector(columns, ff);
+		}
 	}
 		
 	private Matrix(int[][] entries, FiniteField ff) {
 		this.ff = ff;
-		this.entries = entries;
+		this.entries = new Vector[entries.length];
 		this.rows = entries.length;
+		for (int i = 0 ; i < rows ; i++) {
+			this.entries[i] = Vector.wrap(entries[i], ff);
+		}
 		if (entries.length == 0) {
 			this.columns = 0;
 		} else {
 			this.columns = entries[0].length;
 		}
 	}
+
+	private Matrix(Vector[] entries, int columns, FiniteField ff) {
+		this.ff = ff;
+		this.entries = entries;
+		this.rows = entries.length;
+		this.columns = columns;
+	}
 	
 	/**
 	 * Returns the number of columns of the matrix, notice that a zero rows
@@ -121,7 +133,7 @@ public class Matrix {
 	 * @param value the value ( must be a valid value for the finite field of this matrix)
 	 */
 	public void setEntry(int row, int column, int value) {
-		entries[row][column] = value;
+		entries[row].setCoordinate(column, value);
 	}
 	
 	/**
@@ -132,7 +144,7 @@ public class Matrix {
 	 * @return the current value at position (row, column)
 	 */
 	public int getEntry(int row, int column) {
-		return entries[row][column];
+		return entries[row].getCoordinate(column);
 	}
 
 	/**
@@ -143,7 +155,7 @@ public class Matrix {
 	 * @param v a vector containing the entries that should be set
 	 */
 	public void setRow(int row, Vector v) {
-		System.arraycopy(v.coordinates, 0, entries[row], 0, columns);
+		entries[row].copyFrom(v, columns);
 	}
 
 	/**
@@ -155,7 +167,7 @@ public class Matrix {
 	 */
 	public void setColumn(int column, Vector v) {
 		for ( int i = 0 ; i < rows; i++) {
-			entries[i][column] = v.coordinates[i];
+			entries[i].setCoordinate(column, v.getCoordinate(i));
 		}
 	}
 
@@ -166,9 +178,9 @@ public class Matrix {
 	 * @param v a vector from the finite field of this matrix
 	 */
 	public void appendRow(Vector v) {
-		int[][] newEntries = new int[rows+1][];
+		Vector[] newEntries = new Vector[rows+1];
 		System.arraycopy(entries, 0, newEntries, 0, rows);
-		newEntries[rows] = new int[columns];
+		newEntries[rows] = new Vector(columns, ff);
 		entries = newEntries;
 		setRow(rows, v);
 		rows++;
@@ -182,7 +194,7 @@ public class Matrix {
 	 */
 	public void appendMatrixBelow(Matrix m) {
 		for ( int i = 0 ; i < m.rows; i++) {
-			appendRow(Vector.wrap(m.entries[i], m.ff));
+			appendRow(m.entries[i]);
 		}
 	}
 	
@@ -208,20 +220,16 @@ public class Matrix {
 	public void appendColumn(Vector v) {		
 		
 		if (rows == 0) {
-			entries = new int[v.getLength()][0];
+			entries = new Vector[v.getLength()];
+			for ( int i = 0 ; i < entries.length ; i++) {
+				entries[i] = new Vector(0, ff);
+			}
 			rows = v.getLength();
 		}
 		
-		int [][] newEntries = new int[rows][columns+1];
-		
-		for ( int i = 0 ; i < entries.length ; i++) {
-			System.arraycopy(entries[i], 0, newEntries[i], 0, columns);
-		}
-		
-		entries = newEntries;
-		
 		for ( int i = 0 ; i < entries.length ; i++) {
-			entries[i][columns] = v.coordinates[i];
+			entries[i] = entries[i].copy(columns + 1);
+			entries[i].setCoordinate(columns, v.getCoordinate(i));
 		}
 		
 		columns++;
@@ -247,14 +255,10 @@ public class Matrix {
 	 * @return a copy of this matrix multiplied by c
 	 */
 	public Matrix scalarMultiply(int c) {
-		Matrix output = new Matrix(rows, columns, ff);
-		
-		int [][] mul = ff.mul;
+		Matrix output = copy();
 		
 		for ( int i = 0 ; i < output.rows ; i ++ ) {
-			for ( int j = 0 ; j < output.columns ; j++) {
-				output.entries[i][j] = mul[entries[i][j]][c];				
-			}
+			output.entries[i].scalarMultiplyInPlace(c);
 		}
 		
 		return output;
@@ -271,14 +275,10 @@ public class Matrix {
 	 * @return a matrix that is the sum of the two matrices
 	 */
 	public Matrix add(Matrix other) {
-		Matrix output = new Matrix(rows, columns, ff);
-		
-		int [][] sum = ff.sum;
+		Matrix output = copy();
 		
 		for ( int i = 0 ; i < output.rows ; i ++ ) {
-			for ( int j = 0 ; j < output.columns ; j++) {
-				output.entries[i][j] = sum[entries[i][j]][other.entries[i][j]];				
-			}
+			output.entries[i].addInPlace(other.entries[i]);
 		}
 		
 		return output;
@@ -300,14 +300,10 @@ public class Matrix {
 		
 		Matrix output = new Matrix(this.rows, other.columns, ff);
 		
-		int [][] mul = ff.mul;
-		int [][] sum = ff.sum;
-		
+		/* each row of the output is a linear combination of the rows of other */
 		for ( int i = 0 ; i < output.rows ; i ++ ) {
-			for ( int j = 0 ; j < output.columns ; j++) {
-				for ( int k = 0 ; k < columns ; k++) {
-					output.entries[i][j] = sum[output.entries[i][j]][mul[this.entries[i][k]][other.entries[k][j]]];
-				}
+			for ( int k = 0 ; k < columns ; k++) {
+				output.entries[i].multiplyAndAddInPlace(entries[i].getCoordinate(k), other.entries[k]);
 			}
 		}
 		
@@ -332,7 +328,7 @@ public class Matrix {
 		
 		for (int i = 0 ; i < rows ; i++ ) {
 			
-			Map<Integer, Vector> decoded = decoder.addVector(new Vector(entries[i], ff));
+			Map<Integer, Vector> decoded = decoder.addVector(entries[i]);
 			
 			if ( decoded != null) {
 				for ( Map.Entry<Integer, Vector> entry : decoded.entrySet()) {
@@ -357,7 +353,7 @@ public class Matrix {
 		
 		for ( int i = 0 ; i < output.rows ; i ++ ) {
 			for ( int j = 0 ; j < output.columns ; j++) {
-					output.entries[i][j] = entries[j][i];
+					output.entries[i].setCoordinate(j, entries[j].getCoordinate(i));
 			}
 		}
 		
@@ -384,8 +380,8 @@ public class Matrix {
 			// move at the right position a row that has a 
 			// non zero entry at the current pivot position			
 			for ( int i = nextLine ; i < rows ; i++) {
-				if ( output.entries[i][nextPivot] != 0) {
-					int [] tmp = output.entries[nextLine];
+				if ( output.entries[i].getCoordinate(nextPivot) != 0) {
+					Vector tmp = output.entries[nextLine];
 					output.entries[nextLine] = output.entries[i];
 					output.entries[i] = tmp;
 					break;
@@ -393,21 +389,21 @@ public class Matrix {
 			}
 			
 			// no line has a pivot, move to next column
-			if ( output.entries[nextLine][nextPivot] == 0) {
+			if ( output.entries[nextLine].getCoordinate(nextPivot) == 0) {
 				nextPivot++;
 				continue;
 			}
 			
 			
 			// make sure we have a 1 at the pivot
-			Vector v = Vector.wrap(output.entries[nextLine], ff);			
-			v.scalarMultiplyInPlace(ff.inverse[output.entries[nextLine][nextPivot]]);
+			Vector v = output.entries[nextLine];
+			v.scalarMultiplyInPlace(ff.inverse[v.getCoordinate(nextPivot)]);
 			
 			// zero out all entries below the pivot
 			for ( int i = nextLine+1; i < rows; i++) {
-				Vector v2 = Vector.wrap(output.entries[i], ff);
+				Vector v2 = output.entries[i];
 				
-				v2.multiplyAndAddInPlace(ff.sub[0][v2.getCoordinate(nextPivot)], v);
+				v2.multiplyAndAddInPlace(ff.subtract(0, v2.getCoordinate(nextPivot)), v);
 			}
 			
 			nextLine++;
@@ -439,8 +435,8 @@ public class Matrix {
 			// move at the right position a row that has a 
 			// non zero entry at the current pivot position			
 			for ( int i = nextLine ; i < rows ; i++) {
-				if ( output.entries[i][nextPivot] != 0) {
-					int [] tmp = output.entries[nextLine];
+				if ( output.entries[i].getCoordinate(nextPivot) != 0) {
+					Vector tmp = output.entries[nextLine];
 					output.entries[nextLine] = output.entries[i];
 					output.entries[i] = tmp;
 					break;
@@ -448,24 +444,24 @@ public class Matrix {
 			}
 			
 			// no line has a pivot, move to next column
-			if ( output.entries[nextLine][nextPivot] == 0) {
+			if ( output.entries[nextLine].getCoordinate(nextPivot) == 0) {
 				nextPivot++;
 				continue;
 			}
 			
 			
 			// make sure we have a 1 at the pivot
-			Vector v = Vector.wrap(output.entries[nextLine], ff);			
-			v.scalarMultiplyInPlace(ff.inverse[output.entries[nextLine][nextPivot]]);
+			Vector v = output.entries[nextLine];
+			v.scalarMultiplyInPlace(ff.inverse[v.getCoordinate(nextPivot)]);
 			
 			// zero out all entries below and above the pivot
 			for ( int i = 0; i < rows; i++) {
 				
 				if ( i == nextLine) continue;
 				
-				Vector v2 = Vector.wrap(output.entries[i], ff);
+				Vector v2 = output.entries[i];
 				
-				v2.multiplyAndAddInPlace(ff.sub[0][v2.getCoordinate(nextPivot)], v);
+				v2.multiplyAndAddInPlace(ff.subtract(0, v2.getCoordinate(nextPivot)), v);
 			}
 			
 			nextLine++;
@@ -487,7 +483,7 @@ public class Matrix {
 		
 		for ( int i = 0 ; i < rows; i++ ) {
 			for ( int j = 0 ; j < columns; j++) {
-				if ( entries[i][j] != 0) return false;
+				if ( entries[i].getCoordinate(j) != 0) return false;
 			}
 		}
 		
@@ -507,11 +503,11 @@ public class Matrix {
 		for ( int i = 0 ; i < rows; i++ ) {
 			for ( int j = 0 ; j < columns; j++) {
 				if ( i==j ) {
-					if (entries[i][j] != 1) {				
+					if (entries[i].getCoordinate(j) != 1) {				
 						return false;
 					}
 				} else { 
-					if ( entries[i][j] != 0) {
+					if ( entries[i].getCoordinate(j) != 0) {
 						return false;
 					}
 				}
@@ -529,7 +525,7 @@ public class Matrix {
 	public boolean isUpperTriangular() {
 		for ( int i = 0 ; i < rows; i++ ) {
 			for ( int j = 0 ; j < columns; j++) {
-				if ( i > j && entries[i][j] != 0) {				
+				if ( i > j && entries[i].getCoordinate(j) != 0) {				
 					return false;					
 				}
 			}
@@ -545,17 +541,13 @@ public class Matrix {
 	 */
 	public Matrix copy() {
 		
-		int [][] newEntries = new int[rows][columns];
+		Vector [] newEntries = new Vector[rows];
 		
 		for ( int i = 0 ; i < entries.length ; i++) {
-			System.arraycopy(entries[i], 0, newEntries[i], 0, columns);
+			newEntries[i] = entries[i].copy(columns);
 		}
 		
-		Matrix matrix = new Matrix(newEntries, ff);
-		matrix.columns = columns;
-		matrix.rows = rows;
-		
-		return matrix;
+		return new Matrix(newEntries, columns, ff);
 		
 	}
 
@@ -571,7 +563,7 @@ public class Matrix {
 		Vector [] base = new Vector[rows]; 
 		
 		for ( int i = 0 ; i < rows ; i ++ ) {
-			base[i] = new Vector(entries[i], ff);
+			base[i] = entries[i];
 		}
 		
 		return new VectorSpace(ff, columns, base);
@@ -623,7 +615,7 @@ public class Matrix {
 	 * @return a vector containing the current value of the specified row.
 	 */
 	public Vector copyRow(int row) {
-		return Vector.wrap(entries[row], ff).copy();
+		return entries[row].copy();
 	}
 
 	/**
@@ -633,7 +625,13 @@ public class Matrix {
 	 * @return a vector containing the current value of the specified column.
 	 */
 	public Vector copyColumn(int column) {
-		return Vector.wrap(toTranspose().entries[column], ff).copy();
+		Vector vector = new Vector(rows, ff);
+		
+		for ( int i = 0 ; i < rows ; i++) {
+			vector.setCoordinate(i, entries[i].getCoordinate(column));
+		}
+		
+		return vector;
 	}
 	
 	/**
@@ -653,7 +651,7 @@ public class Matrix {
 		
 		for (int i = 0 ; i < output.rows ; i++) {
 			for (int j = 0 ; j < output.columns ; j++) {
-				output.entries[i][j] = entries[i+firstRow][j+firstColumn];
+				output.entries[i].setCoordinate(j, entries[i+firstRow].getCoordinate(j+firstColumn));
 			}
 		}
 		
@@ -667,7 +665,7 @@ public class Matrix {
 		int result = 1;
 		result = prime * result + columns;
 		for (int i = 0 ; i < rows ; i++) {
-			result = prime * result + Arrays.hashCode(entries[i]);
+			result = prime * result + entries[i].coordinatesHashCode();
 		}
 		result = prime * result + ff.hashCode();
 		result = prime * result + rows;
@@ -689,7 +687,7 @@ public class Matrix {
 		
 		for ( int i = 0 ; i < rows; i++ ) {
 			for ( int j = 0 ; j < columns; j++) {
-				if ( otherMatrix.entries[i][j] != entries[i][j])
+				if ( otherMatrix.entries[i].getCoordinate(j) != entries[i].getCoordinate(j))
 					return false;				
 			}
 		}
@@ -707,7 +705,7 @@ public class Matrix {
 		for (int i = 0 ; i < rows ; i++) {
 			for (int j = 0 ; j < columns ; j++) {
 				if ( j > 0 ) b.append("\t");
-				b.append(entries[i][j]);
+				b.append(entries[i].getCoordinate(j));
 			}
 			b.append("\n");
 		}
@@ -759,7 +757,7 @@ public class Matrix {
 		
 		for ( int i = 0 ; i < rows; i++ ) {
 			for ( int j = 0 ; j < columns; j++) {
-				matrix.entries[i][j] = rand.nextInt(ff.getCardinality());
+				matrix.entries[i].setCoordinate(j, rand.nextInt(ff.getCardinality()));
 			}
 		}
 		
@@ -779,7 +777,7 @@ public class Matrix {
 		Matrix matrix = new Matrix(size, size, ff);
 		
 		for ( int i = 0 ; i < size; i++ ) {
-			matrix.entries[i][i] = 1;
+			matrix.entries[i].setCoordinate(i, 1);
 		}
 		
 		return matrix;
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2012, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *      * Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *      * Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *      * Neither the name of the EPFL nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *  
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************/
+package ch.epfl.arni.ncutils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes coded packets applying the Gauss-Jordan elimination directly to
+ * the received packets. Every row operation performed on the coding vectors
+ * is performed also on the payloads, when a coding vector is reduced to an
+ * elementary vector the corresponding payload is the decoded payload.
+ * 
+ * Differently from CodingVectorDecoder this class does not need to keep
+ * track of the inverse of the coding vectors, it uses O(N²) memory for the
+ * coding vectors and O(N L) memory for the payloads, where N is the maximum
+ * number of packets that can get combined and L the length of the payloads.
+ *
+ * @author lokeller
+ */
+class OnTheFlyDecoder {
+
+    /** the coding vectors of the received packets in reduced row echelon form */
+    private Vector[] coefficients;
+
+    /** the payloads of the received packets, reduced as the coding vectors */
+    private Vector[] payloads;
+
+    /** stores the position of the pivot of each line */
+    private int[] pivotPos;
+
+    /** stores for each line if it has already been decoded or not */
+    private boolean[] decoded;
+
+    /** the number of lines in use */
+    private int rank = 0;
+
+    private FiniteField ff;
+
+    OnTheFlyDecoder(int maxPackets, FiniteField ff) {
+        this.ff = ff;
+        coefficients = new Vector[maxPackets];
+        payloads = new Vector[maxPackets];
+        pivotPos = new int[maxPackets];
+        decoded = new boolean[maxPackets];
+    }
+
+    int getMaxPackets() {
+        return coefficients.length;
+    }
+
+    int getSubspaceSize() {
+        return rank;
+    }
+
+    /**
+     * Adds a coded packet to the decoder.
+     * 
+     * @return the uncoded packets that can be decoded thanks to the packet,
+     * null if the packet is linearly dependant from the others already added
+     */
+    List<UncodedPacket> addPacket(CodedPacket p) {
+
+        if (rank == coefficients.length) {
+            return null;
+        }
+
+        Vector coefficient = p.getCodingVector().copy();
+        Vector payload = p.getPayload().copy();
+
+        /* zeros before */
+        for (int i = 0; i < rank; i++) {
+
+            int m = coefficient.getCoordinate(pivotPos[i]);
+
+            if (m == 0) continue;
+
+            int c = ff.subtract(0, m);
+            coefficient.multiplyAndAddInPlace(c, coefficients[i]);
+            payload.multiplyAndAddInPlace(c, payloads[i]);
+        }
+
+        /* the pivot columns of the other lines are now zero */
+        int pivot = -1;
+        for (int i = 0; i < coefficient.getLength(); i++) {
+            if (coefficient.getCoordinate(i) != 0) {
+                pivot = i;
+                break;
+            }
+        }
+
+        if (pivot == -1) {
+            return null;
+        }
+
+        /* divide the line */
+        int pval = coefficient.getCoordinate(pivot);
+        if (pval != 1) {
+            coefficient.scalarMultiplyInPlace(ff.inverse[pval]);
+            payload.scalarMultiplyInPlace(ff.inverse[pval]);
+        }
+
+        /* zero the column above the pivot */
+        for (int i = 0; i < rank; i++) {
+
+            int m = coefficients[i].getCoordinate(pivot);
+
+            if (m == 0) continue;
+
+            int c = ff.subtract(0, m);
+            coefficients[i].multiplyAndAddInPlace(c, coefficient);
+            payloads[i].multiplyAndAddInPlace(c, payload);
+        }
+
+        coefficients[rank] = coefficient;
+        payloads[rank] = payload;
+        pivotPos[rank] = pivot;
+        rank++;
+
+        /* look for decoded lines */
+        ArrayList<UncodedPacket> output = new ArrayList<UncodedPacket>();
+
+        for (int i = 0; i < rank; i++) {
+
+            if (decoded[i]) continue;
+
+            if (isElementary(coefficients[i], pivotPos[i])) {
+                decoded[i] = true;
+                output.add(new UncodedPacket(pivotPos[i], payloads[i]));
+            }
+        }
+
+        return output;
+    }
+
+    private static boolean isElementary(Vector v, int pivot) {
+
+        for (int j = 0; j < v.getLength(); j++) {
+            if (j != pivot && v.getCoordinate(j) != 0) return false;
+        }
+
+        return true;
+    }
+
+}
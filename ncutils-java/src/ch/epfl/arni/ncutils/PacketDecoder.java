@@ -29,6 +29,8 @@ package ch.epfl.arni.ncutils;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 
 /**
@@ -36,20 +38,54 @@ import java.util.Map;
  * decoder to compute how to reconstruct uncoded packets and then linearly
  * combine the received packets payloads to reconstruct the uncoded payloads.
  *
+ * When a ForkJoinPool is set, the payloads of the uncoded packets that are
+ * decoded at once (for instance when the last innovative packet is received
+ * in full rank mode) are combined in parallel, split by uncoded packet and
+ * then by stripes of payload coordinates.
+ *
  * @author lokeller
  */
 public class PacketDecoder {
 
+    /**
+     * size in bytes of the payload blocks decoded together in full rank
+     * mode, the blocks of all the received payloads should fit in the cache
+     */
+    private static final int CACHE_BLOCK_SIZE = 1 << 18;
+
+    /** minimum number of coordinates decoded together in full rank mode */
+    private static final int MIN_BLOCK_LENGTH = 64;
+
+    /**
+     * minimum number of coordinates combined by a parallel task, smaller
+     * tasks cost more to schedule than to compute
+     */
+    private static final int MIN_PARALLEL_WORK = 1 << 16;
+
     private ArrayList<CodedPacket> packets = new ArrayList<CodedPacket>();
 
     private CodingVectorDecoder codingVectorDecoder;
 
+    /** the decoder used in on the fly mode, null in the other modes */
+    private OnTheFlyDecoder onTheFlyDecoder;
+
     private int payloadCoordinatesCount;
 
     private FiniteField ff;
 
+    private DecodingMode mode;
+
+    /** the pool used to combine the payloads in parallel, null to combine them on the caller thread */
+    private ForkJoinPool pool;
+
+    /** the payload being decoded by addPacket into a buffer, reused for each packet */
+    private Vector decodedPayload;
+
+    /** copies of the packets added by addPacket into a buffer, allocated by the first call */
+    private CodedPacket[] packetCopies;
+
     /**
-     * Constructs a new PacketDecoder.
+     * Constructs a new PacketDecoder that decodes packets incrementally.
      *
      * @param field the finite field over which the decoder will operate
      * @param maxPackets the maximum number of coded packets, i.e. the length of
@@ -57,9 +93,59 @@ public class PacketDecoder {
      * @param payloadBytesLength the length in bytes of the payload of the packets
      */
     public PacketDecoder(FiniteField field, int maxPackets, int payloadBytesLength) {
+        this(field, maxPackets, payloadBytesLength, DecodingMode.INCREMENTAL);
+    }
+
+    /**
+     * Constructs a new PacketDecoder.
+     *
+     * @param field the finite field over which the decoder will operate
+     * @param maxPackets the maximum number of coded packets, i.e. the length of
+     * the coding vectors
+     * @param payloadBytesLength the length in bytes of the payload of the packets
+     * @param mode the strategy used to recover the uncoded packets
+     */
+    public PacketDecoder(FiniteField field, int maxPackets, int payloadBytesLength, DecodingMode mode) {
         this.ff = field;
-        codingVectorDecoder = new CodingVectorDecoder(maxPackets,ff);
+        this.mode = mode;
+        if (mode == DecodingMode.ON_THE_FLY) {
+            onTheFlyDecoder = new OnTheFlyDecoder(maxPackets, ff);
+        } else {
+            codingVectorDecoder = new CodingVectorDecoder(maxPackets,ff);
+        }
         this.payloadCoordinatesCount = ff.coordinatesCount(payloadBytesLength);
+        if (mode != DecodingMode.ON_THE_FLY) {
+            packets.ensureCapacity(maxPackets);
+        }
+    }
+
+    /**
+     * Sets the pool used to combine the payloads of the uncoded packets in
+     * parallel, the payloads are combined on the thread that adds the
+     * packets if the pool is null (the default).
+     *
+     * @param pool a ForkJoinPool, for instance ForkJoinPool.commonPool(), or null
+     */
+    public void setForkJoinPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the pool used to combine the payloads in parallel
+     *
+     * @return the pool or null if the payloads are combined on the caller thread
+     */
+    public ForkJoinPool getForkJoinPool() {
+        return pool;
+    }
+
+    /**
+     * Returns the strategy used by this decoder to recover uncoded packets
+     *
+     * @return the decoding mode of this decoder
+     */
+    public DecodingMode getDecodingMode() {
+        return mode;
     }
 
     /**
@@ -73,6 +159,12 @@ public class PacketDecoder {
      * coded packet (and what was previously added)
      */
     public List<UncodedPacket> addPacket(CodedPacket p) {
+
+        if (mode == DecodingMode.FULL_RANK) {
+            return addPacketFullRank(p);
+        } else if (mode == DecodingMode.ON_THE_FLY) {
+            return addPacketOnTheFly(p);
+        }
         
         Map<Integer, Vector> decoded = codingVectorDecoder.addVector(p.getCodingVector());
     
@@ -87,6 +179,29 @@ public class PacketDecoder {
         /* decode the new packets that can be decoded */
         ArrayList<UncodedPacket> output = new ArrayList<UncodedPacket>();
         
+        if (isParallel(decoded.size(), payloadCoordinatesCount)) {
+
+            Vector[] encodings = new Vector[decoded.size()];
+            Vector[] payloads = new Vector[decoded.size()];
+            int[] ids = new int[decoded.size()];
+
+            int i = 0;
+            for ( Map.Entry<Integer, Vector> entry : decoded.entrySet() ) {
+                ids[i] = entry.getKey();
+                encodings[i] = entry.getValue();
+                payloads[i] = new Vector(payloadCoordinatesCount, ff);
+                i++;
+            }
+
+            pool.invoke(new CombineTask(encodings, payloads, 0, ids.length, 0, payloadCoordinatesCount));
+
+            for (i = 0; i < ids.length; i++) {
+                output.add(new UncodedPacket(ids[i], payloads[i]));
+            }
+
+            return output;
+        }
+
         for ( Map.Entry<Integer, Vector> entry : decoded.entrySet() ) {
 
             Vector decodedPayload = decodePayload(entry.getValue());
@@ -99,20 +214,179 @@ public class PacketDecoder {
 
     }
 
+    /**
+     *
+     * Adds a coded packet to the decoding buffer and writes the uncoded
+     * packets that can be decoded thanks to it in the specified buffers. In
+     * contrast to addPacket(CodedPacket) this method doesn't allocate objects
+     * for each packet (the packet payloads are converted to bytes through a
+     * temporary array only for fields whose coordinate width does not divide
+     * 8 bits, such as GF(2^3) or GF(5)). The 
+     * decoder keeps a copy of the innovative packets, so the caller can 
+     * reuse p. It can be used only in incremental mode.
+     *
+     * @param p a CodedPacket with payload length and coding coefficient length
+     * compatible with the decoder
+     * @param decodedIds an array of at least getMaxPackets() elements where
+     * the ids of the decoded uncoded packets are written
+     * @param payloads a buffer where the payload of the i-th decoded packet is
+     * written at position offset + i * getPayloadLength()
+     * @param offset the position of the first payload in the buffer
+     * @return the number of uncoded packets that have been decoded thanks to
+     * this coded packet (and what was previously added)
+     */
+    public int addPacket(CodedPacket p, int[] decodedIds, byte[] payloads, int offset) {
+
+        if (mode != DecodingMode.INCREMENTAL) {
+            throw new IllegalStateException("Only incremental decoders can write into buffers");
+        }
+
+        int count = codingVectorDecoder.addVector(p.getCodingVector(), decodedIds);
+
+        if (count == -1) {
+            return 0;
+        }
+
+        packets.add(copyPacket(p));
+
+        if (decodedPayload == null) {
+            decodedPayload = new Vector(payloadCoordinatesCount, ff);
+        }
+
+        int payloadLength = getPayloadLength();
+
+        for (int i = 0; i < count; i++) {
+            decodePayload(codingVectorDecoder.getDecodingLine(decodedIds[i]), getMaxPackets(), decodedPayload);
+            ff.vectorToBytes(decodedPayload, payloads, offset + i * payloadLength);
+        }
+
+        return count;
+
+    }
+
+    /**
+     * Copies a packet in the buffer of the next line of the decoder, the 
+     * buffers of all the lines are allocated the first time
+     */
+    private CodedPacket copyPacket(CodedPacket p) {
+
+        int maxPackets = getMaxPackets();
+
+        if (packetCopies == null) {
+            packetCopies = new CodedPacket[maxPackets];
+            for (int i = 0; i < maxPackets; i++) {
+                packetCopies[i] = new CodedPacket(new Vector(maxPackets, ff), new Vector(payloadCoordinatesCount, ff));
+            }
+        }
+
+        CodedPacket copy = packetCopies[packets.size()];
+
+        copy.getCodingVector().copyFrom(p.getCodingVector(), maxPackets);
+        copy.getPayload().copyFrom(p.getPayload(), payloadCoordinatesCount);
+
+        return copy;
+    }
+
+    private List<UncodedPacket> addPacketOnTheFly(CodedPacket p) {
+
+        List<UncodedPacket> output = onTheFlyDecoder.addPacket(p);
+
+        /* the payloads are reduced by the on the fly decoder, the packets
+         are not retained */
+        if (output == null) {
+            return new ArrayList<UncodedPacket>();
+        }
+
+        return output;
+
+    }
+
+    private List<UncodedPacket> addPacketFullRank(CodedPacket p) {
+
+        ArrayList<UncodedPacket> output = new ArrayList<UncodedPacket>();
+
+        if (!codingVectorDecoder.reduceVector(p.getCodingVector())) {
+            return output;
+        }
+
+        packets.add(p);
+
+        if (packets.size() < getMaxPackets()) {
+            return output;
+        }
+
+        Matrix inverse = codingVectorDecoder.solve();
+
+        int maxPackets = getMaxPackets();
+
+        Vector[] decoded = new Vector[maxPackets];
+        for (int id = 0; id < maxPackets; id++) {
+            decoded[id] = new Vector(payloadCoordinatesCount, ff);
+        }
+
+        if (isParallel(maxPackets, payloadCoordinatesCount)) {
+
+            pool.invoke(new CombineTask(inverse.entries, decoded, 0, maxPackets, 0, payloadCoordinatesCount));
+
+            for (int id = 0; id < maxPackets; id++) {
+                output.add(new UncodedPacket(id, decoded[id]));
+            }
+
+            return output;
+        }
+
+        /* multiply the inverse with the payloads one block of columns at a 
+           time, so that the blocks of the payloads stay in the cache while 
+           they are combined for every uncoded packet */
+        int blockLength = Math.max(MIN_BLOCK_LENGTH, CACHE_BLOCK_SIZE / maxPackets);
+
+        for (int start = 0; start < payloadCoordinatesCount; start += blockLength) {
+
+            int length = Math.min(blockLength, payloadCoordinatesCount - start);
+
+            for (int id = 0; id < maxPackets; id++) {
+
+                Vector row = inverse.entries[id];
+
+                for (int codedPacketId = 0; codedPacketId < maxPackets; codedPacketId++) {
+                    decoded[id].multiplyAndAddInPlace(row.getCoordinate(codedPacketId),
+                            packets.get(codedPacketId).getPayload(), start, length);
+                }
+            }
+        }
+
+        for (int id = 0; id < maxPackets; id++) {
+            output.add(new UncodedPacket(id, decoded[id]));
+        }
+
+        return output;
+
+    }
+
     private Vector decodePayload(Vector encoding) {
         
         /* this vector will store the linear combination of coded payloads that
            correspond to the decoded payload */
         Vector decodedPayload = new Vector(payloadCoordinatesCount, ff);
-        int[] coordinates3 = decodedPayload.coordinates;
         
-        /* linearly combine the payloads */
+        decodePayload(encoding, 0, decodedPayload);
+        
+        return decodedPayload;
+    }
+
+    /**
+     * Writes in decodedPayload the combination of the payloads of the coded
+     * packets whose coefficients start at position start of encoding
+     */
+    private void decodePayload(Vector encoding, int start, Vector decodedPayload) {
+        
+        decodedPayload.setToZero();
         
-        int[] coordinates = encoding.coordinates;
+        /* linearly combine the payloads */
         
-        for (int codedPacketId = 0; codedPacketId < encoding.getLength(); codedPacketId++) {
+        for (int codedPacketId = 0; codedPacketId < packets.size(); codedPacketId++) {
           
-			int coeff = coordinates[codedPacketId];
+			int coeff = encoding.getCoordinate(start + codedPacketId);
 
             /* skip the packet if the coordinate is zero */
             if (coeff == 0) {
@@ -120,21 +394,79 @@ public class PacketDecoder {
             }
 
             Vector codedPayload = packets.get(codedPacketId).getPayload();
-            int[] coordinates2 = codedPayload.coordinates;
             
             /* linearly combine the payload of packet "codedPacketId" */
-            for (int c = 0; c < codedPayload.getLength(); c++) {               
-				int v2 = coordinates2[c];                
-				int v1 = coordinates3[c];
-                int val = ff.sum[v1][ff.mul[coeff][v2]];
-                coordinates3[c] = val;
+            decodedPayload.multiplyAndAddInPlace(coeff, codedPayload);
+        }
+    }
+
+    /**
+     * Returns true if the combination of the payloads of count uncoded packets
+     * over length coordinates must be split over the pool
+     */
+    private boolean isParallel(int count, int length) {
+        return pool != null && (long) count * length * packets.size() >= 2 * MIN_PARALLEL_WORK;
+    }
+
+    /**
+     * Combines the payloads of the coded packets for a range of uncoded
+     * packets over a stripe of coordinates. The task is split by uncoded
+     * packet first and then by stripe until the work of each task is below
+     * MIN_PARALLEL_WORK, the tasks write disjoint parts of the payloads.
+     */
+    private class CombineTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** the coefficients of the coded packets for each uncoded packet */
+        private final Vector[] encodings;
+
+        /** the payloads of the uncoded packets, initially zero */
+        private final Vector[] payloads;
+
+        private final int first, last, start, end;
+
+        CombineTask(Vector[] encodings, Vector[] payloads, int first, int last, int start, int end) {
+            this.encodings = encodings;
+            this.payloads = payloads;
+            this.first = first;
+            this.last = last;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+
+            long work = (long) (last - first) * (end - start) * packets.size();
+
+            if (work < 2 * MIN_PARALLEL_WORK || (last - first == 1 && end - start < 2 * MIN_BLOCK_LENGTH)) {
+
+                for (int i = first; i < last; i++) {
+                    for (int codedPacketId = 0; codedPacketId < packets.size(); codedPacketId++) {
+                        payloads[i].multiplyAndAddInPlace(encodings[i].getCoordinate(codedPacketId),
+                                packets.get(codedPacketId).getPayload(), start, end - start);
+                    }
+                }
+
+            } else if (last - first > 1) {
+
+                int middle = (first + last) >>> 1;
+                invokeAll(new CombineTask(encodings, payloads, first, middle, start, end),
+                        new CombineTask(encodings, payloads, middle, last, start, end));
+
+            } else {
+
+                int middle = start + (end - start) / 2;
+                invokeAll(new CombineTask(encodings, payloads, first, last, start, middle),
+                        new CombineTask(encodings, payloads, first, last, middle, end));
             }
         }
-        return decodedPayload;
     }
 
     /**
-     * Returns a list of the coded packets that have been added to the decoder
+     * Returns a list of the coded packets that have been added to the decoder.
+     * In on the fly mode the packets are not retained and the list is empty.
      * 
      * @return a list of the coded packets added to the decoder
      * 
@@ -143,12 +475,23 @@ public class PacketDecoder {
     	return packets;
     }
 
+    /**
+     * Returns the length in bytes of the payloads written by
+     * addPacket(CodedPacket, int[], byte[], int)
+     *
+     * @return the length in bytes of a decoded payload
+     */
+    public int getPayloadLength() {
+        return ff.bytesLength(payloadCoordinatesCount);
+    }
+
     /**
      * Returns the maximum number of packets that can be combined
      *
      * @return the number of packets that can be combined at most
      */
     public int getMaxPackets() {
+        if (onTheFlyDecoder != null) return onTheFlyDecoder.getMaxPackets();
         return codingVectorDecoder.getMaxPackets();
     }
 
@@ -160,6 +503,7 @@ public class PacketDecoder {
      * @return a number between 0 and getMaxPackets()
      */
     public int getSubspaceSize() {
+        if (onTheFlyDecoder != null) return onTheFlyDecoder.getSubspaceSize();
     	return codingVectorDecoder.getSubspaceSize();
     }
     
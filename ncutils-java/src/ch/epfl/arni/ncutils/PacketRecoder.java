@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright (c) 2012, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *      * Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *      * Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *      * Neither the name of the EPFL nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *  
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************/
+package ch.epfl.arni.ncutils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Creates coded packets that are random linear combinations of the coded
+ * packets received, without decoding them. It is meant for relays that
+ * forward many more packets than they decode.
+ * 
+ * The recoder keeps only a basis of the received packets in reduced row
+ * echelon form: the coding vector of each line has a one in its pivot
+ * column and zeros in the pivot columns of the other lines. The multipliers
+ * needed to reduce a new packet are then the coordinates of its coding
+ * vector in the pivot columns, so packets that are not innovative are
+ * detected by reducing only their coding vector. Differently from a
+ * PacketDecoder the recoder doesn't keep the raw packets nor the inverse
+ * of the coding vectors. A relay that also decodes can feed the recoder
+ * with the packets returned by {@link PacketDecoder#getCodedPackets()}
+ * unless the decoder works in on the fly mode.
+ *
+ * @author lokeller
+ */
+public class PacketRecoder {
+
+    /**
+     * size in bytes of the payload blocks recoded together, the blocks of
+     * all the lines and of the packets created should fit in the cache
+     */
+    private static final int CACHE_BLOCK_SIZE = 1 << 18;
+
+    /** minimum number of coordinates recoded together */
+    private static final int MIN_BLOCK_LENGTH = 64;
+
+    /** the coding vectors of the basis in reduced row echelon form */
+    private Vector[] coefficients;
+
+    /** the payloads of the basis, reduced as the coding vectors */
+    private Vector[] payloads;
+
+    /** stores the position of the pivot of each line */
+    private int[] pivotPos;
+
+    /** the number of lines in use */
+    private int rank = 0;
+
+    private int payloadBytesLength;
+
+    private FiniteField ff;
+
+    /**
+     * Constructs a new PacketRecoder.
+     *
+     * @param field the finite field over which the recoder will operate
+     * @param maxPackets the maximum number of coded packets, i.e. the length of
+     * the coding vectors
+     * @param payloadBytesLength the length in bytes of the payload of the packets
+     */
+    public PacketRecoder(FiniteField field, int maxPackets, int payloadBytesLength) {
+        this.ff = field;
+        this.payloadBytesLength = payloadBytesLength;
+        coefficients = new Vector[maxPackets];
+        payloads = new Vector[maxPackets];
+        pivotPos = new int[maxPackets];
+    }
+
+    /**
+     * Adds a coded packet to the basis of the recoder.
+     *
+     * @param p a CodedPacket with payload length and coding coefficient length
+     * compatible with the recoder
+     * @return true if the packet is linearly independent from the packets
+     * previously added
+     */
+    public boolean addPacket(CodedPacket p) {
+
+        if (rank == coefficients.length) {
+            return false;
+        }
+
+        Vector coefficient = p.getCodingVector().copy();
+
+        /* the pivot columns of the lines are zero on the other lines, the
+           multipliers are the coordinates of the packet in these columns */
+        int[] multipliers = new int[rank];
+
+        for (int i = 0; i < rank; i++) {
+
+            int m = p.getCodingVector().getCoordinate(pivotPos[i]);
+
+            if (m == 0) continue;
+
+            multipliers[i] = ff.subtract(0, m);
+            coefficient.multiplyAndAddInPlace(multipliers[i], coefficients[i]);
+        }
+
+        int pivot = -1;
+        for (int i = 0; i < coefficient.getLength(); i++) {
+            if (coefficient.getCoordinate(i) != 0) {
+                pivot = i;
+                break;
+            }
+        }
+
+        if (pivot == -1) {
+            return false;
+        }
+
+        /* the packet is innovative, reduce its payload */
+        Vector payload = p.getPayload().copy();
+
+        for (int i = 0; i < rank; i++) {
+            payload.multiplyAndAddInPlace(multipliers[i], payloads[i]);
+        }
+
+        /* divide the line */
+        int pval = coefficient.getCoordinate(pivot);
+        if (pval != 1) {
+            coefficient.scalarMultiplyInPlace(ff.inverse[pval]);
+            payload.scalarMultiplyInPlace(ff.inverse[pval]);
+        }
+
+        /* zero the column above the pivot */
+        for (int i = 0; i < rank; i++) {
+
+            int m = coefficients[i].getCoordinate(pivot);
+
+            if (m == 0) continue;
+
+            int c = ff.subtract(0, m);
+            coefficients[i].multiplyAndAddInPlace(c, coefficient);
+            payloads[i].multiplyAndAddInPlace(c, payload);
+        }
+
+        coefficients[rank] = coefficient;
+        payloads[rank] = payload;
+        pivotPos[rank] = pivot;
+        rank++;
+
+        return true;
+    }
+
+    /**
+     * Creates a random linear combination of the packets added to the recoder.
+     *
+     * @param r the random number generator used to draw the coefficients
+     * @return a new coded packet
+     */
+    public CodedPacket createPacket(Random r) {
+        return createPackets(1, r).get(0);
+    }
+
+    /**
+     * Creates count random linear combinations of the packets added to the
+     * recoder. The payloads are computed one block of coordinates at a time,
+     * so that the lines of the basis are read from memory only once for all
+     * the packets.
+     *
+     * @param count the number of packets to create
+     * @param r the random number generator used to draw the coefficients
+     * @return a list of count new coded packets
+     */
+    public List<CodedPacket> createPackets(int count, Random r) {
+
+        ArrayList<CodedPacket> output = new ArrayList<CodedPacket>(count);
+
+        int[][] c = new int[count][rank];
+
+        for (int k = 0; k < count; k++) {
+
+            CodedPacket packet = new CodedPacket(coefficients.length, payloadBytesLength, ff);
+
+            for (int i = 0; i < rank; i++) {
+                c[k][i] = r.nextInt(ff.getCardinality());
+                packet.getCodingVector().multiplyAndAddInPlace(c[k][i], coefficients[i]);
+            }
+
+            output.add(packet);
+        }
+
+        if (count == 0) {
+            return output;
+        }
+
+        int payloadLength = output.get(0).getPayload().getLength();
+
+        int blockLength = Math.max(MIN_BLOCK_LENGTH, CACHE_BLOCK_SIZE / count);
+
+        for (int start = 0; start < payloadLength; start += blockLength) {
+
+            int length = Math.min(blockLength, payloadLength - start);
+
+            for (int i = 0; i < rank; i++) {
+                for (int k = 0; k < count; k++) {
+                    output.get(k).getPayload().multiplyAndAddInPlace(c[k][i], payloads[i], start, length);
+                }
+            }
+        }
+
+        return output;
+    }
+
+    /**
+     * Returns the maximum number of packets that can be combined
+     *
+     * @return the number of packets that can be combined at most
+     */
+    public int getMaxPackets() {
+        return coefficients.length;
+    }
+
+    /**
+     * Returns the number of linearly independent packets received up to now
+     *
+     * @return a number between 0 and getMaxPackets()
+     */
+    public int getSubspaceSize() {
+        return rank;
+    }
+
+}
@@ -31,12 +31,21 @@ import java.util.Arrays;
 /**
  * Represents a vector of finite field elements.
  * 
+ * Vectors over fields with at most 256 elements created by the library store
+ * one coordinate per byte, the other vectors (and the ones created with wrap)
+ * store one coordinate per int. The two representations can be mixed freely.
+ * 
  * @author lokeller
  */
 
 public class Vector {
 
+    /** the coordinates of the vector, null if the vector is stored in bytes */
     int[] coordinates;
+
+    /** the coordinates of the vector one per byte, null if the vector is stored in coordinates */
+    byte[] bytes;
+
     private FiniteField ff ;
 
     /**
@@ -61,13 +70,96 @@ public class Vector {
      */
     public Vector(int length, FiniteField ff) {
         this.ff = ff;
-        coordinates = new int[length];
+        if (isCompact(ff)) {
+            bytes = new byte[length];
+        } else {
+            coordinates = new int[length];
+        }
     }    
     
     Vector(int [] coordinates, FiniteField ff) {
         this.ff = ff;
         this.coordinates = coordinates;
     }
+
+    Vector(byte [] bytes, FiniteField ff) {
+        this.ff = ff;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Returns true if the vectors over the specified field are stored one
+     * coordinate per byte.
+     */
+    static boolean isCompact(FiniteField ff) {
+        return ff != null && ff.mulTable != null;
+    }
+
+    static byte[] narrow(int[] values) {
+        byte[] out = new byte[values.length];
+        for (int i = 0 ; i < values.length ; i++) {
+            out[i] = (byte) values[i];
+        }
+        return out;
+    }
+
+    static int[] widen(byte[] values) {
+        int[] out = new int[values.length];
+        for (int i = 0 ; i < values.length ; i++) {
+            out[i] = values[i] & 0xFF;
+        }
+        return out;
+    }
+
+    /**
+     * Returns the coordinates of this vector one per int, the storage of the
+     * vector is returned if it is not compact, a copy otherwise.
+     */
+    int[] toIntArray() {
+        return coordinates != null ? coordinates : widen(bytes);
+    }
+
+    /**
+     * Copies the first length coordinates of another vector in this vector
+     */
+    void copyFrom(Vector v, int length) {
+        if (bytes != null && v.bytes != null) {
+            System.arraycopy(v.bytes, 0, bytes, 0, length);
+        } else if (coordinates != null && v.coordinates != null) {
+            System.arraycopy(v.coordinates, 0, coordinates, 0, length);
+        } else {
+            for (int i = 0 ; i < length ; i++) {
+                setCoordinate(i, v.getCoordinate(i));
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of this vector with the specified length, coordinates
+     * that do not exist in this vector are set to zero.
+     */
+    Vector copy(int length) {
+
+        Vector vector = new Vector(length, ff);
+        vector.copyFrom(this, Math.min(length, getLength()));
+
+        return vector;
+    }
+
+    /**
+     * Returns a hash code of the coordinates that does not depend on the
+     * representation of the vector
+     */
+    int coordinatesHashCode() {
+
+        if (coordinates != null) return Arrays.hashCode(coordinates);
+
+        int result = 1;
+        for (byte b : bytes) {
+            result = 31 * result + (b & 0xFF);
+        }
+        return result;
+    }
     
     /**
      * Returns the number of coordinates of the vector
@@ -75,7 +167,7 @@ public class Vector {
      * @return the length of the vector
      */
     public int getLength() {
-        return coordinates.length;
+        return bytes != null ? bytes.length : coordinates.length;
     }
 
     /**
@@ -96,7 +188,11 @@ public class Vector {
      * the finite field where the vector has been defined
      */
     public void setCoordinate(int index, int value) {
-        coordinates[index] = value;
+        if (bytes != null) {
+            bytes[index] = (byte) value;
+        } else {
+            coordinates[index] = value;
+        }
     }
 
     /**
@@ -107,6 +203,7 @@ public class Vector {
      * @return an element of the finite field used to define this vector
      */
     public int getCoordinate(int index) {        
+        if (bytes != null) return bytes[index] & 0xFF;
         return coordinates[index];
         
     }
@@ -115,7 +212,11 @@ public class Vector {
      * Sets all the coordinates of the vector to zero
      */
     public void setToZero() {
-        Arrays.fill(coordinates, 0);
+        if (bytes != null) {
+            Arrays.fill(bytes, (byte) 0);
+        } else {
+            Arrays.fill(coordinates, 0);
+        }
     }
 
     /**
@@ -124,11 +225,7 @@ public class Vector {
      * @return a copy of the vector
      */
     public Vector copy() {
-
-        Vector vector = new Vector(coordinates.length, ff);
-        System.arraycopy(coordinates, 0, vector.coordinates, 0, coordinates.length);
-
-        return vector;
+        return copy(getLength());
     }
 
     /**
@@ -138,11 +235,9 @@ public class Vector {
      * @return the sum of this and vector
      */
     public Vector add(Vector vector) {
-        Vector out = new Vector(getLength(), ff);
+        Vector out = copy();
 
-        for ( int i = 0 ; i < coordinates.length ; i++ ) {
-            out.coordinates[i] = ff.sum[coordinates[i]][vector.coordinates[i]];
-        }
+        out.addInPlace(vector);
 
         return out;
     }
@@ -155,8 +250,15 @@ public class Vector {
      */
     public void addInPlace(Vector vector) {
 
-        for ( int i = 0 ; i < coordinates.length ; i++ ) {
-            coordinates[i] = ff.sum[coordinates[i]][vector.coordinates[i]];
+        if (bytes != null && vector.bytes != null) {
+            ff.add(bytes, 0, vector.bytes, 0, bytes.length);
+        } else if (coordinates != null && vector.coordinates != null) {
+            ff.add(coordinates, 0, vector.coordinates, 0, coordinates.length);
+        } else {
+            /* the representations differ, the coordinates are added one by one */
+            for (int i = 0; i < getLength(); i++) {
+                setCoordinate(i, ff.add(getCoordinate(i), vector.getCoordinate(i)));
+            }
         }
 
     }
@@ -169,11 +271,9 @@ public class Vector {
      */
     public Vector scalarMultiply(int c) {
 
-        Vector out = new Vector(getLength(), ff);
+        Vector out = copy();
 
-        for ( int i = 0 ; i < coordinates.length ; i++ ) {
-            out.coordinates[i] = ff.mul[coordinates[i]][c];
-        }
+        out.scalarMultiplyInPlace(c);
 
         return out;
 
@@ -186,9 +286,11 @@ public class Vector {
      * @param c a constant that is used to multiply the vector coordinates
      */
     public void scalarMultiplyInPlace(int c) {
-    	for ( int i = 0 ; i < coordinates.length ; i++ ) {
-            coordinates[i] = ff.mul[coordinates[i]][c];
-        }    
+        if (bytes != null) {
+            ff.scalarMultiply(bytes, 0, bytes.length, c);
+        } else {
+            ff.scalarMultiply(coordinates, 0, coordinates.length, c);
+        }
     }
     
     /**
@@ -206,11 +308,9 @@ public class Vector {
      */
     public Vector multiplyAndAdd(int c, Vector other) {
     	
-        Vector out = new Vector(getLength(), ff);
+        Vector out = copy();
 
-        for ( int i = 0 ; i < coordinates.length ; i++ ) {
-            out.coordinates[i] = ff.sum[ff.mul[other.coordinates[i]][c]][coordinates[i]];
-        }
+        out.multiplyAndAddInPlace(c, other);
 
         return out;
     	
@@ -225,18 +325,48 @@ public class Vector {
      */
     public void multiplyAndAddInPlace(int c, Vector other) {
 
-        for ( int i = 0 ; i < coordinates.length ; i++ ) {
-            coordinates[i] = ff.sum[ff.mul[other.coordinates[i]][c]][coordinates[i]];
-        }
+        multiplyAndAddInPlace(c, other, 0, getLength());
     	
     }
-    
+
+
+    /**
+     * Multiplies length coordinates of this vector, starting at start, by a
+     * constant
+     */
+    void scalarMultiplyInPlace(int c, int start, int length) {
+        if (bytes != null) {
+            ff.scalarMultiply(bytes, start, length, c);
+        } else {
+            ff.scalarMultiply(coordinates, start, length, c);
+        }
+    }
+
+    /**
+     * Adds to length coordinates of this vector, starting at start, the
+     * corresponding coordinates of another vector multiplied by a constant
+     */
+    void multiplyAndAddInPlace(int c, Vector other, int start, int length) {
+
+        if (c == 0) return;
+
+        if (bytes != null && other.bytes != null) {
+            ff.multiplyAndAdd(bytes, start, other.bytes, start, length, c);
+        } else if (coordinates != null && other.coordinates != null) {
+            ff.multiplyAndAdd(coordinates, start, other.coordinates, start, length, c);
+        } else {
+            for (int i = start; i < start + length; i++) {
+                setCoordinate(i, ff.add(getCoordinate(i), ff.multiply(c, other.getCoordinate(i))));
+            }
+        }
+
+    }    
     
     @Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + Arrays.hashCode(coordinates);
+		result = prime * result + coordinatesHashCode();
 		result = prime * result + ((ff == null) ? 0 : ff.hashCode());
 		return result;
 	}
@@ -250,8 +380,20 @@ public class Vector {
 		if (!(obj instanceof Vector))
 			return false;
 		Vector other = (Vector) obj;
-		if (!Arrays.equals(coordinates, other.coordinates))
-			return false;
+		if (bytes != null && other.bytes != null) {
+			if (!Arrays.equals(bytes, other.bytes))
+				return false;
+		} else if (coordinates != null && other.coordinates != null) {
+			if (!Arrays.equals(coordinates, other.coordinates))
+				return false;
+		} else {
+			if (getLength() != other.getLength())
+				return false;
+			for (int i = 0; i < getLength(); i++) {
+				if (getCoordinate(i) != other.getCoordinate(i))
+					return false;
+			}
+		}
 		if (ff == null) {
 			if (other.ff != null)
 				return false;
@@ -263,8 +405,8 @@ public class Vector {
 	@Override
     public String toString() {
             String ret = "";
-            for (int c : coordinates) {
-                    ret += (ret.length() != 0 ? " " : "") + String.format("%02d ", c); ;
+            for (int i = 0 ; i < getLength() ; i++) {
+                    ret += (ret.length() != 0 ? " " : "") + String.format("%02d ", getCoordinate(i)); ;
             }
             return ret;
     }
@@ -159,8 +159,8 @@ public class VectorSpace {
 		Matrix B = baseMatrix.toTranspose();
 		Matrix C = other.baseMatrix.toTranspose();
 		
-		Matrix minusI1 = Matrix.createIdentityMatrix(B.rows, B.ff).scalarMultiply(B.ff.sub[0][1]); 
-		Matrix minusI2 = Matrix.createIdentityMatrix(C.rows, C.ff).scalarMultiply(B.ff.sub[0][1]);
+		Matrix minusI1 = Matrix.createIdentityMatrix(B.rows, B.ff).scalarMultiply(B.ff.subtract(0, 1)); 
+		Matrix minusI2 = Matrix.createIdentityMatrix(C.rows, C.ff).scalarMultiply(B.ff.subtract(0, 1));
 		
 		Matrix zeros1 = new Matrix(B.rows, C.columns, B.ff);
 		Matrix zeros2 = new Matrix(C.rows, B.columns, B.ff);
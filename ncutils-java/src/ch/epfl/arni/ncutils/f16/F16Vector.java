@@ -0,0 +1,380 @@
+/*******************************************************************************
+ * Copyright (c) 2012, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *      * Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *      * Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *      * Neither the name of the EPFL nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *  
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************/
+package ch.epfl.arni.ncutils.f16;
+
+import java.util.Arrays;
+
+import ch.epfl.arni.ncutils.FiniteField;
+import ch.epfl.arni.ncutils.Vector;
+
+/**
+ * Represents a vector of elements of F_{2^4}.
+ * 
+ * The coordinates are stored packed two per byte in the same format produced
+ * by FiniteField.vectorToBytes: coordinate 2k is in the low nibble of byte k
+ * and coordinate 2k+1 in the high nibble, each with its bits reversed. Since
+ * the bit reversal commutes with the sum, vectors are added with a byte XOR
+ * and multiplied by a constant with one lookup per byte in a 256x16 table
+ * that contains the products of both nibbles in the same format.
+ *
+ * @author lokeller
+ */
+
+public class F16Vector {
+
+    private static FiniteField ff = F16.getF16();
+
+    /** reverses the order of the bits of a nibble */
+    private static final int[] REVERSE = new int[16];
+
+    /**
+     * products of each coefficient c with the two nibbles of a byte b in 
+     * packed format, stored at position (c << 8) + b
+     */
+    private static final byte[] mulTable = new byte[16 * 256];
+
+    static {
+
+        for (int x = 0; x < 16; x++) {
+            REVERSE[x] = ((x & 1) << 3) | ((x & 2) << 1) | ((x & 4) >> 1) | ((x & 8) >> 3);
+        }
+
+        for (int c = 0; c < 16; c++) {
+            for (int b = 0; b < 256; b++) {
+                int low = REVERSE[ff.mul[c][REVERSE[b & 0x0F]]];
+                int high = REVERSE[ff.mul[c][REVERSE[b >> 4]]];
+                mulTable[(c << 8) + b] = (byte) (low | (high << 4));
+            }
+        }
+
+    }
+
+    byte[] coordinates;
+    int offset;
+    int len;
+
+    private F16Vector() {
+    }
+
+    /**
+     * Constructs a vector
+     *
+     * @param len the number of coordinates of the vector
+     */
+    public F16Vector(int len) {
+        coordinates = new byte[(len + 1) / 2];
+        offset = 0;
+        this.len = len;
+    }
+
+    /**
+     * Creates a F16Vector by copying the content of a given array that 
+     * contains its packed representation
+     *
+     * @param coordinates array that stores the packed coordinates of the vector
+     * @param offset offset of the byte that contains the first coordinate
+     * @param len number of coordinates
+     */
+    public F16Vector(byte [] coordinates, int offset, int len) {
+        this(len);
+        System.arraycopy(coordinates, offset, this.coordinates, 0, this.coordinates.length);
+
+        /* the unused nibble of the last byte must be zero */
+        if ((len & 1) != 0) {
+            this.coordinates[this.coordinates.length - 1] &= 0x0F;
+        }
+    }
+
+    /**
+     *
+     * Creates a F16Vector with the specified byte array as backing buffer.
+     *
+     * @param coordinates array that stores the packed coordinates of the vector
+     * @param offset offset of the byte that contains the first coordinate
+     * @param len number of coordinates
+     *
+     * @return a F16Vector backed by the specified array
+     */
+    public static F16Vector wrap(byte [] coordinates, int offset, int len) {
+
+        F16Vector v = new F16Vector();
+        v.coordinates = coordinates;
+        v.offset = offset;
+        v.len = len;
+
+        return v;
+    }
+
+    /**
+     * Creates a F16Vector with the same coordinates of a vector over F_2^4
+     *
+     * @param vector a vector over F_2^4
+     * @return a packed copy of the vector
+     */
+    public static F16Vector fromVector(Vector vector) {
+
+        F16Vector v = new F16Vector(vector.getLength());
+
+        for (int i = 0 ; i < v.len ; i++) {
+            v.setCoordinate(i, vector.getCoordinate(i));
+        }
+
+        return v;
+    }
+
+    /**
+     * Returns a vector over F_2^4 with the same coordinates of this vector
+     *
+     * @return an unpacked copy of this vector
+     */
+    public Vector toVector() {
+
+        Vector v = new Vector(len, ff);
+
+        for (int i = 0 ; i < len ; i++) {
+            v.setCoordinate(i, getCoordinate(i));
+        }
+
+        return v;
+    }
+
+    /**
+     * Returns the number of coordinates of the vector
+     *
+     * @return the length of the vector
+     */
+    public int getLength() {
+        return len;
+    }
+
+    /**
+     * Returns the finite field over which the vector is defined
+     *
+     * @return a finite field
+     */
+    public FiniteField getFiniteField() {
+        return ff;
+    }
+
+    /**
+     * Set a coordinate of the vector
+     *
+     * @param index the index of the coordinate (starts at 0)
+     * @param value the value of the coordinate, must be an element of
+     * the finite field where the vector has been defined
+     */
+    public void setCoordinate(int index, int value) {
+        assert(value >= 0 && value < 16);
+
+        int pos = offset + (index >> 1);
+        int shift = (index & 1) << 2;
+
+        coordinates[pos] = (byte) ((coordinates[pos] & ~(0x0F << shift)) | (REVERSE[value] << shift));
+    }
+
+    /**
+     *
+     * Returns a coordinate of the vector
+     *
+     * @param index the index of the coordinate (starts at 0)
+     * @return an element of the finite field used to define this vector
+     */
+    public int getCoordinate(int index) {
+        return REVERSE[(coordinates[offset + (index >> 1)] >> ((index & 1) << 2)) & 0x0F];
+    }
+
+    /**
+     * Sets all the coordinates of the vector to zero
+     */
+    public void setToZero() {
+        Arrays.fill(coordinates, offset, offset + getLengthInBytes(), (byte) 0);
+    }
+
+    /**
+     * Creates a copy of the vector
+     *
+     * @return a copy of the vector
+     */
+    public F16Vector copy() {
+
+        F16Vector vector = new F16Vector(len);
+        System.arraycopy(coordinates, offset, vector.coordinates, 0, vector.coordinates.length);
+
+        return vector;
+    }
+
+    /**
+     * Returns the sum of this vector and another vector
+     *
+     * @param vector the other summand
+     * @return the sum of this and vector
+     */
+    public F16Vector add(F16Vector vector) {
+
+        F16Vector out = copy();
+        out.addInPlace(vector);
+
+        return out;
+    }
+
+    /**
+     * Adds to each of the coordinates of this vector the corresponding coordinate in
+     * the other vector
+     * 
+     * @param vector a second vector to be added
+     */
+    public void addInPlace(F16Vector vector) {
+
+        int bytes = getLengthInBytes();
+
+        for ( int i = 0 ; i < bytes ; i++ ) {
+            coordinates[i+offset] ^= vector.coordinates[i+vector.offset];
+        }
+
+    }
+
+    /**
+     * Returns the scalar multiplication of this vector by a coefficient
+     *
+     * @param c an element form the field used to define the vector
+     * @return the scalar multiple of this vector
+     */
+    public F16Vector scalarMultiply(int c) {
+
+        F16Vector out = copy();
+        out.scalarMultiplyInPlace(c);
+
+        return out;
+
+    }
+
+    /**
+     * Multiplies each of the coordinates of this vector by a given
+     * constant.
+     * 
+     * @param c a constant that is used to multiply the vector coordinates
+     */
+    public void scalarMultiplyInPlace(int c) {
+
+        final int row = c << 8;
+        int bytes = getLengthInBytes();
+
+        for ( int i = 0 ; i < bytes ; i++ ) {
+            coordinates[i+offset] = mulTable[row + (coordinates[i+offset] & 0xFF)];
+        }
+    }
+
+    /**
+     * 
+     * Returns a copy of this vector where to each coordinate of this vector 
+     * the corresponding coordinate in another vector multiplied by a give 
+     * constant has been added.
+     * 
+     * @param c a constant value
+     * @param other a vector
+     * 
+     * @return a copy of this vector to which a scalar multiple of the other vector
+     * has been added
+     */
+    public F16Vector multiplyAndAdd(int c, F16Vector other) {
+
+        F16Vector out = copy();
+        out.multiplyAndAddInPlace(c, other);
+
+        return out;
+
+    }
+
+    /**
+     * Adds to each coordinate of this vector a the corresponding coordinate
+     * of antother vector multiplied by a constant 
+     * 
+     * @param c a constant
+     * @param other the vector to be multiplied and added
+     */
+    public void multiplyAndAddInPlace(int c, F16Vector other) {
+
+        if (c == 0) {
+            return;
+        }
+
+        final int row = c << 8;
+        int bytes = getLengthInBytes();
+
+        for ( int i = 0 ; i < bytes ; i++ ) {
+            coordinates[i+offset] ^= mulTable[row + (other.coordinates[i+other.offset] & 0xFF)];
+        }
+
+    }
+
+    /**
+     * Returns the length in bytes of the packed representation of the vector
+     *
+     * @return the length in bytes
+     */
+    public int getLengthInBytes() {
+        return (len + 1) / 2;
+    }
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + Arrays.hashCode(coordinates);
+		result = prime * result + len;
+		result = prime * result + offset;
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (!(obj instanceof F16Vector))
+			return false;
+		F16Vector other = (F16Vector) obj;
+		if (!Arrays.equals(coordinates, other.coordinates))
+			return false;
+		if (len != other.len)
+			return false;
+		if (offset != other.offset)
+			return false;
+		return true;
+	}
+
+	@Override
+    public String toString() {
+            String ret = "";
+            for (int i = 0 ; i < len ; i++) {
+                    ret += (ret.length() != 0 ? " " : "") + String.format("%02d ", getCoordinate(i));
+            }
+            return ret;
+    }
+
+}
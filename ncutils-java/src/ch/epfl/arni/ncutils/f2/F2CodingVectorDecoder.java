@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright (c) 2012, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *      * Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *      * Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *      * Neither the name of the EPFL nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *  
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************/
+package ch.epfl.arni.ncutils.f2;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *
+ * This class is used to find how to linearly combine coding vectors in order
+ * to obtain elementary vectors. Using this knowledge it is possible to
+ * decoded coded packets.
+ *
+ * The algorithm used in this class is a modification of the standard Gaussian-
+ * Jordan elimination. Each coding vector inserted is simplified with elementary
+ * rows operations trying to obtain an elementary vector. The operations
+ * performed are kept track in an auxiliary vector (one per added vector).
+ *
+ * This class uses a vectors over F_2, the rows of the matrix are packed 64
+ * coordinates per long so that row operations are word wide XORs.
+ *
+ * @author lokeller
+ */
+
+
+public class F2CodingVectorDecoder {
+
+        /** the coding vectors simplified by gaussian jordan elimination */
+        private long[][] codingRows;
+
+        /** the operations performed on each of the coding vectors */
+        private long[][] inverseRows;
+
+        /** stores the position of the pivot of each line */
+        private int[] pivotPos;
+
+        /** bit i is set if column i is a pivot column for a line */
+        private long[] pivotMask;
+
+        /** stores for each line if it has already been decoded or not*/
+        private boolean[] decoded;
+
+        /** stores the number of non-zero lines in the decode matrix ( the number
+         * of packets that have been received */
+        private int packetCount = 0;
+
+        /**
+         * Construct a new decoder
+         *
+         * @param maxPackets the length of the vectors have to be decoded
+         */
+        public F2CodingVectorDecoder(int maxPackets) {
+            int words = F2Vector.wordsCount(maxPackets);
+            codingRows = new long[maxPackets][words];
+            inverseRows = new long[maxPackets][words];
+            pivotPos = new int[maxPackets];
+            pivotMask = new long[words];
+            decoded = new boolean[maxPackets];
+        }
+
+        /**
+         * Returns the maximum number of packets that can be combined (i.e. the
+         * length of the coding vectors being decoded)
+         *
+         * @return the number of packets supported
+         */
+        public int getMaxPackets() {
+            return codingRows.length;
+        }
+
+        /**
+         *
+         * Adds the coding vector to the internal decoding buffer and returns
+         * for new each elementary vector that can be constructed by linearly
+         * combining the vectors in the coding buffer a vector with the
+         * coefficients necessary to create it.
+         *
+         * @param v a coding vector of length compatible with the decoder
+         * @return a map that associates an id of an uncoded packet with a vector
+         * containing the coefficients that must be used to recover its payload,
+         * returns null if the vector being added is linearly dependant of the vectors
+         * already added.
+         * 
+         */
+        public Map<Integer,F2Vector> addVector(F2Vector v) {
+
+                assert(v.getLength() == codingRows.length);
+
+                /* if the matrix is already full rank don't add this vector */
+                if ( packetCount == codingRows.length) {
+                    return null;
+                }
+
+                final long[] row = codingRows[packetCount];
+                final long[] inverse = inverseRows[packetCount];
+
+                /* add the received packet at the bottom of the matrix */
+                System.arraycopy(v.words, 0, row, 0, row.length);
+                Arrays.fill(inverse, 0);
+                inverse[packetCount >>> 6] = 1L << packetCount;
+
+                /* zeros before */
+                for (int i = 0 ; i < packetCount ; i++) {
+                    int p = pivotPos[i];
+                    if (((row[p >>> 6] >>> p) & 1) != 0) {
+                        xor(row, codingRows[i]);
+                        xor(inverse, inverseRows[i]);
+                    }
+                }
+
+                /* find pivot on the line */
+                int pivot = -1;
+                for (int w = 0 ; w < row.length ; w++) {
+                    long candidates = row[w] & ~pivotMask[w];
+                    if (candidates != 0) {
+                        pivot = (w << 6) + Long.numberOfTrailingZeros(candidates);
+                        break;
+                    }
+                }
+
+                /* if the packet is not li stop here */
+                if (pivot == -1 ) {
+                    return null;
+                }
+
+                pivotPos[packetCount] = pivot;
+                pivotMask[pivot >>> 6] |= 1L << pivot;
+
+                /* zero the column above the pivot */
+                for ( int i = 0 ; i < packetCount ; i++ ) {
+                    if (((codingRows[i][pivot >>> 6] >>> pivot) & 1) != 0) {
+                        xor(codingRows[i], row);
+                        xor(inverseRows[i], inverse);
+                    }
+                }
+
+                packetCount++;
+
+                /* look for decodable blocks */
+
+                HashMap<Integer,F2Vector> willDecode =
+                        new HashMap<Integer, F2Vector>();
+
+                for ( int i = 0; i < packetCount ; i++) {
+
+                    /* skip if the line is marked decoded */
+                    if (decoded[i]) continue;
+
+                    int weight = 0;
+                    for ( long word : codingRows[i]) {
+                        weight += Long.bitCount(word);
+                    }
+
+                    /* the only non-zero coordinate of the line is the pivot */
+                    if ( weight == 1) {
+                        decoded[i] = true;
+
+                        /* build the vector that explains how to obtain the block */
+                        F2Vector vector = new F2Vector(codingRows.length);
+                        System.arraycopy(inverseRows[i], 0, vector.words, 0, vector.words.length);
+
+                        willDecode.put(pivotPos[i], vector);
+                    }
+                }
+
+                return willDecode;
+
+        }
+
+        private static void xor(long[] dest, long[] src) {
+            for (int i = 0 ; i < dest.length ; i++) {
+                dest[i] ^= src[i];
+            }
+        }
+
+    /**
+     * Returns the number of linearly independent coding vectors received
+     * up to now.
+     * 
+     * @return a number between 0 and getMaxPackets()
+     */
+	public int getSubspaceSize() {
+		return packetCount;
+	}
+
+}
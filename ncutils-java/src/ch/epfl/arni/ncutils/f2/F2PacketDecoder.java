@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2012, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *      * Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *      * Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *      * Neither the name of the EPFL nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *  
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************/
+package ch.epfl.arni.ncutils.f2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import ch.epfl.arni.ncutils.UncodedPacket;
+
+
+/**
+ * This class supports decoding of coded packets. It uses a coding vector
+ * decoder to compute how to reconstruct uncoded packets and then linearly
+ * combine the received packets payloads to reconstruct the uncoded payloads.
+ *
+ * This class uses a vectors over F_2
+ *
+ * @author lokeller
+ */
+public class F2PacketDecoder {
+
+    private ArrayList<F2CodedPacket> packets = new ArrayList<F2CodedPacket>();
+
+    private F2CodingVectorDecoder codingVectorDecoder;
+
+    private int payloadCoordinatesCount;
+
+    /**
+     * Constructs a new PacketDecoder.
+     *
+     * @param maxPackets the maximum number of coded packets, i.e. the length of
+     * the coding vectors
+     * @param payloadBytesLength the length in bytes of the payload of the packets
+     */
+    public F2PacketDecoder(int maxPackets, int payloadBytesLength) {        
+        codingVectorDecoder = new F2CodingVectorDecoder(maxPackets);
+        this.payloadCoordinatesCount = payloadBytesLength * 8;
+    }
+
+    /**
+     *
+     * Add a coded packet to the decoding buffer and returns all the new uncoded
+     * packets that can be decoded thanks to it.
+     *
+     * @param p a CodedPacket with payload length and coding coefficient length
+     * compatible with the decoder
+     * @return a vector of uncoded packets that have been decoded thanks to this
+     * coded packet (and what was previously added)
+     */
+    public List<UncodedPacket> addPacket(F2CodedPacket p) {
+
+        assert(p.getCodingVector().getLength() == codingVectorDecoder.getMaxPackets());
+        assert(p.getPayload().getLength() == payloadCoordinatesCount);
+
+        Map<Integer, F2Vector> decoded = codingVectorDecoder.addVector(p.getCodingVector());
+
+        if (decoded == null) {
+        	return new ArrayList<UncodedPacket>();
+        }
+
+        /* add the current packet only if it was linearly independant, this
+         will be used to decode future packets*/
+        packets.add(p);
+
+        /* decode the new packets that can be decoded */
+        ArrayList<UncodedPacket> output = new ArrayList<UncodedPacket>();
+
+        for ( Map.Entry<Integer, F2Vector> entry : decoded.entrySet() ) {
+
+            F2Vector decodedPayload = decodePayload(entry.getValue());
+
+            output.add(new UncodedPacket((int) entry.getKey(), decodedPayload.toByteArray()));
+
+        }
+
+        return output;
+
+    }
+
+    private F2Vector decodePayload(F2Vector encoding) {
+
+        /* this vector will store the sum of coded payloads that
+           correspond to the decoded payload */
+        F2Vector decodedPayload = new F2Vector(payloadCoordinatesCount);
+
+        /* add the payloads of the packets with a non-zero coefficient */
+        for (int codedPacketId = encoding.nextNonZero(0); codedPacketId != -1; 
+                codedPacketId = encoding.nextNonZero(codedPacketId + 1)) {
+
+            decodedPayload.addInPlace(packets.get(codedPacketId).getPayload());
+
+        }
+
+        return decodedPayload;
+    }
+
+    /**
+     * Returns a list of the coded packets that have been added to the decoder
+     * 
+     * @return a list of the coded packets added to the decoder
+     * 
+     */
+    public List<F2CodedPacket> getCodedPackets() {
+    	return packets;
+    }
+
+    /**
+     * Returns the maximum number of packets that can be combined
+     *
+     * @return the number of packets that can be combined at most
+     */
+    public int getMaxPackets() {
+        return codingVectorDecoder.getMaxPackets();
+    }
+
+    /**
+     * 
+     * Returns the number of linearly independent packets received up to now
+     * 
+     * @return a number between 0 and getMaxPackets()
+     */
+    public int getSubspaceSize() {
+    	return codingVectorDecoder.getSubspaceSize();
+    }
+
+}
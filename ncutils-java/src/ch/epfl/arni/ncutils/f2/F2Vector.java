@@ -0,0 +1,356 @@
+/*******************************************************************************
+ * Copyright (c) 2012, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *      * Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *      * Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *      * Neither the name of the EPFL nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *  
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************/
+package ch.epfl.arni.ncutils.f2;
+
+import java.util.Arrays;
+
+import ch.epfl.arni.ncutils.FiniteField;
+
+/**
+ * Represents a vector of elements of F_2. 
+ * 
+ * The coordinates are packed 64 per long, coordinate i is stored in bit 
+ * i % 64 of word i / 64. This is the same order used by 
+ * FiniteField.byteToVector for F_2, where coordinate i is bit i % 8 of 
+ * byte i / 8, so that the byte representation can be copied word by word.
+ * The bits of the last word that do not correspond to coordinates are 
+ * always zero.
+ *
+ * @author lokeller
+ */
+
+public class F2Vector {
+
+    private static FiniteField ff = F2.getF2();
+
+    long[] words;
+    int len;
+
+    /**
+     * Constructs a vector
+     *
+     * @param len the number of coordinates of the vector
+     */
+    public F2Vector(int len) {
+        words = new long[wordsCount(len)];
+        this.len = len;
+    }
+
+    /**
+     * Creates a F2Vector from its byte representation (see 
+     * FiniteField.byteToVector)
+     *
+     * @param data array that stores the coordinates of the vector
+     * @param offset offset of the first byte of the representation
+     * @param len number of coordinates
+     */
+    public F2Vector(byte [] data, int offset, int len) {
+        this(len);
+
+        int bytes = (len + 7) / 8;
+
+        for ( int i = 0 ; i < bytes ; i++) {
+            words[i >> 3] |= ((long) data[offset + i] & 0xFF) << ((i & 7) << 3);
+        }
+
+        clearPadding();
+    }
+
+    /**
+     * Returns the number of longs needed to store a given number of coordinates
+     *
+     * @param len the number of coordinates
+     * @return the number of words
+     */
+    static int wordsCount(int len) {
+        return (len + 63) >>> 6;
+    }
+
+    private void clearPadding() {
+        if ((len & 63) != 0) {
+            words[words.length - 1] &= (1L << (len & 63)) - 1;
+        }
+    }
+
+    /**
+     * Returns the number of coordinates of the vector
+     *
+     * @return the length of the vector
+     */
+    public int getLength() {
+        return len;
+    }
+
+    /**
+     * Returns the finite field over which the vector is defined
+     *
+     * @return a finite field
+     */
+    public FiniteField getFiniteField() {
+        return ff;
+    }
+
+    /**
+     * Set a coordinate of the vector
+     *
+     * @param index the index of the coordinate (starts at 0)
+     * @param value the value of the coordinate, 0 or 1
+     */
+    public void setCoordinate(int index, int value) {
+        assert(index >= 0 && index < len);
+        assert(value == 0 || value == 1);
+
+        if ( value == 0) {
+            words[index >>> 6] &= ~(1L << index);
+        } else {
+            words[index >>> 6] |= 1L << index;
+        }
+    }
+
+    /**
+     *
+     * Returns a coordinate of the vector
+     *
+     * @param index the index of the coordinate (starts at 0)
+     * @return 0 or 1
+     */
+    public int getCoordinate(int index) {
+        return (int) (words[index >>> 6] >>> index) & 1;
+    }
+
+    /**
+     * Returns the index of the first non-zero coordinate that is not lower
+     * than a given index.
+     *
+     * @param from the first index that is checked
+     * @return the index of the coordinate or -1 if all the coordinates from
+     * the given index are zero
+     */
+    public int nextNonZero(int from) {
+
+        if (from >= len) {
+            return -1;
+        }
+
+        int w = from >>> 6;
+        long word = words[w] & (-1L << from);
+
+        while (word == 0) {
+            if (++w == words.length) {
+                return -1;
+            }
+            word = words[w];
+        }
+
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Sets all the coordinates of the vector to zero
+     */
+    public void setToZero() {
+        Arrays.fill(words, 0);
+    }
+
+    /**
+     * Creates a copy of the vector
+     *
+     * @return a copy of the vector
+     */
+    public F2Vector copy() {
+
+        F2Vector vector = new F2Vector(len);
+        System.arraycopy(words, 0, vector.words, 0, words.length);
+
+        return vector;
+    }
+
+    /**
+     * Returns the sum of this vector and another vector
+     *
+     * @param vector the other summand
+     * @return the sum of this and vector
+     */
+    public F2Vector add(F2Vector vector) {
+
+        F2Vector out = copy();
+        out.addInPlace(vector);
+
+        return out;
+    }
+
+    /**
+     * Adds to each of the coordinates of this vector the corresponding coordinate in
+     * the other vector
+     * 
+     * @param vector a second vector to be added
+     */
+    public void addInPlace(F2Vector vector) {
+
+        assert(vector.len == len);
+
+        long[] other = vector.words;
+
+        for ( int i = 0 ; i < words.length ; i++ ) {
+            words[i] ^= other[i];
+        }
+
+    }
+
+    /**
+     * Returns the scalar multiplication of this vector by a coefficient
+     *
+     * @param c 0 or 1
+     * @return the scalar multiple of this vector
+     */
+    public F2Vector scalarMultiply(int c) {
+
+        return c == 0 ? new F2Vector(len) : copy();
+
+    }
+
+    /**
+     * Multiplies each of the coordinates of this vector by a given
+     * constant.
+     * 
+     * @param c 0 or 1
+     */
+    public void scalarMultiplyInPlace(int c) {
+        if (c == 0) {
+            setToZero();
+        }
+    }
+
+    /**
+     * 
+     * Returns a copy of this vector where to each coordinate of this vector 
+     * the corresponding coordinate in another vector multiplied by a give 
+     * constant has been added.
+     * 
+     * @param c 0 or 1
+     * @param other a vector
+     * 
+     * @return a copy of this vector to which a scalar multiple of the other vector
+     * has been added
+     */
+    public F2Vector multiplyAndAdd(int c, F2Vector other) {
+
+        F2Vector out = copy();
+        out.multiplyAndAddInPlace(c, other);
+
+        return out;
+
+    }
+
+    /**
+     * Adds to each coordinate of this vector a the corresponding coordinate
+     * of antother vector multiplied by a constant 
+     * 
+     * @param c 0 or 1
+     * @param other the vector to be multiplied and added
+     */
+    public void multiplyAndAddInPlace(int c, F2Vector other) {
+        if (c != 0) {
+            addInPlace(other);
+        }
+    }
+
+    /**
+     * Returns the length in bytes of the binary representation of the vector
+     *
+     * @return the length in bytes
+     */
+    public int getLengthInBytes() {
+        return (len + 7) / 8;
+    }
+
+    /**
+     * Returns the binary representation of the vector (see 
+     * FiniteField.vectorToBytes)
+     *
+     * @return an array containing the binary representation
+     */
+    public byte[] toByteArray() {
+
+        byte[] ret = new byte[getLengthInBytes()];
+
+        toByteArray(ret, 0);
+
+        return ret;
+    }
+
+    /**
+     * Copies the binary representation of the vector to an array
+     *
+     * @param ret the array that will store the representation
+     * @param offset the offset of the first byte in ret
+     */
+    public void toByteArray(byte[] ret, int offset) {
+
+        int bytes = getLengthInBytes();
+
+        for ( int i = 0 ; i < bytes ; i++) {
+            ret[offset + i] = (byte) (words[i >> 3] >>> ((i & 7) << 3));
+        }
+
+    }
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + Arrays.hashCode(words);
+		result = prime * result + len;
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (!(obj instanceof F2Vector))
+			return false;
+		F2Vector other = (F2Vector) obj;
+		if (len != other.len)
+			return false;
+		if (!Arrays.equals(words, other.words))
+			return false;
+		return true;
+	}
+
+	@Override
+    public String toString() {
+            StringBuilder ret = new StringBuilder();
+            for (int i = 0 ; i < len ; i++) {
+                    ret.append(getCoordinate(i));
+            }
+            return ret.toString();
+    }
+
+}
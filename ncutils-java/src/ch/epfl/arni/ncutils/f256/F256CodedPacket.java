@@ -122,7 +122,7 @@ public class F256CodedPacket {
     	
     }      
 
-    private F256CodedPacket(F256Vector codingVector, F256Vector payload) {
+    F256CodedPacket(F256Vector codingVector, F256Vector payload) {
     	this.codingVector = codingVector;
     	this.payloadVector = payload;
     }
@@ -41,6 +41,9 @@ import ch.epfl.arni.ncutils.FiniteField;
  * Jordan elimination. Each coding vector inserted is simplified with elementary
  * rows operations trying to obtain an elementary vector. The operations
  * performed are kept track in an auxiliary vector (one per added vector).
+ * When the vectors are added with reduceVector the row operations only 
+ * process the matrix being inverted, their multipliers are recorded and the
+ * inverse matrix is built once by solve().
  *
  * Internally the class uses O(N²) memory where N is the maximum number of 
  * packets that can get combined.
@@ -62,6 +65,9 @@ public class F256CodingVectorDecoder {
         /** stores the position of the pivot of each line */
         private int[] pivotPos;
 
+        /** stores for each pivot column the line that has its pivot there */
+        private int[] pivotLine;
+
         /** stores for each column if it is a pivot column for a line or not*/
         private boolean[] isPivot;
 
@@ -83,6 +89,7 @@ public class F256CodingVectorDecoder {
         public F256CodingVectorDecoder(int maxPackets) {
             decodeMatrix = new int[maxPackets][maxPackets * 2];
             pivotPos = new int[maxPackets];
+            pivotLine = new int[maxPackets];
             decoded = new boolean[maxPackets];
             isPivot = new boolean[maxPackets];
             this.ff = F256.getF256();
@@ -114,18 +121,182 @@ public class F256CodingVectorDecoder {
          */
 	public Map<Integer,F256Vector> addVector(F256Vector v) {
         
+                final int size = decodeMatrix.length;
+
+		/* if the packet is not li stop here */
+		
+		if (!addToMatrix(v)) {                        
+			return null;
+		}                
+                
+		/* look for decodable blocks */
 		
-				/* if the matrix is already full rank don't add this vector */
-				if ( packetCount == decodeMatrix.length) {
-					return null;
-				}
+		HashMap<Integer,F256Vector> willDecode =
+                        new HashMap<Integer, F256Vector>();
+
+                for ( int i = 0; i < packetCount ; i++) {
+                    int pos = -1;
+
+                    /* skip if the line is marked decoded */
+                    if (decoded[i]) continue;
+
+                    for ( int j = 0 ; j < size ; j++) {
+
+                        if (decodeMatrix[i][j] != 0 && pos != -1) {
+                            pos = -1;
+                            break;
+                        } else if (decodeMatrix[i][j] != 0) pos = j;
+                    }
+                    
+                    if ( pos >= 0) {
+                        decoded[i] = true;
+
+
+                        /* build the vector that explains how to obtain the block */
+                        F256Vector vector = new F256Vector(decodeMatrix.length);
+                        byte[] coordinates = vector.coordinates;
+                        for ( int j = size ; j < size + size ; j++) {                            
+							coordinates[j-size] = (byte) decodeMatrix[i][j];
+                        }
+
+                        willDecode.put(pos, vector);
+
+                    }
+                }
+
+		return willDecode;			
 		
-                final int [][] mul = ff.mul;
-                final int [][] div = ff.div;
+	}
+
+        /**
+         *
+         * Adds the coding vector to the internal decoding buffer without
+         * allocating objects. The ids of the uncoded packets that can be
+         * decoded thanks to the vector are written in decodedIds, the
+         * coefficients needed to recover their payloads are returned by
+         * getDecodingLine().
+         *
+         * @param v a coding vector of length compatible with the decoder
+         * @param decodedIds an array of at least getMaxPackets() elements
+         * where the ids of the uncoded packets that can be decoded are written
+         * @return the number of ids written in decodedIds, -1 if the vector
+         * being added is linearly dependant of the vectors already added
+         */
+        public int addVector(F256Vector v, int[] decodedIds) {
 
                 final int size = decodeMatrix.length;
+
+                if (!addToMatrix(v)) {
+                        return -1;
+                }
+
+                int count = 0;
+
+                for ( int i = 0; i < packetCount ; i++) {
+
+                    /* skip if the line is marked decoded */
+                    if (decoded[i]) continue;
+
+                    int pos = -1;
+
+                    for ( int j = 0 ; j < size ; j++) {
+
+                        if (decodeMatrix[i][j] != 0 && pos != -1) {
+                            pos = -1;
+                            break;
+                        } else if (decodeMatrix[i][j] != 0) pos = j;
+                    }
+
+                    if ( pos >= 0) {
+                        decoded[i] = true;
+                        decodedIds[count++] = pos;
+                    }
+                }
+
+                return count;
+        }
+
+        /**
+         * Returns the line of the decode matrix of an uncoded packet that has
+         * been decoded. The coefficient of the j-th coded packet added to the
+         * decoder is at position getMaxPackets() + j of the line.
+         *
+         * @param id the id of an uncoded packet that has been decoded
+         * @return the line of the decode matrix that has its pivot at id
+         */
+        int[] getDecodingLine(int id) {
+                return decodeMatrix[pivotLine[id]];
+        }
+
+        /**
+         * Inserts the coding vector in the decode matrix and zeros the column
+         * of its pivot on the other lines.
+         *
+         * @return false if the vector is linearly dependant from the others
+         * already added
+         */
+        private boolean addToMatrix(F256Vector v) {
+
+		/* if the matrix is already full rank don't add this vector */
+		if ( packetCount == decodeMatrix.length) {
+			return false;
+		}
+		
+                final byte [] mulTable = ff.mulTable;
+
                 final  int totalSize = decodeMatrix[0].length;
 
+                int pivot = insertLine(v, true);
+
+		if (pivot == -1 ) {                        
+			return false;
+		}                
+                
+		/* zero the column above the pivot */		
+		for ( int i = 0 ; i < packetCount ; i++ ) {
+
+			int m = decodeMatrix[i][pivot];
+
+                        if (m == 0) continue;
+
+                        int row = m << 8;
+
+			for (int j = 0 ; j < totalSize ; j++) {
+                                
+                                int val2 = decodeMatrix[packetCount][j];
+				int val = decodeMatrix[i][j];
+				
+				decodeMatrix[i][j] = val ^ (mulTable[row + val2] & 0xFF);
+				
+			}
+
+		}
+
+                packetCount++;
+
+                return true;
+        }
+
+        /**
+         * Adds the coding vector at the bottom of the decoding matrix, removes
+         * from it the pivots of the lines above and divides it by its own
+         * pivot. If trackInverse is false the row operations only process the
+         * matrix being inverted, the multiplier of line i is stored in column
+         * getMaxPackets() + i of the new line and the inverse of its pivot in
+         * column getMaxPackets() + packetCount.
+         *
+         * @return the position of the pivot of the new line, -1 if the vector
+         * is linearly dependant from the others already added
+         */
+        private int insertLine(F256Vector v, boolean trackInverse) {
+
+                final byte [] mulTable = ff.mulTable;
+
+                final int size = decodeMatrix.length;
+
+                /* the columns processed by the row operations */
+                final int totalSize = trackInverse ? decodeMatrix[0].length : size;
+
                 /* add the received packet at the bottom of the matrix */
                 for ( int i = 0 ; i < v.getLength() ; i++) {
                     decodeMatrix[packetCount][i] = ((int) v.coordinates[i+v.offset]) & 0xFF;
@@ -133,11 +304,11 @@ public class F256CodingVectorDecoder {
                 }
 
                 /* put zeros on the inverse matrix but on position packet count*/
-                for ( int i = size ; i < totalSize ; i++) {
+                for ( int i = size ; i < decodeMatrix[0].length ; i++) {
                     decodeMatrix[packetCount][i] = 0 ;
                 }
                 
-                decodeMatrix[packetCount][size+packetCount] = 1;
+                if (trackInverse) decodeMatrix[packetCount][size+packetCount] = 1;
 
 
 		/* simplify the new packet */
@@ -148,11 +319,15 @@ public class F256CodingVectorDecoder {
             int m = decodeMatrix[packetCount][pivotPos[i]];
             if (m == 0) continue;
 
+            int row = m << 8;
+
 			for (int j = 0 ; j < totalSize ; j++) {
                 int val = decodeMatrix[packetCount][j];
 				int val2 = decodeMatrix[i][j];
-                decodeMatrix[packetCount][j] = val ^ mul[val2][m];
+                decodeMatrix[packetCount][j] = val ^ (mulTable[row + val2] & 0xFF);
 			}
+
+            if (!trackInverse) decodeMatrix[packetCount][size + i] = m;
 			
 		}
 
@@ -162,88 +337,159 @@ public class F256CodingVectorDecoder {
                     if (isPivot[i]) continue;                    
                     if (decodeMatrix[packetCount][i] != 0) {
                             pivotPos[packetCount] = i;
+                            pivotLine[i] = packetCount;
                             isPivot[i] = true;
                             pivot = i;
                             break;
                     }
 		}
 		
-		/* if the packet is not li stop here */
-		
 		if (pivot == -1 ) {                        
-			return null;
+			return -1;
 		}                
                 
 		/* divide the line */		
 
-                if ( decodeMatrix[packetCount][pivot] != 1 ) {
-                    int pval = decodeMatrix[packetCount][pivot];
+                int scale = ff.inverse[decodeMatrix[packetCount][pivot]];
+
+                if ( scale != 1 ) {
+                    int row = scale << 8;
 
                     for (int j = 0 ; j < totalSize ; j++) {
                             int val = decodeMatrix[packetCount][j];
-                            decodeMatrix[packetCount][j] = div[val][pval];
+                            decodeMatrix[packetCount][j] = mulTable[row + val] & 0xFF;
                     }
 
                 }
-		
-		/* zero the column above the pivot */		
-		for ( int i = 0 ; i < packetCount ; i++ ) {
 
-			int m = decodeMatrix[i][pivot];
+                if (!trackInverse) decodeMatrix[packetCount][size + packetCount] = scale;
 
-                        if (m == 0) continue;
+                return pivot;
 
-			for (int j = 0 ; j < totalSize ; j++) {
-                                
-                                int val2 = decodeMatrix[packetCount][j];
-				int val = decodeMatrix[i][j];
-				
-				decodeMatrix[i][j] = val ^ mul[val2][m];
-				
-			}
+        }
 
-		}
+        /**
+         * Adds the coding vector to the internal decoding buffer without
+         * trying to decode any vector. Only the elimination below the pivots
+         * is performed, the decoding is completed by solve() once the buffer
+         * is full rank. This method cannot be mixed with addVector.
+         *
+         * @param v a coding vector of length compatible with the decoder
+         * @return true if the vector was linearly independent from the others
+         * already added
+         */
+        boolean reduceVector(F256Vector v) {
+
+                if ( packetCount == decodeMatrix.length) {
+                        return false;
+                }
+
+                if (insertLine(v, false) == -1) {
+                        return false;
+                }
 
                 packetCount++;
-                
-		/* look for decodable blocks */
-		
-		HashMap<Integer,F256Vector> willDecode =
-                        new HashMap<Integer, F256Vector>();
 
-                for ( int i = 0; i < packetCount ; i++) {
-                    int pos = -1;
+                return true;
+        }
 
-                    /* skip if the line is marked decoded */
-                    if (decoded[i]) continue;
+        /**
+         * Completes the elimination of the vectors added with reduceVector.
+         * The decoder must be full rank.
+         *
+         * @return an array whose element i contains the coefficients that must
+         * be used to combine the added vectors (in the order they were added)
+         * to obtain the i-th elementary vector
+         */
+        F256Vector[] solve() {
 
-                    for ( int j = 0 ; j < size ; j++) {
+                final byte [] mulTable = ff.mulTable;
 
-                        if (decodeMatrix[i][j] != 0 && pos != -1) {
-                            pos = -1;
-                            break;
-                        } else if (decodeMatrix[i][j] != 0) pos = j;
-                    }
-                    
-                    if ( pos >= 0) {
-                        decoded[i] = true;
+                final int size = decodeMatrix.length;
+                final int totalSize = decodeMatrix[0].length;
 
+                if (packetCount != size) {
+                        throw new IllegalStateException("The decoder is not full rank");
+                }
 
-                        /* build the vector that explains how to obtain the block */
-                        F256Vector vector = new F256Vector(decodeMatrix.length);
-                        byte[] coordinates = vector.coordinates;
-                        for ( int j = size ; j < size + size ; j++) {                            
-							coordinates[j-size] = (byte) decodeMatrix[i][j];
+                buildInverse();
+
+                /* zero the column above each pivot, starting from the last line */
+                for (int j = size - 1 ; j > 0 ; j--) {
+
+                        int pivot = pivotPos[j];
+
+                        for (int i = 0 ; i < j ; i++) {
+
+                                int m = decodeMatrix[i][pivot];
+
+                                if (m == 0) continue;
+
+                                int row = m << 8;
+
+                                for (int k = 0 ; k < totalSize ; k++) {
+                                        decodeMatrix[i][k] ^= mulTable[row + decodeMatrix[j][k]] & 0xFF;
+                                }
                         }
+                }
 
-                        willDecode.put(pos, vector);
+                F256Vector[] inverse = new F256Vector[size];
 
-                    }
+                for (int i = 0 ; i < size ; i++) {
+                        decoded[i] = true;
+                        F256Vector vector = new F256Vector(size);
+                        for (int j = 0 ; j < size ; j++) {
+                                vector.coordinates[j] = (byte) decodeMatrix[i][j + size];
+                        }
+                        inverse[pivotPos[i]] = vector;
                 }
 
-		return willDecode;			
-		
-	}
+                return inverse;
+        }
+
+    /**
+     * Replaces the multipliers recorded by reduceVector with the inverse
+     * matrix of the lines: line k is the k-th vector added plus the lines
+     * above it multiplied by their multipliers, divided by its pivot. The
+     * inverse part of each line depends only on the lines above it.
+     */
+    private void buildInverse() {
+
+            final byte [] mulTable = ff.mulTable;
+
+            final int size = decodeMatrix.length;
+
+            int[] multipliers = new int[size];
+
+            for (int k = 0 ; k < size ; k++) {
+
+                    final int[] line = decodeMatrix[k];
+
+                    for (int i = 0 ; i <= k ; i++) {
+                            multipliers[i] = line[size + i];
+                            line[size + i] = 0;
+                    }
+
+                    line[size + k] = 1;
+
+                    for (int i = 0 ; i < k ; i++) {
+
+                            if (multipliers[i] == 0) continue;
+
+                            int row = multipliers[i] << 8;
+
+                            for (int j = size ; j <= size + i ; j++) {
+                                    line[j] ^= mulTable[row + decodeMatrix[i][j]] & 0xFF;
+                            }
+                    }
+
+                    int row = multipliers[k] << 8;
+
+                    for (int j = size ; j <= size + k ; j++) {
+                            line[j] = mulTable[row + line[j]] & 0xFF;
+                    }
+            }
+    }
 
     /**
      * Returns the number of linearly independent coding vectors received
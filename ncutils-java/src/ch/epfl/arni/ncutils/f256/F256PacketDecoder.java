@@ -30,6 +30,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import ch.epfl.arni.ncutils.DecodingMode;
 import ch.epfl.arni.ncutils.FiniteField;
 import ch.epfl.arni.ncutils.UncodedPacket;
 
@@ -45,24 +46,73 @@ import ch.epfl.arni.ncutils.UncodedPacket;
  */
 public class F256PacketDecoder {
 
+    /**
+     * size in bytes of the payload blocks decoded together in full rank
+     * mode, the blocks of all the received payloads should fit in the cache
+     */
+    private static final int CACHE_BLOCK_SIZE = 1 << 18;
+
+    /** minimum number of coordinates decoded together in full rank mode */
+    private static final int MIN_BLOCK_LENGTH = 64;
+
     private ArrayList<F256CodedPacket> packets = new ArrayList<F256CodedPacket>();
 
     private F256CodingVectorDecoder codingVectorDecoder;
 
+    /** the decoder used in on the fly mode, null in the other modes */
+    private F256OnTheFlyDecoder onTheFlyDecoder;
+
     private int payloadCoordinatesCount;
 
     private FiniteField ff = F256.getF256();
 
+    private DecodingMode mode;
+
+    /** wraps the region of the caller buffer where addPacket decodes a payload */
+    private F256Vector decodedPayload;
+
+    /** copies of the packets added by addPacket into a buffer, allocated by the first call */
+    private F256CodedPacket[] packetCopies;
+
     /**
-     * Constructs a new PacketDecoder.
+     * Constructs a new PacketDecoder that decodes packets incrementally.
      *
      * @param maxPackets the maximum number of coded packets, i.e. the length of
      * the coding vectors
      * @param payloadBytesLength the length in bytes of the payload of the packets
      */
     public F256PacketDecoder(int maxPackets, int payloadBytesLength) {        
-        codingVectorDecoder = new F256CodingVectorDecoder(maxPackets);
+        this(maxPackets, payloadBytesLength, DecodingMode.INCREMENTAL);
+    }
+
+    /**
+     * Constructs a new PacketDecoder.
+     *
+     * @param maxPackets the maximum number of coded packets, i.e. the length of
+     * the coding vectors
+     * @param payloadBytesLength the length in bytes of the payload of the packets
+     * @param mode the strategy used to recover the uncoded packets
+     */
+    public F256PacketDecoder(int maxPackets, int payloadBytesLength, DecodingMode mode) {
+        this.mode = mode;
+        if (mode == DecodingMode.ON_THE_FLY) {
+            onTheFlyDecoder = new F256OnTheFlyDecoder(maxPackets);
+        } else {
+            codingVectorDecoder = new F256CodingVectorDecoder(maxPackets);
+        }
         this.payloadCoordinatesCount = ff.coordinatesCount(payloadBytesLength);
+        if (mode != DecodingMode.ON_THE_FLY) {
+            packets.ensureCapacity(maxPackets);
+        }
+    }
+
+    /**
+     * Returns the strategy used by this decoder to recover uncoded packets
+     *
+     * @return the decoding mode of this decoder
+     */
+    public DecodingMode getDecodingMode() {
+        return mode;
     }
 
     /**
@@ -78,8 +128,14 @@ public class F256PacketDecoder {
     public List<UncodedPacket> addPacket(F256CodedPacket p) {
 
         assert(p.getFiniteField() == ff);
-        assert(p.getCodingVector().getLength() == codingVectorDecoder.getMaxPackets());
+        assert(p.getCodingVector().getLength() == getMaxPackets());
         assert(p.getPayload().getLength() == payloadCoordinatesCount);
+
+        if (mode == DecodingMode.FULL_RANK) {
+            return addPacketFullRank(p);
+        } else if (mode == DecodingMode.ON_THE_FLY) {
+            return addPacketOnTheFly(p);
+        }
         
     
         Map<Integer, F256Vector> decoded = codingVectorDecoder.addVector(p.getCodingVector());
@@ -107,12 +163,152 @@ public class F256PacketDecoder {
         
     }
 
+    /**
+     *
+     * Adds a coded packet to the decoding buffer and writes the uncoded
+     * packets that can be decoded thanks to it in the specified buffers. In
+     * contrast to addPacket(F256CodedPacket) this method doesn't allocate
+     * objects for each packet, the payloads are decoded directly in the
+     * buffer. The decoder keeps a copy of the innovative packets, so the 
+     * caller can reuse p. It can be used only in incremental mode.
+     *
+     * @param p a CodedPacket with payload length and coding coefficient length
+     * compatible with the decoder
+     * @param decodedIds an array of at least getMaxPackets() elements where
+     * the ids of the decoded uncoded packets are written
+     * @param payloads a buffer where the payload of the i-th decoded packet is
+     * written at position offset + i * getPayloadLength()
+     * @param offset the position of the first payload in the buffer
+     * @return the number of uncoded packets that have been decoded thanks to
+     * this coded packet (and what was previously added)
+     */
+    public int addPacket(F256CodedPacket p, int[] decodedIds, byte[] payloads, int offset) {
+
+        if (mode != DecodingMode.INCREMENTAL) {
+            throw new IllegalStateException("Only incremental decoders can write into buffers");
+        }
+
+        int count = codingVectorDecoder.addVector(p.getCodingVector(), decodedIds);
+
+        if (count == -1) {
+            return 0;
+        }
+
+        packets.add(copyPacket(p));
+
+        if (decodedPayload == null) {
+            decodedPayload = F256Vector.wrap(payloads, offset, payloadCoordinatesCount);
+        }
+
+        for (int i = 0; i < count; i++) {
+
+            decodedPayload.coordinates = payloads;
+            decodedPayload.offset = offset + i * payloadCoordinatesCount;
+
+            decodePayload(codingVectorDecoder.getDecodingLine(decodedIds[i]), decodedPayload);
+        }
+
+        return count;
+
+    }
+
+    /**
+     * Copies a packet in the buffer of the next line of the decoder, the 
+     * buffers of all the lines are allocated the first time
+     */
+    private F256CodedPacket copyPacket(F256CodedPacket p) {
+
+        int maxPackets = getMaxPackets();
+
+        if (packetCopies == null) {
+            packetCopies = new F256CodedPacket[maxPackets];
+            for (int i = 0; i < maxPackets; i++) {
+                packetCopies[i] = new F256CodedPacket(new F256Vector(maxPackets), new F256Vector(payloadCoordinatesCount));
+            }
+        }
+
+        F256CodedPacket copy = packetCopies[packets.size()];
+
+        copyCoordinates(p.getCodingVector(), copy.getCodingVector(), maxPackets);
+        copyCoordinates(p.getPayload(), copy.getPayload(), payloadCoordinatesCount);
+
+        return copy;
+    }
+
+    private static void copyCoordinates(F256Vector from, F256Vector to, int length) {
+        System.arraycopy(from.coordinates, from.offset, to.coordinates, to.offset, length);
+    }
+
+    private List<UncodedPacket> addPacketOnTheFly(F256CodedPacket p) {
+
+        List<UncodedPacket> output = onTheFlyDecoder.addPacket(p);
+
+        /* the payloads are reduced by the on the fly decoder, the packets
+         are not retained */
+        if (output == null) {
+            return new ArrayList<UncodedPacket>();
+        }
+
+        return output;
+
+    }
+
+    private List<UncodedPacket> addPacketFullRank(F256CodedPacket p) {
+
+        ArrayList<UncodedPacket> output = new ArrayList<UncodedPacket>();
+
+        if (!codingVectorDecoder.reduceVector(p.getCodingVector())) {
+            return output;
+        }
+
+        packets.add(p);
+
+        if (packets.size() < getMaxPackets()) {
+            return output;
+        }
+
+        F256Vector[] inverse = codingVectorDecoder.solve();
+
+        int maxPackets = getMaxPackets();
+
+        F256Vector[] decoded = new F256Vector[maxPackets];
+        for (int id = 0; id < maxPackets; id++) {
+            decoded[id] = new F256Vector(payloadCoordinatesCount);
+        }
+
+        /* multiply the inverse with the payloads one block of columns at a 
+           time, so that the blocks of the payloads stay in the cache while 
+           they are combined for every uncoded packet */
+        int blockLength = Math.max(MIN_BLOCK_LENGTH, CACHE_BLOCK_SIZE / maxPackets);
+
+        for (int start = 0; start < payloadCoordinatesCount; start += blockLength) {
+
+            int length = Math.min(blockLength, payloadCoordinatesCount - start);
+
+            for (int id = 0; id < maxPackets; id++) {
+
+                byte[] row = inverse[id].coordinates;
+
+                for (int codedPacketId = 0; codedPacketId < maxPackets; codedPacketId++) {
+                    decoded[id].multiplyAndAddInPlace(row[codedPacketId] & 0xFF,
+                            packets.get(codedPacketId).getPayload(), start, length);
+                }
+            }
+        }
+
+        for (int id = 0; id < maxPackets; id++) {
+            output.add(new UncodedPacket(id, decoded[id].coordinates));
+        }
+
+        return output;
+
+    }
+
     private F256Vector decodePayload(F256Vector encoding) {
         
         /* this vector will store the linear combination of coded payloads that
            correspond to the decoded payload */
         F256Vector decodedPayload = new F256Vector(payloadCoordinatesCount);
-        byte[] coordinates3 = decodedPayload.coordinates;
         
         /* linearly combine the payloads */
         
@@ -128,22 +324,43 @@ public class F256PacketDecoder {
             }
 
             F256Vector codedPayload = packets.get(codedPacketId).getPayload();
-            byte[] coordinates2 = codedPayload.coordinates;
             
             /* linearly combine the payload of packet "codedPacketId" */
-            for (int c = 0; c < codedPayload.getLength(); c++) {               
-				int v2 = ((int) coordinates2[c+codedPayload.offset]) & 0xFF;                
-				int v1 = ((int)coordinates3[c]) & 0xFF;
-                int val = v1 ^ ff.mul[coeff][v2];
-                coordinates3[c] = (byte) val;
-            }
+            decodedPayload.multiplyAndAddInPlace(coeff, codedPayload);
         }
         return decodedPayload;
     }
 
     
     /**
-     * Returns a list of the coded packets that have been added to the decoder
+     * Writes in decodedPayload the combination of the payloads of the coded
+     * packets given by a line of the decode matrix
+     */
+    private void decodePayload(int[] line, F256Vector decodedPayload) {
+
+        int maxPackets = getMaxPackets();
+
+        decodedPayload.setToZero();
+
+        for (int codedPacketId = 0; codedPacketId < packets.size(); codedPacketId++) {
+            decodedPayload.multiplyAndAddInPlace(line[maxPackets + codedPacketId], 
+                    packets.get(codedPacketId).getPayload());
+        }
+    }
+
+    /**
+     * Returns the length in bytes of the payloads written by
+     * addPacket(F256CodedPacket, int[], byte[], int)
+     *
+     * @return the length in bytes of a decoded payload
+     */
+    public int getPayloadLength() {
+        return payloadCoordinatesCount;
+    }
+
+    /**
+     * Returns a list of the coded packets that have been added to the decoder.
+     * In on the fly mode the packets are not retained and the list is empty.
      * 
      * @return a list of the coded packets added to the decoder
      * 
@@ -158,6 +375,7 @@ public class F256PacketDecoder {
      * @return the number of packets that can be combined at most
      */
     public int getMaxPackets() {
+        if (onTheFlyDecoder != null) return onTheFlyDecoder.getMaxPackets();
         return codingVectorDecoder.getMaxPackets();
     }
 
@@ -169,6 +387,7 @@ public class F256PacketDecoder {
      * @return a number between 0 and getMaxPackets()
      */
     public int getSubspaceSize() {
+        if (onTheFlyDecoder != null) return onTheFlyDecoder.getSubspaceSize();
     	return codingVectorDecoder.getSubspaceSize();
     }
     
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2012, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *      * Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *      * Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *      * Neither the name of the EPFL nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *  
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************/
+package ch.epfl.arni.ncutils.f256;
+
+/**
+ * Operations on vectors of elements of F_{2^8} implemented with SIMD
+ * instructions. The implementation is compiled separately since it requires
+ * a JDK that provides the Vector API and is used by {@link F256Vector} only
+ * if the API is available at runtime.
+ *
+ * @author lokeller
+ */
+
+abstract class F256SimdKernel {
+
+    /**
+     * Adds the vector stored in src to the vector stored in dest.
+     *
+     * @param dest the buffer containing the destination vector
+     * @param destStart offset of the first coordinate in dest
+     * @param src the buffer containing the vector to be added
+     * @param srcStart offset of the first coordinate in src
+     * @param len number of coordinates
+     */
+    abstract void add(byte[] dest, int destStart, byte[] src, int srcStart, int len);
+
+    /**
+     * Multiplies the vector stored in v by c.
+     *
+     * @param v the buffer containing the vector
+     * @param start offset of the first coordinate in v
+     * @param len number of coordinates
+     * @param c the coefficient
+     */
+    abstract void scalarMultiply(byte[] v, int start, int len, int c);
+
+    /**
+     * Multiplies the vector stored in src by c and adds it to the vector
+     * stored in dest.
+     *
+     * @param dest the buffer containing the destination vector
+     * @param destStart offset of the first coordinate in dest
+     * @param src the buffer containing the vector to be multiplied and added
+     * @param srcStart offset of the first coordinate in src
+     * @param len number of coordinates
+     * @param c the coefficient
+     */
+    abstract void multiplyAndAdd(byte[] dest, int destStart, byte[] src, int srcStart, int len, int c);
+
+}
@@ -33,6 +33,10 @@ import ch.epfl.arni.ncutils.FiniteField;
 /**
  * Represents a vector of elements of F_{2^8}.
  * 
+ * When the JVM provides the Vector API (it is started with 
+ * --add-modules jdk.incubator.vector) the arithmetic operations on long
+ * vectors are performed with SIMD instructions, unless the system property
+ * ch.epfl.arni.ncutils.kernel is set to table.
  *
  * @author lokeller
  */
@@ -40,6 +44,43 @@ import ch.epfl.arni.ncutils.FiniteField;
 public class F256Vector {
 
     private static FiniteField ff = F256.getF256();
+
+    /** vectors shorter than this are processed with table lookups */
+    private static final int SIMD_MIN_LENGTH = 32;
+
+    /**
+     * products of each coefficient c with the values of the low nibble,
+     * c * x is stored at position (c << 4) + x
+     */
+    static final byte[] nibbleLow = new byte[256 * 16];
+
+    /**
+     * products of each coefficient c with the values of the high nibble,
+     * c * (x << 4) is stored at position (c << 4) + x
+     */
+    static final byte[] nibbleHigh = new byte[256 * 16];
+
+    /** SIMD implementation of the operations, null if not available */
+    private static F256SimdKernel simd;
+
+    static {
+
+        for (int c = 0; c < 256; c++) {
+            for (int x = 0; x < 16; x++) {
+                nibbleLow[(c << 4) + x] = ff.mulTable[(c << 8) + x];
+                nibbleHigh[(c << 4) + x] = ff.mulTable[(c << 8) + (x << 4)];
+            }
+        }
+
+        if (!"table".equals(System.getProperty("ch.epfl.arni.ncutils.kernel"))) {
+            try {
+                simd = (F256SimdKernel) Class.forName("ch.epfl.arni.ncutils.f256.IncubatorF256SimdKernel").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+            } catch (RuntimeException e) {
+            } catch (LinkageError e) {}
+        }
+
+    }
 	
     byte[] coordinates;
     int offset;
@@ -163,11 +204,8 @@ public class F256Vector {
      */
     public F256Vector add(F256Vector vector) {
 
-        F256Vector out = new F256Vector(len);
-
-        for ( int i = 0 ; i < len; i++ ) {
-            out.coordinates[i] = (byte) ( coordinates[i+offset] ^ vector.coordinates[i+vector.offset]);
-        }
+        F256Vector out = copy();
+        out.addInPlace(vector);
 
         return out;
     }
@@ -180,6 +218,11 @@ public class F256Vector {
      */
     public void addInPlace(F256Vector vector) {
 
+        if (simd != null && len >= SIMD_MIN_LENGTH) {
+            simd.add(coordinates, offset, vector.coordinates, vector.offset, len);
+            return;
+        }
+
         for ( int i = 0 ; i < len ; i++ ) {
             coordinates[i+offset] = (byte) ( coordinates[i+offset] ^ vector.coordinates[i+vector.offset] );
         }
@@ -194,11 +237,8 @@ public class F256Vector {
      */
     public F256Vector scalarMultiply(int c) {
 
-        F256Vector out = new F256Vector(len);
-
-        for ( int i = 0 ; i < len; i++ ) {
-            out.coordinates[i] = (byte) ff.mul[((int) coordinates[i+offset]) & 0xFF][c];
-        }
+        F256Vector out = copy();
+        out.scalarMultiplyInPlace(c);
 
         return out;
 
@@ -211,8 +251,17 @@ public class F256Vector {
      * @param c a constant that is used to multiply the vector coordinates
      */
     public void scalarMultiplyInPlace(int c) {
+
+        if (simd != null && len >= SIMD_MIN_LENGTH) {
+            simd.scalarMultiply(coordinates, offset, len, c);
+            return;
+        }
+
+        final byte[] mulTable = ff.mulTable;
+        final int row = c << 8;
+
     	for ( int i = 0 ; i < len ; i++ ) {
-            coordinates[i+offset] = (byte) ff.mul[((int) coordinates[i+offset]) & 0xFF][c];
+            coordinates[i+offset] = mulTable[row + (coordinates[i+offset] & 0xFF)];
         }    
     }
     
@@ -231,11 +280,8 @@ public class F256Vector {
      */
     public F256Vector multiplyAndAdd(int c, F256Vector other) {
     	        
-        F256Vector out = new F256Vector(len);
-
-        for ( int i = 0 ; i < len ; i++ ) {
-            out.coordinates[i] = (byte) ( ff.mul[((int) other.coordinates[i+other.offset]) & 0xFF][c] ^ (((int) coordinates[i+offset]) & 0xFF));
-        }
+        F256Vector out = copy();
+        out.multiplyAndAddInPlace(c, other);
 
         return out;
     	
@@ -250,10 +296,46 @@ public class F256Vector {
      */
     public void multiplyAndAddInPlace(int c, F256Vector other) {
 
+        if (c == 0) {
+            return;
+        }
+
+        if (simd != null && len >= SIMD_MIN_LENGTH) {
+            simd.multiplyAndAdd(coordinates, offset, other.coordinates, other.offset, len, c);
+            return;
+        }
+
+        final byte[] mulTable = ff.mulTable;
+        final int row = c << 8;
+
         for ( int i = 0 ; i < len ; i++ ) {
-            coordinates[i+offset] = (byte) ( ff.mul[((int)other.coordinates[i+other.offset]) & 0xFF][c] ^ (((int) coordinates[i+offset]) & 0xFF));
+            coordinates[i+offset] ^= mulTable[row + (other.coordinates[i+other.offset] & 0xFF)];
         }
     	
+    }
+
+    /**
+     * Adds to length coordinates of this vector, starting at start, the
+     * corresponding coordinates of another vector multiplied by a constant
+     */
+    void multiplyAndAddInPlace(int c, F256Vector other, int start, int length) {
+
+        if (c == 0) {
+            return;
+        }
+
+        if (simd != null && length >= SIMD_MIN_LENGTH) {
+            simd.multiplyAndAdd(coordinates, offset + start, other.coordinates, other.offset + start, length, c);
+            return;
+        }
+
+        final byte[] mulTable = ff.mulTable;
+        final int row = c << 8;
+
+        for ( int i = start ; i < start + length ; i++ ) {
+            coordinates[i+offset] ^= mulTable[row + (other.coordinates[i+other.offset] & 0xFF)];
+        }
+
     }
        
 	@Override
@@ -183,6 +183,46 @@ public class CodingVectorDecoderTest {
         checkInverse(vectors, inverse, size);
     }
 
+    @Test
+    public void testSparse() {
+
+        Random r = new Random(76543);
+
+        int n = 40;
+
+        for (FiniteField field : new FiniteField[] {ff, new FiniteField(17)}) {
+
+            CodingVectorDecoder d = new CodingVectorDecoder(n, field);
+
+            Vector[] vectors = new Vector[n];
+            Vector[] inverse = new Vector[n];
+
+            int count = 0;
+
+            while (count < n) {
+
+                /* three non zero coefficients close to each other */
+                Vector v = new Vector(n, field);
+                int start = r.nextInt(n - 5);
+                for (int j = 0; j < 3; j++) {
+                    v.setCoordinate(start + r.nextInt(6), 1 + r.nextInt(field.getCardinality() - 1));
+                }
+
+                Map<Integer, Vector> dd = d.addVector(v);
+
+                if (dd == null) continue;
+
+                vectors[count++] = v;
+
+                for ( Map.Entry<Integer, Vector> entry : dd.entrySet()) {
+                    inverse[entry.getKey()] = entry.getValue();
+                }
+            }
+
+            checkInverse(vectors, inverse, n);
+        }
+    }
+
     @Test
     public void testLinearlyDependant() {
         Vector[] vectors = new Vector[size];
@@ -27,6 +27,8 @@
 
 package ch.epfl.arni.ncutils;
 
+import java.util.Random;
+
 import ch.epfl.arni.ncutils.FiniteField;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -102,6 +104,79 @@ public class FiniteFieldTest {
         }
     }
 
+    @Test
+    public void testFlatTables() {
+
+        FiniteField[] fields = { new FiniteField(2,4), new FiniteField(2,8), new FiniteField(17) };
+
+        for (FiniteField f : fields) {
+            int q = f.getCardinality();
+            for (int i = 0; i < q; i++) {
+                for (int j = 0; j < q; j++) {
+                    assertEquals(f.mul[i][j], f.mulTable[i * q + j] & 0xFF);
+                    assertEquals(f.sum[i][j], f.sumTable[i * q + j] & 0xFF);
+                }
+            }
+        }
+
+        assertNull(new FiniteField(257).mulTable);
+        assertNull(new FiniteField(257).sumTable);
+    }
+
+    @Test
+    public void testLogTables() {
+
+        Random r = new Random(2131231);
+
+        for (int m = 9 ; m <= 16 ; m++) {
+
+            FiniteField f = new FiniteField(2, m);
+
+            assertNull(f.mul);
+            assertEquals(m, f.bitsPerCoordinate());
+
+            for (int n = 0 ; n < 10000 ; n++) {
+
+                int i = r.nextInt(f.getCardinality());
+                int j = r.nextInt(f.getCardinality());
+                int k = r.nextInt(f.getCardinality());
+
+                /* identity */
+                assertEquals(i, f.add(i, 0));
+                assertEquals(i, f.multiply(i, 1));
+                /* inverse */
+                assertTrue(i == 0 || f.multiply(i, f.inverse[i]) == 1);
+                /* commutativity */
+                assertEquals(f.multiply(i, j), f.multiply(j, i));
+                /* opposite operations */
+                assertTrue(j == 0 || f.divide(f.multiply(i, j), j) == i);
+                assertEquals(i, f.subtract(f.add(i, j), j));
+                /* associativity */
+                assertEquals(f.multiply(f.multiply(i, j), k), f.multiply(i, f.multiply(j, k)));
+                /* distributivity */
+                assertEquals(f.multiply(f.add(i, j), k), f.add(f.multiply(i, k), f.multiply(j, k)));
+            }
+        }
+
+    }
+
+    @Test
+    public void testScalarOperations() {
+
+        FiniteField[] fields = { new FiniteField(2,4), new FiniteField(17) };
+
+        for (FiniteField f : fields) {
+            for (int i = 0; i < f.getCardinality(); i++) {
+                for (int j = 0; j < f.getCardinality(); j++) {
+                    assertEquals(f.sum[i][j], f.add(i, j));
+                    assertEquals(f.sub[i][j], f.subtract(i, j));
+                    assertEquals(f.mul[i][j], f.multiply(i, j));
+                    assertTrue(j == 0 || f.div[i][j] == f.divide(i, j));
+                }
+            }
+        }
+    }
+
     @Test
     public void testConstructor() {
     	try {
@@ -131,4 +206,51 @@ public class FiniteFieldTest {
     	assertFalse(new FiniteField(2,4).equals(new FiniteField(2,2)));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testBitPacking() {
+
+        FiniteField[] fields = { new FiniteField(2, 1), new FiniteField(2, 2),
+            new FiniteField(2, 3), new FiniteField(2, 4), new FiniteField(2, 5),
+            new FiniteField(2, 8), new FiniteField(2, 9), new FiniteField(2, 16),
+            new FiniteField(5), new FiniteField(17), new FiniteField(257) };
+
+        Random r = new Random(2131231);
+
+        for (FiniteField ff : fields) {
+
+            int w = ff.bitsPerCoordinate();
+
+            for (int count = 0 ; count < 20 ; count++) {
+
+                byte[] bytes = new byte[ff.bytesLength(count) + 4];
+                r.nextBytes(bytes);
+
+                /* compare with a bit by bit conversion */
+                Vector v = ff.byteToVector(bytes, 3, bytes.length - 3, count);
+
+                for (int i = 0 ; i < count ; i++) {
+                    int expected = 0;
+                    for (int b = i * w ; b < (i + 1) * w ; b++) {
+                        expected = (expected << 1) | ((bytes[3 + b / 8] >> (b % 8)) & 1);
+                    }
+                    assertEquals(expected % ff.getCardinality(), v.getCoordinate(i));
+                }
+
+                /* writing back must not change the bits around the vector */
+                byte[] output = bytes.clone();
+                ff.vectorToBytes(v, output, 3);
+
+                for (int b = 0 ; b < bytes.length * 8 ; b++) {
+                    int bit = (bytes[b / 8] >> (b % 8)) & 1;
+                    int coordinate = b / 8 >= 3 ? (b - 24) / w : -1;
+                    if (coordinate >= 0 && coordinate < count) {
+                        bit = (v.getCoordinate(coordinate) >> (w - 1 - (b - 24) % w)) & 1;
+                    }
+                    assertEquals(bit, (output[b / 8] >> (b % 8)) & 1);
+                }
+            }
+        }
+
+    }
+
+}
@@ -43,9 +43,14 @@ import org.junit.runners.Suite;
                         ch.epfl.arni.ncutils.CodingVectorDecoderTest.class,
                         ch.epfl.arni.ncutils.UncodedPacketTest.class,
                         ch.epfl.arni.ncutils.PacketDecoderTest.class,
+                        ch.epfl.arni.ncutils.PacketRecoderTest.class,
                         ch.epfl.arni.ncutils.CodedPacketTest.class,
                         ch.epfl.arni.ncutils.MatrixTest.class,
-                        ch.epfl.arni.ncutils.VectorSpaceTest.class})
+                        ch.epfl.arni.ncutils.VectorSpaceTest.class,
+                        ch.epfl.arni.ncutils.f256.F256VectorTest.class,
+                        ch.epfl.arni.ncutils.f256.F256PacketDecoderTest.class,
+                        ch.epfl.arni.ncutils.f2.F2PacketDecoderTest.class,
+                        ch.epfl.arni.ncutils.f16.F16PacketDecoderTest.class})
 public class FullTestSuite {
 
     @BeforeClass
@@ -189,6 +189,12 @@ public class MatrixTest {
 		
 		assertTrue(m.multiply(m1).isIdentity());
 		
+		FiniteField ff = new FiniteField(2, 16);
+		
+		Matrix m4 = Matrix.createRandomMatrix(10, 10, ff, 12131);
+		
+		assertTrue(m4.multiply(m4.toInverse()).isIdentity());
+		
 	}
 
 	@Test
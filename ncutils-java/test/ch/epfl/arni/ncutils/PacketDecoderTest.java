@@ -28,11 +28,15 @@ package ch.epfl.arni.ncutils;
 
 import static org.junit.Assert.*;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
+import org.junit.Assume;
 import org.junit.Test;
 
 import ch.epfl.arni.ncutils.CodedPacket;
@@ -123,5 +127,332 @@ public class PacketDecoderTest {
 		
 	}
 
+	@Test
+	public void testLargeField() {
+
+        FiniteField ff = new FiniteField(2, 16);
+
+        int blockNumber = 10;
+        int payloadLen = 20;
+
+        Random r = new Random(2131231);
+
+        UncodedPacket[] inputPackets = new UncodedPacket[blockNumber];
+        CodedPacket[] codewords = new CodedPacket[blockNumber];
+
+        for ( int i = 0 ; i < blockNumber ; i++) {
+            byte[] payload = new byte[payloadLen];
+            r.nextBytes(payload);
+            inputPackets[i] = new UncodedPacket(i, payload);
+            codewords[i] = new CodedPacket( inputPackets[i], blockNumber, ff);
+        }
+
+        PacketDecoder decoder = new PacketDecoder(ff, blockNumber, payloadLen);
+
+        ArrayList<UncodedPacket> uncoded = new ArrayList<UncodedPacket>();
+
+        while (decoder.getSubspaceSize() < blockNumber) {
+
+            CodedPacket p = new CodedPacket(blockNumber, payloadLen, ff);
+
+            for ( int j = 0 ; j < blockNumber ; j++) {
+                p.multiplyAndAddInPlace(r.nextInt(ff.getCardinality()), codewords[j]);
+            }
+
+            /* go through the wire format */
+            p = new CodedPacket(blockNumber, p.toByteArray(), 0, p.toByteArray().length, ff);
+
+            uncoded.addAll(decoder.addPacket(p));
+        }
+
+        assertEquals(blockNumber, uncoded.size());
+
+        for ( UncodedPacket packet : uncoded ) {
+        	assertArrayEquals(inputPackets[packet.getId()].getPayload(), packet.getPayload());
+        }
+
+	}
+
+
+	@Test
+	public void testFullRank() {
+
+        FiniteField[] fields = { FiniteField.getDefaultFiniteField(), new FiniteField(2, 8), new FiniteField(2, 10) };
+
+        int blockNumber = 10;
+
+        /* spans more than one decoding block */
+        int payloadLen = 70000;
+
+        for (FiniteField ff : fields) {
+
+            Random r = new Random(2131231);
+
+            UncodedPacket[] inputPackets = new UncodedPacket[blockNumber];
+            CodedPacket[] codewords = new CodedPacket[blockNumber];
+
+            for ( int i = 0 ; i < blockNumber ; i++) {
+                byte[] payload = new byte[payloadLen];
+                r.nextBytes(payload);
+                inputPackets[i] = new UncodedPacket(i, payload);
+                codewords[i] = new CodedPacket( inputPackets[i], blockNumber, ff);
+            }
+
+            PacketDecoder decoder = new PacketDecoder(ff, blockNumber, payloadLen, DecodingMode.FULL_RANK);
+
+            assertEquals(DecodingMode.FULL_RANK, decoder.getDecodingMode());
+
+            List<UncodedPacket> uncoded = new ArrayList<UncodedPacket>();
+
+            while (decoder.getSubspaceSize() < blockNumber) {
+
+                /* nothing is decoded before full rank */
+                assertTrue(uncoded.isEmpty());
+
+                CodedPacket p = new CodedPacket(blockNumber, payloadLen, ff);
+
+                for ( int j = 0 ; j < blockNumber ; j++) {
+                    p.multiplyAndAddInPlace(r.nextInt(ff.getCardinality()), codewords[j]);
+                }
+
+                uncoded = decoder.addPacket(p);
+            }
+
+            assertEquals(blockNumber, uncoded.size());
+
+            for ( UncodedPacket packet : uncoded ) {
+                assertArrayEquals(inputPackets[packet.getId()].getPayload(), packet.getPayload());
+            }
+
+            assertEquals(0, decoder.addPacket(codewords[0]).size());
+        }
+
+	}
+
+	@Test
+	public void testOnTheFly() {
+
+        FiniteField[] fields = { FiniteField.getDefaultFiniteField(), new FiniteField(2, 1), new FiniteField(2, 10) };
+
+        int blockNumber = 12;
+        int payloadLen = 100;
+
+        for (FiniteField ff : fields) {
+
+            Random r = new Random(2131231);
+
+            CodedPacket[] codewords = new CodedPacket[blockNumber];
+
+            for ( int i = 0 ; i < blockNumber ; i++) {
+                byte[] payload = new byte[payloadLen];
+                r.nextBytes(payload);
+                codewords[i] = new CodedPacket( new UncodedPacket(i, payload), blockNumber, ff);
+            }
+
+            PacketDecoder incremental = new PacketDecoder(ff, blockNumber, payloadLen);
+            PacketDecoder onTheFly = new PacketDecoder(ff, blockNumber, payloadLen, DecodingMode.ON_THE_FLY);
+
+            while (incremental.getSubspaceSize() < blockNumber) {
+
+                /* sparse combinations, so that packets get decoded before full rank */
+                CodedPacket p = new CodedPacket(blockNumber, payloadLen, ff);
+
+                for ( int j = 0 ; j < 3 ; j++) {
+                    p.multiplyAndAddInPlace(1 + r.nextInt(ff.getCardinality() - 1), codewords[r.nextInt(blockNumber)]);
+                }
+
+                /* both decoders must decode the same packets at the same time */
+                List<UncodedPacket> expected = incremental.addPacket(p);
+                List<UncodedPacket> actual = onTheFly.addPacket(p);
+
+                Collections.sort(expected);
+                Collections.sort(actual);
+
+                assertEquals(expected, actual);
+                assertEquals(incremental.getSubspaceSize(), onTheFly.getSubspaceSize());
+            }
+
+            assertEquals(0, onTheFly.addPacket(codewords[0]).size());
+            assertTrue(onTheFly.getCodedPackets().isEmpty());
+        }
+
+	}
+
+	@Test
+	public void testBuffers() {
+
+        FiniteField[] fields = { FiniteField.getDefaultFiniteField(), new FiniteField(2, 4), new FiniteField(2, 10) };
+
+        for (FiniteField ff : fields) {
+
+            int blockNumber = 10;
+            int payloadLen = 20;
+
+            Random r = new Random(2131231);
+
+            CodedPacket[] codewords = new CodedPacket[blockNumber];
+
+            for ( int i = 0 ; i < blockNumber ; i++) {
+                byte[] payload = new byte[payloadLen];
+                r.nextBytes(payload);
+                codewords[i] = new CodedPacket(new UncodedPacket(i, payload), blockNumber, ff);
+            }
+
+            /* the decoder that writes in buffers must give the same packets 
+             * as the one that returns lists */
+            PacketDecoder decoder = new PacketDecoder(ff, blockNumber, payloadLen);
+            PacketDecoder reference = new PacketDecoder(ff, blockNumber, payloadLen);
+
+            int[] ids = new int[blockNumber];
+            byte[] payloads = new byte[blockNumber * decoder.getPayloadLength()];
+
+            int decodedCount = 0;
+
+            /* the same packet is reused, the decoder must keep a copy */
+            CodedPacket reused = new CodedPacket(blockNumber, payloadLen, ff);
+
+            while (decoder.getSubspaceSize() < blockNumber) {
+
+                CodedPacket p = new CodedPacket(blockNumber, payloadLen, ff);
+
+                for ( int j = 0 ; j < blockNumber ; j++) {
+                    p = p.add(codewords[j].scalarMultiply(r.nextInt(ff.getCardinality())));
+                }
+
+                reused.setToZero();
+                reused.addInPlace(p);
+
+                int count = decoder.addPacket(reused, ids, payloads, 0);
+                List<UncodedPacket> packets = reference.addPacket(p);
+
+                assertEquals(packets.size(), count);
+
+                /* the payload of the i-th id is the i-th payload of the buffer */
+                for (UncodedPacket packet : packets) {
+
+                    int i = 0;
+                    while (i < count && ids[i] != packet.getId()) i++;
+
+                    assertTrue(i < count);
+
+                    int length = decoder.getPayloadLength();
+
+                    assertArrayEquals(packet.getPayload(), Arrays.copyOfRange(payloads, i * length, (i + 1) * length));
+                }
+
+                decodedCount += count;
+            }
+
+            assertEquals(blockNumber, decodedCount);
+            assertEquals(0, decoder.addPacket(codewords[0], ids, payloads, 0));
+        }
+
+	}
+
+	@Test
+	public void testBuffersWithoutAllocation() {
+
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        /* GF(16) vectors are stored one coordinate per byte and packed two per byte */
+        FiniteField ff = FiniteField.getDefaultFiniteField();
+
+        int blockNumber = 10;
+        int payloadLen = 400;
+
+        Random r = new Random(2131231);
+
+        CodedPacket[] codewords = new CodedPacket[blockNumber];
+
+        for ( int i = 0 ; i < blockNumber ; i++) {
+            byte[] payload = new byte[payloadLen];
+            r.nextBytes(payload);
+            codewords[i] = new CodedPacket(new UncodedPacket(i, payload), blockNumber, ff);
+        }
+
+        int[] ids = new int[blockNumber];
+        byte[] payloads = new byte[blockNumber * payloadLen];
+
+        /* the first generation warms up the code, in the second one only the 
+         * first packet allocates the buffers of the decoder */
+        for (int generation = 0 ; generation < 2 ; generation++) {
+
+            PacketDecoder decoder = new PacketDecoder(ff, blockNumber, payloadLen);
+
+            decoder.addPacket(codewords[0], ids, payloads, 0);
+
+            long start = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+            int decodedCount = 1;
+
+            for ( int i = 1 ; i < blockNumber ; i++) {
+                decodedCount += decoder.addPacket(codewords[i], ids, payloads, 0);
+            }
+
+            long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - start;
+
+            assertEquals(blockNumber, decodedCount);
+
+            if (generation == 1) {
+                /* converting the payloads through int arrays would allocate 
+                 * more than 1600 bytes per decoded packet */
+                assertTrue("allocated " + allocated + " bytes", allocated < payloadLen);
+            }
+        }
+
+	}
+
+	@Test
+	public void testParallel() {
+
+        FiniteField ff = FiniteField.getDefaultFiniteField();
+
+        int blockNumber = 32;
+        int payloadLen = 8192;
+
+        Random r = new Random(2131231);
+
+        UncodedPacket[] inputPackets = new UncodedPacket[blockNumber];
+        CodedPacket[] codewords = new CodedPacket[blockNumber];
+
+        for ( int i = 0 ; i < blockNumber ; i++) {
+            byte[] payload = new byte[payloadLen];
+            r.nextBytes(payload);
+            inputPackets[i] = new UncodedPacket(i, payload);
+            codewords[i] = new CodedPacket(inputPackets[i], blockNumber, ff);
+        }
+
+        for (DecodingMode mode : new DecodingMode[] { DecodingMode.INCREMENTAL, DecodingMode.FULL_RANK }) {
+
+            PacketDecoder decoder = new PacketDecoder(ff, blockNumber, payloadLen, mode);
+            decoder.setForkJoinPool(ForkJoinPool.commonPool());
+
+            ArrayList<UncodedPacket> uncoded = new ArrayList<UncodedPacket>();
+
+            while (decoder.getSubspaceSize() < blockNumber) {
+
+                CodedPacket p = new CodedPacket(blockNumber, payloadLen, ff);
+
+                for ( int j = 0 ; j < blockNumber ; j++) {
+                    p = p.add(codewords[j].scalarMultiply(r.nextInt(ff.getCardinality())));
+                }
+
+                uncoded.addAll(decoder.addPacket(p));
+            }
+
+            assertEquals(blockNumber, uncoded.size());
+
+            for ( UncodedPacket packet : uncoded ) {
+                assertArrayEquals(inputPackets[packet.getId()].getPayload(), packet.getPayload());
+            }
+        }
+
+	}
 
 }
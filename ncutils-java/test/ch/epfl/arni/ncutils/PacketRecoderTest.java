@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2012, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *      * Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *      * Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *      * Neither the name of the EPFL nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *  
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************/
+package ch.epfl.arni.ncutils;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PacketRecoderTest {
+
+	@Test
+	public void testRecoder() {
+		
+		for (FiniteField ff : new FiniteField[] { FiniteField.getDefaultFiniteField(), new FiniteField(2, 1), new FiniteField(2, 16) }) {
+			
+			int blockNumber = 10;
+			int payloadLen = 20;
+			
+			Random r = new Random(2131231);
+			
+			UncodedPacket[] inputPackets = new UncodedPacket[blockNumber];
+			CodedPacket[] codewords = new CodedPacket[blockNumber];
+			
+			for ( int i = 0 ; i < blockNumber ; i++) {
+				byte[] payload = new byte[payloadLen];
+				r.nextBytes(payload);
+				inputPackets[i] = new UncodedPacket(i, payload);
+				codewords[i] = new CodedPacket( inputPackets[i], blockNumber, ff);
+			}
+			
+			/* the recoder receives only half of the original packets */
+			PacketRecoder recoder = new PacketRecoder(ff, blockNumber, payloadLen);
+			
+			for ( int i = 0 ; i < blockNumber / 2 ; i++) {
+				assertTrue(recoder.addPacket(codewords[i]));
+			}
+			
+			assertFalse(recoder.addPacket(codewords[0].scalarMultiply(1)));
+			assertEquals(blockNumber / 2, recoder.getSubspaceSize());
+			
+			PacketDecoder decoder = new PacketDecoder(ff, blockNumber, payloadLen);
+			
+			ArrayList<UncodedPacket> uncoded = new ArrayList<UncodedPacket>();
+			
+			/* recoded packets span only the subspace of the recoder */
+			for (CodedPacket p : recoder.createPackets(3 * blockNumber, r)) {
+				uncoded.addAll(decoder.addPacket(p));
+				assertFalse(recoder.addPacket(p));
+			}
+			
+			assertEquals(blockNumber / 2, decoder.getSubspaceSize());
+			
+			for ( int i = blockNumber / 2 ; i < blockNumber ; i++) {
+				assertTrue(recoder.addPacket(codewords[i]));
+			}
+			
+			while (decoder.getSubspaceSize() < blockNumber) {
+				List<UncodedPacket> packets = decoder.addPacket(recoder.createPacket(r));
+				uncoded.addAll(packets);
+			}
+			
+			assertEquals(blockNumber, uncoded.size());
+			
+			for ( UncodedPacket packet : uncoded ) {
+				assertArrayEquals(inputPackets[packet.getId()].getPayload(), packet.getPayload());
+			}
+		}
+		
+	}
+	
+}
@@ -50,7 +50,13 @@ public class VectorSpaceTest {
 		
 		assertFalse(space.equals(Matrix.createIdentityMatrix(3, FiniteField.getDefaultFiniteField()).copyRowSpace()));
 	
-		Matrix matrix3 = Matrix.wrap(matrix.entries, new FiniteField(2,5));
+		int[][] entries = new int[10][20];
+		for (int i = 0 ; i < 10 ; i++) {
+			for (int j = 0 ; j < 20 ; j++) {
+				entries[i][j] = matrix.getEntry(i, j);
+			}
+		}
+		Matrix matrix3 = Matrix.wrap(entries, new FiniteField(2,5));
 		assertFalse(matrix3.copyRowSpace().equals(space));
 		
 		Matrix matrix2 = matrix.copy();		
@@ -154,6 +154,32 @@ public class VectorTest {
 
     }
 
+    @Test
+    public void testMultiplyAndAdd() {
+
+        FiniteField[] fields = { FiniteField.getDefaultFiniteField(), new FiniteField(17), new FiniteField(257) };
+
+        for (FiniteField ff : fields) {
+
+            Vector instance = new Vector(size, ff);
+            Vector instance2 = new Vector(size, ff);
+
+            for (int i = 0 ; i < 10; i++) {
+                instance.setCoordinate(i, i);
+                instance2.setCoordinate(i, 9 - i);
+            }
+
+            Vector instance3 = instance.multiplyAndAdd(5, instance2);
+            instance.multiplyAndAddInPlace(5, instance2);
+
+            for (int i = 0 ; i < 10; i++) {
+                assertEquals(ff.sum[i][ff.mul[5][9 - i]], instance3.getCoordinate(i));
+                assertEquals(ff.sum[i][ff.mul[5][9 - i]], instance.getCoordinate(i));
+            }
+        }
+
+    }
+
     @Test
     public void testHashCode() {
     	
@@ -219,4 +245,44 @@ public class VectorTest {
     	
     }
     
+    @Test
+    public void testCompactStorage() {
+
+        FiniteField[] fields = { FiniteField.getDefaultFiniteField(), new FiniteField(17), new FiniteField(2, 8) };
+
+        for (FiniteField ff : fields) {
+
+            Vector compact = new Vector(size, ff);
+            Vector compact2 = new Vector(size, ff);
+            int[] wrapped = new int[size];
+            int[] wrapped2 = new int[size];
+
+            assertNotNull(compact.bytes);
+
+            for (int i = 0 ; i < size; i++) {
+                compact.setCoordinate(i, (i * 7) % ff.getCardinality());
+                compact2.setCoordinate(i, ff.getCardinality() - 1 - i);
+                wrapped[i] = compact.getCoordinate(i);
+                wrapped2[i] = compact2.getCoordinate(i);
+            }
+
+            Vector wrap = Vector.wrap(wrapped, ff);
+            Vector wrap2 = Vector.wrap(wrapped2, ff);
+
+            assertEquals(wrap, compact);
+            assertEquals(compact, wrap);
+            assertEquals(wrap.hashCode(), compact.hashCode());
+
+            assertEquals(wrap.multiplyAndAdd(3, wrap2), compact.multiplyAndAdd(3, compact2));
+            assertEquals(wrap.multiplyAndAdd(3, compact2), compact.multiplyAndAdd(3, wrap2));
+            assertEquals(wrap.add(wrap2), compact.add(wrap2));
+            assertEquals(wrap.add(compact2), compact.add(compact2));
+            assertEquals(wrap.scalarMultiply(ff.getCardinality() - 1), compact.scalarMultiply(ff.getCardinality() - 1));
+
+            assertArrayEquals(ff.vectorToBytes(wrap), ff.vectorToBytes(compact));
+            assertEquals(compact, ff.byteToVector(ff.vectorToBytes(compact), size));
+        }
+
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2012, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *      * Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *      * Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *      * Neither the name of the EPFL nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *  
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************/
+package ch.epfl.arni.ncutils.f16;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.epfl.arni.ncutils.CodedPacket;
+import ch.epfl.arni.ncutils.FiniteField;
+import ch.epfl.arni.ncutils.UncodedPacket;
+import ch.epfl.arni.ncutils.Vector;
+
+/**
+ *
+ * @author lokeller
+ */
+public class F16PacketDecoderTest {
+
+	@Test
+	public void testVectorOperations() {
+
+        FiniteField ff = F16.getF16();
+
+        Random r = new Random(2131231);
+
+        for (int len : new int[] { 1, 2, 15, 100 }) {
+
+            byte[] a = new byte[(len + 1) / 2];
+            byte[] b = new byte[(len + 1) / 2];
+            r.nextBytes(a);
+            r.nextBytes(b);
+
+            F16Vector va = new F16Vector(a, 0, len);
+            F16Vector vb = new F16Vector(b, 0, len);
+
+            /* the packed format is the one of FiniteField.vectorToBytes */
+            Vector ua = ff.byteToVector(a, len);
+            Vector ub = ff.byteToVector(b, len);
+
+            assertEquals(ua, va.toVector());
+            assertEquals(va, F16Vector.fromVector(ua));
+
+            for (int c = 0; c < 16; c++) {
+                assertEquals(ua.add(ub), va.add(vb).toVector());
+                assertEquals(ua.scalarMultiply(c), va.scalarMultiply(c).toVector());
+                assertEquals(ua.multiplyAndAdd(c, ub), va.multiplyAndAdd(c, vb).toVector());
+            }
+        }
+
+	}
+
+	@Test
+	public void testDecoder() {
+
+        FiniteField ff = F16.getF16();
+
+        int blockNumber = 11;
+        int payloadLen = 33;
+
+        Random r = new Random(2131231);
+
+        UncodedPacket[] inputPackets = new UncodedPacket[blockNumber];
+        F16CodedPacket[] codewords = new F16CodedPacket[blockNumber];
+        CodedPacket[] reference = new CodedPacket[blockNumber];
+
+        for ( int i = 0 ; i < blockNumber ; i++) {
+            byte[] payload = new byte[payloadLen];
+            r.nextBytes(payload);
+            inputPackets[i] = new UncodedPacket(i, payload);
+            codewords[i] = new F16CodedPacket(inputPackets[i], blockNumber);
+            reference[i] = new CodedPacket(inputPackets[i], blockNumber, ff);
+        }
+
+        F16PacketDecoder decoder = new F16PacketDecoder(blockNumber, payloadLen);
+
+        ArrayList<UncodedPacket> uncoded = new ArrayList<UncodedPacket>();
+
+        while ( decoder.getSubspaceSize() < blockNumber) {
+
+            F16CodedPacket p = new F16CodedPacket(blockNumber, payloadLen);
+            CodedPacket q = new CodedPacket(blockNumber, payloadLen, ff);
+
+            for ( int j = 0 ; j < blockNumber ; j++) {
+                int x = r.nextInt(ff.getCardinality());
+                p.multiplyAndAddInPlace(x, codewords[j]);
+                q.multiplyAndAddInPlace(x, reference[j]);
+            }
+
+            /* same binary representation of the generic implementation */
+            byte[] data = p.toByteArray();
+            assertArrayEquals(q.toByteArray(), data);
+
+            List<UncodedPacket> packets = decoder.addPacket(new F16CodedPacket(blockNumber, data, 0, data.length));
+
+            uncoded.addAll(packets);
+        }
+
+        assertEquals(blockNumber, uncoded.size());
+
+        boolean decoded [] = new boolean[blockNumber];
+
+        for ( UncodedPacket packet : uncoded ) {
+
+        	assertFalse(decoded[packet.getId()]);
+
+        	decoded[packet.getId()] = true;
+
+        	assertArrayEquals(inputPackets[packet.getId()].getPayload(), packet.getPayload());
+
+        }
+
+	}
+
+}
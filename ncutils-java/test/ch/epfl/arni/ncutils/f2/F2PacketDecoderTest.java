@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2012, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *      * Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *      * Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *      * Neither the name of the EPFL nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *  
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************/
+package ch.epfl.arni.ncutils.f2;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.epfl.arni.ncutils.FiniteField;
+import ch.epfl.arni.ncutils.UncodedPacket;
+import ch.epfl.arni.ncutils.Vector;
+
+/**
+ *
+ * @author lokeller
+ */
+public class F2PacketDecoderTest {
+
+	@Test
+	public void testByteRepresentation() {
+
+        FiniteField ff = F2.getF2();
+
+        Random r = new Random(2131231);
+
+        for (int len : new int[] { 1, 7, 8, 63, 64, 65, 200 }) {
+
+            byte[] data = new byte[(len + 7) / 8 + 2];
+            r.nextBytes(data);
+
+            F2Vector v = new F2Vector(data, 1, len);
+            Vector reference = ff.byteToVector(data, 1, data.length - 1, len);
+
+            for (int i = 0 ; i < len ; i++) {
+                assertEquals(reference.getCoordinate(i), v.getCoordinate(i));
+            }
+
+            assertArrayEquals(ff.vectorToBytes(reference), v.toByteArray());
+            assertEquals(v, new F2Vector(v.toByteArray(), 0, len));
+        }
+
+	}
+
+	@Test
+	public void testDecoder() {
+
+        /* more than one word per coding vector */
+        int blockNumber = 70;
+        int payloadLen = 33;
+
+        Random r = new Random(2131231);
+
+        /* create the uncoded packets */
+        UncodedPacket[] inputPackets = new UncodedPacket[blockNumber];
+        F2CodedPacket[] codewords = new F2CodedPacket[blockNumber];
+
+        for ( int i = 0 ; i < blockNumber ; i++) {
+            byte[] payload = new byte[payloadLen];
+            r.nextBytes(payload);
+            inputPackets[i] = new UncodedPacket(i, payload);
+            codewords[i] = new F2CodedPacket(inputPackets[i], blockNumber);
+        }
+
+        F2PacketDecoder decoder = new F2PacketDecoder(blockNumber, payloadLen);
+
+        assertEquals(blockNumber, decoder.getMaxPackets());
+
+        ArrayList<UncodedPacket> uncoded = new ArrayList<UncodedPacket>();
+
+        /* random combinations are not always innovative over F_2, keep 
+         * sending until the decoder has full rank */
+        while ( decoder.getSubspaceSize() < blockNumber) {
+
+            F2CodedPacket p = new F2CodedPacket(blockNumber, payloadLen);
+
+            for ( int j = 0 ; j < blockNumber ; j++) {
+                p.multiplyAndAddInPlace(r.nextInt(2), codewords[j]);
+            }
+
+            /* go through the binary representation */
+            byte[] data = p.toByteArray();
+            assertEquals(p.getLengthInBytes(), data.length);
+
+            List<UncodedPacket> packets = decoder.addPacket(new F2CodedPacket(blockNumber, data, 0, data.length));
+
+            uncoded.addAll(packets);
+        }
+
+        assertEquals(0, decoder.addPacket(codewords[0]).size());
+
+        assertEquals(blockNumber, uncoded.size());
+
+        boolean decoded [] = new boolean[blockNumber];
+
+        for ( UncodedPacket packet : uncoded ) {
+
+        	assertFalse(decoded[packet.getId()]);
+
+        	decoded[packet.getId()] = true;
+
+        	assertArrayEquals(inputPackets[packet.getId()].getPayload(), packet.getPayload());
+
+        }
+
+	}
+
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2012, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *      * Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *      * Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *      * Neither the name of the EPFL nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *  
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************/
+package ch.epfl.arni.ncutils.f256;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.epfl.arni.ncutils.DecodingMode;
+import ch.epfl.arni.ncutils.UncodedPacket;
+
+/**
+ *
+ * @author lokeller
+ */
+public class F256PacketDecoderTest {
+
+	@Test
+	public void testDecoder() {
+
+        for (DecodingMode mode : DecodingMode.values()) {
+
+            int blockNumber = 20;
+            int payloadLen = 20000;
+
+            Random r = new Random(2131231);
+
+            UncodedPacket[] inputPackets = new UncodedPacket[blockNumber];
+            F256CodedPacket[] codewords = new F256CodedPacket[blockNumber];
+
+            for ( int i = 0 ; i < blockNumber ; i++) {
+                byte[] payload = new byte[payloadLen];
+                r.nextBytes(payload);
+                inputPackets[i] = new UncodedPacket(i, payload);
+                codewords[i] = new F256CodedPacket(inputPackets[i], blockNumber);
+            }
+
+            F256PacketDecoder decoder = new F256PacketDecoder(blockNumber, payloadLen, mode);
+
+            assertEquals(mode, decoder.getDecodingMode());
+
+            ArrayList<UncodedPacket> uncoded = new ArrayList<UncodedPacket>();
+
+            while (decoder.getSubspaceSize() < blockNumber) {
+
+                F256CodedPacket p = new F256CodedPacket(blockNumber, payloadLen);
+
+                for ( int j = 0 ; j < blockNumber ; j++) {
+                    p.multiplyAndAddInPlace(r.nextInt(256), codewords[j]);
+                }
+
+                /* go through the binary representation */
+                byte[] data = p.toByteArray();
+
+                List<UncodedPacket> packets = decoder.addPacket(new F256CodedPacket(blockNumber, data, 0, data.length));
+
+                if (mode == DecodingMode.FULL_RANK && decoder.getSubspaceSize() < blockNumber) {
+                    assertEquals(0, packets.size());
+                }
+
+                uncoded.addAll(packets);
+            }
+
+            assertEquals(0, decoder.addPacket(codewords[0]).size());
+
+            assertEquals(blockNumber, uncoded.size());
+
+            boolean decoded [] = new boolean[blockNumber];
+
+            for ( UncodedPacket packet : uncoded ) {
+
+            	assertFalse(decoded[packet.getId()]);
+
+            	decoded[packet.getId()] = true;
+
+            	assertArrayEquals(inputPackets[packet.getId()].getPayload(), packet.getPayload());
+
+            }
+        }
+
+	}
+
+	@Test
+	public void testBuffers() {
+
+        int blockNumber = 20;
+        int payloadLen = 2000;
+
+        Random r = new Random(2131231);
+
+        UncodedPacket[] inputPackets = new UncodedPacket[blockNumber];
+        F256CodedPacket[] codewords = new F256CodedPacket[blockNumber];
+
+        for ( int i = 0 ; i < blockNumber ; i++) {
+            byte[] payload = new byte[payloadLen];
+            r.nextBytes(payload);
+            inputPackets[i] = new UncodedPacket(i, payload);
+            codewords[i] = new F256CodedPacket(inputPackets[i], blockNumber);
+        }
+
+        F256PacketDecoder decoder = new F256PacketDecoder(blockNumber, payloadLen);
+
+        assertEquals(payloadLen, decoder.getPayloadLength());
+
+        int[] ids = new int[blockNumber];
+        byte[] payloads = new byte[10 + blockNumber * payloadLen];
+
+        boolean decoded [] = new boolean[blockNumber];
+        int decodedCount = 0;
+
+        /* the same packet is reused, the decoder must keep a copy */
+        F256CodedPacket p = new F256CodedPacket(blockNumber, payloadLen);
+
+        while (decoder.getSubspaceSize() < blockNumber) {
+
+            p.setToZero();
+
+            for ( int j = 0 ; j < blockNumber ; j++) {
+                p.multiplyAndAddInPlace(r.nextInt(256), codewords[j]);
+            }
+
+            int count = decoder.addPacket(p, ids, payloads, 10);
+
+            /* the payload of the i-th id is the i-th payload of the buffer */
+            for (int i = 0; i < count; i++) {
+
+                assertFalse(decoded[ids[i]]);
+
+                decoded[ids[i]] = true;
+
+                int start = 10 + i * payloadLen;
+
+                assertArrayEquals(inputPackets[ids[i]].getPayload(), Arrays.copyOfRange(payloads, start, start + payloadLen));
+            }
+
+            decodedCount += count;
+        }
+
+        assertEquals(blockNumber, decodedCount);
+        assertEquals(0, decoder.addPacket(codewords[0], ids, payloads, 10));
+
+	}
+
+}
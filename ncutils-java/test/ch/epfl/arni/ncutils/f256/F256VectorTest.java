@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2012, EPFL - ARNI
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *      * Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *      * Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *      * Neither the name of the EPFL nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *  
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************/
+package ch.epfl.arni.ncutils.f256;
+
+import java.util.Random;
+
+import ch.epfl.arni.ncutils.FiniteField;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author lokeller
+ */
+public class F256VectorTest {
+
+    @Test
+    public void testOperations() {
+
+        FiniteField ff = F256.getF256();
+        Random r = new Random(2131231);
+
+        /* lengths below and above the SIMD threshold, not multiple of the vector size */
+        for (int len : new int[] { 1, 15, 31, 32, 100, 1037 }) {
+
+            byte[] a = new byte[len + 3];
+            byte[] b = new byte[len + 7];
+            r.nextBytes(a);
+            r.nextBytes(b);
+
+            F256Vector va = F256Vector.wrap(a, 3, len);
+            F256Vector vb = F256Vector.wrap(b, 7, len);
+
+            for (int c = 0; c < 256; c++) {
+
+                F256Vector sum = va.add(vb);
+                F256Vector product = va.scalarMultiply(c);
+                F256Vector combination = va.multiplyAndAdd(c, vb);
+
+                F256Vector inPlace = va.copy();
+                inPlace.multiplyAndAddInPlace(c, vb);
+
+                for (int i = 0; i < len; i++) {
+                    int x = a[i + 3] & 0xFF;
+                    int y = b[i + 7] & 0xFF;
+
+                    assertEquals(ff.sum[x][y], sum.getCoordinate(i) & 0xFF);
+                    assertEquals(ff.mul[c][x], product.getCoordinate(i) & 0xFF);
+                    assertEquals(ff.sum[x][ff.mul[c][y]], combination.getCoordinate(i) & 0xFF);
+                    assertEquals(ff.sum[x][ff.mul[c][y]], inPlace.getCoordinate(i) & 0xFF);
+                }
+            }
+        }
+
+    }
+
+}